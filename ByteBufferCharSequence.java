@@ -0,0 +1,106 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ByteBufferCharSequence.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.nio.*;
+
+/**
+ * This class presents the bytes in a ByteBuffer as a CharSequence, without copying or decoding them.
+ * Each byte is treated as an ISO-8859-1 character, which is correct for the ASCII text in cluster files,
+ * and matches the character set the stream loaders use.
+ * This allows ClusterLineParser to parse star lines directly out of a (memory mapped) buffer.
+ * The buffer's position and limit are not used or changed, only absolute gets are performed.
+ * @version $Revision$
+ * @see ClusterLineParser
+ */
+public class ByteBufferCharSequence implements CharSequence
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The buffer containing the bytes.
+	 */
+	protected ByteBuffer buffer = null;
+	/**
+	 * The index in the buffer of the first character in the sequence.
+	 */
+	protected int offset;
+	/**
+	 * The number of characters in the sequence.
+	 */
+	protected int length;
+
+	/**
+	 * Constructor.
+	 * @param b The buffer.
+	 * @param o The index in the buffer of the first character in the sequence.
+	 * @param l The number of characters in the sequence.
+	 */
+	public ByteBufferCharSequence(ByteBuffer b,int o,int l)
+	{
+		super();
+		buffer = b;
+		offset = o;
+		length = l;
+	}
+
+	/**
+	 * Constructor for a sequence covering the whole capacity of the buffer.
+	 * @param b The buffer.
+	 */
+	public ByteBufferCharSequence(ByteBuffer b)
+	{
+		this(b,0,b.capacity());
+	}
+
+	public int length()
+	{
+		return length;
+	}
+
+	public char charAt(int index)
+	{
+		return (char)(buffer.get(offset+index) & 0xff);
+	}
+
+	public CharSequence subSequence(int start,int end)
+	{
+		return new ByteBufferCharSequence(buffer,offset+start,end-start);
+	}
+
+	/**
+	 * Return a String containing a copy of the characters in the sequence.
+	 * @return The string.
+	 */
+	public String toString()
+	{
+		char charArray[];
+		int index;
+
+		charArray = new char[length];
+		for(index = 0; index < length; index++)
+			charArray[index] = charAt(index);
+		return new String(charArray);
+	}
+}
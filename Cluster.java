@@ -23,8 +23,11 @@ package org.estar.cluster;
 import java.lang.*;
 import java.io.*;
 import java.net.*;
+import java.nio.*;
+import java.nio.charset.*;
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.*;
 import org.estar.astrometry.*;
 
 /**
@@ -41,6 +44,13 @@ public class Cluster
 	 * Revision control system version id.
 	 */
 	public final static String RCSID = "$Id$";
+	/**
+	 * The character set cluster files are read and written in. Cluster files are ASCII text, and
+	 * the memory mapped loaders treat each byte as one ISO-8859-1 character, so every reader and writer
+	 * of cluster files uses the same single byte character set, whatever the platform default is.
+	 * @see ByteBufferCharSequence
+	 */
+	public final static Charset FILE_CHARSET = Charset.forName("ISO-8859-1");
 	/**
 	 * The number of colours in the catalogue.
 	 */
@@ -61,6 +71,18 @@ public class Cluster
 	 * The list of stars.
 	 */
 	protected List starList = null;
+	/**
+	 * Mapping between colour slots and bands, compiled from colourNameList when first needed.
+	 */
+	protected volatile ClusterColourMap colourMap = null;
+	/**
+	 * Map from star identifier to star list index, created when first needed.
+	 */
+	protected volatile ClusterIdentifierMap identifierMap = null;
+	/**
+	 * Magnitude index for each colour, created when first needed.
+	 */
+	protected ClusterMagnitudeIndex magnitudeIndexList[] = null;
 
 	/**
 	 * Default constructor.
@@ -74,16 +96,214 @@ public class Cluster
 	 * Method to load a cluster file from a buffered reader.
 	 * @param r The reader to use.
 	 * @exception IOException Thrown if something couldn't be read.
-	 * @see #parseColourCountLine
-	 * @see #parseColourNameListLine
+	 * @see #loadHeader
 	 * @see #parseStarLine
-	 * @see #commentString
+	 * @see #initialiseStarList
+	 * @see #loadInstrumented
+	 * @see ClusterInstrumentation#isEnabled
 	 */
 	public void load(BufferedReader r) throws IOException
 	{
 		String s = null;
 		boolean done;
 
+		if(ClusterInstrumentation.isEnabled())
+		{
+			loadInstrumented(r);
+			return;
+		}
+		loadHeader(r);
+		// read star list
+		clearIndexes();
+		initialiseStarList();
+		done = false;
+		while ( done == false)
+		{
+			s = r.readLine();
+			if( s != null)
+				parseStarLine(s);
+			else
+				done = true;
+		}
+	}
+
+	/**
+	 * Method to load a cluster file from a buffered reader, measuring the load. The time spent reading
+	 * lines and parsing star lines is measured for every line. Every ClusterInstrumentation.SAMPLE_INTERVAL
+	 * lines, the time taken to tokenise the line and to parse its RA and Dec tokens is measured separately,
+	 * and the parse time is split between tokenising, coordinate conversion and number parsing in the sampled
+	 * proportions. The measurements are published when the load finishes, whether or not it succeeded.
+	 * @param r The reader to use.
+	 * @exception IOException Thrown if something couldn't be read.
+	 * @see #load(java.io.BufferedReader)
+	 * @see #timeTokenise
+	 * @see #timeCoordinates
+	 * @see ClusterInstrumentation#publish
+	 */
+	protected void loadInstrumented(BufferedReader r) throws IOException
+	{
+		ClusterInstrumentation.CountingReader cr = null;
+		ClusterMetrics metrics = null;
+		String s = null;
+		long startTime,parseStartTime,sampleStartTime,parseNanos,sampleNanos;
+		long sampleTokeniseNanos,sampleCoordinateNanos;
+		ClusterObject positionStar = null;
+		int sampleCount;
+
+		metrics = new ClusterMetrics(ClusterMetrics.OPERATION_LOAD,this);
+		positionStar = new ClusterObject();
+		cr = new ClusterInstrumentation.CountingReader(r);
+		parseNanos = 0;
+		sampleNanos = 0;
+		sampleTokeniseNanos = 0;
+		sampleCoordinateNanos = 0;
+		sampleCount = 0;
+		startTime = System.nanoTime();
+		try
+		{
+			loadHeader(cr);
+			clearIndexes();
+			initialiseStarList();
+			while((s = cr.readLine()) != null)
+			{
+				if((metrics.rowCount % ClusterInstrumentation.SAMPLE_INTERVAL) == 0)
+				{
+					sampleStartTime = System.nanoTime();
+					sampleTokeniseNanos += timeTokenise(s,0,s.length());
+					sampleCoordinateNanos += timeCoordinates(s,0,s.length(),positionStar);
+					sampleCount++;
+					sampleNanos += System.nanoTime()-sampleStartTime;
+				}
+				parseStartTime = System.nanoTime();
+				try
+				{
+					parseStarLine(s);
+				}
+				catch(RuntimeException e)
+				{
+					metrics.parseFailureCount++;
+					throw e;
+				}
+				parseNanos += System.nanoTime()-parseStartTime;
+				metrics.rowCount++;
+			}
+		}
+		catch(IOException e)
+		{
+			metrics.exception = e;
+			throw e;
+		}
+		catch(RuntimeException e)
+		{
+			metrics.exception = e;
+			throw e;
+		}
+		finally
+		{
+			// don't count the time spent sampling
+			metrics.totalNanos = System.nanoTime()-startTime-sampleNanos;
+			metrics.ioNanos = cr.nanos;
+			metrics.characterCount = cr.characterCount;
+			setParseSplit(metrics,parseNanos,sampleTokeniseNanos,sampleCoordinateNanos,sampleCount);
+			ClusterInstrumentation.publish(metrics);
+		}
+	}
+
+	/**
+	 * Method to split the measured parse time of a load between tokenising, coordinate parsing and
+	 * number parsing, in the proportions measured on the sampled lines.
+	 * @param metrics The measurements of the load, with the row count set.
+	 * @param parseNanos The time spent parsing star lines, in nanoseconds.
+	 * @param sampleTokeniseNanos The time spent tokenising the sampled lines, in nanoseconds.
+	 * @param sampleCoordinateNanos The time spent parsing the coordinates of the sampled lines, in nanoseconds.
+	 * @param sampleCount The number of sampled lines.
+	 */
+	protected void setParseSplit(ClusterMetrics metrics,long parseNanos,long sampleTokeniseNanos,
+				     long sampleCoordinateNanos,int sampleCount)
+	{
+		if(sampleCount > 0)
+		{
+			metrics.tokeniseNanos = Math.min(parseNanos,(sampleTokeniseNanos*metrics.rowCount)/sampleCount);
+			metrics.coordinateNanos = Math.min(parseNanos-metrics.tokeniseNanos,
+							   (sampleCoordinateNanos*metrics.rowCount)/sampleCount);
+		}
+		metrics.numberParseNanos = parseNanos-metrics.tokeniseNanos-metrics.coordinateNanos;
+	}
+
+	/**
+	 * Method to measure the time taken to split a star line into tokens, without parsing them.
+	 * @param s The characters holding the star line.
+	 * @param start The index in s of the start of the line.
+	 * @param end The index in s after the end of the line.
+	 * @return The time taken, in nanoseconds.
+	 * @see ClusterLineParser#skipSeparators
+	 * @see ClusterLineParser#tokenEnd
+	 */
+	protected long timeTokenise(CharSequence s,int start,int end)
+	{
+		long startTime;
+		int index;
+
+		startTime = System.nanoTime();
+		index = ClusterLineParser.skipSeparators(s,start,end);
+		while(index < end)
+		{
+			index = ClusterLineParser.tokenEnd(s,index,end);
+			index = ClusterLineParser.skipSeparators(s,index,end);
+		}
+		return System.nanoTime()-startTime;
+	}
+
+	/**
+	 * Method to measure the time taken to parse the RA and Dec tokens of a star line and convert them to radians,
+	 * as parseStarLine does. The line is not otherwise parsed, and a line whose position does not parse
+	 * is left for parseStarLine to report.
+	 * @param s The characters holding the star line.
+	 * @param start The index in s of the start of the line.
+	 * @param end The index in s after the end of the line.
+	 * @param star A star to parse the RA and Dec into, reused for every sampled line.
+	 * @return The time taken, in nanoseconds.
+	 * @see ClusterObject#TOKEN_INDEX_RAH
+	 * @see ClusterLineParser#parsePosition
+	 */
+	protected long timeCoordinates(CharSequence s,int start,int end,ClusterObject star)
+	{
+		long startTime;
+		int index,tokenIndex;
+
+		// skip the field and star number tokens
+		index = ClusterLineParser.skipSeparators(s,start,end);
+		for(tokenIndex = 0; (tokenIndex < ClusterObject.TOKEN_INDEX_RAH)&&(index < end); tokenIndex++)
+		{
+			index = ClusterLineParser.tokenEnd(s,index,end);
+			index = ClusterLineParser.skipSeparators(s,index,end);
+		}
+		startTime = System.nanoTime();
+		try
+		{
+			if(index < end)
+				ClusterLineParser.parsePosition(s,index,end,star);
+		}
+		catch(NumberFormatException e)
+		{
+			// parseStarLine fails on the same line, and counts the failure
+		}
+		return System.nanoTime()-startTime;
+	}
+
+	/**
+	 * Method to load the three header lines of a cluster file from a buffered reader.
+	 * The reader is left positioned at the start of the first star line.
+	 * @param r The reader to use.
+	 * @exception IOException Thrown if something couldn't be read.
+	 * @see #parseColourCountLine
+	 * @see #parseColourNameListLine
+	 * @see #commentString
+	 */
+	public void loadHeader(BufferedReader r) throws IOException
+	{
+		String s = null;
+
 		// read colour count
 		s = r.readLine();
 		if(s == null)
@@ -99,17 +319,201 @@ public class Cluster
 		if(s == null)
 			throw new IOException("load failed:reading comment returned null.");
 		commentString = s;
+	}
+
+	/**
+	 * Method to load a cluster file held in a range of a character sequence (a String, StringBuilder,
+	 * CharBuffer etc). The lines are parsed in place, without copying the text.
+	 * @param s The characters of the cluster file.
+	 * @param start The index in s of the start of the cluster file.
+	 * @param end The index in s after the end of the cluster file.
+	 * @exception IOException Thrown if a header line is missing.
+	 * @see #loadHeader(java.lang.CharSequence,int,int)
+	 * @see #parseStarLine(java.lang.CharSequence,int,int)
+	 * @see #loadInstrumented(java.lang.CharSequence,int,int)
+	 * @see ClusterLineParser#lineEnd
+	 * @see ClusterLineParser#nextLineStart
+	 * @see ClusterInstrumentation#isEnabled
+	 */
+	public void load(CharSequence s,int start,int end) throws IOException
+	{
+		int lineStart,lineEnd;
+
+		if(ClusterInstrumentation.isEnabled())
+		{
+			loadInstrumented(s,start,end);
+			return;
+		}
+		lineStart = loadHeader(s,start,end);
 		// read star list
-		starList = new Vector();
-		done = false;
-		while ( done == false)
+		clearIndexes();
+		initialiseStarList();
+		while(lineStart < end)
 		{
-			s = r.readLine();
-			if( s != null)
-				parseStarLine(s);
-			else
-				done = true;
+			lineEnd = ClusterLineParser.lineEnd(s,lineStart,end);
+			parseStarLine(s,lineStart,lineEnd);
+			lineStart = ClusterLineParser.nextLineStart(s,lineEnd,end);
+		}
+	}
+
+	/**
+	 * Method to load the three header lines of a cluster file held in a range of a character sequence.
+	 * @param s The characters of the cluster file.
+	 * @param start The index in s of the start of the cluster file.
+	 * @param end The index in s after the end of the cluster file.
+	 * @return The index in s of the start of the first star line.
+	 * @exception IOException Thrown if a header line is missing.
+	 * @see #parseColourCountLine
+	 * @see #parseColourNameListLine
+	 * @see #commentString
+	 */
+	protected int loadHeader(CharSequence s,int start,int end) throws IOException
+	{
+		int lineStart,lineEnd;
+
+		lineStart = start;
+		// read colour count
+		if(lineStart >= end)
+			throw new IOException("load failed:reading colour count returned null.");
+		lineEnd = ClusterLineParser.lineEnd(s,lineStart,end);
+		parseColourCountLine(s.subSequence(lineStart,lineEnd).toString());
+		lineStart = ClusterLineParser.nextLineStart(s,lineEnd,end);
+		// read colour name list
+		if(lineStart >= end)
+			throw new IOException("load failed:reading colour list returned null.");
+		lineEnd = ClusterLineParser.lineEnd(s,lineStart,end);
+		parseColourNameListLine(s.subSequence(lineStart,lineEnd).toString());
+		lineStart = ClusterLineParser.nextLineStart(s,lineEnd,end);
+		// read comment
+		if(lineStart >= end)
+			throw new IOException("load failed:reading comment returned null.");
+		lineEnd = ClusterLineParser.lineEnd(s,lineStart,end);
+		commentString = s.subSequence(lineStart,lineEnd).toString();
+		return ClusterLineParser.nextLineStart(s,lineEnd,end);
+	}
+
+	/**
+	 * Method to load a cluster file held in a range of a character sequence, measuring the load, as
+	 * loadInstrumented(BufferedReader) does. As there is no reader, the time spent finding the end of
+	 * each line is counted as reading lines.
+	 * @param s The characters of the cluster file.
+	 * @param start The index in s of the start of the cluster file.
+	 * @param end The index in s after the end of the cluster file.
+	 * @exception IOException Thrown if a header line is missing.
+	 * @see #load(java.lang.CharSequence,int,int)
+	 * @see #loadInstrumented(java.io.BufferedReader)
+	 * @see #timeTokenise
+	 * @see #timeCoordinates
+	 * @see ClusterInstrumentation#publish
+	 */
+	protected void loadInstrumented(CharSequence s,int start,int end) throws IOException
+	{
+		ClusterMetrics metrics = null;
+		long startTime,lineStartTime,parseStartTime,sampleStartTime,ioNanos,parseNanos,sampleNanos;
+		long sampleTokeniseNanos,sampleCoordinateNanos;
+		ClusterObject positionStar = null;
+		int lineStart,lineEnd,sampleCount;
+
+		metrics = new ClusterMetrics(ClusterMetrics.OPERATION_LOAD,this);
+		positionStar = new ClusterObject();
+		ioNanos = 0;
+		parseNanos = 0;
+		sampleNanos = 0;
+		sampleTokeniseNanos = 0;
+		sampleCoordinateNanos = 0;
+		sampleCount = 0;
+		startTime = System.nanoTime();
+		try
+		{
+			lineStart = loadHeader(s,start,end);
+			clearIndexes();
+			initialiseStarList();
+			while(lineStart < end)
+			{
+				lineStartTime = System.nanoTime();
+				lineEnd = ClusterLineParser.lineEnd(s,lineStart,end);
+				ioNanos += System.nanoTime()-lineStartTime;
+				if((metrics.rowCount % ClusterInstrumentation.SAMPLE_INTERVAL) == 0)
+				{
+					sampleStartTime = System.nanoTime();
+					sampleTokeniseNanos += timeTokenise(s,lineStart,lineEnd);
+					sampleCoordinateNanos += timeCoordinates(s,lineStart,lineEnd,positionStar);
+					sampleCount++;
+					sampleNanos += System.nanoTime()-sampleStartTime;
+				}
+				parseStartTime = System.nanoTime();
+				try
+				{
+					parseStarLine(s,lineStart,lineEnd);
+				}
+				catch(RuntimeException e)
+				{
+					metrics.parseFailureCount++;
+					throw e;
+				}
+				parseNanos += System.nanoTime()-parseStartTime;
+				metrics.rowCount++;
+				lineStart = ClusterLineParser.nextLineStart(s,lineEnd,end);
+			}
+		}
+		catch(IOException e)
+		{
+			metrics.exception = e;
+			throw e;
 		}
+		catch(RuntimeException e)
+		{
+			metrics.exception = e;
+			throw e;
+		}
+		finally
+		{
+			// don't count the time spent sampling
+			metrics.totalNanos = System.nanoTime()-startTime-sampleNanos;
+			metrics.ioNanos = ioNanos;
+			metrics.characterCount = end-start;
+			setParseSplit(metrics,parseNanos,sampleTokeniseNanos,sampleCoordinateNanos,sampleCount);
+			ClusterInstrumentation.publish(metrics);
+		}
+	}
+
+	/**
+	 * Method to copy the header information (colour count, colour names and comments) from another cluster.
+	 * The star list is not copied.
+	 * @param c The cluster to copy the header from.
+	 * @see #colourCount
+	 * @see #colourNameList
+	 * @see #colourCommentString
+	 * @see #commentString
+	 */
+	protected void copyHeader(Cluster c)
+	{
+		colourCount = c.colourCount;
+		colourNameList = c.colourNameList;
+		colourCommentString = c.colourCommentString;
+		commentString = c.commentString;
+	}
+
+	/**
+	 * Method to discard the identifier map and magnitude indexes, before the star list is replaced.
+	 * They are rebuilt when next needed.
+	 * @see #identifierMap
+	 * @see #magnitudeIndexList
+	 */
+	protected synchronized void clearIndexes()
+	{
+		identifierMap = null;
+		magnitudeIndexList = null;
+	}
+
+	/**
+	 * Method to create a new empty list of stars, before the star lines are parsed.
+	 * Subclasses with different star storage override this.
+	 * @see #starList
+	 */
+	protected void initialiseStarList()
+	{
+		starList = new Vector();
 	}
 
 	/**
@@ -118,14 +522,115 @@ public class Cluster
 	 * @exception IOException Thrown if an IO error occurs.
 	 * @see #writeColourCountLine
 	 * @see #writeColourNameListLine
-	 * @see ClusterObject#write
-	 * @see #starList
+	 * @see ClusterWriter#writeStar
+	 * @see #getStarList
 	 * @see #commentString
+	 * @see #saveInstrumented
+	 * @see ClusterInstrumentation#isEnabled
 	 */
 	public void save(Writer w) throws IOException
 	{
+		if(ClusterInstrumentation.isEnabled())
+			saveInstrumented(w,null);
+		else
+			writeCluster(w);
+	}
+
+	/**
+	 * Method to save a cluster file to the specified Appendable, for instance a StringBuilder or a
+	 * CharBuffer, without building a String. Writers are passed to save(Writer).
+	 * @param a The Appendable.
+	 * @exception IOException Thrown if the Appendable fails.
+	 * @see #save(java.io.Writer)
+	 * @see #saveInstrumented
+	 * @see ClusterWriter#writeCluster
+	 */
+	public void save(Appendable a) throws IOException
+	{
+		ClusterWriter cw = null;
+
+		if(a instanceof Writer)
+		{
+			save((Writer)a);
+			return;
+		}
+		if(ClusterInstrumentation.isEnabled())
+		{
+			saveInstrumented(a,"");
+			return;
+		}
+		cw = new ClusterWriter(a);
+		cw.writeCluster(this,"");
+		cw.flush();
+	}
+
+	/**
+	 * Method to save a cluster file to the specified Writer or Appendable, measuring the save. This is used
+	 * by save and toString(Appendable,String) when instrumentation is enabled. The time spent in the
+	 * Writer or Appendable is measured, the rest of the save time is counted as formatting.
+	 * The measurements are published when the save finishes, whether or not it succeeded.
+	 * @param a The Writer or Appendable.
+	 * @param prefix A prefix string to prepend to every line, as toString(Appendable,String) does,
+	 *        or null to save the cluster as save(Writer) does.
+	 * @exception IOException Thrown if an IO error occurs.
+	 * @see #writeCluster
+	 * @see #save(java.io.Writer)
+	 * @see #save(java.lang.Appendable)
+	 * @see #toString(java.lang.Appendable,java.lang.String)
+	 * @see ClusterInstrumentation#publish
+	 */
+	protected void saveInstrumented(Appendable a,String prefix) throws IOException
+	{
+		ClusterInstrumentation.CountingWriter cw = null;
+		ClusterWriter clusterWriter = null;
+		ClusterMetrics metrics = null;
+		long startTime;
+
+		metrics = new ClusterMetrics(ClusterMetrics.OPERATION_SAVE,this);
+		cw = new ClusterInstrumentation.CountingWriter(a);
+		startTime = System.nanoTime();
+		try
+		{
+			if(prefix == null)
+				writeCluster(cw);
+			else
+			{
+				clusterWriter = new ClusterWriter(cw);
+				clusterWriter.writeCluster(this,prefix);
+				clusterWriter.flush();
+			}
+			metrics.rowCount = getStarListCount();
+		}
+		catch(IOException e)
+		{
+			metrics.exception = e;
+			throw e;
+		}
+		catch(RuntimeException e)
+		{
+			metrics.exception = e;
+			throw e;
+		}
+		finally
+		{
+			metrics.totalNanos = System.nanoTime()-startTime;
+			metrics.ioNanos = cw.nanos;
+			metrics.formatNanos = metrics.totalNanos-metrics.ioNanos;
+			metrics.characterCount = cw.characterCount;
+			ClusterInstrumentation.publish(metrics);
+		}
+	}
+
+	/**
+	 * Method to write the header lines and star lines of the cluster to the specified Writer.
+	 * @param w The writer.
+	 * @exception IOException Thrown if an IO error occurs.
+	 * @see #save(java.io.Writer)
+	 */
+	protected void writeCluster(Writer w) throws IOException
+	{
+		ClusterWriter cw = null;
 		Iterator iterator = null;
-		ClusterObject clusterObject = null;
 
 		writeColourCountLine(w);
 		writeColourNameListLine(w);
@@ -133,18 +638,80 @@ public class Cluster
 			w.write(commentString+"\n");
 		else
 			w.write("\n");
-		iterator = starList.iterator();
+		cw = new ClusterWriter(w);
+		iterator = getStarList().iterator();
 		while(iterator.hasNext())
+			cw.writeStar((ClusterObject)(iterator.next()),"");
+		cw.flush();
+	}
+
+	/**
+	 * Method returns the number of colours in the catalogue.
+	 * @return The number of colours.
+	 * @see #colourCount
+	 */
+	public int getColourCount()
+	{
+		return colourCount;
+	}
+
+	/**
+	 * Method returns the name of the specified colour.
+	 * @param index The index of the colour.
+	 * @return The name of the colour.
+	 * @see #colourNameList
+	 */
+	public String getColourName(int index)
+	{
+		return colourNameList[index];
+	}
+
+	/**
+	 * Method returns the mapping between colour slots and bands, compiled from the colour names.
+	 * The map is compiled on first use, and recompiled if the colour names are replaced or changed.
+	 * @return The colour map.
+	 * @see #colourMap
+	 * @see #colourNameList
+	 */
+	public ClusterColourMap getColourMap()
+	{
+		ClusterColourMap map = null;
+
+		map = colourMap;
+		if((map == null)||(map.isFor(colourNameList) == false))
 		{
-			clusterObject = (ClusterObject)(iterator.next());
-			clusterObject.write(w);
+			map = new ClusterColourMap(colourNameList);
+			colourMap = map;
 		}
+		return map;
+	}
+
+	/**
+	 * Method returns the comment string after the number of colours, if any.
+	 * @return The colour comment string, or null.
+	 * @see #colourCommentString
+	 */
+	public String getColourCommentString()
+	{
+		return colourCommentString;
+	}
+
+	/**
+	 * Method returns the comment (line 3 of the cluster file), if any.
+	 * @return The comment string, or null.
+	 * @see #commentString
+	 */
+	public String getCommentString()
+	{
+		return commentString;
 	}
 
 	/**
-	 * Method returns the list of stars.
+	 * Method returns the list of stars. This is the cluster's own list, so it can change if the cluster
+	 * is reloaded. Threads that need a consistent, lock free view should use a ClusterSnapshot.
 	 * @return The list of stars.
 	 * @see #starList
+	 * @see ClusterSnapshot
 	 */
 	public List getStarList()
 	{
@@ -173,6 +740,321 @@ public class Cluster
 		return (ClusterObject)(starList.get(index));
 	}
 
+	/**
+	 * Get the star with the specified identifier.
+	 * @param fieldNumber The field number.
+	 * @param starNumber The star number.
+	 * @return Information on the specified star, or null if there is no star with that identifier.
+	 * @see #getStarIndex
+	 */
+	public ClusterObject getStar(int fieldNumber,int starNumber)
+	{
+		int index;
+
+		index = getStarIndex(fieldNumber,starNumber);
+		if(index < 0)
+			return null;
+		return getStar(index);
+	}
+
+	/**
+	 * Get the index in the cluster list of the star with the specified identifier.
+	 * If more than one star has the identifier, the index of the first is returned.
+	 * @param fieldNumber The field number.
+	 * @param starNumber The star number.
+	 * @return The index in the list, or -1 if there is no star with that identifier.
+	 * @see #getIdentifierMap
+	 */
+	public int getStarIndex(int fieldNumber,int starNumber)
+	{
+		return getIdentifierMap().get(fieldNumber,starNumber);
+	}
+
+	/**
+	 * Get the indices in the cluster list of stars whose identifier (field number, star number)
+	 * was already used by an earlier star in the list. These stars cannot be found by getStarIndex.
+	 * @return The indices, in increasing order. An empty array if all identifiers are unique.
+	 * @see #getIdentifierMap
+	 */
+	public int[] getDuplicateStarIndexes()
+	{
+		return getIdentifierMap().getDuplicateStarIndexes();
+	}
+
+	/**
+	 * Get the map from star identifier to star list index. The map is built on first use,
+	 * and rebuilt if stars have been added to or removed from the list since. Changing the identifier
+	 * of a star already in the list is not detected.
+	 * @return The map.
+	 * @see #identifierMap
+	 */
+	public ClusterIdentifierMap getIdentifierMap()
+	{
+		ClusterIdentifierMap map = null;
+
+		map = identifierMap;
+		if((map != null)&&(map.getStarCount() == getStarListCount()))
+			return map;
+		synchronized(this)
+		{
+			map = identifierMap;
+			if((map == null)||(map.getStarCount() != getStarListCount()))
+			{
+				map = new ClusterIdentifierMap(this);
+				identifierMap = map;
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Get the field number of the star at index in the cluster list.
+	 * @param index The index in the list.
+	 * @return The field number.
+	 * @see ClusterObject#getFieldNumber
+	 */
+	public int getFieldNumber(int index)
+	{
+		return getStar(index).getFieldNumber();
+	}
+
+	/**
+	 * Get the star number of the star at index in the cluster list.
+	 * @param index The index in the list.
+	 * @return The star number.
+	 * @see ClusterObject#getStarNumber
+	 */
+	public int getStarNumber(int index)
+	{
+		return getStar(index).getStarNumber();
+	}
+
+	/**
+	 * Get the magnitude of the star at index in the cluster list.
+	 * @param index The index in the list.
+	 * @param colourIndex The colour.
+	 * @return The magnitude.
+	 * @see ClusterObject#getMagnitude
+	 */
+	public double getMagnitude(int index,int colourIndex)
+	{
+		return getStar(index).getMagnitude(colourIndex);
+	}
+
+	/**
+	 * Get the magnitude error of the star at index in the cluster list.
+	 * @param index The index in the list.
+	 * @param colourIndex The colour.
+	 * @return The magnitude error.
+	 * @see ClusterObject#getMagnitudeError
+	 */
+	public double getMagnitudeError(int index,int colourIndex)
+	{
+		return getStar(index).getMagnitudeError(colourIndex);
+	}
+
+	/**
+	 * Get the flags of the star at index in the cluster list.
+	 * @param index The index in the list.
+	 * @param colourIndex The colour.
+	 * @return The flags.
+	 * @see ClusterObject#getFlags
+	 */
+	public int getFlags(int index,int colourIndex)
+	{
+		return getStar(index).getFlags(colourIndex);
+	}
+
+	/**
+	 * Get an index of the stars sorted by magnitude in the specified colour. The index is built on first use,
+	 * and rebuilt if stars have been added to or removed from the list since.
+	 * @param colourIndex The colour.
+	 * @return The magnitude index.
+	 * @exception IndexOutOfBoundsException Thrown if the colour index is out of range.
+	 * @see #magnitudeIndexList
+	 */
+	public synchronized ClusterMagnitudeIndex getMagnitudeIndex(int colourIndex) throws IndexOutOfBoundsException
+	{
+		ClusterMagnitudeIndex index = null;
+
+		if((colourIndex < 0)||(colourIndex >= colourCount))
+		{
+			throw new IndexOutOfBoundsException(this.getClass().getName()+":getMagnitudeIndex:Colour index "+
+							    colourIndex+" out of range 0.."+colourCount);
+		}
+		if((magnitudeIndexList == null)||(magnitudeIndexList.length != colourCount))
+			magnitudeIndexList = new ClusterMagnitudeIndex[colourCount];
+		index = magnitudeIndexList[colourIndex];
+		if((index == null)||(index.getStarCount() != getStarListCount()))
+		{
+			index = new ClusterMagnitudeIndex(this,colourIndex);
+			magnitudeIndexList[colourIndex] = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Get an index of the stars sorted by magnitude in the colour with the specified name.
+	 * @param colourName The colour name, compared ignoring case. If more than one colour has the name,
+	 *        the first is used.
+	 * @return The magnitude index.
+	 * @exception IllegalArgumentException Thrown if no colour has that name.
+	 * @see #getMagnitudeIndex(int)
+	 */
+	public ClusterMagnitudeIndex getMagnitudeIndex(String colourName) throws IllegalArgumentException
+	{
+		return getMagnitudeIndex(findColourIndex(colourName,"getMagnitudeIndex"));
+	}
+
+	/**
+	 * Get statistics (mean, weighted mean, median, sigma clipped mean, histogram) of the magnitudes
+	 * in a colour.
+	 * @param colourIndex The index of the colour.
+	 * @param maxError Stars with a magnitude error larger than this (or NaN) are left out.
+	 *        Pass Double.POSITIVE_INFINITY to accept any error.
+	 * @param rejectFlags Stars with any of these flag bits set are left out. Pass 0 to accept any flags.
+	 * @return The statistics.
+	 * @exception IndexOutOfBoundsException Thrown if the colour index is out of range.
+	 * @see ClusterMagnitudeStatistics
+	 */
+	public ClusterMagnitudeStatistics getMagnitudeStatistics(int colourIndex,double maxError,int rejectFlags)
+		throws IndexOutOfBoundsException
+	{
+		return new ClusterMagnitudeStatistics(this,colourIndex,maxError,rejectFlags);
+	}
+
+	/**
+	 * Get statistics of the magnitudes in the colour with the specified name.
+	 * @param colourName The colour name, compared ignoring case. If more than one colour has the name,
+	 *        the first is used.
+	 * @param maxError Stars with a magnitude error larger than this (or NaN) are left out.
+	 * @param rejectFlags Stars with any of these flag bits set are left out.
+	 * @return The statistics.
+	 * @exception IllegalArgumentException Thrown if no colour has that name.
+	 * @see #getMagnitudeStatistics(int,double,int)
+	 */
+	public ClusterMagnitudeStatistics getMagnitudeStatistics(String colourName,double maxError,int rejectFlags)
+		throws IllegalArgumentException
+	{
+		return getMagnitudeStatistics(findColourIndex(colourName,"getMagnitudeStatistics"),maxError,rejectFlags);
+	}
+
+	/**
+	 * Get statistics of a colour index, such as B-V, of the stars.
+	 * @param colourName1 The name of the first colour (e.g. "B").
+	 * @param colourName2 The name of the second colour (e.g. "V").
+	 * @param maxError Stars with either magnitude error larger than this (or NaN) are left out.
+	 * @param rejectFlags Stars with any of these flag bits set in either colour are left out.
+	 * @return The statistics of the first colour's magnitude minus the second's.
+	 * @exception IllegalArgumentException Thrown if no colour has one of the names.
+	 * @see ClusterMagnitudeStatistics#colourIndex
+	 */
+	public ClusterMagnitudeStatistics getColourIndexStatistics(String colourName1,String colourName2,
+								   double maxError,int rejectFlags)
+		throws IllegalArgumentException
+	{
+		return ClusterMagnitudeStatistics.colourIndex(this,findColourIndex(colourName1,"getColourIndexStatistics"),
+							      findColourIndex(colourName2,"getColourIndexStatistics"),
+							      maxError,rejectFlags);
+	}
+
+	/**
+	 * Find the index of the first colour with the specified name.
+	 * @param colourName The colour name, compared ignoring case.
+	 * @param methodName The name of the calling method, for the error message.
+	 * @return The colour index.
+	 * @exception IllegalArgumentException Thrown if no colour has that name.
+	 */
+	protected int findColourIndex(String colourName,String methodName) throws IllegalArgumentException
+	{
+		int index;
+
+		for(index = 0; index < colourCount; index++)
+		{
+			if(colourNameList[index].equalsIgnoreCase(colourName))
+				return index;
+		}
+		throw new IllegalArgumentException(this.getClass().getName()+":"+methodName+":Unknown colour:"+
+						   colourName);
+	}
+
+	/**
+	 * Get the RA of the star at index in the cluster list, in radians.
+	 * @param index The index in the list.
+	 * @return The RA in radians, or NaN if the star has no RA.
+	 * @see ClusterObject#getRARadians
+	 */
+	public double getRARadians(int index)
+	{
+		return getStar(index).getRARadians();
+	}
+
+	/**
+	 * Get the RA of the star at index in the cluster list.
+	 * @param index The index in the list.
+	 * @return The RA, or null if the star has no RA.
+	 * @see ClusterObject#getRA
+	 */
+	public RA getRA(int index)
+	{
+		return getStar(index).getRA();
+	}
+
+	/**
+	 * Get the Dec of the star at index in the cluster list.
+	 * @param index The index in the list.
+	 * @return The Dec, or null if the star has no Dec.
+	 * @see ClusterObject#getDec
+	 */
+	public Dec getDec(int index)
+	{
+		return getStar(index).getDec();
+	}
+
+	/**
+	 * Get the Dec of the star at index in the cluster list, in radians.
+	 * @param index The index in the list.
+	 * @return The Dec in radians, or NaN if the star has no Dec.
+	 * @see ClusterObject#getDecRadians
+	 */
+	public double getDecRadians(int index)
+	{
+		return getStar(index).getDecRadians();
+	}
+
+	/**
+	 * Get the unit vector of the position of the star at index in the cluster list.
+	 * @param index The index in the list.
+	 * @return An array of length 3 containing x,y,z, which should not be modified.
+	 * @see ClusterObject#getUnitVector
+	 */
+	public double[] getUnitVector(int index)
+	{
+		return getStar(index).getUnitVector();
+	}
+
+	/**
+	 * Get the X pixel position of the star at index in the cluster list.
+	 * @param index The index in the list.
+	 * @return The X pixel position.
+	 * @see ClusterObject#getXPixel
+	 */
+	public double getXPixel(int index)
+	{
+		return getStar(index).getXPixel();
+	}
+
+	/**
+	 * Get the Y pixel position of the star at index in the cluster list.
+	 * @param index The index in the list.
+	 * @return The Y pixel position.
+	 * @see ClusterObject#getYPixel
+	 */
+	public double getYPixel(int index)
+	{
+		return getStar(index).getYPixel();
+	}
+
 	/**
 	 * Method to print out a string representation of this cluster file.
 	 * @return The string.
@@ -188,70 +1070,90 @@ public class Cluster
 	 * @param prefix A prefix string to prepend to every line.
 	 * @see #writeColourCountLine
 	 * @see #writeColourNameListLine
-	 * @see ClusterObject#write
-	 * @see #starList
+	 * @see ClusterWriter#writeCluster
+	 * @see #getStarList
 	 * @see #commentString
 	 */
 	public String toString(String prefix)
 	{
-		StringBuffer sb = null;
-		Iterator iterator = null;
-		ClusterObject clusterObject = null;
-		int index;
+		StringBuilder sb = null;
 
-		sb = new StringBuffer();
-		// colour line count
-		sb.append(prefix+colourCount+" "+colourCommentString+"\n");
-		// colour name list line
-		sb.append(prefix);
-		for(index = 0;index < colourCount;index++)
+		sb = new StringBuilder();
+		try
 		{
-			sb.append(colourNameList[index]);
-			if(index < (colourCount-1))
-				sb.append(" ");
+			toString(sb,prefix);
 		}
-	        sb.append("\n");
-		// comment
-		if(commentString != null)
-			sb.append(prefix+commentString+"\n");
-		else
-			sb.append(prefix+"\n");
-		// list of stars
-		iterator = starList.iterator();
-		while(iterator.hasNext())
+		catch(IOException e)
 		{
-			clusterObject = (ClusterObject)(iterator.next());
-			sb.append(clusterObject.toString(prefix)+"\n");
+			// StringBuilder.append does not throw IOException
+			throw new UncheckedIOException(e);
 		}
 		return sb.toString();
 	}
 
+	/**
+	 * Method to print the contents of a cluster file (as toString(prefix) does) straight to an Appendable,
+	 * for instance the Writer of a document the cluster is being embedded in, without building a String.
+	 * @param a The Appendable (Writer, StringBuilder etc) to print to.
+	 * @param prefix A prefix string to prepend to every line.
+	 * @exception IOException Thrown if the Appendable fails.
+	 * @see #toString(java.lang.String)
+	 * @see #saveInstrumented
+	 * @see ClusterWriter#writeCluster
+	 */
+	public void toString(Appendable a,String prefix) throws IOException
+	{
+		ClusterWriter cw = null;
+
+		if(ClusterInstrumentation.isEnabled())
+		{
+			saveInstrumented(a,prefix);
+			return;
+		}
+		cw = new ClusterWriter(a);
+		cw.writeCluster(this,prefix);
+		cw.flush();
+	}
+
 	/**
 	 * Static method to load and instansiate a Cluster object from the specified file.
+	 * gzip (or zstd) compressed files are decompressed while they are loaded.
 	 * @param file The file to load.
 	 * @return An Cluster object instance.
 	 * @exception FileNotFoundException Thrown if the file doesnot exist.
 	 * @exception IOException Thrown if there is a problem with the load.
 	 * @see #load(java.io.BufferedReader)
+	 * @see ClusterDecompressor#open
 	 */
 	public static Cluster load(File file) throws FileNotFoundException,IOException
 	{
 		Cluster c = null;
-		FileInputStream fis = null;
+		InputStream is = null;
 
 		c = new Cluster();
-		fis = new FileInputStream(file);
-		c.load(new BufferedReader(new InputStreamReader(fis)));
-		fis.close();
+		is = ClusterDecompressor.open(new FileInputStream(file));
+		try
+		{
+			c.load(new BufferedReader(new InputStreamReader(is,FILE_CHARSET)));
+		}
+		finally
+		{
+			is.close();
+		}
 		return c;
 	}
 
 	/**
 	 * Static method to load and instansiate a Cluster object from the specified URL.
+	 * gzip (or zstd) compressed data is decompressed while it is loaded.
+	 * This waits forever for a slow or stalled server, load(URL,int,int) and loadAsync have timeouts.
 	 * @param url The URL to load from.
 	 * @return An Cluster object instance.
 	 * @exception IOException Thrown if there is a problem with the load.
 	 * @see #load(java.io.BufferedReader)
+	 * @see ClusterDecompressor#open
+	 * @see ClusterCache
+	 * @see #load(java.net.URL,int,int)
 	 */
 	public static Cluster load(URL url) throws IOException
 	{
@@ -259,31 +1161,106 @@ public class Cluster
 		InputStream is = null;
 
 		c = new Cluster();
-		is = url.openStream();
-		c.load(new BufferedReader(new InputStreamReader(is)));
-		is.close();
+		is = ClusterDecompressor.open(url.openStream());
+		try
+		{
+			c.load(new BufferedReader(new InputStreamReader(is,FILE_CHARSET)));
+		}
+		finally
+		{
+			is.close();
+		}
 		return c;
 	}
 
+	/**
+	 * Static method to load and instansiate a Cluster object from the specified URL, with connect and read
+	 * timeouts. gzip (or zstd) compressed data is decompressed while it is loaded.
+	 * @param url The URL to load from.
+	 * @param connectTimeout The connect timeout, in milliseconds, or 0 to wait forever.
+	 * @param readTimeout The read timeout, in milliseconds, or 0 to wait forever.
+	 * @return A Cluster object instance.
+	 * @exception SocketTimeoutException Thrown if a timeout expires.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see ClusterUrlLoader#load(org.estar.cluster.Cluster,java.net.URL,int,int)
+	 */
+	public static Cluster load(URL url,int connectTimeout,int readTimeout) throws IOException
+	{
+		return ClusterUrlLoader.load(new Cluster(),url,connectTimeout,readTimeout);
+	}
+
+	/**
+	 * Static method to load a Cluster object from the specified URL asynchronously, using the default
+	 * connect and read timeouts.
+	 * @param url The URL to load from.
+	 * @return A future that completes with the loaded Cluster, or exceptionally if the load fails.
+	 * @see ClusterUrlLoader#DEFAULT_CONNECT_TIMEOUT
+	 * @see ClusterUrlLoader#DEFAULT_READ_TIMEOUT
+	 * @see #loadAsync(java.net.URL,int,int)
+	 */
+	public static CompletableFuture<Cluster> loadAsync(URL url)
+	{
+		return loadAsync(url,ClusterUrlLoader.DEFAULT_CONNECT_TIMEOUT,ClusterUrlLoader.DEFAULT_READ_TIMEOUT);
+	}
+
+	/**
+	 * Static method to load a Cluster object from the specified URL asynchronously, with connect and read
+	 * timeouts. The response body is parsed as it arrives. Cancelling the future aborts the load.
+	 * @param url The URL to load from.
+	 * @param connectTimeout The connect timeout, in milliseconds, or 0 to wait forever.
+	 * @param readTimeout The read timeout, in milliseconds, or 0 to wait forever.
+	 * @return A future that completes with the loaded Cluster, or exceptionally if the load fails.
+	 * @see ClusterUrlLoader#loadAsync(org.estar.cluster.Cluster,java.net.URL,int,int)
+	 */
+	public static CompletableFuture<Cluster> loadAsync(URL url,int connectTimeout,int readTimeout)
+	{
+		return ClusterUrlLoader.loadAsync(new Cluster(),url,connectTimeout,readTimeout);
+	}
+
 	/**
 	 * Static method to load and instansiate a Cluster object from the specified string.
 	 * @param s A string containing the contents of a cluster file.
 	 * @return An Cluster object instance.
 	 * @exception IOException Thrown if there is a problem with the load.
-	 * @see #load(java.io.BufferedReader)
+	 * @see #load(java.lang.CharSequence)
 	 */
 	public static Cluster load(String s) throws IOException
+	{
+		return load((CharSequence)s);
+	}
+
+	/**
+	 * Static method to load and instansiate a Cluster object from the specified character sequence,
+	 * parsing it in place.
+	 * @param s The contents of a cluster file.
+	 * @return An Cluster object instance.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see #load(java.lang.CharSequence,int,int)
+	 */
+	public static Cluster load(CharSequence s) throws IOException
 	{
 		Cluster c = null;
-		BufferedReader r = null;
 
 		c = new Cluster();
-		r = new BufferedReader(new StringReader(s));
-		c.load(r);
-		r.close();
+		c.load(s,0,s.length());
 		return c;
 	}
 
+	/**
+	 * Static method to load and instansiate a Cluster object from a range of a character array,
+	 * parsing it in place. The array is not copied.
+	 * @param buffer The array containing the contents of a cluster file.
+	 * @param offset The index in the array of the start of the cluster file.
+	 * @param length The number of characters in the cluster file.
+	 * @return An Cluster object instance.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see #load(java.lang.CharSequence,int,int)
+	 */
+	public static Cluster load(char buffer[],int offset,int length) throws IOException
+	{
+		return load(CharBuffer.wrap(buffer,offset,length));
+	}
+
 	/**
 	 * Method to parse the colour count line.
 	 * The first space seperated token should be a number - the number of colours.
@@ -344,14 +1321,35 @@ public class Cluster
 	 * method. The result is added to the starList.
 	 * @param s The string to parse.
 	 * @see #starList
-	 * @see ClusterObject#parseStarLine
+	 * @see #getColourMap
+	 * @see ClusterObject#parseStarLine(java.lang.String,org.estar.cluster.ClusterColourMap)
 	 */
 	protected void parseStarLine(String s)
 	{
 		ClusterObject co = null;
 
 		co = new ClusterObject();
-		co.parseStarLine(s,colourCount,colourNameList);
+		co.parseStarLine(s,getColourMap());
+		starList.add(co);
+	}
+
+	/**
+	 * Method to parse a star line held in the specified range of a character sequence. Creates a new
+	 * ClusterObject and calls the parseStarLine method. The result is added to the starList.
+	 * Subclasses with different star storage override this.
+	 * @param s The characters to parse.
+	 * @param start The index in s of the start of the line.
+	 * @param end The index in s after the end of the line (not including any line terminator).
+	 * @exception IllegalArgumentException Thrown if an argument was out of bounds.
+	 * @see #starList
+	 * @see ClusterObject#parseStarLine(java.lang.CharSequence,int,int,org.estar.cluster.ClusterColourMap)
+	 */
+	protected void parseStarLine(CharSequence s,int start,int end) throws IllegalArgumentException
+	{
+		ClusterObject co = null;
+
+		co = new ClusterObject();
+		co.parseStarLine(s,start,end,getColourMap());
 		starList.add(co);
 	}
 
@@ -389,12 +1387,20 @@ public class Cluster
 
 	/**
 	 * Main program, to test loading Cluster files, and printing them out.
+	 * It can also be used to convert between the text and binary cluster formats. The input file
+	 * format is detected from the binary magic number.
+	 * @see ClusterBinary
+	 * @see ClusterMappedLoader
 	 */
 	public static void main(String args[])
 	{
 		Cluster cluster = null;
 		Writer w = null;
+		File inputFile = null;
 		String filename = null;
+		String outputFilename = null;
+		boolean parallel = false;
+		boolean binaryOutput = false;
 
 		if(args.length < 1)
 		{
@@ -413,18 +1419,58 @@ public class Cluster
 			else
 			    System.err.println("Cluster:-filename requires a filename.");
 		    }
+		    else if(args[i].equals("-output")||args[i].equals("-o"))
+		    {
+			if((i+1) < args.length)
+			{
+			    outputFilename = args[i+1];
+			    i++;
+			}
+			else
+			    System.err.println("Cluster:-output requires a filename.");
+		    }
+		    else if(args[i].equals("-binary")||args[i].equals("-b"))
+		    {
+			binaryOutput = true;
+		    }
+		    else if(args[i].equals("-parallel")||args[i].equals("-p"))
+		    {
+			parallel = true;
+		    }
 		    else if(args[i].equals("-help")||args[i].equals("-h"))
 		    {
 			System.out.println("Cluster Help");
-			System.out.println("java Cluster -f[ilename] <file name>[-h[elp]]");
+			System.out.println("java Cluster -f[ilename] <file name>[-o[utput] <file name>][-b[inary]]"+
+					   "[-p[arallel]][-h[elp]]");
+			System.out.println("\t-filename is a text or binary cluster file.");
+			System.out.println("\t-output is the file to save to, stdout is used if not specified.");
+			System.out.println("\t-binary saves in the binary cluster format, and needs -output.");
+			System.out.println("\t-parallel loads a text file using the parallel memory mapped loader.");
 			System.exit(0);
 		    }
 		    else
 			System.err.println("Cluster:"+args[i]+" not recognized.");
 		}// end for		
+		if(binaryOutput && (outputFilename == null))
+		{
+			System.err.println("Cluster:-binary requires -output.");
+			System.exit(1);
+		}
 		try
 		{
-			cluster = Cluster.load(new File(filename));
+			inputFile = new File(filename);
+			// a text to binary conversion is streamed, without loading the whole file
+			if(binaryOutput && (parallel == false) && (ClusterBinary.isBinary(inputFile) == false))
+			{
+				ClusterBinary.convertToBinary(inputFile,new File(outputFilename));
+				System.exit(0);
+			}
+			if(ClusterBinary.isBinary(inputFile))
+				cluster = ClusterBinary.load(inputFile);
+			else if(parallel)
+				cluster = ClusterMappedLoader.load(inputFile);
+			else
+				cluster = Cluster.load(inputFile);
 		}
 		catch (Exception e)
 		{
@@ -432,15 +1478,24 @@ public class Cluster
 			e.printStackTrace(System.err);
 			System.exit(2);
 		}
-		w = new BufferedWriter(new OutputStreamWriter(System.out));
 		try
 		{
-			cluster.save(w);
-			w.close();
+			if(binaryOutput)
+				ClusterBinary.save(cluster,new File(outputFilename));
+			else
+			{
+				if(outputFilename != null)
+					w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFilename),
+										       FILE_CHARSET));
+				else
+					w = new BufferedWriter(new OutputStreamWriter(System.out,FILE_CHARSET));
+				cluster.save(w);
+				w.close();
+			}
 		}
 		catch (Exception e)
 		{
-			System.err.println("Cluster: save to stdout failed:"+e);
+			System.err.println("Cluster: save failed:"+e);
 			e.printStackTrace(System.err);
 			System.exit(2);
 		}
@@ -0,0 +1,40 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterBatchListener.java
+package org.estar.cluster;
+
+import java.lang.*;
+
+/**
+ * Interface implemented by classes that want to be told about each file of a ClusterBatchLoader batch
+ * as soon as it has been loaded, or has failed to load.
+ * @version $Revision$
+ * @see ClusterBatchLoader#load(java.util.List,org.estar.cluster.ClusterBatchListener)
+ */
+public interface ClusterBatchListener
+{
+	/**
+	 * Method called when a file of the batch has been loaded, or has failed to load. It is called on the
+	 * thread that called ClusterBatchLoader.load, in the order the files complete.
+	 * @param result The result for the file.
+	 * @see ClusterBatchLoader.Result#isSuccess
+	 */
+	public void fileLoaded(ClusterBatchLoader.Result result);
+}
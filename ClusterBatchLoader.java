@@ -0,0 +1,518 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterBatchLoader.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class loads a batch of cluster files concurrently. For many small files, the time to load them one
+ * after another is mostly open and read latency, so loading several at once reduces the wall time.
+ * Each file is loaded by its own task. On a Java runtime with virtual threads, the tasks run on virtual
+ * threads, otherwise they run on a pool of maxInFlight platform threads. In both cases no more than
+ * maxInFlight files are being loaded at any one time.
+ * A file that fails to load does not stop the batch. Its Result holds the exception instead of a cluster.
+ * Results are returned in the order of the file list, and can also be passed to a ClusterBatchListener
+ * in the order they complete.
+ * @version $Revision$
+ * @see Cluster#load(java.io.File)
+ * @see ClusterTable#load(java.io.File)
+ * @see ClusterBatchListener
+ */
+public class ClusterBatchLoader
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The default maximum number of files loaded at once.
+	 */
+	public final static int DEFAULT_MAX_IN_FLIGHT = 16;
+	/**
+	 * The name of the Executors method that creates a virtual thread per task executor. It is looked up
+	 * by reflection, so this class still works on runtimes without virtual threads.
+	 */
+	public final static String VIRTUAL_THREAD_METHOD_NAME = "newVirtualThreadPerTaskExecutor";
+	/**
+	 * The maximum number of files loaded at once.
+	 */
+	protected int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+	/**
+	 * Whether files are loaded into ClusterTable's rather than Cluster's.
+	 */
+	protected boolean table = false;
+	/**
+	 * Whether virtual threads are used, when the runtime supports them.
+	 */
+	protected boolean virtualThreads = true;
+	/**
+	 * An executor supplied by the caller to run the load tasks on, or null to create one for each batch.
+	 */
+	protected ExecutorService executor = null;
+
+	/**
+	 * Default constructor.
+	 */
+	public ClusterBatchLoader()
+	{
+		super();
+	}
+
+	/**
+	 * Set the maximum number of files loaded at once.
+	 * @param n The maximum, which must be at least 1.
+	 * @exception IllegalArgumentException Thrown if n is less than 1.
+	 * @see #maxInFlight
+	 */
+	public void setMaxInFlight(int n) throws IllegalArgumentException
+	{
+		if(n < 1)
+		{
+			throw new IllegalArgumentException(this.getClass().getName()+":setMaxInFlight:Illegal value:"+n);
+		}
+		maxInFlight = n;
+	}
+
+	public int getMaxInFlight()
+	{
+		return maxInFlight;
+	}
+
+	/**
+	 * Set whether files are loaded into ClusterTable's, which use less memory, rather than Cluster's.
+	 * @param t true to load ClusterTable's.
+	 * @see #table
+	 */
+	public void setTable(boolean t)
+	{
+		table = t;
+	}
+
+	/**
+	 * Set whether virtual threads are used, when the runtime supports them.
+	 * @param v true to use virtual threads.
+	 * @see #virtualThreads
+	 */
+	public void setVirtualThreads(boolean v)
+	{
+		virtualThreads = v;
+	}
+
+	/**
+	 * Set an executor to run the load tasks on. The executor is not shut down by this class.
+	 * The number of files loaded at once is still limited to maxInFlight.
+	 * @param e The executor, or null to create one for each batch.
+	 * @see #executor
+	 */
+	public void setExecutor(ExecutorService e)
+	{
+		executor = e;
+	}
+
+	/**
+	 * List the files in a directory whose names match a glob pattern, sorted by name.
+	 * @param directory The directory.
+	 * @param glob A glob pattern (e.g. "*.cluster"), matched against the file name, or null to match
+	 *        all files.
+	 * @return A list of File's.
+	 * @exception IOException Thrown if the directory could not be listed.
+	 * @see java.nio.file.FileSystem#getPathMatcher
+	 */
+	public static List listFiles(File directory,String glob) throws IOException
+	{
+		PathMatcher matcher = null;
+		List fileList = null;
+		File files[] = null;
+		int index;
+
+		if(glob != null)
+			matcher = FileSystems.getDefault().getPathMatcher("glob:"+glob);
+		files = directory.listFiles();
+		if(files == null)
+		{
+			throw new IOException("ClusterBatchLoader:listFiles:Failed to list directory:"+directory);
+		}
+		Arrays.sort(files);
+		fileList = new ArrayList();
+		for(index = 0; index < files.length; index++)
+		{
+			if(files[index].isFile() == false)
+				continue;
+			if((matcher == null)||matcher.matches(Paths.get(files[index].getName())))
+				fileList.add(files[index]);
+		}
+		return fileList;
+	}
+
+	/**
+	 * List the files matching a path glob, sorted by name, e.g. "/data/night/*.cluster".
+	 * Only the file name part of the path can contain wildcards.
+	 * @param pathGlob The path glob. If it names a directory, all the files in the directory are listed.
+	 * @return A list of File's.
+	 * @exception IOException Thrown if the directory could not be listed.
+	 * @see #listFiles(java.io.File,java.lang.String)
+	 */
+	public static List listFiles(String pathGlob) throws IOException
+	{
+		File f = null;
+		File directory = null;
+
+		f = new File(pathGlob);
+		if(f.isDirectory())
+			return listFiles(f,null);
+		directory = f.getParentFile();
+		if(directory == null)
+			directory = new File(".");
+		return listFiles(directory,f.getName());
+	}
+
+	/**
+	 * Load all the files matching a path glob.
+	 * @param pathGlob The path glob, or directory.
+	 * @return A list of Result's, one for each file, sorted by file name.
+	 * @exception IOException Thrown if the directory could not be listed.
+	 * @exception InterruptedException Thrown if the calling thread is interrupted while waiting.
+	 * @see #listFiles(java.lang.String)
+	 * @see #load(java.util.List,org.estar.cluster.ClusterBatchListener)
+	 */
+	public List load(String pathGlob) throws IOException, InterruptedException
+	{
+		return load(listFiles(pathGlob),null);
+	}
+
+	/**
+	 * Load a list of files.
+	 * @param fileList The list of File's to load.
+	 * @return A list of Result's, in the same order as fileList.
+	 * @exception InterruptedException Thrown if the calling thread is interrupted while waiting.
+	 * @see #load(java.util.List,org.estar.cluster.ClusterBatchListener)
+	 */
+	public List load(List fileList) throws InterruptedException
+	{
+		return load(fileList,null);
+	}
+
+	/**
+	 * Load a list of files concurrently. Every file gets a Result, whether or not it loaded.
+	 * If the calling thread is interrupted, loads that have not finished are cancelled.
+	 * @param fileList The list of File's to load.
+	 * @param listener A listener to pass each Result to as soon as its file completes, or null.
+	 *        It is called on this thread.
+	 * @return A list of Result's, in the same order as fileList.
+	 * @exception InterruptedException Thrown if the calling thread is interrupted while waiting.
+	 * @see #createExecutor
+	 * @see LoadTask
+	 */
+	public List load(List fileList,ClusterBatchListener listener) throws InterruptedException
+	{
+		ExecutorService service = null;
+		CompletionService completionService = null;
+		Semaphore inFlight = null;
+		List futureList = null;
+		Result results[] = null;
+		Result result = null;
+		int index;
+
+		results = new Result[fileList.size()];
+		futureList = new ArrayList(fileList.size());
+		inFlight = new Semaphore(maxInFlight);
+		if(executor != null)
+			service = executor;
+		else
+			service = createExecutor();
+		try
+		{
+			completionService = new ExecutorCompletionService(service);
+			for(index = 0; index < fileList.size(); index++)
+			{
+				futureList.add(completionService.submit(new LoadTask((File)(fileList.get(index)),index,
+										     inFlight)));
+			}
+			for(index = 0; index < fileList.size(); index++)
+			{
+				result = getResult(completionService.take());
+				results[result.index] = result;
+				if(listener != null)
+					listener.fileLoaded(result);
+			}
+		}
+		catch(InterruptedException e)
+		{
+			for(index = 0; index < futureList.size(); index++)
+				((Future)(futureList.get(index))).cancel(true);
+			throw e;
+		}
+		finally
+		{
+			if(service != executor)
+				service.shutdownNow();
+		}
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Get the result of a completed load task. LoadTask catches load failures itself, so the
+	 * future only fails if the task threw an Error.
+	 * @param future The future of the completed task.
+	 * @return The result.
+	 * @exception InterruptedException Thrown if the calling thread is interrupted.
+	 */
+	protected Result getResult(Future future) throws InterruptedException
+	{
+		try
+		{
+			return (Result)(future.get());
+		}
+		catch(ExecutionException e)
+		{
+			if(e.getCause() instanceof Error)
+				throw (Error)(e.getCause());
+			throw new IllegalStateException(this.getClass().getName()+":getResult:Load task failed.",
+							e.getCause());
+		}
+	}
+
+	/**
+	 * Create an executor for one batch. If virtual threads are enabled and the runtime supports them,
+	 * a virtual thread per task executor is created (through reflection), otherwise a pool of maxInFlight
+	 * daemon platform threads.
+	 * @return A new executor, which is shut down at the end of the batch.
+	 * @see #VIRTUAL_THREAD_METHOD_NAME
+	 * @see #maxInFlight
+	 */
+	protected ExecutorService createExecutor()
+	{
+		Method method = null;
+
+		if(virtualThreads)
+		{
+			try
+			{
+				method = Executors.class.getMethod(VIRTUAL_THREAD_METHOD_NAME,new Class[0]);
+				return (ExecutorService)(method.invoke(null,new Object[0]));
+			}
+			catch(Exception e)
+			{
+				// no virtual threads on this runtime, fall through to a platform thread pool
+			}
+		}
+		return Executors.newFixedThreadPool(maxInFlight,new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = null;
+
+				thread = new Thread(r,"ClusterBatchLoader");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Load one file, as a Cluster or ClusterTable.
+	 * Subclasses can override this to load files differently.
+	 * @param file The file to load.
+	 * @return The loaded cluster.
+	 * @exception IOException Thrown if the load fails.
+	 * @see #table
+	 */
+	protected Cluster loadFile(File file) throws IOException
+	{
+		if(table)
+			return ClusterTable.load(file);
+		return Cluster.load(file);
+	}
+
+	/**
+	 * Task that loads one file, while holding one of the in-flight permits.
+	 */
+	protected class LoadTask implements Callable
+	{
+		/**
+		 * The file to load.
+		 */
+		protected File file = null;
+		/**
+		 * The index of the file in the batch.
+		 */
+		protected int index;
+		/**
+		 * The semaphore limiting the number of loads in flight.
+		 */
+		protected Semaphore inFlight = null;
+
+		/**
+		 * Constructor.
+		 * @param f The file to load.
+		 * @param i The index of the file in the batch.
+		 * @param s The semaphore limiting the number of loads in flight.
+		 */
+		protected LoadTask(File f,int i,Semaphore s)
+		{
+			super();
+			file = f;
+			index = i;
+			inFlight = s;
+		}
+
+		/**
+		 * Load the file. Exceptions are caught and returned in the Result.
+		 * @return The result.
+		 * @see ClusterBatchLoader#loadFile
+		 */
+		public Object call()
+		{
+			Cluster c = null;
+			long startTime;
+
+			try
+			{
+				inFlight.acquire();
+			}
+			catch(InterruptedException e)
+			{
+				return new Result(file,index,null,e,0);
+			}
+			try
+			{
+				startTime = System.nanoTime();
+				try
+				{
+					c = loadFile(file);
+				}
+				catch(Exception e)
+				{
+					return new Result(file,index,null,e,System.nanoTime()-startTime);
+				}
+				return new Result(file,index,c,null,System.nanoTime()-startTime);
+			}
+			finally
+			{
+				inFlight.release();
+			}
+		}
+	}
+
+	/**
+	 * The result of loading one file of a batch: either the loaded cluster, or the exception that
+	 * stopped it loading.
+	 */
+	public static class Result
+	{
+		/**
+		 * The file.
+		 */
+		protected File file = null;
+		/**
+		 * The index of the file in the batch.
+		 */
+		protected int index;
+		/**
+		 * The loaded cluster, or null if the load failed.
+		 */
+		protected Cluster cluster = null;
+		/**
+		 * The exception that stopped the load, or null if it succeeded.
+		 */
+		protected Exception exception = null;
+		/**
+		 * The time taken to load the file, in nanoseconds, not including time waiting for a permit.
+		 */
+		protected long loadNanos;
+
+		/**
+		 * Constructor.
+		 * @param f The file.
+		 * @param i The index of the file in the batch.
+		 * @param c The loaded cluster, or null.
+		 * @param e The exception, or null.
+		 * @param n The time taken to load the file, in nanoseconds.
+		 */
+		protected Result(File f,int i,Cluster c,Exception e,long n)
+		{
+			super();
+			file = f;
+			index = i;
+			cluster = c;
+			exception = e;
+			loadNanos = n;
+		}
+
+		public File getFile()
+		{
+			return file;
+		}
+
+		public int getIndex()
+		{
+			return index;
+		}
+
+		/**
+		 * Return whether the file loaded.
+		 * @return true if the file loaded, false if it failed.
+		 */
+		public boolean isSuccess()
+		{
+			return (exception == null);
+		}
+
+		/**
+		 * Return the loaded cluster.
+		 * @return The cluster, or null if the load failed.
+		 */
+		public Cluster getCluster()
+		{
+			return cluster;
+		}
+
+		/**
+		 * Return the exception that stopped the file loading.
+		 * @return The exception, or null if the load succeeded.
+		 */
+		public Exception getException()
+		{
+			return exception;
+		}
+
+		public long getLoadNanos()
+		{
+			return loadNanos;
+		}
+
+		/**
+		 * Return a description of the result.
+		 * @return The file name, and the star count or exception.
+		 */
+		public String toString()
+		{
+			if(exception != null)
+				return file+":failed:"+exception;
+			return file+":"+cluster.getStarListCount()+" stars";
+		}
+	}
+}
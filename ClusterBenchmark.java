@@ -0,0 +1,345 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterBenchmark.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+/**
+ * This class times the main cluster load, parse and save paths on a cluster file, so performance changes
+ * can be tracked and new loaders compared against the original ones.
+ * Each benchmark is run for a number of warmup iterations, to let the JIT compile the code, and then for a
+ * number of measured iterations. The mean and minimum time per iteration, and the stars processed per second,
+ * are printed for each benchmark. The file can be supplied, or generated with ClusterGenerator.
+ * @version $Revision$
+ * @see ClusterGenerator
+ */
+public class ClusterBenchmark
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The names of all the benchmarks, in the order they are run.
+	 */
+	public final static String BENCHMARK_NAME_LIST[] = {"load-file","load-url","load-string","parse-line",
+							     "save","tostring","load-table","load-mapped"};
+	/**
+	 * Results are stored here, so the JIT cannot eliminate the work as dead code.
+	 */
+	protected static volatile Object sink = null;
+	/**
+	 * The cluster file to benchmark with.
+	 */
+	protected File file = null;
+	/**
+	 * The contents of the file.
+	 */
+	protected String contents = null;
+	/**
+	 * The star lines in the file.
+	 */
+	protected String starLineList[] = null;
+	/**
+	 * The cluster loaded from the file, used by the save benchmarks.
+	 */
+	protected Cluster cluster = null;
+	/**
+	 * The number of warmup iterations.
+	 */
+	protected int warmupCount = 3;
+	/**
+	 * The number of measured iterations.
+	 */
+	protected int iterationCount = 5;
+
+	/**
+	 * Constructor. Reads the file.
+	 * @param f The cluster file.
+	 * @param warmups The number of warmup iterations.
+	 * @param iterations The number of measured iterations.
+	 * @exception IOException Thrown if the file cannot be read.
+	 */
+	public ClusterBenchmark(File f,int warmups,int iterations) throws IOException
+	{
+		super();
+		BufferedReader r = null;
+		List lineList = null;
+		String line = null;
+
+		file = f;
+		warmupCount = warmups;
+		iterationCount = iterations;
+		lineList = new ArrayList();
+		r = new BufferedReader(new InputStreamReader(new FileInputStream(file),Cluster.FILE_CHARSET));
+		try
+		{
+			while((line = r.readLine()) != null)
+				lineList.add(line);
+		}
+		finally
+		{
+			r.close();
+		}
+		starLineList = new String[Math.max(0,lineList.size()-3)];
+		for(int i = 0; i < starLineList.length; i++)
+			starLineList[i] = (String)(lineList.get(i+3));
+		cluster = Cluster.load(file);
+		contents = cluster.toString();
+	}
+
+	/**
+	 * Run a benchmark and print the results.
+	 * @param name The benchmark name, one of BENCHMARK_NAME_LIST.
+	 * @param out Where to print the results.
+	 * @exception Exception Thrown if the benchmark fails.
+	 * @see #runOnce
+	 */
+	public void run(String name,PrintStream out) throws Exception
+	{
+		long startTime,time,totalTime,minTime;
+		int index;
+
+		for(index = 0; index < warmupCount; index++)
+			runOnce(name);
+		totalTime = 0;
+		minTime = Long.MAX_VALUE;
+		for(index = 0; index < iterationCount; index++)
+		{
+			startTime = System.nanoTime();
+			runOnce(name);
+			time = System.nanoTime()-startTime;
+			totalTime += time;
+			minTime = Math.min(minTime,time);
+		}
+		time = totalTime/Math.max(1,iterationCount);
+		out.println(name+": mean "+formatMilliseconds(time)+" ms, min "+formatMilliseconds(minTime)+
+			    " ms, "+Math.round(starLineList.length/(time/1.0e9))+" stars/s");
+	}
+
+	/**
+	 * Run one iteration of a benchmark.
+	 * @param name The benchmark name.
+	 * @exception Exception Thrown if the benchmark fails.
+	 */
+	protected void runOnce(String name) throws Exception
+	{
+		ClusterColourMap colourMap = null;
+		ClusterObject co = null;
+		Writer w = null;
+		int index;
+
+		if(name.equals("load-file"))
+			sink = Cluster.load(file);
+		else if(name.equals("load-url"))
+			sink = Cluster.load(file.toURI().toURL());
+		else if(name.equals("load-string"))
+			sink = Cluster.load(contents);
+		else if(name.equals("parse-line"))
+		{
+			colourMap = cluster.getColourMap();
+			for(index = 0; index < starLineList.length; index++)
+			{
+				co = new ClusterObject();
+				co.parseStarLine(starLineList[index],colourMap);
+				sink = co;
+			}
+		}
+		else if(name.equals("save"))
+		{
+			w = new NullWriter();
+			cluster.save(w);
+			w.close();
+			sink = w;
+		}
+		else if(name.equals("tostring"))
+			sink = cluster.toString("prefix ");
+		else if(name.equals("load-table"))
+			sink = ClusterTable.load(file);
+		else if(name.equals("load-mapped"))
+			sink = ClusterMappedLoader.load(file);
+		else
+		{
+			throw new IllegalArgumentException(this.getClass().getName()+":runOnce:Unknown benchmark:"+
+							   name);
+		}
+	}
+
+	/**
+	 * Format a time in nanoseconds as milliseconds, to three decimal places.
+	 * @param nanoseconds The time.
+	 * @return The formatted time.
+	 */
+	protected static String formatMilliseconds(long nanoseconds)
+	{
+		return Long.toString(nanoseconds/1000000)+"."+
+			Long.toString(1000+((nanoseconds/1000)%1000)).substring(1);
+	}
+
+	/**
+	 * Main program.
+	 * @param args The arguments.
+	 */
+	public static void main(String args[])
+	{
+		ClusterBenchmark benchmark = null;
+		String filename = null;
+		String benchmarkNameList[] = BENCHMARK_NAME_LIST;
+		File file = null;
+		long starCount = 100000;
+		int colours = 2;
+		int warmups = 3;
+		int iterations = 5;
+		boolean unsigned = false;
+
+		for(int i = 0; i < args.length; i++)
+		{
+		    if(args[i].equals("-filename")||args[i].equals("-f"))
+		    {
+			if((i+1) < args.length)
+			{
+			    filename = args[i+1];
+			    i++;
+			}
+			else
+			    System.err.println("ClusterBenchmark:-filename requires a filename.");
+		    }
+		    else if(args[i].equals("-stars")||args[i].equals("-n"))
+		    {
+			if((i+1) < args.length)
+			{
+			    starCount = Long.parseLong(args[i+1]);
+			    i++;
+			}
+			else
+			    System.err.println("ClusterBenchmark:-stars requires a number.");
+		    }
+		    else if(args[i].equals("-colours")||args[i].equals("-c"))
+		    {
+			if((i+1) < args.length)
+			{
+			    colours = Integer.parseInt(args[i+1]);
+			    i++;
+			}
+			else
+			    System.err.println("ClusterBenchmark:-colours requires a number.");
+		    }
+		    else if(args[i].equals("-unsigned")||args[i].equals("-u"))
+		    {
+			unsigned = true;
+		    }
+		    else if(args[i].equals("-warmup")||args[i].equals("-w"))
+		    {
+			if((i+1) < args.length)
+			{
+			    warmups = Integer.parseInt(args[i+1]);
+			    i++;
+			}
+			else
+			    System.err.println("ClusterBenchmark:-warmup requires a number.");
+		    }
+		    else if(args[i].equals("-iterations")||args[i].equals("-i"))
+		    {
+			if((i+1) < args.length)
+			{
+			    iterations = Integer.parseInt(args[i+1]);
+			    i++;
+			}
+			else
+			    System.err.println("ClusterBenchmark:-iterations requires a number.");
+		    }
+		    else if(args[i].equals("-benchmark")||args[i].equals("-b"))
+		    {
+			if((i+1) < args.length)
+			{
+			    benchmarkNameList = args[i+1].split(",");
+			    i++;
+			}
+			else
+			    System.err.println("ClusterBenchmark:-benchmark requires a list of names.");
+		    }
+		    else if(args[i].equals("-help")||args[i].equals("-h"))
+		    {
+			System.out.println("ClusterBenchmark Help");
+			System.out.println("java ClusterBenchmark [-f[ilename] <file name>][-n|-stars <count>]"+
+					   "[-c[olours] <count>][-u[nsigned]][-w[armup] <count>][-i[terations] <count>]"+
+					   "[-b[enchmark] <name>[,<name>...]][-h[elp]]");
+			System.out.println("\t-filename is the cluster file to use. If not specified, a file is "+
+					   "generated using -stars, -colours and -unsigned.");
+			System.out.print("\t-benchmark is a comma separated list of:");
+			for(int j = 0; j < BENCHMARK_NAME_LIST.length; j++)
+				System.out.print(" "+BENCHMARK_NAME_LIST[j]);
+			System.out.println();
+			System.exit(0);
+		    }
+		    else
+			System.err.println("ClusterBenchmark:"+args[i]+" not recognized.");
+		}
+		try
+		{
+			if(filename != null)
+				file = new File(filename);
+			else
+			{
+				file = File.createTempFile("ClusterBenchmark",".cluster");
+				file.deleteOnExit();
+				new ClusterGenerator(colours,unsigned,1).write(file,starCount);
+			}
+			benchmark = new ClusterBenchmark(file,warmups,iterations);
+			System.out.println("ClusterBenchmark:"+file+":"+benchmark.starLineList.length+" stars, "+
+					   file.length()+" bytes.");
+			for(int i = 0; i < benchmarkNameList.length; i++)
+				benchmark.run(benchmarkNameList[i],System.out);
+		}
+		catch(Exception e)
+		{
+			System.err.println("ClusterBenchmark: failed:"+e);
+			e.printStackTrace(System.err);
+			System.exit(2);
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * A Writer that discards everything written to it, so the save benchmarks do not measure I/O.
+	 */
+	protected static class NullWriter extends Writer
+	{
+		public void write(char buffer[],int offset,int length)
+		{
+		}
+
+		public void write(String s,int offset,int length)
+		{
+		}
+
+		public void flush()
+		{
+		}
+
+		public void close()
+		{
+		}
+	}
+}
@@ -0,0 +1,825 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterBinary.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import org.estar.astrometry.*;
+
+/**
+ * This class reads and writes a compact binary version of the cluster file format.
+ * The file is memory mapped when loaded, and star data is read directly out of the mapped buffers
+ * when it is requested, so there is no parse step.
+ * All values are big-endian. The file consists of a header:
+ * <ul>
+ * <li>int magic number (MAGIC, "CLSB").
+ * <li>int format version (VERSION).
+ * <li>int offset in the file of the first star record (a multiple of 8).
+ * <li>int star record size in bytes.
+ * <li>long number of star records.
+ * <li>int colour count.
+ * <li>string colour comment.
+ * <li>colour count strings, the colour names.
+ * <li>string comment.
+ * </ul>
+ * Strings are an int length followed by that many UTF-8 bytes, a length of -1 means null.
+ * The header is followed by fixed size star records:
+ * <ul>
+ * <li>int field number, int star number.
+ * <li>int RA hours, int RA minutes, int Dec degrees, int Dec minutes.
+ * <li>byte bits (PRESENT_RA, PRESENT_DEC, DEC_NEGATIVE), 7 bytes padding.
+ * <li>double RA seconds, double Dec seconds.
+ * <li>double X pixel, double Y pixel.
+ * <li>colour count double magnitudes, then colour count double magnitude errors,
+ *     then colour count int flags, padded to a multiple of 8 bytes.
+ * </ul>
+ * The RA/Dec are stored as the sexagesimal fields ClusterObject and ClusterTable keep, and all the doubles
+ * are stored exactly, so text to binary to text conversion is lossless. The radians used for positional
+ * calculations are computed from the fields when they are requested.
+ * @version $Revision$
+ * @see Cluster
+ * @see ClusterReader
+ */
+public class ClusterBinary extends Cluster
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * Magic number at the start of a binary cluster file, the ASCII characters "CLSB".
+	 */
+	public final static int MAGIC = 0x434C5342;
+	/**
+	 * The version of the binary format written by this class.
+	 */
+	public final static int VERSION = 1;
+	/**
+	 * Presence bit, set in a star record if the star had an RA.
+	 */
+	public final static int PRESENT_RA = 1<<0;
+	/**
+	 * Presence bit, set in a star record if the star had a Dec.
+	 */
+	public final static int PRESENT_DEC = 1<<1;
+	/**
+	 * Bit set in a star record if the Dec sign was '-'.
+	 */
+	public final static int DEC_NEGATIVE = 1<<2;
+	/**
+	 * Offset in the header of the star count.
+	 */
+	protected final static int HEADER_OFFSET_STAR_COUNT = 16;
+	/**
+	 * Offset in a star record of the field number.
+	 */
+	protected final static int RECORD_OFFSET_FIELD_NUMBER = 0;
+	protected final static int RECORD_OFFSET_STAR_NUMBER = 4;
+	protected final static int RECORD_OFFSET_RAH = 8;
+	protected final static int RECORD_OFFSET_RAM = 12;
+	protected final static int RECORD_OFFSET_DECD = 16;
+	protected final static int RECORD_OFFSET_DECM = 20;
+	protected final static int RECORD_OFFSET_BITS = 24;
+	protected final static int RECORD_OFFSET_RAS = 32;
+	protected final static int RECORD_OFFSET_DECS = 40;
+	protected final static int RECORD_OFFSET_X_POS = 48;
+	protected final static int RECORD_OFFSET_Y_POS = 56;
+	protected final static int RECORD_OFFSET_MAGNITUDE_DATA_START = 64;
+	/**
+	 * The maximum number of bytes mapped in one segment.
+	 */
+	protected final static int MAX_SEGMENT_SIZE = 1<<30;
+	/**
+	 * The size of the buffer used when writing star records.
+	 */
+	protected final static int WRITE_BUFFER_SIZE = 64*1024;
+	/**
+	 * The character set used for strings.
+	 */
+	protected final static Charset CHARSET = Charset.forName("UTF-8");
+	/**
+	 * The number of stars in the file.
+	 */
+	protected int starCount = 0;
+	/**
+	 * The size of a star record in bytes.
+	 */
+	protected int recordSize;
+	/**
+	 * The number of star records in each mapped segment.
+	 */
+	protected int recordsPerSegment;
+	/**
+	 * The mapped segments of the star records.
+	 */
+	protected MappedByteBuffer segmentArray[] = null;
+
+	/**
+	 * Default constructor. Use load to create instances of this class.
+	 * @see #load(java.io.File)
+	 */
+	protected ClusterBinary()
+	{
+		super();
+	}
+
+	/**
+	 * Return the size of a star record for the specified colour count.
+	 * @param colourCount The number of colours.
+	 * @return The record size in bytes, a multiple of 8.
+	 * @see #RECORD_OFFSET_MAGNITUDE_DATA_START
+	 */
+	public static int getRecordSize(int colourCount)
+	{
+		int size;
+
+		size = RECORD_OFFSET_MAGNITUDE_DATA_START+(colourCount*(8+8+4));
+		return (size+7)&~7;
+	}
+
+	/**
+	 * Static method to determine whether the specified file is a binary cluster file, by checking
+	 * the magic number.
+	 * @param file The file to check.
+	 * @return true if the file starts with MAGIC, false otherwise.
+	 * @exception IOException Thrown if the file could not be read.
+	 * @see #MAGIC
+	 */
+	public static boolean isBinary(File file) throws IOException
+	{
+		DataInputStream dis = null;
+
+		if(file.length() < 4)
+			return false;
+		dis = new DataInputStream(new FileInputStream(file));
+		try
+		{
+			return (dis.readInt() == MAGIC);
+		}
+		finally
+		{
+			dis.close();
+		}
+	}
+
+	/**
+	 * Static method to memory map a binary cluster file. Only the header is read, the star records
+	 * are decoded when they are accessed.
+	 * @param file The file to load.
+	 * @return A ClusterBinary instance.
+	 * @exception FileNotFoundException Thrown if the file does not exist.
+	 * @exception IOException Thrown if the file is not a valid binary cluster file, or could not be read.
+	 * @see #MAGIC
+	 * @see #VERSION
+	 */
+	public static ClusterBinary load(File file) throws FileNotFoundException,IOException
+	{
+		ClusterBinary cb = null;
+		RandomAccessFile raf = null;
+		FileChannel fc = null;
+		ByteBuffer b = null;
+		long longStarCount,segmentStart,segmentLength,dataLength;
+		int magic,version,dataOffset,index,segmentCount;
+
+		cb = new ClusterBinary();
+		raf = new RandomAccessFile(file,"r");
+		try
+		{
+			fc = raf.getChannel();
+			// read the fixed part of the header, to get the data offset
+			b = ByteBuffer.allocate(HEADER_OFFSET_STAR_COUNT);
+			ClusterMappedLoader.readFully(fc,b,0);
+			magic = b.getInt(0);
+			version = b.getInt(4);
+			dataOffset = b.getInt(8);
+			cb.recordSize = b.getInt(12);
+			if(magic != MAGIC)
+			{
+				throw new IOException("ClusterBinary:load:"+file+" is not a binary cluster file:"+
+						      Integer.toHexString(magic));
+			}
+			if(version != VERSION)
+			{
+				throw new IOException("ClusterBinary:load:"+file+" has unsupported version:"+
+						      version);
+			}
+			// read the whole header
+			b = ByteBuffer.allocate(dataOffset);
+			ClusterMappedLoader.readFully(fc,b,0);
+			b.position(HEADER_OFFSET_STAR_COUNT);
+			longStarCount = b.getLong();
+			if(longStarCount > Integer.MAX_VALUE)
+			{
+				throw new IOException("ClusterBinary:load:"+file+" has too many stars:"+
+						      longStarCount);
+			}
+			cb.starCount = (int)longStarCount;
+			cb.colourCount = b.getInt();
+			if(cb.recordSize != getRecordSize(cb.colourCount))
+			{
+				throw new IOException("ClusterBinary:load:"+file+" has illegal record size:"+
+						      cb.recordSize+" for colour count "+cb.colourCount);
+			}
+			cb.colourCommentString = getString(b);
+			cb.colourNameList = new String[cb.colourCount];
+			for(index = 0; index < cb.colourCount; index++)
+				cb.colourNameList[index] = getString(b);
+			cb.commentString = getString(b);
+			// map the star records in segments
+			dataLength = ((long)cb.starCount)*cb.recordSize;
+			if(fc.size() < dataOffset+dataLength)
+				throw new IOException("ClusterBinary:load:"+file+" is truncated.");
+			cb.recordsPerSegment = Math.max(1,MAX_SEGMENT_SIZE/cb.recordSize);
+			segmentCount = (int)((cb.starCount+(long)cb.recordsPerSegment-1)/cb.recordsPerSegment);
+			cb.segmentArray = new MappedByteBuffer[segmentCount];
+			for(index = 0; index < segmentCount; index++)
+			{
+				segmentStart = ((long)index)*cb.recordsPerSegment*cb.recordSize;
+				segmentLength = Math.min(((long)cb.recordsPerSegment)*cb.recordSize,
+							 dataLength-segmentStart);
+				cb.segmentArray[index] = fc.map(FileChannel.MapMode.READ_ONLY,
+								dataOffset+segmentStart,segmentLength);
+			}
+		}
+		catch(BufferUnderflowException e)
+		{
+			throw new IOException("ClusterBinary:load:"+file+" has a corrupt header:"+e);
+		}
+		finally
+		{
+			raf.close();
+		}
+		return cb;
+	}
+
+	/**
+	 * Static method to save a cluster in binary format.
+	 * @param c The cluster to save.
+	 * @param file The file to save to.
+	 * @exception IOException Thrown if the save fails.
+	 * @see #save(org.estar.cluster.Cluster,java.util.Iterator,java.io.File)
+	 */
+	public static void save(Cluster c,File file) throws IOException
+	{
+		save(c,c.getStarList().iterator(),file);
+	}
+
+	/**
+	 * Static method to convert a text cluster file into a binary cluster file. The text file is streamed,
+	 * so the whole catalogue is never held in memory.
+	 * @param textFile The text cluster file to read.
+	 * @param binaryFile The binary cluster file to write.
+	 * @exception IOException Thrown if the conversion fails.
+	 * @see ClusterReader
+	 * @see #save(org.estar.cluster.Cluster,java.util.Iterator,java.io.File)
+	 */
+	public static void convertToBinary(File textFile,File binaryFile) throws IOException
+	{
+		ClusterReader cr = null;
+
+		cr = ClusterReader.open(textFile);
+		try
+		{
+			save(cr.getHeader(),cr.iterator(),binaryFile);
+		}
+		catch(UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+		finally
+		{
+			cr.close();
+		}
+	}
+
+	/**
+	 * Static method to convert a binary cluster file into a text cluster file.
+	 * @param binaryFile The binary cluster file to read.
+	 * @param textFile The text cluster file to write.
+	 * @exception IOException Thrown if the conversion fails.
+	 * @see #load(java.io.File)
+	 * @see Cluster#save
+	 */
+	public static void convertToText(File binaryFile,File textFile) throws IOException
+	{
+		ClusterBinary cb = null;
+		Writer w = null;
+
+		cb = load(binaryFile);
+		w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(textFile),FILE_CHARSET));
+		try
+		{
+			cb.save(w);
+		}
+		finally
+		{
+			w.close();
+		}
+	}
+
+	/**
+	 * Static method to write a binary cluster file, using the header from one Cluster and the
+	 * stars from an iterator. The star count in the header is filled in after all the stars are written.
+	 * @param header A cluster containing the header information.
+	 * @param starIterator An iterator over the ClusterObject's to write.
+	 * @param file The file to save to.
+	 * @exception IOException Thrown if the save fails.
+	 * @see #putHeader
+	 * @see #putRecord
+	 */
+	public static void save(Cluster header,Iterator starIterator,File file) throws IOException
+	{
+		FileOutputStream fos = null;
+		FileChannel fc = null;
+		ByteBuffer b = null;
+		long starCount;
+		int recordSize;
+
+		recordSize = getRecordSize(header.colourCount);
+		fos = new FileOutputStream(file);
+		try
+		{
+			fc = fos.getChannel();
+			writeFully(fc,putHeader(header));
+			b = ByteBuffer.allocate(Math.max(WRITE_BUFFER_SIZE,recordSize));
+			starCount = 0;
+			while(starIterator.hasNext())
+			{
+				if(b.remaining() < recordSize)
+				{
+					b.flip();
+					writeFully(fc,b);
+					b.clear();
+				}
+				putRecord(b,(ClusterObject)(starIterator.next()),header.colourCount);
+				starCount++;
+			}
+			b.flip();
+			writeFully(fc,b);
+			// fill in the star count
+			b.clear();
+			b.putLong(starCount);
+			b.flip();
+			fc.position(HEADER_OFFSET_STAR_COUNT);
+			writeFully(fc,b);
+		}
+		finally
+		{
+			fos.close();
+		}
+	}
+
+	/**
+	 * Method to create a buffer containing the header of a binary cluster file. The star count is 0.
+	 * @param c The cluster containing the header information.
+	 * @return A buffer, flipped ready for writing.
+	 * @see #putString
+	 */
+	protected static ByteBuffer putHeader(Cluster c)
+	{
+		ByteBuffer b = null;
+		int index,length,dataOffset;
+
+		// work out the length of the strings
+		length = 0;
+		length += getStringSize(c.colourCommentString);
+		for(index = 0; index < c.colourCount; index++)
+			length += getStringSize(c.colourNameList[index]);
+		length += getStringSize(c.commentString);
+		dataOffset = (HEADER_OFFSET_STAR_COUNT+8+4+length+7)&~7;
+		b = ByteBuffer.allocate(dataOffset);
+		b.putInt(MAGIC);
+		b.putInt(VERSION);
+		b.putInt(dataOffset);
+		b.putInt(getRecordSize(c.colourCount));
+		b.putLong(0);
+		b.putInt(c.colourCount);
+		putString(b,c.colourCommentString);
+		for(index = 0; index < c.colourCount; index++)
+			putString(b,c.colourNameList[index]);
+		putString(b,c.commentString);
+		b.position(0);
+		return b;
+	}
+
+	/**
+	 * Method to put a star record into a buffer, at the buffer's position.
+	 * @param b The buffer.
+	 * @param co The star.
+	 * @param colourCount The number of colours in the file.
+	 * @see ClusterObject#getRA
+	 * @see ClusterObject#getDec
+	 */
+	protected static void putRecord(ByteBuffer b,ClusterObject co,int colourCount)
+	{
+		RA ra = null;
+		Dec dec = null;
+		int start,index,bits;
+
+		start = b.position();
+		// clear record, including padding
+		for(index = 0; index < getRecordSize(colourCount); index++)
+			b.put(start+index,(byte)0);
+		ra = co.getRA();
+		dec = co.getDec();
+		bits = 0;
+		b.putInt(start+RECORD_OFFSET_FIELD_NUMBER,co.getFieldNumber());
+		b.putInt(start+RECORD_OFFSET_STAR_NUMBER,co.getStarNumber());
+		if(ra != null)
+		{
+			bits |= PRESENT_RA;
+			b.putInt(start+RECORD_OFFSET_RAH,ra.getHours());
+			b.putInt(start+RECORD_OFFSET_RAM,ra.getMinutes());
+			b.putDouble(start+RECORD_OFFSET_RAS,ra.getSeconds());
+		}
+		if(dec != null)
+		{
+			bits |= PRESENT_DEC;
+			if(dec.getSign() == '-')
+				bits |= DEC_NEGATIVE;
+			b.putInt(start+RECORD_OFFSET_DECD,dec.getDegrees());
+			b.putInt(start+RECORD_OFFSET_DECM,dec.getMinutes());
+			b.putDouble(start+RECORD_OFFSET_DECS,dec.getSeconds());
+		}
+		b.put(start+RECORD_OFFSET_BITS,(byte)bits);
+		b.putDouble(start+RECORD_OFFSET_X_POS,co.getXPixel());
+		b.putDouble(start+RECORD_OFFSET_Y_POS,co.getYPixel());
+		for(index = 0; (index < colourCount)&&(index < co.getMagnitudeCount()); index++)
+		{
+			b.putDouble(start+getMagnitudeOffset(colourCount,index),co.getMagnitude(index));
+			b.putDouble(start+getMagnitudeErrorOffset(colourCount,index),co.getMagnitudeError(index));
+			b.putInt(start+getFlagsOffset(colourCount,index),co.getFlags(index));
+		}
+		b.position(start+getRecordSize(colourCount));
+	}
+
+	protected static int getMagnitudeOffset(int colourCount,int colourIndex)
+	{
+		return RECORD_OFFSET_MAGNITUDE_DATA_START+(colourIndex*8);
+	}
+
+	protected static int getMagnitudeErrorOffset(int colourCount,int colourIndex)
+	{
+		return RECORD_OFFSET_MAGNITUDE_DATA_START+(colourCount*8)+(colourIndex*8);
+	}
+
+	protected static int getFlagsOffset(int colourCount,int colourIndex)
+	{
+		return RECORD_OFFSET_MAGNITUDE_DATA_START+(colourCount*16)+(colourIndex*4);
+	}
+
+	/**
+	 * Return the number of bytes a string takes up in the header.
+	 * @param s The string, or null.
+	 * @return The number of bytes.
+	 */
+	protected static int getStringSize(String s)
+	{
+		if(s == null)
+			return 4;
+		return 4+s.getBytes(CHARSET).length;
+	}
+
+	/**
+	 * Put a string into a buffer.
+	 * @param b The buffer.
+	 * @param s The string, or null.
+	 */
+	protected static void putString(ByteBuffer b,String s)
+	{
+		byte stringBytes[];
+
+		if(s == null)
+		{
+			b.putInt(-1);
+			return;
+		}
+		stringBytes = s.getBytes(CHARSET);
+		b.putInt(stringBytes.length);
+		b.put(stringBytes);
+	}
+
+	/**
+	 * Get a string from a buffer.
+	 * @param b The buffer.
+	 * @return The string, or null.
+	 */
+	protected static String getString(ByteBuffer b)
+	{
+		byte stringBytes[];
+		int length;
+
+		length = b.getInt();
+		if(length < 0)
+			return null;
+		stringBytes = new byte[length];
+		b.get(stringBytes);
+		return new String(stringBytes,CHARSET);
+	}
+
+	/**
+	 * Write the whole of a buffer to a channel.
+	 * @param fc The channel.
+	 * @param b The buffer.
+	 * @exception IOException Thrown if the write fails.
+	 */
+	protected static void writeFully(FileChannel fc,ByteBuffer b) throws IOException
+	{
+		while(b.hasRemaining())
+			fc.write(b);
+	}
+
+	/**
+	 * Return the mapped segment containing the specified star.
+	 * @param index The index of the star.
+	 * @return The segment buffer.
+	 * @exception IndexOutOfBoundsException Thrown if the index is out of range.
+	 */
+	protected ByteBuffer getSegment(int index) throws IndexOutOfBoundsException
+	{
+		if((index < 0)||(index >= starCount))
+		{
+			throw new IndexOutOfBoundsException(this.getClass().getName()+":Index "+index+
+							    " out of range:"+starCount);
+		}
+		return segmentArray[index/recordsPerSegment];
+	}
+
+	/**
+	 * Return the offset of the specified star's record in its segment.
+	 * @param index The index of the star.
+	 * @return The offset in bytes.
+	 */
+	protected int getRecordOffset(int index)
+	{
+		return (index%recordsPerSegment)*recordSize;
+	}
+
+	/**
+	 * Method returns the number of stars in the file.
+	 * @return The number of stars.
+	 * @see #starCount
+	 */
+	public int getStarListCount()
+	{
+		return starCount;
+	}
+
+	/**
+	 * Method returns a read-only list of the stars in the file. Each call to get decodes a new ClusterObject.
+	 * @return The list of stars.
+	 * @see #getStar
+	 */
+	public List getStarList()
+	{
+		return new AbstractList()
+		{
+			public Object get(int index)
+			{
+				return getStar(index);
+			}
+
+			public int size()
+			{
+				return starCount;
+			}
+		};
+	}
+
+	/**
+	 * Decode the star at index in the file into a new ClusterObject.
+	 * @param index The index of the star.
+	 * @return A new ClusterObject.
+	 * @exception IndexOutOfBoundsException Thrown if the index is out of range.
+	 * @see #getRA(java.nio.ByteBuffer,int)
+	 * @see #getDec(java.nio.ByteBuffer,int)
+	 */
+	public ClusterObject getStar(int index) throws IndexOutOfBoundsException
+	{
+		ClusterObject co = null;
+		ByteBuffer b = null;
+		int start,colourIndex,bits;
+
+		b = getSegment(index);
+		start = getRecordOffset(index);
+		co = new ClusterObject();
+		co.fieldNumber = b.getInt(start+RECORD_OFFSET_FIELD_NUMBER);
+		co.starNumber = b.getInt(start+RECORD_OFFSET_STAR_NUMBER);
+		bits = b.get(start+RECORD_OFFSET_BITS);
+		if((bits & PRESENT_RA) != 0)
+		{
+			co.setRA(b.getInt(start+RECORD_OFFSET_RAH),b.getInt(start+RECORD_OFFSET_RAM),
+				 b.getDouble(start+RECORD_OFFSET_RAS));
+		}
+		if((bits & PRESENT_DEC) != 0)
+		{
+			co.setDec(getDecSign(bits),b.getInt(start+RECORD_OFFSET_DECD),b.getInt(start+RECORD_OFFSET_DECM),
+				  b.getDouble(start+RECORD_OFFSET_DECS));
+		}
+		co.xPixel = b.getDouble(start+RECORD_OFFSET_X_POS);
+		co.yPixel = b.getDouble(start+RECORD_OFFSET_Y_POS);
+		co.colourMap = getColourMap();
+		co.initialiseMagnitudes(colourCount);
+		for(colourIndex = 0; colourIndex < colourCount; colourIndex++)
+		{
+			co.setMagnitude(colourIndex,co.colourMap.getSlotBand(colourIndex),
+				     b.getDouble(start+getMagnitudeOffset(colourCount,colourIndex)));
+			co.magnitudeErrorArray[colourIndex] = b.getDouble(start+
+						       getMagnitudeErrorOffset(colourCount,colourIndex));
+			co.flagsArray[colourIndex] = b.getInt(start+getFlagsOffset(colourCount,colourIndex));
+		}
+		return co;
+	}
+
+	/**
+	 * Return the Dec sign character of a star record.
+	 * @param bits The record's bits.
+	 * @return '-' if DEC_NEGATIVE is set, '+' otherwise.
+	 * @see #DEC_NEGATIVE
+	 */
+	protected static char getDecSign(int bits)
+	{
+		if((bits & DEC_NEGATIVE) != 0)
+			return '-';
+		return '+';
+	}
+
+	/**
+	 * Decode the RA of a star record.
+	 * @param b The segment containing the record.
+	 * @param start The offset of the record in the segment.
+	 * @return A new RA object, or null if the star has no RA.
+	 */
+	protected RA getRA(ByteBuffer b,int start)
+	{
+		if((b.get(start+RECORD_OFFSET_BITS) & PRESENT_RA) == 0)
+			return null;
+		return new RA(b.getInt(start+RECORD_OFFSET_RAH),b.getInt(start+RECORD_OFFSET_RAM),
+			      b.getDouble(start+RECORD_OFFSET_RAS));
+	}
+
+	/**
+	 * Decode the Dec of a star record.
+	 * @param b The segment containing the record.
+	 * @param start The offset of the record in the segment.
+	 * @return A new Dec object, or null if the star has no Dec.
+	 * @see #getDecSign
+	 */
+	protected Dec getDec(ByteBuffer b,int start)
+	{
+		int bits;
+
+		bits = b.get(start+RECORD_OFFSET_BITS);
+		if((bits & PRESENT_DEC) == 0)
+			return null;
+		return new Dec(getDecSign(bits),b.getInt(start+RECORD_OFFSET_DECD),b.getInt(start+RECORD_OFFSET_DECM),
+			       b.getDouble(start+RECORD_OFFSET_DECS));
+	}
+
+	/**
+	 * Decode the RA of a star record, in radians.
+	 * @param b The segment containing the record.
+	 * @param start The offset of the record in the segment.
+	 * @return The RA in radians, or NaN if the star has no RA.
+	 * @see ClusterCoordinates#raToRadians(int,int,double)
+	 */
+	protected double getRARadians(ByteBuffer b,int start)
+	{
+		if((b.get(start+RECORD_OFFSET_BITS) & PRESENT_RA) == 0)
+			return Double.NaN;
+		return ClusterCoordinates.raToRadians(b.getInt(start+RECORD_OFFSET_RAH),b.getInt(start+RECORD_OFFSET_RAM),
+						      b.getDouble(start+RECORD_OFFSET_RAS));
+	}
+
+	/**
+	 * Decode the Dec of a star record, in radians.
+	 * @param b The segment containing the record.
+	 * @param start The offset of the record in the segment.
+	 * @return The Dec in radians, or NaN if the star has no Dec.
+	 * @see ClusterCoordinates#decToRadians(char,int,int,double)
+	 */
+	protected double getDecRadians(ByteBuffer b,int start)
+	{
+		int bits;
+
+		bits = b.get(start+RECORD_OFFSET_BITS);
+		if((bits & PRESENT_DEC) == 0)
+			return Double.NaN;
+		return ClusterCoordinates.decToRadians(getDecSign(bits),b.getInt(start+RECORD_OFFSET_DECD),
+						       b.getInt(start+RECORD_OFFSET_DECM),
+						       b.getDouble(start+RECORD_OFFSET_DECS));
+	}
+
+	/**
+	 * Method to get the RA of the star at index, straight from its record.
+	 * @param index The index of the star.
+	 * @return A new RA object, or null if the star has no RA.
+	 * @see #getRA(java.nio.ByteBuffer,int)
+	 */
+	public RA getRA(int index)
+	{
+		return getRA(getSegment(index),getRecordOffset(index));
+	}
+
+	/**
+	 * Method to get the Dec of the star at index, straight from its record.
+	 * @param index The index of the star.
+	 * @return A new Dec object, or null if the star has no Dec.
+	 * @see #getDec(java.nio.ByteBuffer,int)
+	 */
+	public Dec getDec(int index)
+	{
+		return getDec(getSegment(index),getRecordOffset(index));
+	}
+
+	/**
+	 * Method to get the RA of the star at index in radians, straight from its record.
+	 * @param index The index of the star.
+	 * @return The RA in radians, or NaN if the star has no RA.
+	 * @see #getRARadians(java.nio.ByteBuffer,int)
+	 */
+	public double getRARadians(int index)
+	{
+		return getRARadians(getSegment(index),getRecordOffset(index));
+	}
+
+	/**
+	 * Method to get the Dec of the star at index in radians, straight from its record.
+	 * @param index The index of the star.
+	 * @return The Dec in radians, or NaN if the star has no Dec.
+	 * @see #getDecRadians(java.nio.ByteBuffer,int)
+	 */
+	public double getDecRadians(int index)
+	{
+		return getDecRadians(getSegment(index),getRecordOffset(index));
+	}
+
+	public int getFieldNumber(int index)
+	{
+		return getSegment(index).getInt(getRecordOffset(index)+RECORD_OFFSET_FIELD_NUMBER);
+	}
+
+	public int getStarNumber(int index)
+	{
+		return getSegment(index).getInt(getRecordOffset(index)+RECORD_OFFSET_STAR_NUMBER);
+	}
+
+	public double getXPixel(int index)
+	{
+		return getSegment(index).getDouble(getRecordOffset(index)+RECORD_OFFSET_X_POS);
+	}
+
+	public double getYPixel(int index)
+	{
+		return getSegment(index).getDouble(getRecordOffset(index)+RECORD_OFFSET_Y_POS);
+	}
+
+	public double getMagnitude(int index,int colourIndex)
+	{
+		return getSegment(index).getDouble(getRecordOffset(index)+
+						   getMagnitudeOffset(colourCount,colourIndex));
+	}
+
+	public double getMagnitudeError(int index,int colourIndex)
+	{
+		return getSegment(index).getDouble(getRecordOffset(index)+
+						   getMagnitudeErrorOffset(colourCount,colourIndex));
+	}
+
+	public int getFlags(int index,int colourIndex)
+	{
+		return getSegment(index).getInt(getRecordOffset(index)+getFlagsOffset(colourCount,colourIndex));
+	}
+
+	/**
+	 * Copy all the stars in the file into a new ClusterTable.
+	 * @return A new ClusterTable.
+	 * @see ClusterTable#ClusterTable(org.estar.cluster.Cluster)
+	 */
+	public ClusterTable toTable()
+	{
+		return new ClusterTable(this);
+	}
+}
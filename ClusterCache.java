@@ -0,0 +1,671 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterCache.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.security.*;
+import java.util.*;
+
+/**
+ * This class is a cache of clusters loaded from URLs. Each get revalidates the cached copy with the server,
+ * using a conditional request (If-None-Match / If-Modified-Since), so an unchanged catalogue is not
+ * downloaded or parsed again. Parsed clusters are kept in memory, and evicted least recently used first
+ * when their estimated size exceeds the memory budget.
+ * If a disk cache directory is set, the raw catalogue and its validators are also kept on disk. If the
+ * server cannot be reached, does not respond within the timeouts, does not finish sending the catalogue within
+ * the download timeout, or sends a catalogue that cannot be parsed, the copy in memory or on disk is
+ * returned instead. A new catalogue only replaces the cached copies once it has been parsed.
+ * Clusters are parsed into ClusterTable's, to keep their memory use down. The same instance is returned to
+ * every caller, so callers must not modify the clusters they get.
+ * @version $Revision$
+ * @see ClusterTable
+ * @see Cluster#load(java.net.URL)
+ */
+public class ClusterCache
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * Default memory budget, in bytes.
+	 */
+	public final static long DEFAULT_MEMORY_BUDGET = 256L*1024L*1024L;
+	/**
+	 * Default connect and read timeout, in milliseconds.
+	 */
+	public final static int DEFAULT_TIMEOUT = 10000;
+	/**
+	 * Default download timeout, the overall time allowed to fetch a catalogue, in milliseconds.
+	 */
+	public final static int DEFAULT_DOWNLOAD_TIMEOUT = 60000;
+	/**
+	 * Estimated size of a cache entry without its cluster, in bytes.
+	 */
+	protected final static long ENTRY_OVERHEAD = 256;
+	/**
+	 * The cached entries, keyed by URL string, in least recently used first order.
+	 */
+	protected LinkedHashMap entryMap = null;
+	/**
+	 * The memory budget, in bytes.
+	 */
+	protected long memoryBudget;
+	/**
+	 * The estimated memory used by the cached entries, in bytes.
+	 */
+	protected long memoryUsed = 0;
+	/**
+	 * The directory to keep copies of catalogues in, or null.
+	 */
+	protected File diskCacheDirectory = null;
+	/**
+	 * Connect timeout, in milliseconds.
+	 */
+	protected int connectTimeout = DEFAULT_TIMEOUT;
+	/**
+	 * Read timeout, in milliseconds.
+	 */
+	protected int readTimeout = DEFAULT_TIMEOUT;
+	/**
+	 * Download timeout, the overall time allowed to fetch a catalogue, in milliseconds, or 0 for no limit.
+	 * The read timeout only limits each read, so without this a server sending data slowly could hold up
+	 * a get indefinitely.
+	 */
+	protected int downloadTimeout = DEFAULT_DOWNLOAD_TIMEOUT;
+
+	/**
+	 * Constructor for a memory only cache with the default budget.
+	 * @see #DEFAULT_MEMORY_BUDGET
+	 */
+	public ClusterCache()
+	{
+		this(DEFAULT_MEMORY_BUDGET,null);
+	}
+
+	/**
+	 * Constructor.
+	 * @param budget The memory budget, in bytes.
+	 * @param directory The directory to keep copies of catalogues in, or null for a memory only cache.
+	 *        It is created if it does not exist.
+	 * @see #memoryBudget
+	 * @see #diskCacheDirectory
+	 */
+	public ClusterCache(long budget,File directory)
+	{
+		super();
+		entryMap = new LinkedHashMap(16,0.75f,true);
+		memoryBudget = budget;
+		diskCacheDirectory = directory;
+		if(diskCacheDirectory != null)
+			diskCacheDirectory.mkdirs();
+	}
+
+	/**
+	 * Set the connect and read timeouts used when revalidating or downloading.
+	 * @param connect The connect timeout, in milliseconds.
+	 * @param read The read timeout, in milliseconds.
+	 */
+	public void setTimeouts(int connect,int read)
+	{
+		connectTimeout = connect;
+		readTimeout = read;
+	}
+
+	/**
+	 * Set the download timeout, the overall time allowed to fetch a catalogue. As the elapsed time is
+	 * checked between reads, a fetch can take up to the download timeout plus one read timeout.
+	 * @param timeout The download timeout, in milliseconds, or 0 for no limit.
+	 * @see #downloadTimeout
+	 */
+	public void setDownloadTimeout(int timeout)
+	{
+		downloadTimeout = timeout;
+	}
+
+	/**
+	 * Set the memory budget, evicting entries if the cache is now over budget.
+	 * @param budget The memory budget, in bytes.
+	 * @see #evict
+	 */
+	public synchronized void setMemoryBudget(long budget)
+	{
+		memoryBudget = budget;
+		evict();
+	}
+
+	/**
+	 * Return the memory budget.
+	 * @return The memory budget, in bytes.
+	 */
+	public synchronized long getMemoryBudget()
+	{
+		return memoryBudget;
+	}
+
+	/**
+	 * Return the estimated memory used by the clusters in the cache.
+	 * @return The memory used, in bytes.
+	 */
+	public synchronized long getMemoryUsed()
+	{
+		return memoryUsed;
+	}
+
+	/**
+	 * Return the number of clusters in memory.
+	 * @return The number of clusters.
+	 */
+	public synchronized int size()
+	{
+		return entryMap.size();
+	}
+
+	/**
+	 * Remove a cluster from memory. Any copy on disk is kept.
+	 * @param url The URL of the cluster.
+	 */
+	public synchronized void remove(URL url)
+	{
+		Entry entry = null;
+
+		entry = (Entry)(entryMap.remove(url.toString()));
+		if(entry != null)
+			memoryUsed -= entry.size;
+	}
+
+	/**
+	 * Remove all clusters from memory. Any copies on disk are kept.
+	 */
+	public synchronized void clear()
+	{
+		entryMap.clear();
+		memoryUsed = 0;
+	}
+
+	/**
+	 * Get the cluster at a URL. If a copy is cached, it is revalidated with a conditional request, and
+	 * returned if the server reports it has not changed. Otherwise the cluster is downloaded and parsed, and
+	 * only then cached in memory and on disk. If the request fails or times out, or the downloaded catalogue
+	 * cannot be parsed, a cached copy from memory or disk is returned if there is one.
+	 * @param url The URL of the cluster.
+	 * @return The cluster. This instance may be shared with other callers, and must not be modified.
+	 * @exception IOException Thrown if the cluster could not be loaded, and there was no cached copy.
+	 * @see #getEntry
+	 * @see #readDiskEntry
+	 * @see #fetch
+	 * @see #parse
+	 * @see #writeDiskEntry
+	 */
+	public Cluster get(URL url) throws IOException
+	{
+		Entry entry = null;
+		Entry newEntry = null;
+		String key = null;
+
+		key = url.toString();
+		entry = getEntry(key);
+		if(entry == null)
+			entry = readDiskEntry(key);
+		try
+		{
+			newEntry = fetch(url,entry);
+			if(newEntry.cluster == null)
+				newEntry.cluster = parse(newEntry.data,key);
+			// only keep a new download on disk once it has been parsed
+			if(newEntry != entry)
+				writeDiskEntry(key,newEntry);
+		}
+		catch(IOException e)
+		{
+			if(entry == null)
+				throw e;
+			newEntry = entry;
+			if(newEntry.cluster == null)
+				newEntry.cluster = parse(newEntry.data,key);
+		}
+		putEntry(key,newEntry);
+		return newEntry.cluster;
+	}
+
+	/**
+	 * Request the URL, conditionally if there is a cached entry with validators.
+	 * @param url The URL.
+	 * @param entry The cached entry, or null.
+	 * @return The cached entry if the server reports it has not changed, otherwise a new entry containing
+	 *         the downloaded data, which has not been parsed.
+	 * @exception IOException Thrown if the request fails or times out.
+	 * @see #downloadTimeout
+	 * @see #readFully(java.io.InputStream,long)
+	 */
+	protected Entry fetch(URL url,Entry entry) throws IOException
+	{
+		URLConnection connection = null;
+		HttpURLConnection httpConnection = null;
+		Entry newEntry = null;
+		InputStream is = null;
+		long deadline;
+		int responseCode;
+
+		if(downloadTimeout > 0)
+			deadline = System.currentTimeMillis()+downloadTimeout;
+		else
+			deadline = 0;
+		connection = url.openConnection();
+		connection.setConnectTimeout(connectTimeout);
+		connection.setReadTimeout(readTimeout);
+		connection.setUseCaches(false);
+		if(connection instanceof HttpURLConnection)
+			httpConnection = (HttpURLConnection)connection;
+		if(entry != null)
+		{
+			if(entry.eTag != null)
+				connection.setRequestProperty("If-None-Match",entry.eTag);
+			if(entry.lastModified > 0)
+				connection.setIfModifiedSince(entry.lastModified);
+		}
+		try
+		{
+			connection.connect();
+			if(httpConnection != null)
+			{
+				responseCode = httpConnection.getResponseCode();
+				if((responseCode == HttpURLConnection.HTTP_NOT_MODIFIED)&&(entry != null))
+					return entry;
+				if(responseCode != HttpURLConnection.HTTP_OK)
+				{
+					throw new IOException(this.getClass().getName()+":fetch:"+url+
+							      " returned HTTP status "+responseCode);
+				}
+			}
+			else if((entry != null)&&(entry.lastModified > 0)&&
+				(connection.getLastModified() == entry.lastModified))
+			{
+				// not HTTP (e.g. a file URL), so use the last modified time to validate
+				return entry;
+			}
+			newEntry = new Entry();
+			newEntry.eTag = connection.getHeaderField("ETag");
+			newEntry.lastModified = connection.getLastModified();
+			is = connection.getInputStream();
+			newEntry.data = readFully(is,deadline);
+		}
+		finally
+		{
+			if(is != null)
+				is.close();
+			else if(httpConnection != null)
+				closeQuietly(httpConnection);
+		}
+		return newEntry;
+	}
+
+	/**
+	 * Parse downloaded catalogue data. The data is stored as downloaded, so gzip (or zstd) compressed
+	 * catalogues are kept compressed, and decompressed each time they are parsed.
+	 * @param data The catalogue data.
+	 * @param key The URL string, for error messages.
+	 * @return A ClusterTable containing the catalogue.
+	 * @exception IOException Thrown if the data could not be parsed.
+	 * @see ClusterDecompressor#open
+	 */
+	protected Cluster parse(byte data[],String key) throws IOException
+	{
+		ClusterTable table = null;
+		InputStream is = null;
+
+		table = new ClusterTable();
+		is = ClusterDecompressor.open(new ByteArrayInputStream(data));
+		try
+		{
+			table.load(new BufferedReader(new InputStreamReader(is,Cluster.FILE_CHARSET)));
+		}
+		catch(RuntimeException e)
+		{
+			throw new IOException(this.getClass().getName()+":parse:"+key+" could not be parsed:"+e,e);
+		}
+		finally
+		{
+			is.close();
+		}
+		return table;
+	}
+
+	/**
+	 * Estimate the memory used by a cluster.
+	 * @param c The cluster.
+	 * @return The estimated memory used, in bytes.
+	 */
+	protected long estimateSize(Cluster c)
+	{
+		long stars,colours;
+
+		stars = c.getStarListCount();
+		colours = c.getColourCount();
+		// identifiers, radian and pixel positions, sexagesimal RA/Dec and magnitude columns
+		if(c instanceof ClusterTable)
+			return stars*(8L+32L+34L+(20L*colours));
+		// ClusterObject, RA, Dec and magnitude arrays
+		return stars*(256L+(20L*colours));
+	}
+
+	/**
+	 * Get an entry from memory, marking it as most recently used.
+	 * @param key The URL string.
+	 * @return The entry, or null.
+	 */
+	protected synchronized Entry getEntry(String key)
+	{
+		return (Entry)(entryMap.get(key));
+	}
+
+	/**
+	 * Put an entry into memory, and evict the least recently used entries if the cache is over budget.
+	 * The downloaded data is not kept in memory, only the parsed cluster.
+	 * @param key The URL string.
+	 * @param entry The entry.
+	 * @see #evict
+	 */
+	protected synchronized void putEntry(String key,Entry entry)
+	{
+		Entry oldEntry = null;
+
+		entry.data = null;
+		if(entry.size == 0)
+			entry.size = ENTRY_OVERHEAD+estimateSize(entry.cluster);
+		oldEntry = (Entry)(entryMap.put(key,entry));
+		if(oldEntry != null)
+			memoryUsed -= oldEntry.size;
+		memoryUsed += entry.size;
+		evict();
+	}
+
+	/**
+	 * Evict least recently used entries until the memory used is within the budget.
+	 */
+	protected synchronized void evict()
+	{
+		Iterator iterator = null;
+		Entry entry = null;
+
+		iterator = entryMap.values().iterator();
+		while((memoryUsed > memoryBudget)&&iterator.hasNext())
+		{
+			entry = (Entry)(iterator.next());
+			iterator.remove();
+			memoryUsed -= entry.size;
+		}
+	}
+
+	/**
+	 * Read an entry from the disk cache.
+	 * @param key The URL string.
+	 * @return The entry, with its data but no parsed cluster, or null if there is no readable copy on disk.
+	 * @see #getDiskFile
+	 */
+	protected Entry readDiskEntry(String key)
+	{
+		Properties properties = null;
+		InputStream is = null;
+		Entry entry = null;
+		File dataFile = null;
+		File propertiesFile = null;
+
+		if(diskCacheDirectory == null)
+			return null;
+		dataFile = getDiskFile(key,".cluster");
+		propertiesFile = getDiskFile(key,".properties");
+		if((dataFile.exists() == false)||(propertiesFile.exists() == false))
+			return null;
+		try
+		{
+			properties = new Properties();
+			is = new FileInputStream(propertiesFile);
+			try
+			{
+				properties.load(is);
+			}
+			finally
+			{
+				is.close();
+			}
+			if(key.equals(properties.getProperty("url")) == false)
+				return null;
+			entry = new Entry();
+			entry.eTag = properties.getProperty("etag");
+			entry.lastModified = Long.parseLong(properties.getProperty("lastModified","0"));
+			is = new FileInputStream(dataFile);
+			try
+			{
+				entry.data = readFully(is);
+			}
+			finally
+			{
+				is.close();
+			}
+		}
+		catch(IOException e)
+		{
+			return null;
+		}
+		catch(NumberFormatException e)
+		{
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Write an entry's data and validators to the disk cache. Each file is written to a temporary file and
+	 * renamed, so a partly written copy is never read. Failures are ignored, as the disk cache is only a
+	 * fallback.
+	 * @param key The URL string.
+	 * @param entry The entry.
+	 * @see #getDiskFile
+	 */
+	protected void writeDiskEntry(String key,Entry entry)
+	{
+		Properties properties = null;
+		OutputStream os = null;
+		File tempFile = null;
+
+		if(diskCacheDirectory == null)
+			return;
+		try
+		{
+			tempFile = File.createTempFile("cluster",".tmp",diskCacheDirectory);
+			os = new FileOutputStream(tempFile);
+			try
+			{
+				os.write(entry.data);
+			}
+			finally
+			{
+				os.close();
+			}
+			replaceFile(tempFile,getDiskFile(key,".cluster"));
+			properties = new Properties();
+			properties.setProperty("url",key);
+			if(entry.eTag != null)
+				properties.setProperty("etag",entry.eTag);
+			properties.setProperty("lastModified",Long.toString(entry.lastModified));
+			tempFile = File.createTempFile("cluster",".tmp",diskCacheDirectory);
+			os = new FileOutputStream(tempFile);
+			try
+			{
+				properties.store(os,key);
+			}
+			finally
+			{
+				os.close();
+			}
+			replaceFile(tempFile,getDiskFile(key,".properties"));
+		}
+		catch(IOException e)
+		{
+			if(tempFile != null)
+				tempFile.delete();
+		}
+	}
+
+	/**
+	 * Return the file in the disk cache for a URL, named after a SHA-1 digest of the URL.
+	 * @param key The URL string.
+	 * @param suffix The file name suffix.
+	 * @return The file.
+	 */
+	protected File getDiskFile(String key,String suffix)
+	{
+		MessageDigest digest = null;
+		StringBuilder sb = null;
+		byte hash[];
+		int index;
+
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-1");
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			// every Java platform is required to support SHA-1
+			throw new IllegalStateException(this.getClass().getName()+":getDiskFile:"+e,e);
+		}
+		hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+		sb = new StringBuilder();
+		for(index = 0; index < hash.length; index++)
+		{
+			sb.append(Character.forDigit((hash[index] >> 4) & 0xf,16));
+			sb.append(Character.forDigit(hash[index] & 0xf,16));
+		}
+		sb.append(suffix);
+		return new File(diskCacheDirectory,sb.toString());
+	}
+
+	/**
+	 * Replace a file with another, deleting the target first if the platform cannot rename over it.
+	 * @param source The file to rename.
+	 * @param target The file to replace.
+	 * @exception IOException Thrown if the rename fails.
+	 */
+	protected static void replaceFile(File source,File target) throws IOException
+	{
+		if(source.renameTo(target))
+			return;
+		target.delete();
+		if(source.renameTo(target) == false)
+		{
+			source.delete();
+			throw new IOException("org.estar.cluster.ClusterCache:replaceFile:Failed to rename "+source+
+					      " to "+target);
+		}
+	}
+
+	/**
+	 * Read the rest of a stream into a byte array.
+	 * @param is The stream.
+	 * @return The bytes.
+	 * @exception IOException Thrown if the read fails.
+	 * @see #readFully(java.io.InputStream,long)
+	 */
+	protected static byte[] readFully(InputStream is) throws IOException
+	{
+		return readFully(is,0);
+	}
+
+	/**
+	 * Read the rest of a stream into a byte array, giving up if it is not finished by a deadline.
+	 * The deadline is checked between reads.
+	 * @param is The stream.
+	 * @param deadline The time to give up at, in milliseconds since the epoch, or 0 for no deadline.
+	 * @return The bytes.
+	 * @exception SocketTimeoutException Thrown if the deadline passes before the end of the stream.
+	 * @exception IOException Thrown if the read fails.
+	 */
+	protected static byte[] readFully(InputStream is,long deadline) throws IOException
+	{
+		ByteArrayOutputStream bos = null;
+		byte buffer[];
+		int count;
+
+		bos = new ByteArrayOutputStream();
+		buffer = new byte[64*1024];
+		while((count = is.read(buffer)) >= 0)
+		{
+			bos.write(buffer,0,count);
+			if((deadline > 0)&&(System.currentTimeMillis() > deadline))
+			{
+				throw new SocketTimeoutException("org.estar.cluster.ClusterCache:readFully:"+
+								 "Download not finished after "+bos.size()+
+								 " bytes, deadline passed.");
+			}
+		}
+		return bos.toByteArray();
+	}
+
+	/**
+	 * Consume and close the error stream of a connection, so it can be reused.
+	 * @param connection The connection.
+	 */
+	protected static void closeQuietly(HttpURLConnection connection)
+	{
+		InputStream es = null;
+
+		try
+		{
+			es = connection.getErrorStream();
+			if(es != null)
+				es.close();
+		}
+		catch(IOException e)
+		{
+		}
+	}
+
+	/**
+	 * A cached cluster, with the validators the server returned for it.
+	 */
+	protected static class Entry
+	{
+		/**
+		 * The parsed cluster, or null if it has not been parsed yet.
+		 */
+		protected Cluster cluster = null;
+		/**
+		 * The raw catalogue data, only kept until it is parsed.
+		 */
+		protected byte data[] = null;
+		/**
+		 * The ETag the server returned, or null.
+		 */
+		protected String eTag = null;
+		/**
+		 * The Last-Modified time the server returned, in milliseconds since the epoch, or 0.
+		 */
+		protected long lastModified = 0;
+		/**
+		 * The estimated memory used by the entry, in bytes.
+		 */
+		protected long size = 0;
+	}
+}
@@ -0,0 +1,1012 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterCheck.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.text.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import com.sun.net.httpserver.*;
+import org.estar.astrometry.*;
+
+/**
+ * This class checks that the cluster load and save paths reproduce the output of the original ClusterObject
+ * code. A cluster file is generated with ClusterGenerator (RA seconds to 3 decimal places), with some
+ * extra star lines whose seconds are rounding ties, and star lines without a complete position. Each check loads the file a different way and saves it,
+ * and the result is compared line by line with the output of formatReference, which formats each star line
+ * the way the original StringTokenizer based parseStarLine and toString did.
+ * The binary checks convert the file to the binary format and back, and binary-exact compares the stored
+ * values of every star exactly, to check the conversion is lossless beyond the printed precision.
+ * The read-only check calls each setter of a ClusterTableObject, which should all throw an exception.
+ * The cache check serves the file from an embedded HTTP server (CheckServer), and checks ClusterCache
+ * revalidates with ETag and Last-Modified, falls back to its memory and disk copies when the server fails,
+ * and evicts the least recently used cluster. The load-async check uses the same server to check the URL
+ * loaders time out when the server stalls, and that cancelling an asynchronous load returns at once and
+ * releases its thread.
+ * The name of each check is printed with "ok" or "FAILED", and the exit status is the number of failures.
+ * @version $Revision$
+ * @see ClusterGenerator
+ * @see ClusterBinary
+ * @see ClusterCache
+ * @see ClusterUrlLoader
+ * @see #formatReference
+ */
+public class ClusterCheck
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The names of all the checks, in the order they are run.
+	 */
+	public final static String CHECK_NAME_LIST[] = {"load-file","load-string","load-table","load-lazy",
+							"load-mapped","reader","binary","binary-text",
+							"binary-exact","read-only","cache",
+							"load-async"};
+	/**
+	 * Star positions appended to the generated stars, whose seconds are rounding ties, or round up to 60.
+	 */
+	protected final static String EXTRA_POSITION_LIST[] = {"02 10 02.945 +10 20 30.125",
+							       "02 10 02.935 -10 20 30.135",
+							       "23 59 59.995 -00 59 59.995",
+							       "00 00 00.005 00 00 00.005",
+							       "12 30 44.125 -89 59 01.625",
+							       "01 02 03.1234567891 -04 05 06.9876543219"};
+	/**
+	 * Incomplete star positions appended to the generated stars, which are stored as having no RA, or no Dec.
+	 */
+	protected final static String MISSING_POSITION_LIST[] = {"","10 09","10 09 25.875","10 09 25.875 +09",
+								 "10 09 25.875 +09 52"};
+	/**
+	 * The read timeout used when the check server stalls, in milliseconds.
+	 */
+	protected final static int STALL_READ_TIMEOUT = 500;
+	/**
+	 * How long the check server stalls for, in milliseconds. This is much longer than STALL_READ_TIMEOUT.
+	 */
+	protected final static int STALL_DELAY = 20000;
+	/**
+	 * How long to wait for a load that should finish, or fail, in milliseconds.
+	 */
+	protected final static int WAIT_TIMEOUT = 10000;
+	/**
+	 * The cluster file to check with.
+	 */
+	protected File file = null;
+	/**
+	 * The contents of the file.
+	 */
+	protected String contents = null;
+	/**
+	 * The output the original code produced for the file.
+	 */
+	protected String expected = null;
+
+	/**
+	 * Constructor. Reads the file, and formats the expected output.
+	 * @param f The cluster file.
+	 * @exception IOException Thrown if the file cannot be read.
+	 * @see #formatReference
+	 */
+	public ClusterCheck(File f) throws IOException
+	{
+		super();
+		BufferedReader r = null;
+		StringBuilder sb = null;
+		StringBuilder esb = null;
+		String line = null;
+		int lineIndex,colourCount;
+
+		file = f;
+		sb = new StringBuilder();
+		esb = new StringBuilder();
+		colourCount = 0;
+		r = new BufferedReader(new InputStreamReader(new FileInputStream(file),Cluster.FILE_CHARSET));
+		try
+		{
+			lineIndex = 0;
+			while((line = r.readLine()) != null)
+			{
+				sb.append(line).append('\n');
+				if(lineIndex == 0)
+					colourCount = Integer.parseInt(new StringTokenizer(line," ").nextToken());
+				if(lineIndex < 3)
+					esb.append(line);
+				else
+					esb.append(formatReference(line,colourCount));
+				esb.append('\n');
+				lineIndex++;
+			}
+		}
+		finally
+		{
+			r.close();
+		}
+		contents = sb.toString();
+		expected = esb.toString();
+	}
+
+	/**
+	 * Run a check and print the result.
+	 * @param name The check name, one of CHECK_NAME_LIST.
+	 * @param out Where to print the result.
+	 * @return true if the check passed, false if it failed.
+	 * @see #runOnce
+	 * @see #compare
+	 */
+	public boolean run(String name,PrintStream out)
+	{
+		String error = null;
+
+		try
+		{
+			error = compare(getExpected(name),runOnce(name));
+		}
+		catch(Exception e)
+		{
+			error = e.toString();
+		}
+		if(error == null)
+		{
+			out.println(name+": ok");
+			return true;
+		}
+		out.println(name+": FAILED:"+error);
+		return false;
+	}
+
+	/**
+	 * Return the expected result of a check.
+	 * @param name The check name.
+	 * @return For binary-exact the output of formatExact for the file loaded into a ClusterTable,
+	 *         for read-only, cache and load-async an empty string, otherwise the output of the original code.
+	 * @exception Exception Thrown if the file cannot be loaded.
+	 * @see #expected
+	 * @see #formatExact
+	 */
+	protected String getExpected(String name) throws Exception
+	{
+		if(name.equals("binary-exact"))
+			return formatExact(ClusterTable.load(file));
+		else if(name.equals("read-only")||name.equals("cache")||name.equals("load-async"))
+			return "";
+		return expected;
+	}
+
+	/**
+	 * Run one check.
+	 * @param name The check name.
+	 * @return The saved cluster file, for binary-exact the output of formatExact, for read-only the
+	 *         setters that did not throw an exception, and for cache and load-async the failures found.
+	 * @exception Exception Thrown if the check fails.
+	 * @see #formatExact
+	 * @see #checkReadOnly
+	 * @see #checkCache
+	 * @see #checkLoadAsync
+	 */
+	protected String runOnce(String name) throws Exception
+	{
+		ClusterReader reader = null;
+		ClusterWriter cw = null;
+		ClusterObject co = null;
+		StringBuilder sb = null;
+		File binaryFile = null;
+		File textFile = null;
+
+		if(name.equals("load-file"))
+			return Cluster.load(file).toString();
+		else if(name.equals("load-string"))
+			return Cluster.load(contents).toString();
+		else if(name.equals("load-table"))
+			return ClusterTable.load(file).toString();
+		else if(name.equals("load-lazy"))
+			return ClusterLazyTable.open(file).toString();
+		else if(name.equals("load-mapped"))
+			return ClusterMappedLoader.load(file).toString();
+		else if(name.equals("reader"))
+		{
+			sb = new StringBuilder();
+			cw = new ClusterWriter(sb);
+			reader = ClusterReader.open(file);
+			try
+			{
+				cw.writeHeader(reader.getHeader(),"");
+				while((co = reader.readStar()) != null)
+					cw.writeStar(co,"");
+			}
+			finally
+			{
+				reader.close();
+			}
+			cw.flush();
+			return sb.toString();
+		}
+		else if(name.equals("binary")||name.equals("binary-exact"))
+		{
+			binaryFile = File.createTempFile("ClusterCheck",".clsb");
+			try
+			{
+				ClusterBinary.save(Cluster.load(file),binaryFile);
+				if(name.equals("binary"))
+					return ClusterBinary.load(binaryFile).toString();
+				return formatExact(ClusterBinary.load(binaryFile));
+			}
+			finally
+			{
+				binaryFile.delete();
+			}
+		}
+		else if(name.equals("binary-text"))
+		{
+			binaryFile = File.createTempFile("ClusterCheck",".clsb");
+			textFile = File.createTempFile("ClusterCheck",".cluster");
+			try
+			{
+				ClusterBinary.convertToBinary(file,binaryFile);
+				ClusterBinary.convertToText(binaryFile,textFile);
+				return new String(Files.readAllBytes(textFile.toPath()),Cluster.FILE_CHARSET);
+			}
+			finally
+			{
+				binaryFile.delete();
+				textFile.delete();
+			}
+		}
+		else if(name.equals("read-only"))
+			return checkReadOnly(ClusterTable.load(file).getStar(0));
+		else if(name.equals("cache"))
+			return checkCache();
+		else if(name.equals("load-async"))
+			return checkLoadAsync();
+		else
+		{
+			throw new IllegalArgumentException(this.getClass().getName()+":runOnce:Unknown check:"+name);
+		}
+	}
+
+	/**
+	 * Compare the expected and actual output line by line.
+	 * @param expectedString The expected output.
+	 * @param actualString The actual output.
+	 * @return null if they are the same, otherwise a description of the first difference.
+	 */
+	protected static String compare(String expectedString,String actualString)
+	{
+		String expectedLineList[] = null;
+		String actualLineList[] = null;
+		int index;
+
+		expectedLineList = expectedString.split("\n",-1);
+		actualLineList = actualString.split("\n",-1);
+		for(index = 0; index < Math.min(expectedLineList.length,actualLineList.length); index++)
+		{
+			if(expectedLineList[index].equals(actualLineList[index]) == false)
+			{
+				return "line "+(index+1)+":expected:"+expectedLineList[index]+":got:"+
+					actualLineList[index];
+			}
+		}
+		if(expectedLineList.length != actualLineList.length)
+			return "expected "+expectedLineList.length+" lines:got "+actualLineList.length+" lines";
+		return null;
+	}
+
+	/**
+	 * Check ClusterCache against a CheckServer serving the file.
+	 * <ul>
+	 * <li>The first get downloads the file, and the cluster saves as the original code would have.
+	 * <li>The second get sends If-None-Match, the server replies 304, and the same cluster is returned.
+	 * <li>When the catalogue changes, the new one is downloaded.
+	 * <li>When the server fails, the copy in memory is returned, and a new cache returns the copy on disk.
+	 * <li>Without an ETag, If-Modified-Since is used to revalidate.
+	 * <li>When the memory budget is reduced, the least recently used cluster is evicted.
+	 * </ul>
+	 * @return The failures found, one per line.
+	 * @exception Exception Thrown if the check could not be run.
+	 * @see CheckServer
+	 */
+	protected String checkCache() throws Exception
+	{
+		CheckServer server = null;
+		ClusterCache cache = null;
+		Cluster c1 = null;
+		Cluster c2 = null;
+		Cluster c3 = null;
+		StringBuilder failures = null;
+		File directory = null;
+		File fileList[] = null;
+		URL url = null;
+		URL otherURL = null;
+		byte smallBody[];
+		int index,lineIndex,smallCount;
+
+		failures = new StringBuilder();
+		directory = Files.createTempDirectory("ClusterCheck").toFile();
+		server = new CheckServer();
+		try
+		{
+			server.body = contents.getBytes(Cluster.FILE_CHARSET);
+			server.eTag = "\"1\"";
+			url = server.getURL("/check.cluster");
+			otherURL = server.getURL("/other.cluster");
+			cache = new ClusterCache(ClusterCache.DEFAULT_MEMORY_BUDGET,directory);
+			cache.setTimeouts(5000,5000);
+			// first get downloads
+			c1 = cache.get(url);
+			if(compare(expected,c1.toString()) != null)
+				failures.append("first get:"+compare(expected,c1.toString())+"\n");
+			// second get revalidates
+			c2 = cache.get(url);
+			if(c2 != c1)
+				failures.append("unchanged catalogue returned a new cluster\n");
+			if(server.notModifiedCount.get() != 1)
+				failures.append("If-None-Match revalidation:"+server.notModifiedCount.get()+" 304 responses\n");
+			// a changed catalogue is downloaded
+			smallCount = 10;
+			index = 0;
+			for(lineIndex = 0; lineIndex < 3+smallCount; lineIndex++)
+				index = contents.indexOf('\n',index)+1;
+			smallBody = contents.substring(0,index).getBytes(Cluster.FILE_CHARSET);
+			server.body = smallBody;
+			server.eTag = "\"2\"";
+			c2 = cache.get(url);
+			if((c2 == c1)||(c2.getStarListCount() != smallCount))
+				failures.append("changed catalogue was not downloaded\n");
+			// a failing server returns the copy in memory, then the copy on disk
+			server.status = HttpURLConnection.HTTP_INTERNAL_ERROR;
+			if(cache.get(url) != c2)
+				failures.append("server error did not return the copy in memory\n");
+			cache = new ClusterCache(ClusterCache.DEFAULT_MEMORY_BUDGET,directory);
+			cache.setTimeouts(5000,5000);
+			c3 = cache.get(url);
+			if(c3.getStarListCount() != smallCount)
+				failures.append("server error did not return the copy on disk\n");
+			// revalidate with Last-Modified only
+			server.status = HttpURLConnection.HTTP_OK;
+			server.eTag = null;
+			server.lastModified = (System.currentTimeMillis()/1000L)*1000L-60000L;
+			server.notModifiedCount.set(0);
+			cache = new ClusterCache(ClusterCache.DEFAULT_MEMORY_BUDGET,null);
+			cache.setTimeouts(5000,5000);
+			c1 = cache.get(url);
+			if(cache.get(url) != c1)
+				failures.append("unchanged catalogue returned a new cluster with Last-Modified\n");
+			if(server.notModifiedCount.get() != 1)
+				failures.append("If-Modified-Since revalidation:"+server.notModifiedCount.get()+" 304 responses\n");
+			// least recently used eviction
+			c2 = cache.get(otherURL);
+			if(cache.get(url) != c1)
+				failures.append("cluster was not kept in memory\n");
+			cache.setMemoryBudget((cache.getMemoryUsed()*3)/4);
+			if(cache.size() != 1)
+				failures.append("reducing the memory budget left "+cache.size()+" clusters\n");
+			if(cache.get(url) != c1)
+				failures.append("most recently used cluster was evicted\n");
+			if(cache.get(otherURL) == c2)
+				failures.append("least recently used cluster was not evicted\n");
+		}
+		finally
+		{
+			server.stop();
+			fileList = directory.listFiles();
+			for(index = 0; (fileList != null)&&(index < fileList.length); index++)
+				fileList[index].delete();
+			directory.delete();
+		}
+		return failures.toString();
+	}
+
+	/**
+	 * Check the URL loaders against a CheckServer serving the file.
+	 * <ul>
+	 * <li>Asynchronous loads into a Cluster and a ClusterTable complete, and save as the original code would.
+	 * <li>When the server stalls before the response headers, or half way through the body, blocking and
+	 *     asynchronous loads fail with a SocketTimeoutException soon after the read timeout.
+	 * <li>Cancelling an asynchronous load from a stalled server, with no read timeout, releases the
+	 *     executor thread the load was running on.
+	 * </ul>
+	 * @return The failures found, one per line.
+	 * @exception Exception Thrown if the check could not be run.
+	 * @see CheckServer
+	 * @see ClusterUrlLoader#loadAsync(org.estar.cluster.Cluster,java.net.URL,int,int,java.util.concurrent.Executor)
+	 */
+	protected String checkLoadAsync() throws Exception
+	{
+		CheckServer server = null;
+		ExecutorService executor = null;
+		CompletableFuture<Cluster> future = null;
+		CompletableFuture<ClusterTable> tableFuture = null;
+		Future<?> nextFuture = null;
+		StringBuilder failures = null;
+		URL url = null;
+		String error = null;
+		long startTime;
+		int index;
+
+		failures = new StringBuilder();
+		server = new CheckServer();
+		executor = Executors.newSingleThreadExecutor();
+		try
+		{
+			server.body = contents.getBytes(Cluster.FILE_CHARSET);
+			url = server.getURL("/check.cluster");
+			// loads that complete
+			future = Cluster.loadAsync(url,WAIT_TIMEOUT,WAIT_TIMEOUT);
+			error = compare(expected,future.get(WAIT_TIMEOUT,TimeUnit.MILLISECONDS).toString());
+			if(error != null)
+				failures.append("loadAsync:"+error+"\n");
+			tableFuture = ClusterUrlLoader.loadAsync(new ClusterTable(),url,WAIT_TIMEOUT,WAIT_TIMEOUT,executor);
+			error = compare(expected,tableFuture.get(WAIT_TIMEOUT,TimeUnit.MILLISECONDS).toString());
+			if(error != null)
+				failures.append("loadAsync into a table:"+error+"\n");
+			// a server that stalls before the headers, then in the body
+			for(index = 0; index < 2; index++)
+			{
+				server.headerDelay = (index == 0) ? STALL_DELAY : 0;
+				server.bodyDelay = (index == 0) ? 0 : STALL_DELAY;
+				startTime = System.currentTimeMillis();
+				try
+				{
+					Cluster.load(url,WAIT_TIMEOUT,STALL_READ_TIMEOUT);
+					failures.append("stall "+index+":load did not time out\n");
+				}
+				catch(SocketTimeoutException e)
+				{
+				}
+				if(System.currentTimeMillis()-startTime > WAIT_TIMEOUT)
+					failures.append("stall "+index+":load took too long to time out\n");
+				future = ClusterUrlLoader.loadAsync(new Cluster(),url,WAIT_TIMEOUT,STALL_READ_TIMEOUT,executor);
+				try
+				{
+					future.get(WAIT_TIMEOUT,TimeUnit.MILLISECONDS);
+					failures.append("stall "+index+":loadAsync did not time out\n");
+				}
+				catch(ExecutionException e)
+				{
+					if((e.getCause() instanceof SocketTimeoutException) == false)
+						failures.append("stall "+index+":loadAsync failed with "+e.getCause()+"\n");
+				}
+				catch(TimeoutException e)
+				{
+					failures.append("stall "+index+":loadAsync took too long to time out\n");
+					future.cancel(true);
+				}
+			}
+			// cancelling a stalled load returns at once, and the executor's only thread is released
+			server.stallCount.set(0);
+			future = ClusterUrlLoader.loadAsync(new Cluster(),url,WAIT_TIMEOUT,STALL_READ_TIMEOUT,executor);
+			startTime = System.currentTimeMillis();
+			while((server.stallCount.get() == 0)&&(System.currentTimeMillis()-startTime < WAIT_TIMEOUT))
+				Thread.sleep(10);
+			if(server.stallCount.get() == 0)
+				failures.append("cancel:server did not stall\n");
+			startTime = System.currentTimeMillis();
+			future.cancel(true);
+			if(System.currentTimeMillis()-startTime > STALL_READ_TIMEOUT)
+				failures.append("cancel:cancel blocked\n");
+			nextFuture = executor.submit(new Runnable()
+			{
+				public void run()
+				{
+				}
+			});
+			try
+			{
+				nextFuture.get(WAIT_TIMEOUT,TimeUnit.MILLISECONDS);
+			}
+			catch(TimeoutException e)
+			{
+				failures.append("cancel:executor thread was not released\n");
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+			server.stop();
+		}
+		return failures.toString();
+	}
+
+	/**
+	 * Call each setter of a read-only star.
+	 * @param co The star.
+	 * @return The names of the setters that did not throw an UnsupportedOperationException, one per line.
+	 */
+	protected static String checkReadOnly(ClusterObject co)
+	{
+		StringBuilder sb = null;
+		String setterNameList[] = {"setName","setRA(RA)","setRA(null)","setRA(int,int,double)","setRARadians",
+					   "setDec(Dec)","setDec(null)","setDec(char,int,int,double)","setDecRadians",
+					   "setBMagnitude","setVMagnitude","setRMagnitude"};
+		int index;
+
+		sb = new StringBuilder();
+		for(index = 0; index < setterNameList.length; index++)
+		{
+			try
+			{
+				switch(index)
+				{
+				case 0:
+					co.setName("name");
+					break;
+				case 1:
+					co.setRA(new RA(1,2,3.0));
+					break;
+				case 2:
+					co.setRA(null);
+					break;
+				case 3:
+					co.setRA(1,2,3.0);
+					break;
+				case 4:
+					co.setRARadians(1.0);
+					break;
+				case 5:
+					co.setDec(new Dec('-',1,2,3.0));
+					break;
+				case 6:
+					co.setDec(null);
+					break;
+				case 7:
+					co.setDec('-',1,2,3.0);
+					break;
+				case 8:
+					co.setDecRadians(1.0);
+					break;
+				case 9:
+					co.setBMagnitude(1.0);
+					break;
+				case 10:
+					co.setVMagnitude(1.0);
+					break;
+				case 11:
+					co.setRMagnitude(1.0);
+					break;
+				}
+				sb.append(setterNameList[index]+" did not throw\n");
+			}
+			catch(UnsupportedOperationException e)
+			{
+			}
+		}
+		try
+		{
+			co.parseStarLine("1 2",co.getColourMap());
+			sb.append("parseStarLine did not throw\n");
+		}
+		catch(UnsupportedOperationException e)
+		{
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Format the stored values of every star in a cluster, with doubles written by Double.toString, so
+	 * two clusters can be compared exactly.
+	 * @param c The cluster.
+	 * @return One line per star.
+	 */
+	protected static String formatExact(Cluster c)
+	{
+		StringBuilder sb = null;
+		RA ra = null;
+		Dec dec = null;
+		int index,colourIndex;
+
+		sb = new StringBuilder();
+		for(index = 0; index < c.getStarListCount(); index++)
+		{
+			ra = c.getRA(index);
+			dec = c.getDec(index);
+			sb.append(c.getFieldNumber(index)).append(' ').append(c.getStarNumber(index));
+			if(ra != null)
+			{
+				sb.append(' ').append(ra.getHours()).append(' ').append(ra.getMinutes());
+				sb.append(' ').append(ra.getSeconds());
+			}
+			if(dec != null)
+			{
+				sb.append(' ').append(dec.getSign()).append(dec.getDegrees()).append(' ');
+				sb.append(dec.getMinutes()).append(' ').append(dec.getSeconds());
+			}
+			sb.append(' ').append(c.getXPixel(index)).append(' ').append(c.getYPixel(index));
+			for(colourIndex = 0; colourIndex < c.getColourCount(); colourIndex++)
+			{
+				sb.append(' ').append(c.getMagnitude(index,colourIndex));
+				sb.append(' ').append(c.getMagnitudeError(index,colourIndex));
+				sb.append(' ').append(c.getFlags(index,colourIndex));
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Format a star line the way the original code did: the line is split with a StringTokenizer, the RA and
+	 * Dec are created from the parsed fields and written with toString(' '), the pixel position is written
+	 * with the "0.000" DecimalFormat, magnitudes and errors with Double.toString, and flags with the "00"
+	 * DecimalFormat. The original code threw a NullPointerException for a star without a position, the line
+	 * is ended after the star number if the RA is incomplete, and after the RA if the Dec is incomplete.
+	 * @param line The star line.
+	 * @param colourCount The number of colours in the cluster.
+	 * @return The formatted star line.
+	 */
+	public static String formatReference(String line,int colourCount)
+	{
+		StringTokenizer st = null;
+		DecimalFormat df = null;
+		DecimalFormat dfd = null;
+		StringBuilder sb = null;
+		String tokenString = null;
+		int rah,ram,decd,decm,index;
+		double ras,decs;
+		char signChar;
+
+		df = new DecimalFormat("00");
+		dfd = new DecimalFormat("0.000");
+		sb = new StringBuilder();
+		st = new StringTokenizer(line," ");
+		sb.append(Integer.parseInt(st.nextToken())).append(' ').append(Integer.parseInt(st.nextToken()));
+		if(st.countTokens() < 3)
+			return sb.toString();
+		rah = Integer.parseInt(st.nextToken());
+		ram = Integer.parseInt(st.nextToken());
+		ras = Double.parseDouble(st.nextToken());
+		sb.append(' ').append(new RA(rah,ram,ras).toString(' '));
+		if(st.countTokens() < 3)
+			return sb.toString();
+		tokenString = st.nextToken();
+		signChar = tokenString.charAt(0);
+		if((signChar == '+')||(signChar == '-'))
+			tokenString = tokenString.substring(1);
+		else
+			signChar = '+';
+		decd = Integer.parseInt(tokenString);
+		decm = Integer.parseInt(st.nextToken());
+		decs = Double.parseDouble(st.nextToken());
+		sb.append(' ').append(new Dec(signChar,decd,decm,decs).toString(' '));
+		sb.append(' ').append(dfd.format(Double.parseDouble(st.nextToken())));
+		sb.append(' ').append(dfd.format(Double.parseDouble(st.nextToken())));
+		for(index = 0; index < colourCount; index++)
+		{
+			sb.append(' ').append(Double.parseDouble(st.nextToken()));
+			sb.append(' ').append(Double.parseDouble(st.nextToken()));
+			sb.append(' ').append(df.format(Integer.parseInt(st.nextToken())));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Write a cluster file to check with: the generated stars, followed by a star for each of
+	 * EXTRA_POSITION_LIST and MISSING_POSITION_LIST.
+	 * @param f The file to write.
+	 * @param starCount The number of stars to generate.
+	 * @param colours The number of colours.
+	 * @param seed The random number generator seed.
+	 * @exception IOException Thrown if the write fails.
+	 * @see ClusterGenerator#write(java.io.Writer,long)
+	 */
+	public static void write(File f,long starCount,int colours,long seed) throws IOException
+	{
+		Writer w = null;
+		int index,colourIndex;
+
+		w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f),Cluster.FILE_CHARSET));
+		try
+		{
+			new ClusterGenerator(colours,false,seed).write(w,starCount);
+			for(index = 0; index < EXTRA_POSITION_LIST.length; index++)
+			{
+				w.write("9 "+(starCount+index)+" "+EXTRA_POSITION_LIST[index]+" 1024.500 10.125");
+				for(colourIndex = 0; colourIndex < colours; colourIndex++)
+					w.write(" 12.345 0.125 0"+colourIndex);
+				w.write('\n');
+			}
+			for(index = 0; index < MISSING_POSITION_LIST.length; index++)
+			{
+				w.write("9 "+(starCount+EXTRA_POSITION_LIST.length+index));
+				if(MISSING_POSITION_LIST[index].length() > 0)
+					w.write(" "+MISSING_POSITION_LIST[index]);
+				w.write('\n');
+			}
+		}
+		finally
+		{
+			w.close();
+		}
+	}
+
+	/**
+	 * Main program.
+	 * @param args The arguments.
+	 */
+	public static void main(String args[])
+	{
+		ClusterCheck check = null;
+		String filename = null;
+		String checkNameList[] = CHECK_NAME_LIST;
+		File file = null;
+		long starCount = 10000;
+		long seed = 1;
+		int colours = 2;
+		int failureCount = 0;
+
+		for(int i = 0; i < args.length; i++)
+		{
+		    if(args[i].equals("-filename")||args[i].equals("-f"))
+		    {
+			if((i+1) < args.length)
+			{
+			    filename = args[i+1];
+			    i++;
+			}
+			else
+			    System.err.println("ClusterCheck:-filename requires a filename.");
+		    }
+		    else if(args[i].equals("-stars")||args[i].equals("-n"))
+		    {
+			if((i+1) < args.length)
+			{
+			    starCount = Long.parseLong(args[i+1]);
+			    i++;
+			}
+			else
+			    System.err.println("ClusterCheck:-stars requires a number.");
+		    }
+		    else if(args[i].equals("-colours")||args[i].equals("-c"))
+		    {
+			if((i+1) < args.length)
+			{
+			    colours = Integer.parseInt(args[i+1]);
+			    i++;
+			}
+			else
+			    System.err.println("ClusterCheck:-colours requires a number.");
+		    }
+		    else if(args[i].equals("-seed")||args[i].equals("-s"))
+		    {
+			if((i+1) < args.length)
+			{
+			    seed = Long.parseLong(args[i+1]);
+			    i++;
+			}
+			else
+			    System.err.println("ClusterCheck:-seed requires a number.");
+		    }
+		    else if(args[i].equals("-check")||args[i].equals("-k"))
+		    {
+			if((i+1) < args.length)
+			{
+			    checkNameList = args[i+1].split(",");
+			    i++;
+			}
+			else
+			    System.err.println("ClusterCheck:-check requires a list of names.");
+		    }
+		    else if(args[i].equals("-help")||args[i].equals("-h"))
+		    {
+			System.out.println("ClusterCheck Help");
+			System.out.println("java ClusterCheck [-f[ilename] <file name>][-n|-stars <count>]"+
+					   "[-c[olours] <count>][-s[eed] <number>][-k|-check <name>[,<name>...]][-h[elp]]");
+			System.out.println("\t-filename is the cluster file to check with. If not specified, a file "+
+					   "is generated using -stars, -colours and -seed.");
+			System.out.print("\t-check is a comma separated list of:");
+			for(int j = 0; j < CHECK_NAME_LIST.length; j++)
+				System.out.print(" "+CHECK_NAME_LIST[j]);
+			System.out.println();
+			System.exit(0);
+		    }
+		    else
+			System.err.println("ClusterCheck:"+args[i]+" not recognized.");
+		}
+		try
+		{
+			if(filename != null)
+				file = new File(filename);
+			else
+			{
+				file = File.createTempFile("ClusterCheck",".cluster");
+				file.deleteOnExit();
+				write(file,starCount,colours,seed);
+			}
+			check = new ClusterCheck(file);
+			System.out.println("ClusterCheck:"+file+":"+file.length()+" bytes.");
+			for(int i = 0; i < checkNameList.length; i++)
+			{
+				if(check.run(checkNameList[i],System.out) == false)
+					failureCount++;
+			}
+		}
+		catch(Exception e)
+		{
+			System.err.println("ClusterCheck: failed:"+e);
+			e.printStackTrace(System.err);
+			System.exit(255);
+		}
+		System.exit(failureCount);
+	}
+
+	/**
+	 * A HTTP server on the loopback interface, used to check the URL loaders and ClusterCache.
+	 * Every path returns the same body. The response can be changed between requests by setting the fields.
+	 */
+	protected static class CheckServer implements HttpHandler
+	{
+		/**
+		 * The body returned.
+		 */
+		protected volatile byte body[] = new byte[0];
+		/**
+		 * The ETag returned, or null for none.
+		 */
+		protected volatile String eTag = null;
+		/**
+		 * The Last-Modified time returned, in milliseconds since the epoch, or 0 for none.
+		 */
+		protected volatile long lastModified = 0;
+		/**
+		 * The status returned. Anything but HTTP_OK is returned without a body.
+		 */
+		protected volatile int status = HttpURLConnection.HTTP_OK;
+		/**
+		 * How long to wait before sending the response headers, in milliseconds.
+		 */
+		protected volatile int headerDelay = 0;
+		/**
+		 * How long to stall half way through sending the body, in milliseconds.
+		 */
+		protected volatile int bodyDelay = 0;
+		/**
+		 * The number of times the body has been stalled.
+		 */
+		protected AtomicInteger stallCount = new AtomicInteger();
+		/**
+		 * The number of 304 (not modified) responses sent.
+		 */
+		protected AtomicInteger notModifiedCount = new AtomicInteger();
+		/**
+		 * The server.
+		 */
+		protected HttpServer server = null;
+		/**
+		 * The threads handling requests.
+		 */
+		protected ExecutorService executor = null;
+
+		/**
+		 * Constructor. Starts the server on a free port.
+		 * @exception IOException Thrown if the server cannot be started.
+		 */
+		public CheckServer() throws IOException
+		{
+			super();
+			server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(),0),0);
+			server.createContext("/",this);
+			executor = Executors.newCachedThreadPool(new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = null;
+
+					thread = new Thread(r,"CheckServer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			server.setExecutor(executor);
+			server.start();
+		}
+
+		/**
+		 * Return a URL on the server.
+		 * @param path The path, starting with '/'.
+		 * @return The URL.
+		 * @exception MalformedURLException Thrown if the path is not valid.
+		 */
+		public URL getURL(String path) throws MalformedURLException
+		{
+			return new URL("http://"+server.getAddress().getHostString()+":"+server.getAddress().getPort()+path);
+		}
+
+		/**
+		 * Stop the server, interrupting any request that is stalled.
+		 */
+		public void stop()
+		{
+			server.stop(0);
+			executor.shutdownNow();
+		}
+
+		/**
+		 * Handle a request. If the request's If-None-Match matches the ETag, or there is no ETag and its
+		 * If-Modified-Since is not before the Last-Modified time, 304 is returned.
+		 * @param exchange The request and response.
+		 * @exception IOException Thrown if the response cannot be sent.
+		 */
+		public void handle(HttpExchange exchange) throws IOException
+		{
+			OutputStream os = null;
+			SimpleDateFormat dateFormat = null;
+			String ifNoneMatch = null;
+			String ifModifiedSince = null;
+			byte data[];
+			String tag = null;
+			long modified;
+
+			data = body;
+			tag = eTag;
+			modified = lastModified;
+			dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'",Locale.US);
+			dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+			try
+			{
+				if(headerDelay > 0)
+					Thread.sleep(headerDelay);
+				if(status != HttpURLConnection.HTTP_OK)
+				{
+					exchange.sendResponseHeaders(status,-1);
+					return;
+				}
+				ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+				ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+				if(((tag != null)&&tag.equals(ifNoneMatch))||
+				   ((tag == null)&&(modified > 0)&&(ifModifiedSince != null)&&
+				    (dateFormat.parse(ifModifiedSince).getTime() >= modified)))
+				{
+					notModifiedCount.incrementAndGet();
+					exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED,-1);
+					return;
+				}
+				if(tag != null)
+					exchange.getResponseHeaders().set("ETag",tag);
+				if(modified > 0)
+					exchange.getResponseHeaders().set("Last-Modified",dateFormat.format(new Date(modified)));
+				exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK,data.length);
+				os = exchange.getResponseBody();
+				os.write(data,0,data.length/2);
+				os.flush();
+				if(bodyDelay > 0)
+				{
+					stallCount.incrementAndGet();
+					Thread.sleep(bodyDelay);
+				}
+				os.write(data,data.length/2,data.length-(data.length/2));
+			}
+			catch(InterruptedException e)
+			{
+			}
+			catch(ParseException e)
+			{
+				throw new IOException("CheckServer:handle:Illegal If-Modified-Since:"+ifModifiedSince,e);
+			}
+			finally
+			{
+				exchange.close();
+			}
+		}
+	}
+}
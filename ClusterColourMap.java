@@ -0,0 +1,253 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterColourMap.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.util.*;
+
+/**
+ * This class is a compiled mapping between the colour slots of a cluster file (the order of the names in the
+ * colour name list line) and photometric bands. The colour names are resolved once, when the header is parsed,
+ * so parsing each star line does no string comparisons.
+ * Bands are identified by small integers. B, V, R, I, J and K are predefined; other bands can be
+ * registered by name with registerBand. Band names are compared ignoring case.
+ * If more than one colour slot has the name of a band, the band maps to the last one, as the
+ * CelestialObject B, V and R magnitudes have always been set from the last such colour.
+ * @version $Revision$
+ * @see Cluster#getColourMap
+ * @see ClusterObject#getBandMagnitude(int)
+ */
+public class ClusterColourMap
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * Band number used for colour slots that are not a known band.
+	 */
+	public final static int BAND_NONE = -1;
+	/**
+	 * Band number of the B band.
+	 */
+	public final static int BAND_B = 0;
+	/**
+	 * Band number of the V band.
+	 */
+	public final static int BAND_V = 1;
+	/**
+	 * Band number of the R band.
+	 */
+	public final static int BAND_R = 2;
+	/**
+	 * Band number of the I band.
+	 */
+	public final static int BAND_I = 3;
+	/**
+	 * Band number of the J band.
+	 */
+	public final static int BAND_J = 4;
+	/**
+	 * Band number of the K band.
+	 */
+	public final static int BAND_K = 5;
+	/**
+	 * The list of registered band names, indexed by band number.
+	 */
+	protected static List bandNameList = null;
+	/**
+	 * A copy of the colour name list the map was compiled from.
+	 */
+	protected String colourNameList[] = null;
+	/**
+	 * The band number of each colour slot, or BAND_NONE.
+	 */
+	protected int bandArray[] = null;
+	/**
+	 * The colour slot of each band number, or -1. Band numbers registered after the map was
+	 * compiled may be beyond the end of the array.
+	 */
+	protected int slotArray[] = null;
+
+	static
+	{
+		bandNameList = new ArrayList();
+		bandNameList.add("B");
+		bandNameList.add("V");
+		bandNameList.add("R");
+		bandNameList.add("I");
+		bandNameList.add("J");
+		bandNameList.add("K");
+	}
+
+	/**
+	 * Constructor. Compiles the map, with one colour slot for each colour name.
+	 * @param colourNames The colour name list of the cluster. The array is copied.
+	 * @see #ClusterColourMap(java.lang.String[],int)
+	 */
+	public ClusterColourMap(String colourNames[])
+	{
+		this(colourNames,(colourNames == null) ? 0 : colourNames.length);
+	}
+
+	/**
+	 * Constructor. Compiles the map, with the specified number of colour slots. If there are fewer colour
+	 * names than slots, the slots without a name are not mapped to a band; extra colour names are ignored.
+	 * @param colourNames The colour name list of the cluster, or null. The array is copied, so changing it
+	 *        afterwards does not change the map.
+	 * @param colourCount The number of colour slots.
+	 * @see #getBand(java.lang.String)
+	 */
+	public ClusterColourMap(String colourNames[],int colourCount)
+	{
+		super();
+		int slot,band;
+
+		if(colourNames != null)
+			colourNameList = (String[])(colourNames.clone());
+		synchronized(bandNameList)
+		{
+			slotArray = new int[bandNameList.size()];
+		}
+		Arrays.fill(slotArray,-1);
+		bandArray = new int[Math.max(0,colourCount)];
+		for(slot = 0; slot < bandArray.length; slot++)
+		{
+			if((colourNameList == null)||(slot >= colourNameList.length))
+			{
+				bandArray[slot] = BAND_NONE;
+				continue;
+			}
+			band = getBand(colourNameList[slot]);
+			bandArray[slot] = band;
+			if((band >= 0)&&(band < slotArray.length))
+				slotArray[band] = slot;
+		}
+	}
+
+	/**
+	 * Register a band name, so colour slots with that name are mapped to it.
+	 * Maps compiled before the band was registered do not map it.
+	 * @param name The band name.
+	 * @return The band number. If the band is already registered, its existing number is returned.
+	 */
+	public static int registerBand(String name)
+	{
+		int band;
+
+		synchronized(bandNameList)
+		{
+			band = getBand(name);
+			if(band == BAND_NONE)
+			{
+				bandNameList.add(name);
+				band = bandNameList.size()-1;
+			}
+		}
+		return band;
+	}
+
+	/**
+	 * Return the band number of a band name.
+	 * @param name The band name, compared ignoring case.
+	 * @return The band number, or BAND_NONE if the band is not registered.
+	 */
+	public static int getBand(String name)
+	{
+		int band;
+
+		if(name == null)
+			return BAND_NONE;
+		synchronized(bandNameList)
+		{
+			for(band = 0; band < bandNameList.size(); band++)
+			{
+				if(((String)(bandNameList.get(band))).equalsIgnoreCase(name))
+					return band;
+			}
+		}
+		return BAND_NONE;
+	}
+
+	/**
+	 * Return whether this map was compiled from a colour name list with the same contents as the specified
+	 * one, so the map is still correct for it even if the array has been changed in place since.
+	 * @param colourNames The colour name list.
+	 * @return true if the map was compiled from the same colour names, in the same order.
+	 */
+	public boolean isFor(String colourNames[])
+	{
+		return Arrays.equals(colourNameList,colourNames);
+	}
+
+	/**
+	 * Return the number of colour slots.
+	 * @return The number of colours.
+	 */
+	public int getColourCount()
+	{
+		return bandArray.length;
+	}
+
+	/**
+	 * Return the band a colour slot is mapped to.
+	 * @param slot The colour slot.
+	 * @return The band number, or BAND_NONE.
+	 */
+	public int getSlotBand(int slot)
+	{
+		return bandArray[slot];
+	}
+
+	/**
+	 * Return the colour slot a band is mapped to.
+	 * @param band The band number.
+	 * @return The colour slot, or -1 if the cluster has no colour for that band.
+	 */
+	public int getSlot(int band)
+	{
+		if((band < 0)||(band >= slotArray.length))
+			return -1;
+		return slotArray[band];
+	}
+
+	/**
+	 * Return the colour slot a band name is mapped to. Names that were not registered bands when the map
+	 * was compiled are looked up in the colour names.
+	 * @param name The band name, compared ignoring case.
+	 * @return The colour slot, or -1 if the cluster has no colour for that band.
+	 */
+	public int getSlot(String name)
+	{
+		int slot;
+
+		slot = getSlot(getBand(name));
+		if((slot >= 0)||(name == null)||(colourNameList == null))
+			return slot;
+		// not a band registered when the map was compiled, search the colour names
+		for(slot = Math.min(colourNameList.length,bandArray.length)-1; slot >= 0; slot--)
+		{
+			if(name.equalsIgnoreCase(colourNameList[slot]))
+				return slot;
+		}
+		return -1;
+	}
+}
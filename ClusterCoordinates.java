@@ -0,0 +1,160 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterCoordinates.java
+package org.estar.cluster;
+
+import java.lang.*;
+import org.estar.astrometry.*;
+
+/**
+ * This class contains static methods for converting between the sexagesimal RA and Dec used in cluster files
+ * (and org.estar.astrometry RA and Dec objects), and primitive angles in radians.
+ * When converting back from radians, the seconds are rounded to the nearest micro-second
+ * (of time for RA, of arc for Dec), to remove floating point noise introduced by the conversion.
+ * This is well below the precision of the seconds fields in cluster files, but the rounded seconds can
+ * still print differently at a formatting tie, so stars and tables keep the parsed sexagesimal fields for
+ * output, and only use radians for positional calculations.
+ * @version $Revision$
+ * @see ClusterTable
+ */
+public class ClusterCoordinates
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The number of radians in one second of time.
+	 */
+	public final static double RADIANS_PER_SECOND_OF_TIME = Math.PI/43200.0;
+	/**
+	 * The number of radians in one second of arc.
+	 */
+	public final static double RADIANS_PER_ARCSECOND = Math.PI/648000.0;
+	/**
+	 * The number of steps per second the seconds are rounded to, when converting from radians.
+	 */
+	private final static double SECONDS_ROUNDING_SCALE = 1000000.0;
+
+	/**
+	 * Convert a sexagesimal RA into radians.
+	 * @param hours The RA hours.
+	 * @param minutes The RA minutes.
+	 * @param seconds The RA seconds.
+	 * @return The RA in radians.
+	 * @see #RADIANS_PER_SECOND_OF_TIME
+	 */
+	public static double raToRadians(int hours,int minutes,double seconds)
+	{
+		return ((hours*3600.0)+(minutes*60.0)+seconds)*RADIANS_PER_SECOND_OF_TIME;
+	}
+
+	/**
+	 * Convert an RA object into radians.
+	 * @param ra The RA.
+	 * @return The RA in radians.
+	 * @see #raToRadians(int,int,double)
+	 */
+	public static double toRadians(RA ra)
+	{
+		return raToRadians(ra.getHours(),ra.getMinutes(),ra.getSeconds());
+	}
+
+	/**
+	 * Convert a sexagesimal Dec into radians. A sign of '-' always gives a negative result, even when
+	 * the value is zero (-0.0), so Decs such as "-00 00 00.00" survive a round trip.
+	 * @param sign The sign character, '+' or '-'.
+	 * @param degrees The Dec degrees.
+	 * @param minutes The Dec minutes.
+	 * @param seconds The Dec seconds.
+	 * @return The Dec in radians.
+	 * @see #RADIANS_PER_ARCSECOND
+	 */
+	public static double decToRadians(char sign,int degrees,int minutes,double seconds)
+	{
+		double radians;
+
+		radians = ((degrees*3600.0)+(minutes*60.0)+seconds)*RADIANS_PER_ARCSECOND;
+		if(sign == '-')
+			radians = -radians;
+		return radians;
+	}
+
+	/**
+	 * Convert a Dec object into radians.
+	 * @param dec The Dec.
+	 * @return The Dec in radians.
+	 * @see #decToRadians(char,int,int,double)
+	 */
+	public static double toRadians(Dec dec)
+	{
+		return decToRadians(dec.getSign(),dec.getDegrees(),dec.getMinutes(),dec.getSeconds());
+	}
+
+	/**
+	 * Create an RA object from an angle in radians.
+	 * @param radians The RA in radians.
+	 * @return A new RA object.
+	 * @see #RADIANS_PER_SECOND_OF_TIME
+	 * @see #SECONDS_ROUNDING_SCALE
+	 */
+	public static RA toRA(double radians)
+	{
+		double totalSeconds,seconds;
+		int hours,minutes;
+
+		totalSeconds = Math.rint((radians/RADIANS_PER_SECOND_OF_TIME)*SECONDS_ROUNDING_SCALE)/
+			SECONDS_ROUNDING_SCALE;
+		hours = (int)(totalSeconds/3600.0);
+		totalSeconds -= hours*3600.0;
+		minutes = (int)(totalSeconds/60.0);
+		seconds = totalSeconds-(minutes*60.0);
+		return new RA(hours,minutes,seconds);
+	}
+
+	/**
+	 * Create a Dec object from an angle in radians. Negative zero gives a sign of '-'.
+	 * @param radians The Dec in radians.
+	 * @return A new Dec object.
+	 * @see #RADIANS_PER_ARCSECOND
+	 * @see #SECONDS_ROUNDING_SCALE
+	 */
+	public static Dec toDec(double radians)
+	{
+		double totalSeconds,seconds;
+		int degrees,minutes;
+		char sign;
+
+		if((radians < 0.0)||(Double.doubleToRawLongBits(radians) == Long.MIN_VALUE))
+		{
+			sign = '-';
+			radians = -radians;
+		}
+		else
+			sign = '+';
+		totalSeconds = Math.rint((radians/RADIANS_PER_ARCSECOND)*SECONDS_ROUNDING_SCALE)/
+			SECONDS_ROUNDING_SCALE;
+		degrees = (int)(totalSeconds/3600.0);
+		totalSeconds -= degrees*3600.0;
+		minutes = (int)(totalSeconds/60.0);
+		seconds = totalSeconds-(minutes*60.0);
+		return new Dec(sign,degrees,minutes,seconds);
+	}
+}
@@ -0,0 +1,371 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterCrossMatch.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class cross-matches the stars in two Clusters by sky position.
+ * The second cluster is indexed with a ClusterSkyIndex, the first cluster is split into partitions of
+ * consecutive stars, and each partition is matched against the index in parallel using a ForkJoinPool.
+ * Matches can either be every pair of stars within the match radius, or for each star in the first cluster,
+ * the nearest star in the second cluster within the match radius (which is not necessarily one to one).
+ * Results are ordered by first cluster star index, and then by separation.
+ * @version $Revision$
+ * @see ClusterSkyIndex
+ * @see ClusterCrossMatch.Result
+ */
+public class ClusterCrossMatch
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The minimum number of first cluster stars in each partition.
+	 */
+	protected final static int MIN_PARTITION_SIZE = 4096;
+
+	/**
+	 * Find, for each star in c1, the nearest star in c2 within the match radius, using the common pool.
+	 * @param c1 The first cluster.
+	 * @param c2 The second cluster.
+	 * @param radiusArcseconds The match radius, in arc-seconds.
+	 * @return The matches.
+	 * @exception IllegalArgumentException Thrown if the radius is negative.
+	 * @see #match(org.estar.cluster.Cluster,org.estar.cluster.Cluster,double,boolean,java.util.concurrent.ForkJoinPool)
+	 */
+	public static Result matchBest(Cluster c1,Cluster c2,double radiusArcseconds) throws IllegalArgumentException
+	{
+		return match(c1,c2,radiusArcseconds,true,ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Find every pair of stars from c1 and c2 within the match radius, using the common pool.
+	 * @param c1 The first cluster.
+	 * @param c2 The second cluster.
+	 * @param radiusArcseconds The match radius, in arc-seconds.
+	 * @return The matches.
+	 * @exception IllegalArgumentException Thrown if the radius is negative.
+	 * @see #match(org.estar.cluster.Cluster,org.estar.cluster.Cluster,double,boolean,java.util.concurrent.ForkJoinPool)
+	 */
+	public static Result matchAll(Cluster c1,Cluster c2,double radiusArcseconds) throws IllegalArgumentException
+	{
+		return match(c1,c2,radiusArcseconds,false,ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Cross-match two clusters.
+	 * @param c1 The first cluster.
+	 * @param c2 The second cluster. This is the one that is indexed.
+	 * @param radiusArcseconds The match radius, in arc-seconds.
+	 * @param best If true, only the nearest c2 star to each c1 star is returned, otherwise all pairs are.
+	 * @param pool The pool to run the partitions in.
+	 * @return The matches.
+	 * @exception IllegalArgumentException Thrown if the radius is negative.
+	 * @see #createIndex
+	 * @see MatchTask
+	 */
+	public static Result match(Cluster c1,Cluster c2,double radiusArcseconds,boolean best,ForkJoinPool pool)
+		throws IllegalArgumentException
+	{
+		final List taskList = new ArrayList();
+		ClusterSkyIndex index = null;
+		MatchTask task = null;
+		Result result = null;
+		double radius;
+		int starCount,partitionSize,start,matchCount,i;
+
+		if((radiusArcseconds >= 0.0) == false)
+		{
+			throw new IllegalArgumentException("org.estar.cluster.ClusterCrossMatch:match:Illegal radius:"+
+							   radiusArcseconds);
+		}
+		radius = radiusArcseconds*ClusterCoordinates.RADIANS_PER_ARCSECOND;
+		index = createIndex(c2,radius);
+		starCount = c1.getStarListCount();
+		partitionSize = Math.max(MIN_PARTITION_SIZE,(starCount/(pool.getParallelism()*4))+1);
+		for(start = 0; start < starCount; start += partitionSize)
+			taskList.add(new MatchTask(c1,index,radius,best,start,Math.min(starCount,start+partitionSize)));
+		pool.invoke(new RecursiveAction()
+		{
+			protected void compute()
+			{
+				invokeAll(taskList);
+			}
+		});
+		// concatenate partition results in order
+		matchCount = 0;
+		for(i = 0; i < taskList.size(); i++)
+			matchCount += ((MatchTask)(taskList.get(i))).matchIndex1List.size();
+		result = new Result(matchCount);
+		matchCount = 0;
+		for(i = 0; i < taskList.size(); i++)
+		{
+			task = (MatchTask)(taskList.get(i));
+			System.arraycopy(task.matchIndex1List.array,0,result.index1Array,matchCount,
+					 task.matchIndex1List.size());
+			System.arraycopy(task.matchIndex2List.array,0,result.index2Array,matchCount,
+					 task.matchIndex2List.size());
+			System.arraycopy(task.separationList.array,0,result.separationArray,matchCount,
+					 task.separationList.size());
+			matchCount += task.matchIndex1List.size();
+		}
+		return result;
+	}
+
+	/**
+	 * Create the sky index on the second cluster. The zones are made no smaller than the match radius,
+	 * so each search only overlaps two or three zones.
+	 * @param c The cluster to index.
+	 * @param radius The match radius, in radians.
+	 * @return The index.
+	 */
+	protected static ClusterSkyIndex createIndex(Cluster c,double radius)
+	{
+		return new ClusterSkyIndex(c,Math.max(ClusterSkyIndex.DEFAULT_ZONE_HEIGHT,Math.min(radius,Math.PI)));
+	}
+
+	/**
+	 * The results of a cross-match, stored as parallel primitive arrays.
+	 */
+	public static class Result
+	{
+		/**
+		 * The first cluster star index of each match.
+		 */
+		protected int index1Array[] = null;
+		/**
+		 * The second cluster star index of each match.
+		 */
+		protected int index2Array[] = null;
+		/**
+		 * The separation of each match, in radians.
+		 */
+		protected double separationArray[] = null;
+
+		/**
+		 * Constructor.
+		 * @param count The number of matches.
+		 */
+		protected Result(int count)
+		{
+			super();
+			index1Array = new int[count];
+			index2Array = new int[count];
+			separationArray = new double[count];
+		}
+
+		/**
+		 * Return the number of matches.
+		 * @return The number of matches.
+		 */
+		public int getMatchCount()
+		{
+			return index1Array.length;
+		}
+
+		/**
+		 * Return the star list index in the first cluster of a match.
+		 * @param matchIndex The match.
+		 * @return The star list index.
+		 */
+		public int getIndex1(int matchIndex)
+		{
+			return index1Array[matchIndex];
+		}
+
+		/**
+		 * Return the star list index in the second cluster of a match.
+		 * @param matchIndex The match.
+		 * @return The star list index.
+		 */
+		public int getIndex2(int matchIndex)
+		{
+			return index2Array[matchIndex];
+		}
+
+		/**
+		 * Return the separation of a match.
+		 * @param matchIndex The match.
+		 * @return The separation in radians.
+		 */
+		public double getSeparation(int matchIndex)
+		{
+			return separationArray[matchIndex];
+		}
+
+		/**
+		 * Return the separation of a match.
+		 * @param matchIndex The match.
+		 * @return The separation in arc-seconds.
+		 */
+		public double getSeparationArcseconds(int matchIndex)
+		{
+			return separationArray[matchIndex]/ClusterCoordinates.RADIANS_PER_ARCSECOND;
+		}
+	}
+
+	/**
+	 * Task to match a partition of consecutive first cluster stars against the second cluster index.
+	 */
+	protected static class MatchTask extends RecursiveAction implements ClusterSkyIndex.StarHandler
+	{
+		/**
+		 * Serialization version id, as RecursiveAction is Serializable.
+		 */
+		private final static long serialVersionUID = 1L;
+		/**
+		 * The first cluster.
+		 */
+		protected Cluster cluster = null;
+		/**
+		 * The index on the second cluster.
+		 */
+		protected ClusterSkyIndex index = null;
+		/**
+		 * The match radius, in radians.
+		 */
+		protected double radius;
+		/**
+		 * Whether to only keep the nearest match.
+		 */
+		protected boolean best;
+		/**
+		 * The first star in the partition.
+		 */
+		protected int start;
+		/**
+		 * The index after the last star in the partition.
+		 */
+		protected int end;
+		/**
+		 * The first cluster star index of each match found.
+		 */
+		protected ClusterSkyIndex.IntList matchIndex1List = null;
+		/**
+		 * The second cluster star index of each match found.
+		 */
+		protected ClusterSkyIndex.IntList matchIndex2List = null;
+		/**
+		 * The separation of each match found.
+		 */
+		protected ClusterSkyIndex.DoubleList separationList = null;
+		/**
+		 * The first cluster star currently being matched.
+		 */
+		protected int currentIndex1;
+
+		/**
+		 * Constructor.
+		 * @param c The first cluster.
+		 * @param i The index on the second cluster.
+		 * @param r The match radius, in radians.
+		 * @param b Whether to only keep the nearest match.
+		 * @param s The first star in the partition.
+		 * @param e The index after the last star in the partition.
+		 */
+		public MatchTask(Cluster c,ClusterSkyIndex i,double r,boolean b,int s,int e)
+		{
+			super();
+			cluster = c;
+			index = i;
+			radius = r;
+			best = b;
+			start = s;
+			end = e;
+		}
+
+		/**
+		 * Match each star in the partition.
+		 */
+		protected void compute()
+		{
+			double ra,dec;
+			int firstMatch;
+
+			matchIndex1List = new ClusterSkyIndex.IntList();
+			matchIndex2List = new ClusterSkyIndex.IntList();
+			separationList = new ClusterSkyIndex.DoubleList();
+			for(currentIndex1 = start; currentIndex1 < end; currentIndex1++)
+			{
+				ra = cluster.getRARadians(currentIndex1);
+				dec = cluster.getDecRadians(currentIndex1);
+				if(Double.isNaN(ra)||Double.isNaN(dec))
+					continue;
+				firstMatch = matchIndex1List.size();
+				index.coneSearch(ra,dec,radius,this);
+				if(best == false)
+					sortMatches(firstMatch);
+			}
+		}
+
+		/**
+		 * Called by the index for each second cluster star within the radius of the current star.
+		 * @param starIndex The second cluster star index.
+		 * @param separation The separation, in radians.
+		 */
+		public void handleStar(int starIndex,double separation)
+		{
+			int last;
+
+			last = matchIndex1List.size()-1;
+			if(best&&(last >= 0)&&(matchIndex1List.array[last] == currentIndex1))
+			{
+				if(separation < separationList.array[last])
+				{
+					matchIndex2List.array[last] = starIndex;
+					separationList.array[last] = separation;
+				}
+				return;
+			}
+			matchIndex1List.add(currentIndex1);
+			matchIndex2List.add(starIndex);
+			separationList.add(separation);
+		}
+
+		/**
+		 * Sort the matches of the current star by separation, using an insertion sort as there
+		 * are usually very few.
+		 * @param firstMatch The index in the lists of the current star's first match.
+		 */
+		protected void sortMatches(int firstMatch)
+		{
+			double separation;
+			int i,j,index2;
+
+			for(i = firstMatch+1; i < separationList.size(); i++)
+			{
+				separation = separationList.array[i];
+				index2 = matchIndex2List.array[i];
+				for(j = i; (j > firstMatch)&&(separationList.array[j-1] > separation); j--)
+				{
+					separationList.array[j] = separationList.array[j-1];
+					matchIndex2List.array[j] = matchIndex2List.array[j-1];
+				}
+				separationList.array[j] = separation;
+				matchIndex2List.array[j] = index2;
+			}
+		}
+	}
+}
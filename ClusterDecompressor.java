@@ -0,0 +1,413 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterDecompressor.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * This class detects compressed cluster files by their magic bytes, and decompresses them while they are parsed.
+ * gzip data (including multi-member files) is decompressed with GZIPInputStream. zstd data is decompressed
+ * with com.github.luben.zstd.ZstdInputStream, if it is on the classpath; it is loaded by reflection,
+ * so it is not needed to build or run this package.
+ * Compressed data is read and decompressed in a separate thread, which passes blocks of decompressed bytes
+ * to the parsing thread through a bounded queue, so reading and decompression overlap with parsing.
+ * Uncompressed data is returned unchanged.
+ * @version $Revision$
+ * @see Cluster#load(java.io.File)
+ * @see Cluster#load(java.net.URL)
+ */
+public class ClusterDecompressor
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * Format of uncompressed data.
+	 */
+	public final static int FORMAT_NONE = 0;
+	/**
+	 * Format of gzip compressed data.
+	 */
+	public final static int FORMAT_GZIP = 1;
+	/**
+	 * Format of zstd compressed data.
+	 */
+	public final static int FORMAT_ZSTD = 2;
+	/**
+	 * The number of magic bytes needed to identify the format.
+	 */
+	public final static int MAGIC_LENGTH = 4;
+	/**
+	 * The name of the class used to decompress zstd data.
+	 */
+	public final static String ZSTD_CLASS_NAME = "com.github.luben.zstd.ZstdInputStream";
+	/**
+	 * The size of each block of decompressed data passed between the threads.
+	 */
+	protected final static int BLOCK_SIZE = 65536;
+	/**
+	 * The maximum number of decompressed blocks waiting to be parsed.
+	 */
+	protected final static int QUEUE_LENGTH = 4;
+
+	/**
+	 * Return the format of some data, from its first bytes.
+	 * @param magic The first bytes of the data.
+	 * @param length The number of bytes in magic, which may be less than MAGIC_LENGTH for short data.
+	 * @return FORMAT_GZIP, FORMAT_ZSTD or FORMAT_NONE.
+	 */
+	public static int getFormat(byte magic[],int length)
+	{
+		if((length >= 2)&&((magic[0] & 0xff) == 0x1f)&&((magic[1] & 0xff) == 0x8b))
+			return FORMAT_GZIP;
+		if((length >= 4)&&((magic[0] & 0xff) == 0x28)&&((magic[1] & 0xff) == 0xb5)&&
+		   ((magic[2] & 0xff) == 0x2f)&&((magic[3] & 0xff) == 0xfd))
+			return FORMAT_ZSTD;
+		return FORMAT_NONE;
+	}
+
+	/**
+	 * Return a stream of the decompressed contents of a stream. If the stream is compressed, a thread is started
+	 * to decompress it. Closing the returned stream stops the thread and closes the original stream.
+	 * If this method fails, the original stream is closed.
+	 * @param is The stream to read, which may be compressed.
+	 * @return A stream of the uncompressed data.
+	 * @exception IOException Thrown if the magic bytes could not be read, the compressed header is
+	 *            invalid, or the data is zstd compressed and no zstd decompressor is available.
+	 * @see #getFormat
+	 * @see PipelinedInputStream
+	 */
+	public static InputStream open(InputStream is) throws IOException
+	{
+		BufferedInputStream bis = null;
+		byte magic[] = new byte[MAGIC_LENGTH];
+		int length,count;
+
+		try
+		{
+			bis = new BufferedInputStream(is,BLOCK_SIZE);
+			bis.mark(MAGIC_LENGTH);
+			length = 0;
+			count = 0;
+			while((length < MAGIC_LENGTH)&&(count >= 0))
+			{
+				count = bis.read(magic,length,MAGIC_LENGTH-length);
+				if(count > 0)
+					length += count;
+			}
+			bis.reset();
+			switch(getFormat(magic,length))
+			{
+				case FORMAT_GZIP:
+					return new PipelinedInputStream(new GZIPInputStream(bis,BLOCK_SIZE));
+				case FORMAT_ZSTD:
+					return new PipelinedInputStream(createZstdInputStream(bis));
+				default:
+					return bis;
+			}
+		}
+		catch(IOException e)
+		{
+			is.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Return a reader of the decompressed contents of a stream, in the platform default character set.
+	 * @param is The stream to read, which may be compressed.
+	 * @return A reader of the uncompressed data.
+	 * @exception IOException Thrown if the stream could not be opened.
+	 * @see #open
+	 */
+	public static BufferedReader openReader(InputStream is) throws IOException
+	{
+		return new BufferedReader(new InputStreamReader(open(is),Cluster.FILE_CHARSET));
+	}
+
+	/**
+	 * Create a zstd decompressing stream, using the class named ZSTD_CLASS_NAME.
+	 * @param is The compressed stream.
+	 * @return The decompressing stream.
+	 * @exception IOException Thrown if the class is not available, or the stream could not be created.
+	 * @see #ZSTD_CLASS_NAME
+	 */
+	protected static InputStream createZstdInputStream(InputStream is) throws IOException
+	{
+		Class zstdClass = null;
+
+		try
+		{
+			zstdClass = Class.forName(ZSTD_CLASS_NAME);
+			return (InputStream)(zstdClass.getConstructor(new Class[] {InputStream.class}).
+					     newInstance(new Object[] {is}));
+		}
+		catch(ClassNotFoundException e)
+		{
+			throw new IOException("org.estar.cluster.ClusterDecompressor:createZstdInputStream:"+
+					      "data is zstd compressed, but "+ZSTD_CLASS_NAME+" is not on the classpath.");
+		}
+		catch(java.lang.reflect.InvocationTargetException e)
+		{
+			if(e.getCause() instanceof IOException)
+				throw (IOException)(e.getCause());
+			throw new IOException("org.estar.cluster.ClusterDecompressor:createZstdInputStream:"+
+					      "failed:"+e.getCause(),e.getCause());
+		}
+		catch(Exception e)
+		{
+			throw new IOException("org.estar.cluster.ClusterDecompressor:createZstdInputStream:"+
+					      "failed:"+e,e);
+		}
+	}
+
+	/**
+	 * InputStream that reads another stream in a separate thread, a block at a time, and passes the blocks
+	 * to the reading thread through a bounded queue. Blocks are recycled once they have been read.
+	 * An exception thrown by the source stream is rethrown to the reader once the blocks read before it
+	 * have been consumed.
+	 */
+	protected static class PipelinedInputStream extends InputStream implements Runnable
+	{
+		/**
+		 * Block put on the queue after the last block of data, or after an error.
+		 */
+		protected final static Block END = new Block(0);
+		/**
+		 * The stream read by the thread.
+		 */
+		protected InputStream source = null;
+		/**
+		 * The thread reading the source stream.
+		 */
+		protected Thread thread = null;
+		/**
+		 * Blocks of data waiting to be read.
+		 */
+		protected BlockingQueue fullQueue = null;
+		/**
+		 * Blocks that have been read and can be reused.
+		 */
+		protected BlockingQueue emptyQueue = null;
+		/**
+		 * The block currently being read, or null.
+		 */
+		protected Block block = null;
+		/**
+		 * The position of the next byte to read in the current block.
+		 */
+		protected int position = 0;
+		/**
+		 * The exception thrown by the source stream, or null.
+		 */
+		protected volatile Throwable error = null;
+		/**
+		 * Whether this stream has been closed.
+		 */
+		protected volatile boolean closed = false;
+
+		/**
+		 * Constructor. Starts the thread reading the source stream.
+		 * @param s The stream to read.
+		 */
+		public PipelinedInputStream(InputStream s)
+		{
+			super();
+			int i;
+
+			source = s;
+			// room for every block and END
+			fullQueue = new ArrayBlockingQueue(QUEUE_LENGTH+2);
+			emptyQueue = new ArrayBlockingQueue(QUEUE_LENGTH+1);
+			for(i = 0; i < QUEUE_LENGTH+1; i++)
+				emptyQueue.add(new Block(BLOCK_SIZE));
+			thread = new Thread(this,"ClusterDecompressor");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/**
+		 * Thread method. Reads the source stream into blocks, and queues them, until the end of the
+		 * stream is reached, an error occurs, or the stream is closed.
+		 */
+		public void run()
+		{
+			Block b = null;
+			int count;
+
+			try
+			{
+				count = 0;
+				while((count >= 0)&&(closed == false))
+				{
+					b = (Block)(emptyQueue.take());
+					b.length = 0;
+					// fill the block, so the reader is not passed lots of small blocks
+					while((b.length < b.data.length)&&((count = source.read(b.data,b.length,
+									  b.data.length-b.length)) >= 0))
+						b.length += count;
+					if(b.length > 0)
+						fullQueue.put(b);
+				}
+			}
+			catch(InterruptedException e)
+			{
+				// closed
+			}
+			catch(Throwable t)
+			{
+				error = t;
+			}
+			finally
+			{
+				// the full queue always has room for END
+				if(closed == false)
+					fullQueue.offer(END);
+			}
+		}
+
+		/**
+		 * Read a byte.
+		 * @return The byte, or -1 at the end of the stream.
+		 * @exception IOException Thrown if the source stream failed, or this stream is closed.
+		 */
+		public int read() throws IOException
+		{
+			if(nextBlock() == false)
+				return -1;
+			return block.data[position++] & 0xff;
+		}
+
+		/**
+		 * Read bytes into an array.
+		 * @param buffer The array.
+		 * @param offset The index in buffer of the first byte to read.
+		 * @param length The maximum number of bytes to read.
+		 * @return The number of bytes read, or -1 at the end of the stream.
+		 * @exception IOException Thrown if the source stream failed, or this stream is closed.
+		 */
+		public int read(byte buffer[],int offset,int length) throws IOException
+		{
+			int count;
+
+			if(length == 0)
+				return 0;
+			if(nextBlock() == false)
+				return -1;
+			count = Math.min(length,block.length-position);
+			System.arraycopy(block.data,position,buffer,offset,count);
+			position += count;
+			return count;
+		}
+
+		/**
+		 * Return the number of bytes that can be read without blocking.
+		 * @return The number of bytes left in the current block.
+		 */
+		public int available()
+		{
+			if(block == null)
+				return 0;
+			return block.length-position;
+		}
+
+		/**
+		 * Make sure there is an unread byte in the current block, waiting for the next block if needed.
+		 * @return true if there is a byte to read, false at the end of the stream.
+		 * @exception IOException Thrown if the source stream failed, or this stream is closed.
+		 */
+		protected boolean nextBlock() throws IOException
+		{
+			if(closed)
+				throw new IOException(this.getClass().getName()+":nextBlock:Stream closed.");
+			if((block != null)&&(position < block.length))
+				return true;
+			if(block == END)
+				return false;
+			if(block != null)
+				emptyQueue.offer(block);
+			try
+			{
+				block = (Block)(fullQueue.take());
+			}
+			catch(InterruptedException e)
+			{
+				block = null;
+				throw new InterruptedIOException(this.getClass().getName()+":nextBlock:Interrupted.");
+			}
+			position = 0;
+			if(block == END)
+			{
+				if(error instanceof IOException)
+					throw (IOException)error;
+				if(error != null)
+				{
+					throw new IOException(this.getClass().getName()+":nextBlock:Decompression failed:"+
+							      error,error);
+				}
+				return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Close the stream. The thread is stopped and the source stream is closed.
+		 * @exception IOException Thrown if the source stream could not be closed.
+		 */
+		public void close() throws IOException
+		{
+			if(closed)
+				return;
+			closed = true;
+			thread.interrupt();
+			source.close();
+		}
+	}
+
+	/**
+	 * A block of data passed between the threads.
+	 */
+	protected static class Block
+	{
+		/**
+		 * The data.
+		 */
+		protected byte data[] = null;
+		/**
+		 * The number of bytes of data in the block.
+		 */
+		protected int length = 0;
+
+		/**
+		 * Constructor.
+		 * @param size The size of the block.
+		 */
+		public Block(int size)
+		{
+			super();
+			data = new byte[size];
+		}
+	}
+}
@@ -0,0 +1,858 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterExternalSort.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.util.*;
+
+/**
+ * This class merges and sorts cluster files that are too large to be loaded into memory together.
+ * The input files are streamed with ClusterReader. Stars are collected into runs of at most runSize stars,
+ * and each run is sorted and spilled to a temporary file. The runs are then merged, k-way, into the
+ * output file. If there are more runs than mergeWay, intermediate merge passes combine groups of runs
+ * until few enough remain. Memory use therefore depends on runSize and mergeWay, not the size of the inputs.
+ * <p>
+ * The sort keys are parsed from the formatted star lines, so runs are sorted by exactly the keys the merge
+ * reads back from the run files.
+ * Stars can be sorted by RA, Dec or identifier (field number, star number). Stars with an equal key are
+ * ordered by the remaining keys (RA, Dec, field number, star number), and then by their order in the inputs.
+ * All the inputs must have the same colour header (colour count and colour names). The output has the
+ * header of the first input, and optionally a new comment line. Star lines are written as ClusterWriter
+ * formats them.
+ * <p>
+ * If duplicate removal is enabled, stars with the same RA, Dec, field number and star number as the
+ * previous output star are dropped, so only the first occurrence in the inputs is kept.
+ * @version $Revision$
+ * @see ClusterReader
+ * @see ClusterWriter
+ */
+public class ClusterExternalSort
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * Sort order: by RA, then Dec.
+	 */
+	public final static int SORT_RA = 0;
+	/**
+	 * Sort order: by Dec, then RA.
+	 */
+	public final static int SORT_DEC = 1;
+	/**
+	 * Sort order: by field number, then star number.
+	 */
+	public final static int SORT_IDENTIFIER = 2;
+	/**
+	 * The default maximum number of stars held in memory in one run.
+	 */
+	public final static int DEFAULT_RUN_SIZE = 100000;
+	/**
+	 * The default maximum number of runs merged at once.
+	 */
+	public final static int DEFAULT_MERGE_WAY = 64;
+	/**
+	 * The sort order.
+	 * @see #SORT_RA
+	 * @see #SORT_DEC
+	 * @see #SORT_IDENTIFIER
+	 */
+	protected int sortOrder = SORT_RA;
+	/**
+	 * Whether duplicate stars are removed.
+	 */
+	protected boolean unique = false;
+	/**
+	 * The maximum number of stars held in memory in one run.
+	 */
+	protected int runSize = DEFAULT_RUN_SIZE;
+	/**
+	 * The maximum number of runs merged at once.
+	 */
+	protected int mergeWay = DEFAULT_MERGE_WAY;
+	/**
+	 * The directory the run files are created in, or null for the default temporary directory.
+	 */
+	protected File tempDirectory = null;
+	/**
+	 * A comment to put in the output header, or null to use the comment of the first input.
+	 */
+	protected String commentString = null;
+	/**
+	 * The number of stars read from the inputs by the last sort.
+	 */
+	protected long inputStarCount = 0;
+	/**
+	 * The number of stars written to the output by the last sort.
+	 */
+	protected long outputStarCount = 0;
+	/**
+	 * The number of runs spilled to temporary files by the last sort.
+	 */
+	protected int runCount = 0;
+	/**
+	 * A star the position of each star line is parsed into, to get its sort keys. Reused for every line.
+	 * @see Entry#Entry(java.lang.String,int,org.estar.cluster.ClusterObject)
+	 */
+	protected ClusterObject keyStar = new ClusterObject();
+
+	/**
+	 * Default constructor.
+	 */
+	public ClusterExternalSort()
+	{
+		super();
+	}
+
+	/**
+	 * Set the sort order.
+	 * @param order The sort order, one of SORT_RA, SORT_DEC or SORT_IDENTIFIER.
+	 * @exception IllegalArgumentException Thrown if the order is not recognised.
+	 * @see #sortOrder
+	 */
+	public void setSortOrder(int order) throws IllegalArgumentException
+	{
+		if((order != SORT_RA)&&(order != SORT_DEC)&&(order != SORT_IDENTIFIER))
+		{
+			throw new IllegalArgumentException(this.getClass().getName()+":setSortOrder:Illegal order:"+
+							   order);
+		}
+		sortOrder = order;
+	}
+
+	public int getSortOrder()
+	{
+		return sortOrder;
+	}
+
+	/**
+	 * Set whether duplicate stars are removed.
+	 * @param u true to remove duplicates.
+	 * @see #unique
+	 */
+	public void setUnique(boolean u)
+	{
+		unique = u;
+	}
+
+	public boolean getUnique()
+	{
+		return unique;
+	}
+
+	/**
+	 * Set the maximum number of stars held in memory in one run.
+	 * @param s The run size, which must be at least 1.
+	 * @exception IllegalArgumentException Thrown if the size is less than 1.
+	 * @see #runSize
+	 */
+	public void setRunSize(int s) throws IllegalArgumentException
+	{
+		if(s < 1)
+		{
+			throw new IllegalArgumentException(this.getClass().getName()+":setRunSize:Illegal size:"+s);
+		}
+		runSize = s;
+	}
+
+	public int getRunSize()
+	{
+		return runSize;
+	}
+
+	/**
+	 * Set the maximum number of runs merged at once, which limits the number of files open during a merge.
+	 * @param w The merge way, which must be at least 2.
+	 * @exception IllegalArgumentException Thrown if the way is less than 2.
+	 * @see #mergeWay
+	 */
+	public void setMergeWay(int w) throws IllegalArgumentException
+	{
+		if(w < 2)
+		{
+			throw new IllegalArgumentException(this.getClass().getName()+":setMergeWay:Illegal way:"+w);
+		}
+		mergeWay = w;
+	}
+
+	public int getMergeWay()
+	{
+		return mergeWay;
+	}
+
+	/**
+	 * Set the directory the run files are created in.
+	 * @param d The directory, or null for the default temporary directory.
+	 * @see #tempDirectory
+	 */
+	public void setTempDirectory(File d)
+	{
+		tempDirectory = d;
+	}
+
+	/**
+	 * Set the comment line of the output header.
+	 * @param s The comment, or null to use the comment of the first input.
+	 * @see #commentString
+	 */
+	public void setCommentString(String s)
+	{
+		commentString = s;
+	}
+
+	public long getInputStarCount()
+	{
+		return inputStarCount;
+	}
+
+	public long getOutputStarCount()
+	{
+		return outputStarCount;
+	}
+
+	/**
+	 * Return the number of duplicate stars removed by the last sort.
+	 * @return The number of duplicates.
+	 */
+	public long getDuplicateCount()
+	{
+		return inputStarCount-outputStarCount;
+	}
+
+	public int getRunCount()
+	{
+		return runCount;
+	}
+
+	/**
+	 * Sort and merge the input files into the output file.
+	 * @param inputFiles The cluster files to read, which may be gzip (or zstd) compressed.
+	 * @param outputFile The file to write the sorted cluster to.
+	 * @exception IOException Thrown if a read or write fails.
+	 * @exception IllegalArgumentException Thrown if the inputs have different colour headers, or a star
+	 *            line could not be parsed.
+	 * @see #sort(java.io.File[],java.io.Writer)
+	 */
+	public void sort(File inputFiles[],File outputFile) throws IOException, IllegalArgumentException
+	{
+		Writer w = null;
+
+		w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile),Cluster.FILE_CHARSET));
+		try
+		{
+			sort(inputFiles,w);
+		}
+		finally
+		{
+			w.close();
+		}
+	}
+
+	/**
+	 * Sort and merge the input files, writing the sorted cluster to a Writer. The run files are
+	 * deleted before this returns, whether or not the sort succeeded.
+	 * @param inputFiles The cluster files to read, which may be gzip (or zstd) compressed.
+	 * @param w The writer to write the sorted cluster to. It is flushed but not closed.
+	 * @exception IOException Thrown if a read or write fails.
+	 * @exception IllegalArgumentException Thrown if there are no inputs, the inputs have different colour
+	 *            headers, or a star line could not be parsed.
+	 * @see #createRuns
+	 * @see #mergeRuns
+	 */
+	public void sort(File inputFiles[],Writer w) throws IOException, IllegalArgumentException
+	{
+		ClusterWriter cw = null;
+		Cluster header = null;
+		List runFileList = null;
+		List groupList = null;
+		File runFile = null;
+		int index;
+
+		if(inputFiles.length == 0)
+		{
+			throw new IllegalArgumentException(this.getClass().getName()+":sort:No input files.");
+		}
+		inputStarCount = 0;
+		outputStarCount = 0;
+		runCount = 0;
+		runFileList = new ArrayList();
+		try
+		{
+			header = createRuns(inputFiles,runFileList);
+			// intermediate passes, until the runs can all be merged at once
+			while(runFileList.size() > mergeWay)
+			{
+				groupList = runFileList;
+				runFileList = new ArrayList();
+				for(index = 0; index < groupList.size(); index += mergeWay)
+				{
+					runFile = createRunFile();
+					runFileList.add(runFile);
+					mergeRuns(groupList.subList(index,Math.min(index+mergeWay,groupList.size())),
+						  runFile);
+				}
+			}
+			// final pass
+			if(commentString != null)
+				header.commentString = commentString;
+			cw = new ClusterWriter(w);
+			cw.writeHeader(header,"");
+			cw.flush();
+			outputStarCount = mergeRuns(runFileList,w,unique);
+			w.flush();
+		}
+		finally
+		{
+			for(index = 0; index < runFileList.size(); index++)
+				((File)(runFileList.get(index))).delete();
+			if(groupList != null)
+			{
+				for(index = 0; index < groupList.size(); index++)
+					((File)(groupList.get(index))).delete();
+			}
+		}
+	}
+
+	/**
+	 * Read the input files, and spill the stars into sorted run files.
+	 * @param inputFiles The cluster files to read.
+	 * @param runFileList A list the run files are added to as they are created.
+	 * @return The header of the first input file.
+	 * @exception IOException Thrown if a read or write fails.
+	 * @exception IllegalArgumentException Thrown if the inputs have different colour headers, or a star
+	 *            line could not be parsed.
+	 * @see #checkHeader
+	 * @see #spillRun
+	 */
+	protected Cluster createRuns(File inputFiles[],List runFileList) throws IOException, IllegalArgumentException
+	{
+		ClusterReader cr = null;
+		ClusterWriter formatter = null;
+		ClusterObject co = null;
+		StringBuilder sb = null;
+		Cluster header = null;
+		List entryList = null;
+		int index;
+
+		sb = new StringBuilder(256);
+		formatter = new ClusterWriter(sb);
+		entryList = new ArrayList(Math.min(runSize,DEFAULT_RUN_SIZE));
+		for(index = 0; index < inputFiles.length; index++)
+		{
+			cr = ClusterReader.open(inputFiles[index]);
+			try
+			{
+				if(header == null)
+					header = cr.getHeader();
+				else
+					checkHeader(header,cr.getHeader(),inputFiles[0],inputFiles[index]);
+				while((co = cr.readStar()) != null)
+				{
+					if(Double.isNaN(co.getRARadians())||Double.isNaN(co.getDecRadians()))
+					{
+						throw new IllegalArgumentException(this.getClass().getName()+
+							 ":createRuns:Star "+cr.starIndex+" of "+inputFiles[index]+
+							 " has no RA/Dec.");
+					}
+					sb.setLength(0);
+					formatter.formatStar(sb,co,"");
+					entryList.add(new Entry(sb.toString(),0,keyStar));
+					inputStarCount++;
+					if(entryList.size() >= runSize)
+						spillRun(entryList,runFileList);
+				}
+			}
+			finally
+			{
+				cr.close();
+			}
+		}
+		if((entryList.size() > 0)||(runFileList.size() == 0))
+			spillRun(entryList,runFileList);
+		return header;
+	}
+
+	/**
+	 * Check that a cluster header has the same colour count and colour names as the first input.
+	 * @param header The header of the first input.
+	 * @param h The header to check.
+	 * @param firstFile The first input file, used in the error message.
+	 * @param file The file the header was read from, used in the error message.
+	 * @exception IllegalArgumentException Thrown if the headers differ.
+	 */
+	protected void checkHeader(Cluster header,Cluster h,File firstFile,File file) throws IllegalArgumentException
+	{
+		int index;
+
+		if(h.getColourCount() != header.getColourCount())
+		{
+			throw new IllegalArgumentException(this.getClass().getName()+":checkHeader:Colour count "+
+							   h.getColourCount()+" of "+file+
+							   " does not match colour count "+header.getColourCount()+
+							   " of "+firstFile+".");
+		}
+		for(index = 0; index < header.getColourCount(); index++)
+		{
+			if(h.getColourName(index).equals(header.getColourName(index)) == false)
+			{
+				throw new IllegalArgumentException(this.getClass().getName()+":checkHeader:Colour "+
+							   index+" of "+file+" is "+h.getColourName(index)+
+							   " but is "+header.getColourName(index)+" in "+firstFile+".");
+			}
+		}
+	}
+
+	/**
+	 * Sort the buffered entries, write them to a new run file, and empty the buffer.
+	 * The sort is stable, so entries with equal keys stay in input order.
+	 * @param entryList The list of entries.
+	 * @param runFileList The list of run files, which the new run file is added to.
+	 * @exception IOException Thrown if the write fails.
+	 * @see EntryComparator
+	 */
+	protected void spillRun(List entryList,List runFileList) throws IOException
+	{
+		Writer w = null;
+		File runFile = null;
+		int index;
+
+		Collections.sort(entryList,new EntryComparator(sortOrder));
+		runFile = createRunFile();
+		runFileList.add(runFile);
+		runCount++;
+		w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(runFile),Cluster.FILE_CHARSET));
+		try
+		{
+			for(index = 0; index < entryList.size(); index++)
+			{
+				w.write(((Entry)(entryList.get(index))).line);
+				w.write('\n');
+			}
+		}
+		finally
+		{
+			w.close();
+		}
+		entryList.clear();
+	}
+
+	/**
+	 * Create an empty temporary run file, in tempDirectory.
+	 * @return The file.
+	 * @exception IOException Thrown if the file could not be created.
+	 * @see #tempDirectory
+	 */
+	protected File createRunFile() throws IOException
+	{
+		File f = null;
+
+		f = File.createTempFile("cluster-run",".tmp",tempDirectory);
+		f.deleteOnExit();
+		return f;
+	}
+
+	/**
+	 * Merge a group of run files into a new run file. The group's files are deleted afterwards.
+	 * @param groupList The run files to merge.
+	 * @param runFile The run file to write.
+	 * @exception IOException Thrown if a read or write fails.
+	 * @see #mergeRuns(java.util.List,java.io.Writer,boolean)
+	 */
+	protected void mergeRuns(List groupList,File runFile) throws IOException
+	{
+		Writer w = null;
+		int index;
+
+		w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(runFile),Cluster.FILE_CHARSET));
+		try
+		{
+			mergeRuns(groupList,w,false);
+		}
+		finally
+		{
+			w.close();
+		}
+		for(index = 0; index < groupList.size(); index++)
+			((File)(groupList.get(index))).delete();
+	}
+
+	/**
+	 * K-way merge a list of sorted run files onto a writer, using a priority queue holding the
+	 * next entry of each run. Entries with equal keys are taken from the earlier run first, so the merge
+	 * keeps input order.
+	 * @param runFileList The run files to merge, in input order.
+	 * @param w The writer to write star lines to.
+	 * @param removeDuplicates Whether to drop stars equal (in all keys) to the previous star written.
+	 * @return The number of stars written.
+	 * @exception IOException Thrown if a read or write fails.
+	 * @see #readEntry
+	 * @see EntryComparator
+	 */
+	protected long mergeRuns(List runFileList,Writer w,boolean removeDuplicates) throws IOException
+	{
+		BufferedReader readers[] = null;
+		PriorityQueue queue = null;
+		EntryComparator comparator = null;
+		Entry entry = null;
+		Entry previous = null;
+		Entry next = null;
+		long count;
+		int index;
+
+		comparator = new EntryComparator(sortOrder);
+		queue = new PriorityQueue(Math.max(1,runFileList.size()),comparator);
+		readers = new BufferedReader[runFileList.size()];
+		count = 0;
+		try
+		{
+			for(index = 0; index < readers.length; index++)
+			{
+				readers[index] = new BufferedReader(new InputStreamReader(new FileInputStream(
+							(File)(runFileList.get(index))),Cluster.FILE_CHARSET));
+				entry = readEntry(readers[index],index);
+				if(entry != null)
+					queue.add(entry);
+			}
+			while(queue.isEmpty() == false)
+			{
+				entry = (Entry)(queue.poll());
+				if((removeDuplicates == false)||(previous == null)||
+				   (comparator.compareKeys(previous,entry) != 0))
+				{
+					w.write(entry.line);
+					w.write('\n');
+					count++;
+					previous = entry;
+				}
+				next = readEntry(readers[entry.source],entry.source);
+				if(next != null)
+					queue.add(next);
+			}
+		}
+		finally
+		{
+			for(index = 0; index < readers.length; index++)
+			{
+				if(readers[index] != null)
+					readers[index].close();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Read the next star line of a run file, and parse out its sort keys.
+	 * @param r The reader of the run file.
+	 * @param source The index of the run in the merge.
+	 * @return A new entry, or null if the end of the run has been reached.
+	 * @exception IOException Thrown if the read fails.
+	 * @see Entry#Entry(java.lang.String,int,org.estar.cluster.ClusterObject)
+	 */
+	protected Entry readEntry(BufferedReader r,int source) throws IOException
+	{
+		String s = null;
+
+		s = r.readLine();
+		if(s == null)
+			return null;
+		return new Entry(s,source,keyStar);
+	}
+
+	/**
+	 * Main program. Sorts and merges cluster files.
+	 * @param args The arguments.
+	 */
+	public static void main(String args[])
+	{
+		ClusterExternalSort sorter = null;
+		Writer w = null;
+		List inputFileList = null;
+		String outputFilename = null;
+
+		sorter = new ClusterExternalSort();
+		inputFileList = new ArrayList();
+		for(int i = 0; i < args.length; i++)
+		{
+		    if(args[i].equals("-output")||args[i].equals("-o"))
+		    {
+			if((i+1) < args.length)
+			{
+			    outputFilename = args[i+1];
+			    i++;
+			}
+			else
+			    System.err.println("ClusterExternalSort:-output requires a filename.");
+		    }
+		    else if(args[i].equals("-sort")||args[i].equals("-s"))
+		    {
+			if((i+1) < args.length)
+			{
+			    if(args[i+1].equals("ra"))
+				sorter.setSortOrder(SORT_RA);
+			    else if(args[i+1].equals("dec"))
+				sorter.setSortOrder(SORT_DEC);
+			    else if(args[i+1].equals("id"))
+				sorter.setSortOrder(SORT_IDENTIFIER);
+			    else
+				System.err.println("ClusterExternalSort:-sort "+args[i+1]+" not recognized.");
+			    i++;
+			}
+			else
+			    System.err.println("ClusterExternalSort:-sort requires ra, dec or id.");
+		    }
+		    else if(args[i].equals("-unique")||args[i].equals("-u"))
+		    {
+			sorter.setUnique(true);
+		    }
+		    else if(args[i].equals("-run")||args[i].equals("-r"))
+		    {
+			if((i+1) < args.length)
+			{
+			    sorter.setRunSize(Integer.parseInt(args[i+1]));
+			    i++;
+			}
+			else
+			    System.err.println("ClusterExternalSort:-run requires a number.");
+		    }
+		    else if(args[i].equals("-temp")||args[i].equals("-t"))
+		    {
+			if((i+1) < args.length)
+			{
+			    sorter.setTempDirectory(new File(args[i+1]));
+			    i++;
+			}
+			else
+			    System.err.println("ClusterExternalSort:-temp requires a directory.");
+		    }
+		    else if(args[i].equals("-comment")||args[i].equals("-c"))
+		    {
+			if((i+1) < args.length)
+			{
+			    sorter.setCommentString(args[i+1]);
+			    i++;
+			}
+			else
+			    System.err.println("ClusterExternalSort:-comment requires a string.");
+		    }
+		    else if(args[i].equals("-help")||args[i].equals("-h"))
+		    {
+			System.out.println("ClusterExternalSort Help");
+			System.out.println("java ClusterExternalSort [-o[utput] <file name>][-s[ort] ra|dec|id]"+
+					   "[-u[nique]][-r[un] <stars>][-t[emp] <directory>][-c[omment] <string>]"+
+					   "[-h[elp]] <file name> ...");
+			System.out.println("\t-output is the file to save to, stdout is used if not specified.");
+			System.out.println("\t-sort is the sort order, by RA (default), Dec or identifier.");
+			System.out.println("\t-unique removes duplicate stars.");
+			System.out.println("\t-run is the number of stars sorted in memory at once.");
+			System.out.println("\t-temp is the directory to put the temporary run files in.");
+			System.out.println("\t-comment is the comment line of the output header.");
+			System.exit(0);
+		    }
+		    else if(args[i].startsWith("-"))
+			System.err.println("ClusterExternalSort:"+args[i]+" not recognized.");
+		    else
+			inputFileList.add(new File(args[i]));
+		}// end for
+		if(inputFileList.size() == 0)
+		{
+			System.err.println("ClusterExternalSort: java ClusterExternalSort -help");
+			System.exit(1);
+		}
+		try
+		{
+			if(outputFilename != null)
+			{
+				sorter.sort((File[])(inputFileList.toArray(new File[inputFileList.size()])),
+					    new File(outputFilename));
+			}
+			else
+			{
+				w = new BufferedWriter(new OutputStreamWriter(System.out,Cluster.FILE_CHARSET));
+				sorter.sort((File[])(inputFileList.toArray(new File[inputFileList.size()])),w);
+			}
+			System.err.println("ClusterExternalSort:Read "+sorter.getInputStarCount()+" stars, wrote "+
+					   sorter.getOutputStarCount()+" stars, using "+sorter.getRunCount()+" runs.");
+		}
+		catch (Exception e)
+		{
+			System.err.println("ClusterExternalSort: sort failed:"+e);
+			e.printStackTrace(System.err);
+			System.exit(2);
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * A star being sorted: its sort keys, the star line, and the run it came from.
+	 */
+	protected static class Entry
+	{
+		/**
+		 * RA in radians.
+		 */
+		protected double ra;
+		/**
+		 * Dec in radians.
+		 */
+		protected double dec;
+		/**
+		 * Field number.
+		 */
+		protected int fieldNumber;
+		/**
+		 * Star number.
+		 */
+		protected int starNumber;
+		/**
+		 * The star line, as formatted by ClusterWriter, without a newline.
+		 */
+		protected String line = null;
+		/**
+		 * The index of the run this entry was read from, used to keep input order during a merge.
+		 */
+		protected int source;
+
+		/**
+		 * Constructor from a formatted star line. Only the identifier and position tokens are parsed.
+		 * @param s The star line.
+		 * @param src The source run index.
+		 * @param keyStar A star to parse the position into. Its RA and Dec are overwritten.
+		 * @exception NumberFormatException Thrown if a token is not a valid number.
+		 * @see ClusterLineParser#parsePosition
+		 */
+		protected Entry(String s,int src,ClusterObject keyStar) throws NumberFormatException
+		{
+			super();
+			int start,end,length;
+
+			length = s.length();
+			start = ClusterLineParser.skipSeparators(s,0,length);
+			end = ClusterLineParser.tokenEnd(s,start,length);
+			fieldNumber = ClusterLineParser.parseInt(s,start,end);
+			start = ClusterLineParser.skipSeparators(s,end,length);
+			end = ClusterLineParser.tokenEnd(s,start,length);
+			starNumber = ClusterLineParser.parseInt(s,start,end);
+			start = ClusterLineParser.skipSeparators(s,end,length);
+			keyStar.setRARadians(Double.NaN);
+			keyStar.setDecRadians(Double.NaN);
+			ClusterLineParser.parsePosition(s,start,length,keyStar);
+			ra = keyStar.getRARadians();
+			dec = keyStar.getDecRadians();
+			line = s;
+			source = src;
+		}
+	}
+
+	/**
+	 * Comparator of entries. Entries are compared by the keys of the sort order, then the remaining
+	 * keys, and finally by source run.
+	 */
+	protected static class EntryComparator implements Comparator
+	{
+		/**
+		 * The sort order.
+		 */
+		protected int sortOrder;
+
+		/**
+		 * Constructor.
+		 * @param order The sort order.
+		 */
+		protected EntryComparator(int order)
+		{
+			super();
+			sortOrder = order;
+		}
+
+		/**
+		 * Compare two entries, including their source run.
+		 * @param o1 The first entry.
+		 * @param o2 The second entry.
+		 * @return Negative, zero or positive as the first entry sorts before, with or after the second.
+		 * @see #compareKeys
+		 */
+		public int compare(Object o1,Object o2)
+		{
+			Entry e1 = (Entry)o1;
+			Entry e2 = (Entry)o2;
+			int result;
+
+			result = compareKeys(e1,e2);
+			if(result != 0)
+				return result;
+			return Integer.compare(e1.source,e2.source);
+		}
+
+		/**
+		 * Compare the star keys of two entries. Entries with equal keys are duplicates.
+		 * @param e1 The first entry.
+		 * @param e2 The second entry.
+		 * @return Negative, zero or positive as the first entry sorts before, with or after the second.
+		 */
+		protected int compareKeys(Entry e1,Entry e2)
+		{
+			int result;
+
+			switch(sortOrder)
+			{
+			case SORT_DEC:
+				result = Double.compare(e1.dec,e2.dec);
+				if(result == 0)
+					result = Double.compare(e1.ra,e2.ra);
+				if(result == 0)
+					result = compareIdentifiers(e1,e2);
+				return result;
+			case SORT_IDENTIFIER:
+				result = compareIdentifiers(e1,e2);
+				if(result == 0)
+					result = Double.compare(e1.ra,e2.ra);
+				if(result == 0)
+					result = Double.compare(e1.dec,e2.dec);
+				return result;
+			default:
+				result = Double.compare(e1.ra,e2.ra);
+				if(result == 0)
+					result = Double.compare(e1.dec,e2.dec);
+				if(result == 0)
+					result = compareIdentifiers(e1,e2);
+				return result;
+			}
+		}
+
+		/**
+		 * Compare the identifiers (field number, star number) of two entries.
+		 * @param e1 The first entry.
+		 * @param e2 The second entry.
+		 * @return Negative, zero or positive as the first entry sorts before, with or after the second.
+		 */
+		protected int compareIdentifiers(Entry e1,Entry e2)
+		{
+			int result;
+
+			result = Integer.compare(e1.fieldNumber,e2.fieldNumber);
+			if(result == 0)
+				result = Integer.compare(e1.starNumber,e2.starNumber);
+			return result;
+		}
+	}
+}
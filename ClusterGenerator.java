@@ -0,0 +1,347 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterGenerator.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.util.*;
+
+/**
+ * This class writes synthetic cluster files, for testing and benchmarking the loaders.
+ * The stars have random (but reproducible, for a given seed) positions, pixel positions, magnitudes,
+ * errors and flags, in a configurable number of colours. Decs can be written with a sign (+/-), as real
+ * catalogues are, or without one for positive Decs, as some fake/test catalogues are.
+ * The file is written line by line, so files of any size can be generated.
+ * @version $Revision$
+ * @see ClusterBenchmark
+ */
+public class ClusterGenerator
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The colour names used for the first colours.
+	 */
+	protected final static String COLOUR_NAME_LIST[] = {"B","V","R","I","J","K","H","U"};
+	/**
+	 * The number of colours to generate.
+	 */
+	protected int colourCount = 2;
+	/**
+	 * Whether to write positive Decs without a '+' sign.
+	 */
+	protected boolean unsignedDec = false;
+	/**
+	 * The random number generator.
+	 */
+	protected Random random = null;
+
+	/**
+	 * Constructor.
+	 * @param colours The number of colours to generate.
+	 * @param unsigned Whether to write positive Decs without a '+' sign.
+	 * @param seed The random number generator seed.
+	 */
+	public ClusterGenerator(int colours,boolean unsigned,long seed)
+	{
+		super();
+		colourCount = colours;
+		unsignedDec = unsigned;
+		random = new Random(seed);
+	}
+
+	/**
+	 * Write a synthetic cluster file.
+	 * @param w The writer to write to. It is not closed.
+	 * @param starCount The number of stars to write.
+	 * @exception IOException Thrown if the write fails.
+	 * @see #writeHeader
+	 * @see #appendStar
+	 */
+	public void write(Writer w,long starCount) throws IOException
+	{
+		StringBuilder sb = null;
+		long index;
+
+		writeHeader(w);
+		sb = new StringBuilder(256);
+		for(index = 0; index < starCount; index++)
+		{
+			sb.setLength(0);
+			appendStar(sb,index);
+			sb.append('\n');
+			w.append(sb);
+		}
+	}
+
+	/**
+	 * Write a synthetic cluster file.
+	 * @param file The file to write.
+	 * @param starCount The number of stars to write.
+	 * @exception IOException Thrown if the write fails.
+	 */
+	public void write(File file,long starCount) throws IOException
+	{
+		Writer w = null;
+
+		w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),Cluster.FILE_CHARSET),1024*1024);
+		try
+		{
+			write(w,starCount);
+		}
+		finally
+		{
+			w.close();
+		}
+	}
+
+	/**
+	 * Return a synthetic cluster file as a String.
+	 * @param starCount The number of stars to write.
+	 * @return The cluster file.
+	 */
+	public String toString(long starCount)
+	{
+		StringWriter sw = null;
+
+		sw = new StringWriter();
+		try
+		{
+			write(sw,starCount);
+		}
+		catch(IOException e)
+		{
+			// a StringWriter does not throw IOException
+			throw new UncheckedIOException(e);
+		}
+		return sw.toString();
+	}
+
+	/**
+	 * Write the three header lines.
+	 * @param w The writer.
+	 * @exception IOException Thrown if the write fails.
+	 */
+	protected void writeHeader(Writer w) throws IOException
+	{
+		int index;
+
+		w.write(colourCount+" colours\n");
+		for(index = 0; index < colourCount; index++)
+		{
+			if(index > 0)
+				w.write(' ');
+			w.write(getColourName(index));
+		}
+		w.write('\n');
+		w.write("Synthetic cluster file generated by org.estar.cluster.ClusterGenerator\n");
+	}
+
+	/**
+	 * Format one random star line (without a newline) onto the end of a StringBuilder.
+	 * @param sb The StringBuilder.
+	 * @param index The index of the star, used for the star number.
+	 */
+	public void appendStar(StringBuilder sb,long index)
+	{
+		int colourIndex,decd;
+
+		sb.append(index%10).append(' ').append(index).append(' ');
+		// RA
+		appendPadded(sb,random.nextInt(24),2).append(' ');
+		appendPadded(sb,random.nextInt(60),2).append(' ');
+		appendFixed(sb,random.nextInt(60000),3,2).append(' ');
+		// Dec
+		decd = random.nextInt(179)-89;
+		if(decd < 0)
+			sb.append('-');
+		else if((decd > 0)||random.nextBoolean())
+		{
+			if(unsignedDec == false)
+				sb.append('+');
+		}
+		else
+			sb.append('-');
+		appendPadded(sb,Math.abs(decd),2).append(' ');
+		appendPadded(sb,random.nextInt(60),2).append(' ');
+		appendFixed(sb,random.nextInt(6000),2,2).append(' ');
+		// pixel position
+		appendFixed(sb,random.nextInt(2048000),3,1).append(' ');
+		appendFixed(sb,random.nextInt(2048000),3,1);
+		for(colourIndex = 0; colourIndex < colourCount; colourIndex++)
+		{
+			sb.append(' ');
+			appendFixed(sb,random.nextInt(25000)-5000,3,1).append(' ');
+			appendFixed(sb,random.nextInt(1000),3,1).append(' ');
+			appendPadded(sb,random.nextInt(10),2);
+		}
+	}
+
+	/**
+	 * Return the name of a colour.
+	 * @param index The colour index.
+	 * @return The name.
+	 */
+	protected static String getColourName(int index)
+	{
+		if(index < COLOUR_NAME_LIST.length)
+			return COLOUR_NAME_LIST[index];
+		return "C"+index;
+	}
+
+	/**
+	 * Append a non-negative integer, padded with leading zeros.
+	 * @param sb The StringBuilder.
+	 * @param value The value.
+	 * @param width The minimum number of digits.
+	 * @return The StringBuilder.
+	 */
+	protected static StringBuilder appendPadded(StringBuilder sb,long value,int width)
+	{
+		long limit;
+		int digits;
+
+		// count the digits in value
+		for(digits = 1, limit = 10; (value >= limit)&&(digits < 19); digits++, limit *= 10)
+			;
+		for(; digits < width; digits++)
+			sb.append('0');
+		return sb.append(value);
+	}
+
+	/**
+	 * Append a fixed point number, stored as an integer number of units of 10^-decimals.
+	 * @param sb The StringBuilder.
+	 * @param units The value in units of 10^-decimals.
+	 * @param decimals The number of decimal places.
+	 * @param width The minimum number of integer digits.
+	 * @return The StringBuilder.
+	 */
+	protected static StringBuilder appendFixed(StringBuilder sb,long units,int decimals,int width)
+	{
+		long scale;
+		int index;
+
+		if(units < 0)
+		{
+			sb.append('-');
+			units = -units;
+		}
+		scale = 1;
+		for(index = 0; index < decimals; index++)
+			scale *= 10;
+		appendPadded(sb,units/scale,width).append('.');
+		return appendPadded(sb,units%scale,decimals);
+	}
+
+	/**
+	 * Main program, to write a synthetic cluster file.
+	 * @param args The arguments.
+	 */
+	public static void main(String args[])
+	{
+		ClusterGenerator generator = null;
+		String filename = null;
+		long starCount = 1000;
+		long seed = 1;
+		int colours = 2;
+		boolean unsigned = false;
+
+		for(int i = 0; i < args.length; i++)
+		{
+		    if(args[i].equals("-output")||args[i].equals("-o"))
+		    {
+			if((i+1) < args.length)
+			{
+			    filename = args[i+1];
+			    i++;
+			}
+			else
+			    System.err.println("ClusterGenerator:-output requires a filename.");
+		    }
+		    else if(args[i].equals("-stars")||args[i].equals("-n"))
+		    {
+			if((i+1) < args.length)
+			{
+			    starCount = Long.parseLong(args[i+1]);
+			    i++;
+			}
+			else
+			    System.err.println("ClusterGenerator:-stars requires a number.");
+		    }
+		    else if(args[i].equals("-colours")||args[i].equals("-c"))
+		    {
+			if((i+1) < args.length)
+			{
+			    colours = Integer.parseInt(args[i+1]);
+			    i++;
+			}
+			else
+			    System.err.println("ClusterGenerator:-colours requires a number.");
+		    }
+		    else if(args[i].equals("-seed")||args[i].equals("-s"))
+		    {
+			if((i+1) < args.length)
+			{
+			    seed = Long.parseLong(args[i+1]);
+			    i++;
+			}
+			else
+			    System.err.println("ClusterGenerator:-seed requires a number.");
+		    }
+		    else if(args[i].equals("-unsigned")||args[i].equals("-u"))
+		    {
+			unsigned = true;
+		    }
+		    else if(args[i].equals("-help")||args[i].equals("-h"))
+		    {
+			System.out.println("ClusterGenerator Help");
+			System.out.println("java ClusterGenerator -o[utput] <file name> [-n|-stars <count>]"+
+					   "[-c[olours] <count>][-s[eed] <seed>][-u[nsigned]][-h[elp]]");
+			System.out.println("\t-stars is the number of stars, default 1000.");
+			System.out.println("\t-colours is the number of colours, default 2.");
+			System.out.println("\t-unsigned writes positive Decs without a '+'.");
+			System.exit(0);
+		    }
+		    else
+			System.err.println("ClusterGenerator:"+args[i]+" not recognized.");
+		}
+		if(filename == null)
+		{
+			System.err.println("ClusterGenerator:-output must be specified.");
+			System.exit(1);
+		}
+		try
+		{
+			generator = new ClusterGenerator(colours,unsigned,seed);
+			generator.write(new File(filename),starCount);
+		}
+		catch(Exception e)
+		{
+			System.err.println("ClusterGenerator: write failed:"+e);
+			e.printStackTrace(System.err);
+			System.exit(2);
+		}
+		System.exit(0);
+	}
+}
@@ -0,0 +1,196 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterIdentifierMap.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.util.*;
+
+/**
+ * This class maps a star identifier (field number, star number) to the index of the star in a Cluster's
+ * star list. It is an open addressing hash table with linear probing, keyed on the two numbers packed into
+ * a long, so no Integer or Long keys are created.
+ * If more than one star has the same identifier, the first one is mapped, and the later ones are recorded
+ * as duplicates.
+ * @version $Revision$
+ * @see Cluster#getStarIndex(int,int)
+ */
+public class ClusterIdentifierMap
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * Value stored in empty slots of the value array.
+	 */
+	protected final static int EMPTY = -1;
+	/**
+	 * The packed identifier in each slot.
+	 */
+	protected long keyArray[] = null;
+	/**
+	 * The star list index in each slot, or EMPTY.
+	 */
+	protected int valueArray[] = null;
+	/**
+	 * The table size minus one, used to mask hash codes into slot numbers.
+	 */
+	protected int mask;
+	/**
+	 * The number of stars mapped (not including duplicates).
+	 */
+	protected int size;
+	/**
+	 * The number of stars in the cluster when the map was built.
+	 */
+	protected int starCount;
+	/**
+	 * The star list indices of stars whose identifier had already been used by an earlier star.
+	 */
+	protected ClusterSkyIndex.IntList duplicateList = null;
+
+	/**
+	 * Constructor. Builds the map from the stars in the cluster.
+	 * @param c The cluster.
+	 * @see Cluster#getFieldNumber(int)
+	 * @see Cluster#getStarNumber(int)
+	 */
+	public ClusterIdentifierMap(Cluster c)
+	{
+		super();
+		int capacity,index;
+
+		starCount = c.getStarListCount();
+		// keep the load factor at or below 0.5
+		capacity = Integer.highestOneBit(Math.max(starCount,8)*2);
+		if(capacity < Math.max(starCount,8)*2)
+			capacity <<= 1;
+		keyArray = new long[capacity];
+		valueArray = new int[capacity];
+		Arrays.fill(valueArray,EMPTY);
+		mask = capacity-1;
+		size = 0;
+		duplicateList = new ClusterSkyIndex.IntList();
+		for(index = 0; index < starCount; index++)
+		{
+			if(put(getKey(c.getFieldNumber(index),c.getStarNumber(index)),index) == false)
+				duplicateList.add(index);
+		}
+	}
+
+	/**
+	 * Return the star list index of the star with the specified identifier.
+	 * @param fieldNumber The field number.
+	 * @param starNumber The star number.
+	 * @return The index of the first star with the identifier, or -1 if there is none.
+	 */
+	public int get(int fieldNumber,int starNumber)
+	{
+		long key;
+		int slot;
+
+		key = getKey(fieldNumber,starNumber);
+		slot = hash(key) & mask;
+		while(valueArray[slot] != EMPTY)
+		{
+			if(keyArray[slot] == key)
+				return valueArray[slot];
+			slot = (slot+1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Return the number of distinct identifiers mapped.
+	 * @return The number of identifiers.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Return the number of stars in the cluster when the map was built.
+	 * @return The number of stars.
+	 */
+	public int getStarCount()
+	{
+		return starCount;
+	}
+
+	/**
+	 * Return the star list indices of the stars whose identifier was already used by an earlier star.
+	 * @return The indices, in increasing order. An empty array if all identifiers are unique.
+	 */
+	public int[] getDuplicateStarIndexes()
+	{
+		return duplicateList.toArray();
+	}
+
+	/**
+	 * Add a key to the map, if it is not already present.
+	 * @param key The packed identifier.
+	 * @param value The star list index.
+	 * @return true if the key was added, false if it was already present.
+	 */
+	protected boolean put(long key,int value)
+	{
+		int slot;
+
+		slot = hash(key) & mask;
+		while(valueArray[slot] != EMPTY)
+		{
+			if(keyArray[slot] == key)
+				return false;
+			slot = (slot+1) & mask;
+		}
+		keyArray[slot] = key;
+		valueArray[slot] = value;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Pack a star identifier into a long.
+	 * @param fieldNumber The field number.
+	 * @param starNumber The star number.
+	 * @return The key.
+	 */
+	protected static long getKey(int fieldNumber,int starNumber)
+	{
+		return (((long)fieldNumber) << 32)|(starNumber & 0xffffffffL);
+	}
+
+	/**
+	 * Hash a key, mixing all the bits so sequential star numbers spread over the table.
+	 * @param key The key.
+	 * @return The hash code.
+	 */
+	protected static int hash(long key)
+	{
+		key ^= (key >>> 33);
+		key *= 0xff51afd7ed558ccdL;
+		key ^= (key >>> 33);
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= (key >>> 33);
+		return (int)key;
+	}
+}
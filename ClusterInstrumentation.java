@@ -0,0 +1,332 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterInstrumentation.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.lang.management.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.management.*;
+
+/**
+ * This class controls the instrumentation of cluster loads and saves.
+ * Instrumentation is disabled by default, in which case loads and saves check one volatile flag and
+ * are otherwise unchanged. It can be enabled by calling setEnabled, through the Enabled attribute of the
+ * MBean, or by setting the system property "org.estar.cluster.instrumentation" to true.
+ * When enabled, the measurements of each load and save are added to the statistics published through JMX,
+ * and passed to each registered listener.
+ * @version $Revision$
+ * @see ClusterMetrics
+ * @see ClusterMetricsListener
+ * @see ClusterStatistics
+ * @see Cluster#load(java.io.BufferedReader)
+ * @see Cluster#save(java.io.Writer)
+ * @see Cluster#load(java.lang.CharSequence,int,int)
+ * @see Cluster#toString(java.lang.Appendable,java.lang.String)
+ */
+public class ClusterInstrumentation
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The name of the system property that enables instrumentation when the class is loaded.
+	 */
+	public final static String ENABLED_PROPERTY = "org.estar.cluster.instrumentation";
+	/**
+	 * The object name the statistics MBean is registered under.
+	 */
+	public final static String MBEAN_NAME = "org.estar.cluster:type=ClusterStatistics";
+	/**
+	 * The interval, in star lines, at which the split of the parse time is sampled during a load.
+	 */
+	public final static int SAMPLE_INTERVAL = 64;
+	/**
+	 * Whether instrumentation is enabled.
+	 */
+	protected static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+	/**
+	 * The list of registered listeners.
+	 */
+	protected static List listenerList = new CopyOnWriteArrayList();
+	/**
+	 * The aggregate statistics, published through JMX.
+	 */
+	protected static ClusterStatistics statistics = new ClusterStatistics();
+
+	/**
+	 * Return whether instrumentation is enabled.
+	 * @return true if loads and saves are measured.
+	 */
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Enable or disable instrumentation. Loads and saves in progress are not affected.
+	 * @param on Whether to measure loads and saves.
+	 */
+	public static void setEnabled(boolean on)
+	{
+		enabled = on;
+	}
+
+	/**
+	 * Add a listener, which is passed the measurements of each load and save while instrumentation is enabled.
+	 * @param l The listener.
+	 */
+	public static void addListener(ClusterMetricsListener l)
+	{
+		listenerList.add(l);
+	}
+
+	/**
+	 * Remove a listener.
+	 * @param l The listener.
+	 */
+	public static void removeListener(ClusterMetricsListener l)
+	{
+		listenerList.remove(l);
+	}
+
+	/**
+	 * Return the aggregate statistics.
+	 * @return The statistics.
+	 */
+	public static ClusterStatistics getStatistics()
+	{
+		return statistics;
+	}
+
+	/**
+	 * Register the statistics MBean with the platform MBean server, under MBEAN_NAME.
+	 * Registering an already registered MBean does nothing.
+	 * @exception JMException Thrown if the MBean cannot be registered.
+	 * @see #MBEAN_NAME
+	 */
+	public static void registerMBean() throws JMException
+	{
+		MBeanServer server = null;
+		ObjectName name = null;
+
+		server = ManagementFactory.getPlatformMBeanServer();
+		name = new ObjectName(MBEAN_NAME);
+		synchronized(statistics)
+		{
+			if(server.isRegistered(name) == false)
+				server.registerMBean(statistics,name);
+		}
+	}
+
+	/**
+	 * Unregister the statistics MBean from the platform MBean server, if it is registered.
+	 * @exception JMException Thrown if the MBean cannot be unregistered.
+	 */
+	public static void unregisterMBean() throws JMException
+	{
+		MBeanServer server = null;
+		ObjectName name = null;
+
+		server = ManagementFactory.getPlatformMBeanServer();
+		name = new ObjectName(MBEAN_NAME);
+		synchronized(statistics)
+		{
+			if(server.isRegistered(name))
+				server.unregisterMBean(name);
+		}
+	}
+
+	/**
+	 * Add the measurements of a completed load or save to the statistics, and pass them to the listeners.
+	 * Exceptions thrown by listeners are caught, so they do not affect the load or save or the other listeners,
+	 * and are recorded in the measurements.
+	 * @param metrics The measurements.
+	 * @see ClusterMetrics#getListenerFailureCount
+	 * @see ClusterMetrics#getListenerException
+	 */
+	public static void publish(ClusterMetrics metrics)
+	{
+		ClusterMetricsListener l = null;
+		Iterator iterator = null;
+
+		statistics.add(metrics);
+		iterator = listenerList.iterator();
+		while(iterator.hasNext())
+		{
+			l = (ClusterMetricsListener)(iterator.next());
+			try
+			{
+				if(metrics.getOperation() == ClusterMetrics.OPERATION_LOAD)
+					l.loadCompleted(metrics);
+				else
+					l.saveCompleted(metrics);
+			}
+			catch(RuntimeException e)
+			{
+				metrics.listenerFailureCount++;
+				if(metrics.listenerException == null)
+					metrics.listenerException = e;
+			}
+		}
+	}
+
+	/**
+	 * BufferedReader that counts the characters in, and times, the lines read from another BufferedReader.
+	 * Only readLine is supported, as that is all the cluster loader uses.
+	 */
+	protected static class CountingReader extends BufferedReader
+	{
+		/**
+		 * The reader the lines are read from.
+		 */
+		protected BufferedReader reader = null;
+		/**
+		 * The number of characters read, counting one for each line terminator.
+		 */
+		protected long characterCount = 0;
+		/**
+		 * The time spent reading lines, in nanoseconds.
+		 */
+		protected long nanos = 0;
+
+		/**
+		 * Constructor.
+		 * @param r The reader the lines are read from.
+		 */
+		public CountingReader(BufferedReader r)
+		{
+			super(r,1);
+			reader = r;
+		}
+
+		/**
+		 * Read a line from the underlying reader.
+		 * @return The line, or null at the end of the stream.
+		 * @exception IOException Thrown if the read fails.
+		 */
+		public String readLine() throws IOException
+		{
+			String s = null;
+			long startTime;
+
+			startTime = System.nanoTime();
+			s = reader.readLine();
+			nanos += System.nanoTime()-startTime;
+			if(s != null)
+				characterCount += s.length()+1;
+			return s;
+		}
+	}
+
+	/**
+	 * Writer that counts the characters written to, and times, another Writer or Appendable.
+	 */
+	protected static class CountingWriter extends Writer
+	{
+		/**
+		 * The Appendable the characters are written to.
+		 */
+		protected Appendable appendable = null;
+		/**
+		 * The appendable, if it is a Writer, so blocks of characters are written without creating Strings.
+		 */
+		protected Writer writer = null;
+		/**
+		 * The number of characters written.
+		 */
+		protected long characterCount = 0;
+		/**
+		 * The time spent writing, in nanoseconds.
+		 */
+		protected long nanos = 0;
+
+		/**
+		 * Constructor.
+		 * @param a The Writer or Appendable to write to.
+		 */
+		public CountingWriter(Appendable a)
+		{
+			super();
+			appendable = a;
+			if(a instanceof Writer)
+				writer = (Writer)a;
+		}
+
+		public void write(int c) throws IOException
+		{
+			long startTime;
+
+			startTime = System.nanoTime();
+			if(writer != null)
+				writer.write(c);
+			else
+				appendable.append((char)c);
+			nanos += System.nanoTime()-startTime;
+			characterCount++;
+		}
+
+		public void write(char buffer[],int offset,int length) throws IOException
+		{
+			long startTime;
+
+			startTime = System.nanoTime();
+			if(writer != null)
+				writer.write(buffer,offset,length);
+			else
+				appendable.append(CharBuffer.wrap(buffer,offset,length));
+			nanos += System.nanoTime()-startTime;
+			characterCount += length;
+		}
+
+		public void write(String s,int offset,int length) throws IOException
+		{
+			long startTime;
+
+			startTime = System.nanoTime();
+			if(writer != null)
+				writer.write(s,offset,length);
+			else
+				appendable.append(s,offset,offset+length);
+			nanos += System.nanoTime()-startTime;
+			characterCount += length;
+		}
+
+		public void flush() throws IOException
+		{
+			long startTime;
+
+			startTime = System.nanoTime();
+			if(appendable instanceof Flushable)
+				((Flushable)appendable).flush();
+			nanos += System.nanoTime()-startTime;
+		}
+
+		public void close() throws IOException
+		{
+			if(appendable instanceof Closeable)
+				((Closeable)appendable).close();
+		}
+	}
+}
@@ -0,0 +1,436 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterLazyTable.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import org.estar.astrometry.*;
+
+/**
+ * This class is a read-only ClusterTable whose rows are decoded on demand. Opening a catalogue parses
+ * the header and records the start of each star line in the raw bytes, which are memory mapped from a
+ * file or held in a byte array. Nothing else is parsed until it is asked for.
+ * The columns are split into groups (identifier, position, pixel and photometry). The first time a getter
+ * asks for a group of a row, that group is parsed out of the line, and the decoded values are kept,
+ * so each group of each row is parsed at most once. The column arrays of a group are allocated
+ * when it is first needed.
+ * Rows can be read from several threads at once. A line that does not parse throws the same exception
+ * a load would have, from the getter that first decodes the bad group.
+ * Lines are terminated by '\n', optionally preceded by '\r'.
+ * @version $Revision$
+ * @see ClusterTable#parseColumns
+ * @see ClusterMappedLoader
+ */
+public class ClusterLazyTable extends ClusterTable
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The raw catalogue bytes.
+	 */
+	protected ByteBuffer buffer = null;
+	/**
+	 * A character view of the whole buffer, used to parse lines.
+	 */
+	protected ByteBufferCharSequence chars = null;
+	/**
+	 * The position in the buffer of the start of each star line. The extra last element is the end of the
+	 * data, so the end of line i is at or before lineStartArray[i+1].
+	 */
+	protected int lineStartArray[] = null;
+	/**
+	 * The column groups decoded for each row, a bitwise or of the COLUMNS_ constants. Updated atomically,
+	 * after the decoded values are written, so readers that see a bit set also see the values.
+	 */
+	protected AtomicIntegerArray decodedArray = null;
+
+	/**
+	 * Constructor. Use one of the open methods to create a lazy table.
+	 * @param b The raw catalogue bytes, from position 0 to the limit.
+	 * @exception IOException Thrown if the header lines are missing.
+	 * @see #index
+	 */
+	protected ClusterLazyTable(ByteBuffer b) throws IOException
+	{
+		super();
+		buffer = b;
+		chars = new ByteBufferCharSequence(buffer,0,buffer.limit());
+		index();
+	}
+
+	/**
+	 * Static method to open a catalogue file lazily. Uncompressed files are memory mapped.
+	 * gzip (or zstd) compressed files are decompressed into memory, as they cannot be mapped.
+	 * @param file The file to open.
+	 * @return A lazy table of the file's stars.
+	 * @exception FileNotFoundException Thrown if the file does not exist.
+	 * @exception IOException Thrown if the file could not be read, is larger than 2 GB, or has no header.
+	 * @see ClusterDecompressor
+	 */
+	public static ClusterLazyTable open(File file) throws FileNotFoundException,IOException
+	{
+		RandomAccessFile raf = null;
+		FileChannel fc = null;
+		ByteBuffer b = null;
+
+		raf = new RandomAccessFile(file,"r");
+		try
+		{
+			fc = raf.getChannel();
+			if(ClusterMappedLoader.isCompressed(fc))
+				return open(readFully(ClusterDecompressor.open(new FileInputStream(file))));
+			if(fc.size() > Integer.MAX_VALUE)
+			{
+				throw new IOException("org.estar.cluster.ClusterLazyTable:open:"+file+
+						      " is too large to open lazily:"+fc.size());
+			}
+			// the mapping stays valid after the channel is closed
+			b = fc.map(FileChannel.MapMode.READ_ONLY,0,fc.size());
+		}
+		finally
+		{
+			raf.close();
+		}
+		return new ClusterLazyTable(b);
+	}
+
+	/**
+	 * Static method to open a catalogue held in memory lazily. The array is not copied, and must not
+	 * be changed while the table is in use.
+	 * @param data The catalogue bytes.
+	 * @return A lazy table of the stars.
+	 * @exception IOException Thrown if the header lines are missing.
+	 */
+	public static ClusterLazyTable open(byte data[]) throws IOException
+	{
+		return new ClusterLazyTable(ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * Read a stream into a byte array, and close it.
+	 * @param is The stream.
+	 * @return The bytes read.
+	 * @exception IOException Thrown if the stream could not be read.
+	 */
+	protected static byte[] readFully(InputStream is) throws IOException
+	{
+		ByteArrayOutputStream bos = null;
+		byte readBuffer[] = new byte[65536];
+		int count;
+
+		bos = new ByteArrayOutputStream();
+		try
+		{
+			while((count = is.read(readBuffer)) >= 0)
+				bos.write(readBuffer,0,count);
+		}
+		finally
+		{
+			is.close();
+		}
+		return bos.toByteArray();
+	}
+
+	/**
+	 * Method to parse the header lines, and record the start of each star line.
+	 * @exception IOException Thrown if the header lines are missing.
+	 * @see #lineStartArray
+	 */
+	protected void index() throws IOException
+	{
+		String errorArray[] = {"colour count","colour list","comment"};
+		ClusterSkyIndex.IntList lineStartList = null;
+		int position,limit;
+
+		limit = buffer.limit();
+		lineStartList = new ClusterSkyIndex.IntList();
+		position = 0;
+		while(position < limit)
+		{
+			lineStartList.add(position);
+			while((position < limit)&&(buffer.get(position) != '\n'))
+				position++;
+			position++;
+		}
+		if(lineStartList.size() < errorArray.length)
+			throw new IOException("load failed:reading "+errorArray[lineStartList.size()]+" returned null.");
+		lineStartList.add(limit);
+		parseColourCountLine(getLine(lineStartList.array[0],lineStartList.array[1]));
+		parseColourNameListLine(getLine(lineStartList.array[1],lineStartList.array[2]));
+		commentString = getLine(lineStartList.array[2],lineStartList.array[3]);
+		lineStartArray = Arrays.copyOfRange(lineStartList.array,errorArray.length,lineStartList.size());
+		starCount = lineStartArray.length-1;
+		decodedArray = new AtomicIntegerArray(starCount);
+	}
+
+	/**
+	 * Return a line as a String, without its line terminator.
+	 * @param start The position in the buffer of the start of the line.
+	 * @param next The position in the buffer of the start of the next line.
+	 * @return The line.
+	 */
+	protected String getLine(int start,int next)
+	{
+		return chars.subSequence(start,getLineEnd(start,next)).toString();
+	}
+
+	/**
+	 * Return the position of the end of a line, before its line terminator.
+	 * @param start The position in the buffer of the start of the line.
+	 * @param next The position in the buffer of the start of the next line.
+	 * @return The position after the last character of the line.
+	 */
+	protected int getLineEnd(int start,int next)
+	{
+		int end;
+
+		end = next;
+		if((end > start)&&(chars.charAt(end-1) == '\n'))
+			end--;
+		if((end > start)&&(chars.charAt(end-1) == '\r'))
+			end--;
+		return end;
+	}
+
+	/**
+	 * Method to make sure a group of columns of a row has been decoded.
+	 * @param index The row.
+	 * @param columns The COLUMNS_ group (or groups) needed.
+	 * @exception IndexOutOfBoundsException Thrown if the row is out of range.
+	 * @see #decode
+	 */
+	protected void ensureDecoded(int index,int columns)
+	{
+		if((decodedArray.get(index) & columns) != columns)
+			decode(index,columns);
+	}
+
+	/**
+	 * Method to decode groups of columns of a row, and mark them as decoded. Two threads may decode the same
+	 * group of a row at once, they write the same values.
+	 * @param index The row.
+	 * @param columns The COLUMNS_ groups to decode.
+	 * @exception IllegalArgumentException Thrown if there is too much magnitude data on the line.
+	 * @exception NumberFormatException Thrown if a token is not a valid number.
+	 * @see #allocateColumns
+	 * @see ClusterTable#parseColumns
+	 */
+	protected void decode(int index,int columns)
+	{
+		int decoded,start;
+
+		allocateColumns(columns);
+		start = lineStartArray[index];
+		parseColumns(chars,start,getLineEnd(start,lineStartArray[index+1]),index,columns);
+		do
+		{
+			decoded = decodedArray.get(index);
+		}
+		while(decodedArray.compareAndSet(index,decoded,decoded|columns) == false);
+	}
+
+	/**
+	 * Method to allocate the column arrays of groups of columns, if they have not been allocated.
+	 * @param columns The COLUMNS_ groups.
+	 */
+	protected synchronized void allocateColumns(int columns)
+	{
+		if(((columns & COLUMNS_IDENTIFIER) != 0)&&(fieldNumberArray == null))
+		{
+			fieldNumberArray = new int[starCount];
+			starNumberArray = new int[starCount];
+		}
+		if(((columns & COLUMNS_POSITION) != 0)&&(raArray == null))
+		{
+			raArray = new double[starCount];
+			decArray = new double[starCount];
+			raHoursArray = new int[starCount];
+			raMinutesArray = new int[starCount];
+			raSecondsArray = new double[starCount];
+			decSignArray = new char[starCount];
+			decDegreesArray = new int[starCount];
+			decMinutesArray = new int[starCount];
+			decSecondsArray = new double[starCount];
+		}
+		if(((columns & COLUMNS_PIXEL) != 0)&&(xPixelArray == null))
+		{
+			xPixelArray = new double[starCount];
+			yPixelArray = new double[starCount];
+		}
+		if(((columns & COLUMNS_PHOTOMETRY) != 0)&&(magnitudeArray == null))
+		{
+			magnitudeArray = new double[starCount*colourCount];
+			magnitudeErrorArray = new double[starCount*colourCount];
+			flagsArray = new int[starCount*colourCount];
+		}
+	}
+
+	/**
+	 * Method to decode every row, so the columns can be accessed directly.
+	 * @see #ensureDecoded
+	 */
+	protected void decodeColumns()
+	{
+		int index;
+
+		for(index = 0; index < starCount; index++)
+			ensureDecoded(index,COLUMNS_ALL);
+	}
+
+	/**
+	 * Return the number of rows in which a group of columns has been decoded.
+	 * @param columns The COLUMNS_ group.
+	 * @return The number of rows.
+	 */
+	public int getDecodedCount(int columns)
+	{
+		int index,count;
+
+		count = 0;
+		for(index = 0; index < starCount; index++)
+		{
+			if((decodedArray.get(index) & columns) == columns)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * A lazy table is read-only, so this method throws an exception.
+	 * @param co The star to add.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	public void addStar(ClusterObject co) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+":addStar:Table is read-only.");
+	}
+
+	/**
+	 * A lazy table is read-only, so this method throws an exception.
+	 * @param t The table to append.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	public void appendTable(ClusterTable t) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+":appendTable:Table is read-only.");
+	}
+
+	/**
+	 * A lazy table is read-only, so this method throws an exception.
+	 * @param r The reader to use.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	public void load(BufferedReader r) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+":load:Table is read-only.");
+	}
+
+	/**
+	 * A lazy table is read-only, so this method throws an exception.
+	 * @param s The characters of the cluster file.
+	 * @param start The index in s of the start of the cluster file.
+	 * @param end The index in s after the end of the cluster file.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	public void load(CharSequence s,int start,int end) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+":load:Table is read-only.");
+	}
+
+	/**
+	 * The columns of a lazy table are always the size of the star count, so this method does nothing.
+	 */
+	public void trimToSize()
+	{
+	}
+
+	public int getFieldNumber(int index)
+	{
+		ensureDecoded(index,COLUMNS_IDENTIFIER);
+		return fieldNumberArray[index];
+	}
+
+	public int getStarNumber(int index)
+	{
+		ensureDecoded(index,COLUMNS_IDENTIFIER);
+		return starNumberArray[index];
+	}
+
+	public double getRARadians(int index)
+	{
+		ensureDecoded(index,COLUMNS_POSITION);
+		return raArray[index];
+	}
+
+	public double getDecRadians(int index)
+	{
+		ensureDecoded(index,COLUMNS_POSITION);
+		return decArray[index];
+	}
+
+	public RA getRA(int index)
+	{
+		ensureDecoded(index,COLUMNS_POSITION);
+		return super.getRA(index);
+	}
+
+	public Dec getDec(int index)
+	{
+		ensureDecoded(index,COLUMNS_POSITION);
+		return super.getDec(index);
+	}
+
+	public double getXPixel(int index)
+	{
+		ensureDecoded(index,COLUMNS_PIXEL);
+		return xPixelArray[index];
+	}
+
+	public double getYPixel(int index)
+	{
+		ensureDecoded(index,COLUMNS_PIXEL);
+		return yPixelArray[index];
+	}
+
+	public double getMagnitude(int index,int colourIndex)
+	{
+		ensureDecoded(index,COLUMNS_PHOTOMETRY);
+		return magnitudeArray[(index*colourCount)+colourIndex];
+	}
+
+	public double getMagnitudeError(int index,int colourIndex)
+	{
+		ensureDecoded(index,COLUMNS_PHOTOMETRY);
+		return magnitudeErrorArray[(index*colourCount)+colourIndex];
+	}
+
+	public int getFlags(int index,int colourIndex)
+	{
+		ensureDecoded(index,COLUMNS_PHOTOMETRY);
+		return flagsArray[(index*colourCount)+colourIndex];
+	}
+}
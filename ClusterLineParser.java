@@ -0,0 +1,339 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterLineParser.java
+package org.estar.cluster;
+
+import java.lang.*;
+
+/**
+ * This class contains static methods for scanning space separated tokens in a cluster file line,
+ * and decoding integers and doubles directly from a range of characters in that line.
+ * No temporary Strings are created, unless a number is in an unusual format (exponents, too many
+ * significant digits), in which case we fall back to the standard Java parse methods so the result
+ * is always identical to Integer.parseInt / Double.parseDouble.
+ * @version $Revision$
+ * @see ClusterObject#parseStarLine
+ */
+public class ClusterLineParser
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The token separator used in cluster files.
+	 */
+	public final static char SEPARATOR = ' ';
+	/**
+	 * The maximum number of significant digits we can accumulate into a long mantissa, and still
+	 * have it exactly representable as a double.
+	 */
+	private final static int MAX_FAST_MANTISSA_DIGITS = 15;
+	/**
+	 * Powers of ten that are exactly representable as doubles.
+	 */
+	private final static double POWERS_OF_TEN[] = {
+		1e0,1e1,1e2,1e3,1e4,1e5,1e6,1e7,1e8,1e9,1e10,1e11,
+		1e12,1e13,1e14,1e15,1e16,1e17,1e18,1e19,1e20,1e21,1e22
+	};
+
+	/**
+	 * Return the index of the first non-separator character at or after index.
+	 * @param s The characters to scan.
+	 * @param index The index to start at.
+	 * @param end The index after the last character to scan.
+	 * @return The index of the start of the next token, or end if there are no more tokens.
+	 * @see #SEPARATOR
+	 */
+	public static int skipSeparators(CharSequence s,int index,int end)
+	{
+		while((index < end)&&(s.charAt(index) == SEPARATOR))
+			index++;
+		return index;
+	}
+
+	/**
+	 * Return the index of the character after the end of the token starting at index.
+	 * @param s The characters to scan.
+	 * @param index The index of the start of the token.
+	 * @param end The index after the last character to scan.
+	 * @return The index after the last character in the token.
+	 * @see #SEPARATOR
+	 */
+	public static int tokenEnd(CharSequence s,int index,int end)
+	{
+		while((index < end)&&(s.charAt(index) != SEPARATOR))
+			index++;
+		return index;
+	}
+
+	/**
+	 * Return the index of the line terminator ('\n', '\r' or "\r\n") ending the line starting at index,
+	 * as BufferedReader.readLine splits lines.
+	 * @param s The characters to scan.
+	 * @param index The index of the start of the line.
+	 * @param end The index after the last character to scan.
+	 * @return The index after the last character in the line, or end if the line is not terminated.
+	 * @see #nextLineStart
+	 */
+	public static int lineEnd(CharSequence s,int index,int end)
+	{
+		char ch;
+
+		while(index < end)
+		{
+			ch = s.charAt(index);
+			if((ch == '\n')||(ch == '\r'))
+				return index;
+			index++;
+		}
+		return index;
+	}
+
+	/**
+	 * Return the index of the start of the line after the line terminator at index.
+	 * @param s The characters to scan.
+	 * @param index The index of the line terminator, as returned by lineEnd.
+	 * @param end The index after the last character to scan.
+	 * @return The index of the start of the next line, or end if there are no more lines.
+	 * @see #lineEnd
+	 */
+	public static int nextLineStart(CharSequence s,int index,int end)
+	{
+		if(index >= end)
+			return end;
+		if((s.charAt(index) == '\r')&&(index+1 < end)&&(s.charAt(index+1) == '\n'))
+			return index+2;
+		return index+1;
+	}
+
+	/**
+	 * Parse the six sexagesimal position tokens of a star line (RA hours, minutes and seconds, then Dec
+	 * degrees, minutes and seconds), starting at the RA hours token, and set them in the specified star.
+	 * Some fake/test catalogues have no [+|-] sign in front of the Dec degrees, in which case '+' is assumed.
+	 * If the line ends before the RA or Dec seconds token, that coordinate of the star is not changed.
+	 * Nothing is allocated, so a star can be reused to parse the positions of many lines.
+	 * @param s The characters to parse.
+	 * @param start The index of the start of the RA hours token.
+	 * @param end The index after the end of the line.
+	 * @param star The star to set the RA and Dec of.
+	 * @return The index after the last token parsed.
+	 * @exception NumberFormatException Thrown if a token is not a valid number.
+	 * @see #getDecSign
+	 * @see #parseDecDegrees
+	 * @see ClusterObject#setRA(int,int,double)
+	 * @see ClusterObject#setDec(char,int,int,double)
+	 */
+	public static int parsePosition(CharSequence s,int start,int end,ClusterObject star)
+		throws NumberFormatException
+	{
+		int tokenStart,tokenEnd,tokenIndex,hours=0,minutes=0,degrees=0;
+		char signChar = '+';
+
+		tokenStart = start;
+		tokenEnd = start;
+		tokenIndex = 0;
+		while((tokenStart < end)&&(tokenIndex < 6))
+		{
+			tokenEnd = tokenEnd(s,tokenStart,end);
+			switch(tokenIndex)
+			{
+			case 0:
+				hours = parseInt(s,tokenStart,tokenEnd);
+				break;
+			case 1:
+				minutes = parseInt(s,tokenStart,tokenEnd);
+				break;
+			case 2:
+				star.setRA(hours,minutes,parseDouble(s,tokenStart,tokenEnd));
+				break;
+			case 3:
+				signChar = getDecSign(s,tokenStart,tokenEnd);
+				degrees = parseDecDegrees(s,tokenStart,tokenEnd);
+				break;
+			case 4:
+				minutes = parseInt(s,tokenStart,tokenEnd);
+				break;
+			default:
+				star.setDec(signChar,degrees,minutes,parseDouble(s,tokenStart,tokenEnd));
+				break;
+			}
+			tokenIndex++;
+			if(tokenIndex < 6)
+				tokenStart = skipSeparators(s,tokenEnd,end);
+		}
+		return tokenEnd;
+	}
+
+	/**
+	 * Return the sign of a Dec degrees token. Some fake/test catalogues have no [+|-] sign in front of
+	 * the Dec degrees, in which case '+' is assumed.
+	 * @param s The characters holding the token.
+	 * @param start The index of the first character of the token.
+	 * @param end The index after the last character of the token.
+	 * @return The sign character, '+' or '-'.
+	 * @see #parseDecDegrees
+	 */
+	public static char getDecSign(CharSequence s,int start,int end)
+	{
+		char ch;
+
+		if(start < end)
+		{
+			ch = s.charAt(start);
+			if((ch == '+')||(ch == '-'))
+				return ch;
+		}
+		return '+';
+	}
+
+	/**
+	 * Decode the degrees of a Dec degrees token. If the token starts with a [+|-] sign, the degrees are the
+	 * rest of the token, otherwise the whole token is parsed.
+	 * @param s The characters holding the token.
+	 * @param start The index of the first character of the token.
+	 * @param end The index after the last character of the token.
+	 * @return The degrees, without the sign.
+	 * @exception NumberFormatException Thrown if the degrees are not a valid integer.
+	 * @see #getDecSign
+	 */
+	public static int parseDecDegrees(CharSequence s,int start,int end) throws NumberFormatException
+	{
+		char ch;
+
+		if(start < end)
+		{
+			ch = s.charAt(start);
+			if((ch == '+')||(ch == '-'))
+				start++;
+		}
+		return parseInt(s,start,end);
+	}
+
+	/**
+	 * Decode an integer from the specified range of characters.
+	 * The result (and any exception thrown) is the same as Integer.parseInt on the equivalent substring.
+	 * @param s The characters to decode.
+	 * @param start The index of the first character.
+	 * @param end The index after the last character.
+	 * @return The integer.
+	 * @exception NumberFormatException Thrown if the characters are not a valid integer.
+	 */
+	public static int parseInt(CharSequence s,int start,int end) throws NumberFormatException
+	{
+		long value;
+		int index;
+		char ch;
+		boolean negative;
+
+		index = start;
+		negative = false;
+		if(index < end)
+		{
+			ch = s.charAt(index);
+			if((ch == '-')||(ch == '+'))
+			{
+				negative = (ch == '-');
+				index++;
+			}
+		}
+		// no digits, or too many digits to decode without risk of overflow
+		if((index == end)||((end-index) > 10))
+			return Integer.parseInt(s.subSequence(start,end).toString());
+		value = 0;
+		for(;index < end; index++)
+		{
+			ch = s.charAt(index);
+			if((ch < '0')||(ch > '9'))
+				return Integer.parseInt(s.subSequence(start,end).toString());
+			value = (value*10)+(ch-'0');
+		}
+		if(negative)
+			value = -value;
+		if((value < Integer.MIN_VALUE)||(value > Integer.MAX_VALUE))
+			return Integer.parseInt(s.subSequence(start,end).toString());
+		return (int)value;
+	}
+
+	/**
+	 * Decode a double from the specified range of characters.
+	 * Plain decimal numbers of up to 15 significant digits are decoded in place, by dividing an exactly
+	 * representable mantissa by an exactly representable power of ten. As both operands are exact, the
+	 * IEEE division is correctly rounded and gives the same result as Double.parseDouble.
+	 * Any other format is passed to Double.parseDouble.
+	 * @param s The characters to decode.
+	 * @param start The index of the first character.
+	 * @param end The index after the last character.
+	 * @return The double.
+	 * @exception NumberFormatException Thrown if the characters are not a valid double.
+	 * @see #POWERS_OF_TEN
+	 * @see #MAX_FAST_MANTISSA_DIGITS
+	 */
+	public static double parseDouble(CharSequence s,int start,int end) throws NumberFormatException
+	{
+		long mantissa;
+		double value;
+		int index,digitCount,significantDigitCount,fractionDigitCount;
+		char ch;
+		boolean negative,seenPoint;
+
+		index = start;
+		negative = false;
+		if(index < end)
+		{
+			ch = s.charAt(index);
+			if((ch == '-')||(ch == '+'))
+			{
+				negative = (ch == '-');
+				index++;
+			}
+		}
+		mantissa = 0;
+		digitCount = 0;
+		significantDigitCount = 0;
+		fractionDigitCount = 0;
+		seenPoint = false;
+		for(;index < end; index++)
+		{
+			ch = s.charAt(index);
+			if((ch >= '0')&&(ch <= '9'))
+			{
+				digitCount++;
+				if((mantissa != 0)||(ch != '0'))
+					significantDigitCount++;
+				if(significantDigitCount > MAX_FAST_MANTISSA_DIGITS)
+					return Double.parseDouble(s.subSequence(start,end).toString());
+				mantissa = (mantissa*10)+(ch-'0');
+				if(seenPoint)
+					fractionDigitCount++;
+			}
+			else if((ch == '.')&&(seenPoint == false))
+				seenPoint = true;
+			else
+				return Double.parseDouble(s.subSequence(start,end).toString());
+		}
+		if((digitCount == 0)||(fractionDigitCount >= POWERS_OF_TEN.length))
+			return Double.parseDouble(s.subSequence(start,end).toString());
+		value = ((double)mantissa)/POWERS_OF_TEN[fractionDigitCount];
+		if(negative)
+			value = -value;
+		return value;
+	}
+}
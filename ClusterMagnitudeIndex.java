@@ -0,0 +1,317 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterMagnitudeIndex.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.util.*;
+
+/**
+ * This class is an index of the stars in a Cluster sorted by their magnitude in one colour.
+ * It answers magnitude range, brightest N and faintest N queries using binary searches of the sorted
+ * magnitudes, optionally rejecting stars whose magnitude error is too large or which have certain flag bits set.
+ * Query results are indices into the Cluster's star list, ordered brightest (smallest magnitude) first,
+ * except for faintest N queries, which are ordered faintest first.
+ * Stars with a NaN magnitude are not indexed. The index is not updated if the cluster changes.
+ * @version $Revision$
+ * @see Cluster#getMagnitudeIndex(int)
+ */
+public class ClusterMagnitudeIndex
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The cluster that is indexed.
+	 */
+	protected Cluster cluster = null;
+	/**
+	 * The index of the colour that is indexed.
+	 */
+	protected int colourIndex;
+	/**
+	 * The star list index of each indexed star, sorted by magnitude.
+	 */
+	protected int starIndexArray[] = null;
+	/**
+	 * The magnitude of each indexed star, in sorted order.
+	 */
+	protected double magnitudeArray[] = null;
+	/**
+	 * The magnitude error of each indexed star, in sorted order.
+	 */
+	protected double magnitudeErrorArray[] = null;
+	/**
+	 * The flags of each indexed star, in sorted order.
+	 */
+	protected int flagsArray[] = null;
+	/**
+	 * The number of stars in the cluster when the index was built.
+	 */
+	protected int starCount;
+
+	/**
+	 * Constructor. Builds the index.
+	 * @param c The cluster to index.
+	 * @param ci The index of the colour to index.
+	 * @exception IndexOutOfBoundsException Thrown if the colour index is out of range.
+	 * @see Cluster#getMagnitude(int,int)
+	 */
+	public ClusterMagnitudeIndex(Cluster c,int ci) throws IndexOutOfBoundsException
+	{
+		super();
+		double unsortedMagnitudeArray[];
+		double magnitude;
+		int index,count,sortedIndex;
+
+		if((ci < 0)||(ci >= c.getColourCount()))
+		{
+			throw new IndexOutOfBoundsException(this.getClass().getName()+":Colour index "+ci+
+							    " out of range 0.."+c.getColourCount());
+		}
+		cluster = c;
+		colourIndex = ci;
+		starCount = c.getStarListCount();
+		unsortedMagnitudeArray = new double[starCount];
+		starIndexArray = new int[starCount];
+		count = 0;
+		for(index = 0; index < starCount; index++)
+		{
+			magnitude = c.getMagnitude(index,colourIndex);
+			if(Double.isNaN(magnitude))
+				continue;
+			unsortedMagnitudeArray[index] = magnitude;
+			starIndexArray[count++] = index;
+		}
+		starIndexArray = Arrays.copyOf(starIndexArray,count);
+		ClusterSkyIndex.sortByValue(starIndexArray,unsortedMagnitudeArray);
+		magnitudeArray = new double[count];
+		magnitudeErrorArray = new double[count];
+		flagsArray = new int[count];
+		for(sortedIndex = 0; sortedIndex < count; sortedIndex++)
+		{
+			index = starIndexArray[sortedIndex];
+			magnitudeArray[sortedIndex] = unsortedMagnitudeArray[index];
+			magnitudeErrorArray[sortedIndex] = c.getMagnitudeError(index,colourIndex);
+			flagsArray[sortedIndex] = c.getFlags(index,colourIndex);
+		}
+	}
+
+	/**
+	 * Return the index of the colour that is indexed.
+	 * @return The colour index.
+	 */
+	public int getColourIndex()
+	{
+		return colourIndex;
+	}
+
+	/**
+	 * Return the number of stars in the index.
+	 * @return The number of stars with a magnitude in this colour.
+	 */
+	public int getIndexedStarCount()
+	{
+		return starIndexArray.length;
+	}
+
+	/**
+	 * Return the number of stars in the cluster when the index was built.
+	 * @return The number of stars.
+	 */
+	public int getStarCount()
+	{
+		return starCount;
+	}
+
+	/**
+	 * Find the stars with a magnitude in a range.
+	 * @param minMagnitude The minimum (brightest) magnitude.
+	 * @param maxMagnitude The maximum (faintest) magnitude.
+	 * @return The star list indices, brightest first.
+	 */
+	public int[] range(double minMagnitude,double maxMagnitude)
+	{
+		int start,end;
+
+		start = lowerBound(minMagnitude);
+		end = upperBound(maxMagnitude);
+		if(start >= end)
+			return new int[0];
+		return Arrays.copyOfRange(starIndexArray,start,end);
+	}
+
+	/**
+	 * Find the stars with a magnitude in a range, that pass the error and flags filters.
+	 * @param minMagnitude The minimum (brightest) magnitude.
+	 * @param maxMagnitude The maximum (faintest) magnitude.
+	 * @param maxError Stars with a magnitude error larger than this (or NaN) are rejected.
+	 *        Pass Double.POSITIVE_INFINITY to accept any error.
+	 * @param rejectFlags Stars with any of these flag bits set are rejected. Pass 0 to accept any flags.
+	 * @return The star list indices, brightest first.
+	 * @see #accept
+	 */
+	public int[] range(double minMagnitude,double maxMagnitude,double maxError,int rejectFlags)
+	{
+		ClusterSkyIndex.IntList results = null;
+		int sortedIndex,end;
+
+		results = new ClusterSkyIndex.IntList();
+		end = upperBound(maxMagnitude);
+		for(sortedIndex = lowerBound(minMagnitude); sortedIndex < end; sortedIndex++)
+		{
+			if(accept(sortedIndex,maxError,rejectFlags))
+				results.add(starIndexArray[sortedIndex]);
+		}
+		return results.toArray();
+	}
+
+	/**
+	 * Find the n brightest stars.
+	 * @param n The number of stars.
+	 * @return The star list indices, brightest first. Fewer than n if there are not enough stars.
+	 */
+	public int[] brightest(int n)
+	{
+		return Arrays.copyOf(starIndexArray,Math.max(0,Math.min(n,starIndexArray.length)));
+	}
+
+	/**
+	 * Find the n brightest stars that pass the error and flags filters.
+	 * @param n The number of stars.
+	 * @param maxError Stars with a magnitude error larger than this (or NaN) are rejected.
+	 * @param rejectFlags Stars with any of these flag bits set are rejected.
+	 * @return The star list indices, brightest first. Fewer than n if there are not enough stars.
+	 * @see #accept
+	 */
+	public int[] brightest(int n,double maxError,int rejectFlags)
+	{
+		ClusterSkyIndex.IntList results = null;
+		int sortedIndex;
+
+		results = new ClusterSkyIndex.IntList();
+		for(sortedIndex = 0; (sortedIndex < starIndexArray.length)&&(results.size() < n); sortedIndex++)
+		{
+			if(accept(sortedIndex,maxError,rejectFlags))
+				results.add(starIndexArray[sortedIndex]);
+		}
+		return results.toArray();
+	}
+
+	/**
+	 * Find the n faintest stars.
+	 * @param n The number of stars.
+	 * @return The star list indices, faintest first. Fewer than n if there are not enough stars.
+	 */
+	public int[] faintest(int n)
+	{
+		return faintest(n,Double.POSITIVE_INFINITY,0);
+	}
+
+	/**
+	 * Find the n faintest stars that pass the error and flags filters.
+	 * @param n The number of stars.
+	 * @param maxError Stars with a magnitude error larger than this (or NaN) are rejected.
+	 * @param rejectFlags Stars with any of these flag bits set are rejected.
+	 * @return The star list indices, faintest first. Fewer than n if there are not enough stars.
+	 * @see #accept
+	 */
+	public int[] faintest(int n,double maxError,int rejectFlags)
+	{
+		ClusterSkyIndex.IntList results = null;
+		int sortedIndex;
+
+		results = new ClusterSkyIndex.IntList();
+		for(sortedIndex = starIndexArray.length-1; (sortedIndex >= 0)&&(results.size() < n); sortedIndex--)
+		{
+			if(accept(sortedIndex,maxError,rejectFlags))
+				results.add(starIndexArray[sortedIndex]);
+		}
+		return results.toArray();
+	}
+
+	/**
+	 * Return the number of stars with a magnitude in a range.
+	 * @param minMagnitude The minimum (brightest) magnitude.
+	 * @param maxMagnitude The maximum (faintest) magnitude.
+	 * @return The number of stars.
+	 */
+	public int count(double minMagnitude,double maxMagnitude)
+	{
+		return Math.max(0,upperBound(maxMagnitude)-lowerBound(minMagnitude));
+	}
+
+	/**
+	 * Determine whether an indexed star passes the error and flags filters.
+	 * @param sortedIndex The index of the star in the sorted arrays.
+	 * @param maxError The maximum magnitude error.
+	 * @param rejectFlags The flag bits to reject.
+	 * @return true if the star passes.
+	 */
+	protected boolean accept(int sortedIndex,double maxError,int rejectFlags)
+	{
+		return (magnitudeErrorArray[sortedIndex] <= maxError)&&((flagsArray[sortedIndex] & rejectFlags) == 0);
+	}
+
+	/**
+	 * Return the first sorted index whose magnitude is greater than or equal to the magnitude.
+	 * @param magnitude The magnitude.
+	 * @return The sorted index.
+	 */
+	protected int lowerBound(double magnitude)
+	{
+		int low,high,middle;
+
+		low = 0;
+		high = magnitudeArray.length;
+		while(low < high)
+		{
+			middle = (low+high) >>> 1;
+			if(magnitudeArray[middle] < magnitude)
+				low = middle+1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Return the first sorted index whose magnitude is greater than the magnitude.
+	 * @param magnitude The magnitude.
+	 * @return The sorted index.
+	 */
+	protected int upperBound(double magnitude)
+	{
+		int low,high,middle;
+
+		low = 0;
+		high = magnitudeArray.length;
+		while(low < high)
+		{
+			middle = (low+high) >>> 1;
+			if(magnitudeArray[middle] <= magnitude)
+				low = middle+1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+}
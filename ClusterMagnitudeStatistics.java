@@ -0,0 +1,833 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterMagnitudeStatistics.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class computes photometric statistics (mean, error weighted mean, standard deviation, median,
+ * sigma clipped mean and histograms) over the magnitudes of one colour of a Cluster, or over a colour
+ * index such as B-V.
+ * When the statistics are created, the accepted values are copied out of the cluster into contiguous arrays:
+ * stars with a NaN magnitude, a magnitude error larger than the maximum, or any of the rejected flag bits set,
+ * are left out. All the statistics then run over these arrays, using unrolled loops with independent
+ * accumulators, and large arrays are split into partitions that are summed in parallel in a ForkJoinPool.
+ * The values are not updated if the cluster changes.
+ * @version $Revision$
+ * @see Cluster#getMagnitudeStatistics(int,double,int)
+ * @see Cluster#getColourIndexStatistics(java.lang.String,java.lang.String,double,int)
+ */
+public class ClusterMagnitudeStatistics
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The number of values below which a sum or histogram is computed in the calling thread.
+	 */
+	protected final static int PARALLEL_THRESHOLD = 1<<16;
+	/**
+	 * The star list index of each accepted star.
+	 */
+	protected int starIndexArray[] = null;
+	/**
+	 * The magnitude (or colour index) of each accepted star.
+	 */
+	protected double valueArray[] = null;
+	/**
+	 * The error of each accepted value.
+	 */
+	protected double errorArray[] = null;
+	/**
+	 * The weight (inverse variance) of each accepted value, or 0 if its error is not positive.
+	 */
+	protected double weightArray[] = null;
+	/**
+	 * The pool large arrays are summed in.
+	 */
+	protected ForkJoinPool pool = null;
+	/**
+	 * The sums over all the values, computed when first needed.
+	 */
+	protected SumTask sums = null;
+	/**
+	 * A sorted copy of the values, created when first needed.
+	 */
+	protected double sortedValueArray[] = null;
+
+	/**
+	 * Constructor. Copies the accepted magnitudes of a colour out of the cluster.
+	 * @param c The cluster.
+	 * @param colourIndex The index of the colour.
+	 * @param maxError Stars with a magnitude error larger than this (or NaN) are rejected.
+	 *        Pass Double.POSITIVE_INFINITY to accept any error.
+	 * @param rejectFlags Stars with any of these flag bits set are rejected. Pass 0 to accept any flags.
+	 * @exception IndexOutOfBoundsException Thrown if the colour index is out of range.
+	 * @see Cluster#getMagnitude(int,int)
+	 * @see Cluster#getMagnitudeError(int,int)
+	 * @see Cluster#getFlags(int,int)
+	 */
+	public ClusterMagnitudeStatistics(Cluster c,int colourIndex,double maxError,int rejectFlags)
+		throws IndexOutOfBoundsException
+	{
+		super();
+		ClusterSkyIndex.IntList indexList = null;
+		ClusterSkyIndex.DoubleList valueList = null;
+		ClusterSkyIndex.DoubleList errorList = null;
+		double magnitude,error;
+		int index,starCount;
+
+		checkColourIndex(c,colourIndex);
+		indexList = new ClusterSkyIndex.IntList();
+		valueList = new ClusterSkyIndex.DoubleList();
+		errorList = new ClusterSkyIndex.DoubleList();
+		starCount = c.getStarListCount();
+		for(index = 0; index < starCount; index++)
+		{
+			magnitude = c.getMagnitude(index,colourIndex);
+			error = c.getMagnitudeError(index,colourIndex);
+			if(Double.isNaN(magnitude)||((error <= maxError) == false)||
+			   ((c.getFlags(index,colourIndex) & rejectFlags) != 0))
+				continue;
+			indexList.add(index);
+			valueList.add(magnitude);
+			errorList.add(error);
+		}
+		initialise(indexList,valueList,errorList,ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructor used by colourIndex.
+	 * @param indexList The star list index of each accepted star.
+	 * @param valueList The value of each accepted star.
+	 * @param errorList The error of each accepted value.
+	 * @param p The pool to sum large arrays in.
+	 */
+	protected ClusterMagnitudeStatistics(ClusterSkyIndex.IntList indexList,ClusterSkyIndex.DoubleList valueList,
+					     ClusterSkyIndex.DoubleList errorList,ForkJoinPool p)
+	{
+		super();
+		initialise(indexList,valueList,errorList,p);
+	}
+
+	/**
+	 * Create statistics of a colour index (the magnitude in colour 1 minus the magnitude in colour 2) of each
+	 * star. A star is only accepted if both its magnitudes are. The error of each colour index is the errors
+	 * of the two magnitudes added in quadrature.
+	 * @param c The cluster.
+	 * @param colourIndex1 The index of the first colour (e.g. B).
+	 * @param colourIndex2 The index of the second colour (e.g. V).
+	 * @param maxError Stars with either magnitude error larger than this (or NaN) are rejected.
+	 * @param rejectFlags Stars with any of these flag bits set in either colour are rejected.
+	 * @return The statistics.
+	 * @exception IndexOutOfBoundsException Thrown if a colour index is out of range.
+	 */
+	public static ClusterMagnitudeStatistics colourIndex(Cluster c,int colourIndex1,int colourIndex2,
+							     double maxError,int rejectFlags)
+		throws IndexOutOfBoundsException
+	{
+		ClusterSkyIndex.IntList indexList = null;
+		ClusterSkyIndex.DoubleList valueList = null;
+		ClusterSkyIndex.DoubleList errorList = null;
+		double magnitude1,magnitude2,error1,error2;
+		int index,starCount;
+
+		checkColourIndex(c,colourIndex1);
+		checkColourIndex(c,colourIndex2);
+		indexList = new ClusterSkyIndex.IntList();
+		valueList = new ClusterSkyIndex.DoubleList();
+		errorList = new ClusterSkyIndex.DoubleList();
+		starCount = c.getStarListCount();
+		for(index = 0; index < starCount; index++)
+		{
+			magnitude1 = c.getMagnitude(index,colourIndex1);
+			magnitude2 = c.getMagnitude(index,colourIndex2);
+			error1 = c.getMagnitudeError(index,colourIndex1);
+			error2 = c.getMagnitudeError(index,colourIndex2);
+			if(Double.isNaN(magnitude1)||Double.isNaN(magnitude2)||
+			   ((error1 <= maxError) == false)||((error2 <= maxError) == false)||
+			   (((c.getFlags(index,colourIndex1)|c.getFlags(index,colourIndex2)) & rejectFlags) != 0))
+				continue;
+			indexList.add(index);
+			valueList.add(magnitude1-magnitude2);
+			errorList.add(Math.sqrt((error1*error1)+(error2*error2)));
+		}
+		return new ClusterMagnitudeStatistics(indexList,valueList,errorList,ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Check a colour index is in range.
+	 * @param c The cluster.
+	 * @param colourIndex The colour index.
+	 * @exception IndexOutOfBoundsException Thrown if the colour index is out of range.
+	 */
+	protected static void checkColourIndex(Cluster c,int colourIndex) throws IndexOutOfBoundsException
+	{
+		if((colourIndex < 0)||(colourIndex >= c.getColourCount()))
+		{
+			throw new IndexOutOfBoundsException("org.estar.cluster.ClusterMagnitudeStatistics:Colour index "+
+							    colourIndex+" out of range 0.."+c.getColourCount());
+		}
+	}
+
+	/**
+	 * Copy the accepted values into arrays, and compute the weights.
+	 * @param indexList The star list index of each accepted star.
+	 * @param valueList The value of each accepted star.
+	 * @param errorList The error of each accepted value.
+	 * @param p The pool to sum large arrays in.
+	 */
+	protected void initialise(ClusterSkyIndex.IntList indexList,ClusterSkyIndex.DoubleList valueList,
+				  ClusterSkyIndex.DoubleList errorList,ForkJoinPool p)
+	{
+		double error;
+		int index;
+
+		starIndexArray = indexList.toArray();
+		valueArray = valueList.toArray();
+		errorArray = errorList.toArray();
+		weightArray = new double[errorArray.length];
+		for(index = 0; index < errorArray.length; index++)
+		{
+			error = errorArray[index];
+			if((error > 0.0)&&(error < Double.POSITIVE_INFINITY))
+				weightArray[index] = 1.0/(error*error);
+		}
+		pool = p;
+	}
+
+	/**
+	 * Return the number of accepted values.
+	 * @return The number of values.
+	 */
+	public int getCount()
+	{
+		return valueArray.length;
+	}
+
+	/**
+	 * Return the star list indices of the accepted stars.
+	 * @return A copy of the indices, in increasing order.
+	 */
+	public int[] getStarIndexes()
+	{
+		return starIndexArray.clone();
+	}
+
+	/**
+	 * Return the accepted values.
+	 * @return A copy of the values, in star list order.
+	 */
+	public double[] getValues()
+	{
+		return valueArray.clone();
+	}
+
+	/**
+	 * Return the mean of the values.
+	 * @return The mean, or NaN if there are no values.
+	 */
+	public double getMean()
+	{
+		return getSums().getMean();
+	}
+
+	/**
+	 * Return the sample standard deviation of the values.
+	 * @return The standard deviation, or NaN if there are fewer than two values.
+	 */
+	public double getStandardDeviation()
+	{
+		return getSums().getStandardDeviation();
+	}
+
+	/**
+	 * Return the smallest (brightest) value.
+	 * @return The minimum, or NaN if there are no values.
+	 */
+	public double getMinimum()
+	{
+		return getSums().getMinimum();
+	}
+
+	/**
+	 * Return the largest (faintest) value.
+	 * @return The maximum, or NaN if there are no values.
+	 */
+	public double getMaximum()
+	{
+		return getSums().getMaximum();
+	}
+
+	/**
+	 * Return the mean of the values, weighted by the inverse square of their errors.
+	 * Values whose error is not positive are not included.
+	 * @return The weighted mean, or NaN if no value has a positive error.
+	 */
+	public double getWeightedMean()
+	{
+		return getSums().getWeightedMean();
+	}
+
+	/**
+	 * Return the error of the weighted mean.
+	 * @return The error, or NaN if no value has a positive error.
+	 * @see #getWeightedMean
+	 */
+	public double getWeightedMeanError()
+	{
+		return getSums().getWeightedMeanError();
+	}
+
+	/**
+	 * Return the median of the values.
+	 * @return The median, or NaN if there are no values.
+	 */
+	public double getMedian()
+	{
+		double sortedArray[];
+
+		sortedArray = getSortedValues();
+		return median(sortedArray,0,sortedArray.length);
+	}
+
+	/**
+	 * Return the sigma clipped mean of the values. Values more than nSigma standard deviations from the median
+	 * of the remaining values are rejected, and this is repeated until no more values are rejected, or
+	 * maxIterations is reached. As the values are clipped about the median, the remaining values are always
+	 * a contiguous range of the sorted values, which is found by binary search.
+	 * @param nSigma The number of standard deviations beyond which values are rejected.
+	 * @param maxIterations The maximum number of times to reject values.
+	 * @return The mean of the remaining values, or NaN if there are no values.
+	 */
+	public double getSigmaClippedMean(double nSigma,int maxIterations)
+	{
+		SumTask task = null;
+		double sortedArray[];
+		double median,limit;
+		int start,end,newStart,newEnd,iteration;
+
+		sortedArray = getSortedValues();
+		start = 0;
+		end = sortedArray.length;
+		task = sum(sortedArray,null,start,end);
+		for(iteration = 0; (iteration < maxIterations)&&(task.count > 1); iteration++)
+		{
+			median = median(sortedArray,start,end);
+			limit = nSigma*task.getStandardDeviation();
+			newStart = lowerBound(sortedArray,start,end,median-limit);
+			newEnd = upperBound(sortedArray,start,end,median+limit);
+			if((newStart == start)&&(newEnd == end))
+				break;
+			start = newStart;
+			end = newEnd;
+			task = sum(sortedArray,null,start,end);
+		}
+		return task.getMean();
+	}
+
+	/**
+	 * Return a histogram of the values. Values outside the range are not counted. A value equal to the
+	 * maximum is counted in the last bin.
+	 * @param min The lower edge of the first bin.
+	 * @param max The upper edge of the last bin.
+	 * @param binCount The number of equal width bins.
+	 * @return The number of values in each bin.
+	 * @exception IllegalArgumentException Thrown if the bin count is not positive, or max is not more than min.
+	 */
+	public int[] getHistogram(double min,double max,int binCount) throws IllegalArgumentException
+	{
+		HistogramTask task = null;
+
+		if((binCount < 1)||((max > min) == false))
+		{
+			throw new IllegalArgumentException(this.getClass().getName()+":getHistogram:Illegal range:"+
+							   min+":"+max+":"+binCount);
+		}
+		task = new HistogramTask(valueArray,0,valueArray.length,min,max,binCount);
+		if(valueArray.length < PARALLEL_THRESHOLD)
+			task.compute();
+		else
+			pool.invoke(task);
+		return task.binArray;
+	}
+
+	/**
+	 * Return the sums over all the values, computing them the first time.
+	 * @return The sums.
+	 */
+	protected synchronized SumTask getSums()
+	{
+		if(sums == null)
+			sums = sum(valueArray,weightArray,0,valueArray.length);
+		return sums;
+	}
+
+	/**
+	 * Return a sorted copy of the values, creating it the first time. Large arrays are sorted in parallel.
+	 * @return The sorted values.
+	 */
+	protected synchronized double[] getSortedValues()
+	{
+		if(sortedValueArray == null)
+		{
+			sortedValueArray = valueArray.clone();
+			if(sortedValueArray.length < PARALLEL_THRESHOLD)
+				Arrays.sort(sortedValueArray);
+			else
+				Arrays.parallelSort(sortedValueArray);
+		}
+		return sortedValueArray;
+	}
+
+	/**
+	 * Sum a range of values, in parallel if the range is large.
+	 * @param values The values.
+	 * @param weights The weight of each value, or null if weighted sums are not needed.
+	 * @param start The index of the first value.
+	 * @param end The index after the last value.
+	 * @return The sums.
+	 */
+	protected SumTask sum(double values[],double weights[],int start,int end)
+	{
+		SumTask task = null;
+
+		task = new SumTask(values,weights,start,end);
+		if(end-start < PARALLEL_THRESHOLD)
+			task.compute();
+		else
+			pool.invoke(task);
+		return task;
+	}
+
+	/**
+	 * Return the median of a range of sorted values.
+	 * @param sortedArray The sorted values.
+	 * @param start The index of the first value.
+	 * @param end The index after the last value.
+	 * @return The median, or NaN if the range is empty.
+	 */
+	protected static double median(double sortedArray[],int start,int end)
+	{
+		int middle;
+
+		if(end <= start)
+			return Double.NaN;
+		middle = (start+end) >>> 1;
+		if(((end-start) & 1) == 1)
+			return sortedArray[middle];
+		return (sortedArray[middle-1]+sortedArray[middle])/2.0;
+	}
+
+	/**
+	 * Return the first index in a range of sorted values whose value is greater than or equal to the value.
+	 * @param sortedArray The sorted values.
+	 * @param start The index of the first value.
+	 * @param end The index after the last value.
+	 * @param value The value.
+	 * @return The index.
+	 */
+	protected static int lowerBound(double sortedArray[],int start,int end,double value)
+	{
+		int middle;
+
+		while(start < end)
+		{
+			middle = (start+end) >>> 1;
+			if(sortedArray[middle] < value)
+				start = middle+1;
+			else
+				end = middle;
+		}
+		return start;
+	}
+
+	/**
+	 * Return the first index in a range of sorted values whose value is greater than the value.
+	 * @param sortedArray The sorted values.
+	 * @param start The index of the first value.
+	 * @param end The index after the last value.
+	 * @param value The value.
+	 * @return The index.
+	 */
+	protected static int upperBound(double sortedArray[],int start,int end,double value)
+	{
+		int middle;
+
+		while(start < end)
+		{
+			middle = (start+end) >>> 1;
+			if(sortedArray[middle] <= value)
+				start = middle+1;
+			else
+				end = middle;
+		}
+		return start;
+	}
+
+	/**
+	 * Task to compute the count, sum, sum of squares, minimum, maximum and weighted sums of a range of values.
+	 * Ranges larger than PARALLEL_THRESHOLD are split in two, and the halves summed in parallel.
+	 * The sums of squares are accumulated about the first value of the whole range, to limit cancellation.
+	 */
+	protected static class SumTask extends RecursiveAction
+	{
+		/**
+		 * Serialization version id, as RecursiveAction is Serializable.
+		 */
+		private final static long serialVersionUID = 1L;
+		/**
+		 * The values.
+		 */
+		protected double values[] = null;
+		/**
+		 * The weights, or null.
+		 */
+		protected double weights[] = null;
+		/**
+		 * The index of the first value.
+		 */
+		protected int start;
+		/**
+		 * The index after the last value.
+		 */
+		protected int end;
+		/**
+		 * The value subtracted from each value before it is summed.
+		 */
+		protected double shift;
+		/**
+		 * The number of values.
+		 */
+		protected int count;
+		/**
+		 * The sum of the shifted values.
+		 */
+		protected double sum;
+		/**
+		 * The sum of the squares of the shifted values.
+		 */
+		protected double sumSquares;
+		/**
+		 * The smallest value.
+		 */
+		protected double min;
+		/**
+		 * The largest value.
+		 */
+		protected double max;
+		/**
+		 * The sum of the weights.
+		 */
+		protected double sumWeights;
+		/**
+		 * The sum of the weighted values.
+		 */
+		protected double sumWeightedValues;
+
+		/**
+		 * Constructor for the whole range.
+		 * @param v The values.
+		 * @param w The weights, or null.
+		 * @param s The index of the first value.
+		 * @param e The index after the last value.
+		 */
+		public SumTask(double v[],double w[],int s,int e)
+		{
+			this(v,w,s,e,(e > s) ? v[s] : 0.0);
+		}
+
+		/**
+		 * Constructor for part of a range.
+		 * @param v The values.
+		 * @param w The weights, or null.
+		 * @param s The index of the first value.
+		 * @param e The index after the last value.
+		 * @param sh The value subtracted from each value before it is summed.
+		 */
+		protected SumTask(double v[],double w[],int s,int e,double sh)
+		{
+			super();
+			values = v;
+			weights = w;
+			start = s;
+			end = e;
+			shift = sh;
+		}
+
+		/**
+		 * Sum the range, or split it and sum the halves in parallel.
+		 */
+		protected void compute()
+		{
+			SumTask left = null;
+			SumTask right = null;
+			int middle;
+
+			if(end-start < PARALLEL_THRESHOLD)
+			{
+				sumRange();
+				return;
+			}
+			middle = (start+end) >>> 1;
+			left = new SumTask(values,weights,start,middle,shift);
+			right = new SumTask(values,weights,middle,end,shift);
+			invokeAll(left,right);
+			count = left.count+right.count;
+			sum = left.sum+right.sum;
+			sumSquares = left.sumSquares+right.sumSquares;
+			min = Math.min(left.min,right.min);
+			max = Math.max(left.max,right.max);
+			sumWeights = left.sumWeights+right.sumWeights;
+			sumWeightedValues = left.sumWeightedValues+right.sumWeightedValues;
+		}
+
+		/**
+		 * Sum the range in this thread. The loops are unrolled four times, with independent accumulators,
+		 * so the additions can be pipelined.
+		 */
+		protected void sumRange()
+		{
+			double s0,s1,s2,s3,q0,q1,q2,q3,d0,d1,d2,d3,w0,w1,w2,w3,x0,x1,x2,x3,value;
+			int index,unrolledEnd;
+
+			count = end-start;
+			s0 = s1 = s2 = s3 = 0.0;
+			q0 = q1 = q2 = q3 = 0.0;
+			min = Double.POSITIVE_INFINITY;
+			max = Double.NEGATIVE_INFINITY;
+			unrolledEnd = start+((end-start) & ~3);
+			for(index = start; index < unrolledEnd; index += 4)
+			{
+				d0 = values[index]-shift;
+				d1 = values[index+1]-shift;
+				d2 = values[index+2]-shift;
+				d3 = values[index+3]-shift;
+				s0 += d0;
+				s1 += d1;
+				s2 += d2;
+				s3 += d3;
+				q0 += d0*d0;
+				q1 += d1*d1;
+				q2 += d2*d2;
+				q3 += d3*d3;
+			}
+			for(index = unrolledEnd; index < end; index++)
+			{
+				d0 = values[index]-shift;
+				s0 += d0;
+				q0 += d0*d0;
+			}
+			sum = (s0+s1)+(s2+s3);
+			sumSquares = (q0+q1)+(q2+q3);
+			for(index = start; index < end; index++)
+			{
+				value = values[index];
+				if(value < min)
+					min = value;
+				if(value > max)
+					max = value;
+			}
+			if(weights == null)
+				return;
+			w0 = w1 = w2 = w3 = 0.0;
+			x0 = x1 = x2 = x3 = 0.0;
+			for(index = start; index < unrolledEnd; index += 4)
+			{
+				w0 += weights[index];
+				w1 += weights[index+1];
+				w2 += weights[index+2];
+				w3 += weights[index+3];
+				x0 += weights[index]*values[index];
+				x1 += weights[index+1]*values[index+1];
+				x2 += weights[index+2]*values[index+2];
+				x3 += weights[index+3]*values[index+3];
+			}
+			for(index = unrolledEnd; index < end; index++)
+			{
+				w0 += weights[index];
+				x0 += weights[index]*values[index];
+			}
+			sumWeights = (w0+w1)+(w2+w3);
+			sumWeightedValues = (x0+x1)+(x2+x3);
+		}
+
+		/**
+		 * Return the mean.
+		 * @return The mean, or NaN if there are no values.
+		 */
+		public double getMean()
+		{
+			if(count == 0)
+				return Double.NaN;
+			return shift+(sum/count);
+		}
+
+		/**
+		 * Return the sample standard deviation.
+		 * @return The standard deviation, or NaN if there are fewer than two values.
+		 */
+		public double getStandardDeviation()
+		{
+			if(count < 2)
+				return Double.NaN;
+			return Math.sqrt(Math.max(0.0,(sumSquares-((sum*sum)/count))/(count-1)));
+		}
+
+		/**
+		 * Return the smallest value.
+		 * @return The minimum, or NaN if there are no values.
+		 */
+		public double getMinimum()
+		{
+			return (count == 0) ? Double.NaN : min;
+		}
+
+		/**
+		 * Return the largest value.
+		 * @return The maximum, or NaN if there are no values.
+		 */
+		public double getMaximum()
+		{
+			return (count == 0) ? Double.NaN : max;
+		}
+
+		/**
+		 * Return the weighted mean.
+		 * @return The weighted mean, or NaN if the weights sum to zero.
+		 */
+		public double getWeightedMean()
+		{
+			if(sumWeights <= 0.0)
+				return Double.NaN;
+			return sumWeightedValues/sumWeights;
+		}
+
+		/**
+		 * Return the error of the weighted mean.
+		 * @return The error, or NaN if the weights sum to zero.
+		 */
+		public double getWeightedMeanError()
+		{
+			if(sumWeights <= 0.0)
+				return Double.NaN;
+			return 1.0/Math.sqrt(sumWeights);
+		}
+	}
+
+	/**
+	 * Task to histogram a range of values. Ranges larger than PARALLEL_THRESHOLD are split in two,
+	 * the halves histogrammed in parallel, and the bins added.
+	 */
+	protected static class HistogramTask extends RecursiveAction
+	{
+		/**
+		 * Serialization version id, as RecursiveAction is Serializable.
+		 */
+		private final static long serialVersionUID = 1L;
+		/**
+		 * The values.
+		 */
+		protected double values[] = null;
+		/**
+		 * The index of the first value.
+		 */
+		protected int start;
+		/**
+		 * The index after the last value.
+		 */
+		protected int end;
+		/**
+		 * The lower edge of the first bin.
+		 */
+		/**
+		 * The smallest value.
+		 */
+		protected double min;
+		/**
+		 * The upper edge of the last bin.
+		 */
+		/**
+		 * The largest value.
+		 */
+		protected double max;
+		/**
+		 * The number of values in each bin.
+		 */
+		protected int binArray[] = null;
+
+		/**
+		 * Constructor.
+		 * @param v The values.
+		 * @param s The index of the first value.
+		 * @param e The index after the last value.
+		 * @param mn The lower edge of the first bin.
+		 * @param mx The upper edge of the last bin.
+		 * @param binCount The number of bins.
+		 */
+		public HistogramTask(double v[],int s,int e,double mn,double mx,int binCount)
+		{
+			super();
+			values = v;
+			start = s;
+			end = e;
+			min = mn;
+			max = mx;
+			binArray = new int[binCount];
+		}
+
+		/**
+		 * Histogram the range, or split it and histogram the halves in parallel.
+		 */
+		protected void compute()
+		{
+			HistogramTask left = null;
+			HistogramTask right = null;
+			double value,scale;
+			int index,bin,middle;
+
+			if(end-start >= PARALLEL_THRESHOLD)
+			{
+				middle = (start+end) >>> 1;
+				left = new HistogramTask(values,start,middle,min,max,binArray.length);
+				right = new HistogramTask(values,middle,end,min,max,binArray.length);
+				invokeAll(left,right);
+				for(bin = 0; bin < binArray.length; bin++)
+					binArray[bin] = left.binArray[bin]+right.binArray[bin];
+				return;
+			}
+			scale = binArray.length/(max-min);
+			for(index = start; index < end; index++)
+			{
+				value = values[index];
+				if((value < min)||(value > max))
+					continue;
+				bin = (int)((value-min)*scale);
+				if(bin >= binArray.length)
+					bin = binArray.length-1;
+				binArray[bin]++;
+			}
+		}
+	}
+}
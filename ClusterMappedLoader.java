@@ -0,0 +1,478 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterMappedLoader.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class loads a cluster file in parallel. The file is memory mapped using a NIO FileChannel,
+ * the three header lines are parsed, and then the star lines are split into chunks that start and end on
+ * line boundaries. The chunks are parsed in parallel using a ForkJoinPool, directly out of the mapped
+ * buffers, and the results are concatenated in chunk order, so the star order is the same as
+ * Cluster.load. Each chunk is mapped separately, so files larger than 2Gb can be loaded.
+ * Line terminators are handled in the same way as BufferedReader.readLine ('\n', '\r' or "\r\n").
+ * @version $Revision$
+ * @see Cluster
+ * @see ClusterTable
+ * @see ByteBufferCharSequence
+ */
+public class ClusterMappedLoader
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The minimum size of a chunk of star lines, in bytes.
+	 */
+	public final static long MIN_CHUNK_SIZE = 1024*1024;
+	/**
+	 * The maximum size of a chunk of star lines, in bytes.
+	 */
+	public final static long MAX_CHUNK_SIZE = 64*1024*1024;
+	/**
+	 * The number of chunks to create per worker thread, so the load is balanced between the threads.
+	 */
+	protected final static int CHUNKS_PER_THREAD = 4;
+	/**
+	 * The size of the buffer used when scanning for line boundaries.
+	 */
+	protected final static int SCAN_BUFFER_SIZE = 8192;
+
+	/**
+	 * Static method to load a Cluster in parallel from the specified file, using the common fork-join pool.
+	 * @param file The file to load.
+	 * @return A Cluster containing a list of ClusterObject's.
+	 * @exception FileNotFoundException Thrown if the file does not exist.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see #load(java.io.File,org.estar.cluster.Cluster,java.util.concurrent.ForkJoinPool)
+	 */
+	public static Cluster load(File file) throws FileNotFoundException,IOException
+	{
+		return load(file,new Cluster(),ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Static method to load a ClusterTable in parallel from the specified file, using the common
+	 * fork-join pool.
+	 * @param file The file to load.
+	 * @return A ClusterTable.
+	 * @exception FileNotFoundException Thrown if the file does not exist.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see #load(java.io.File,org.estar.cluster.Cluster,java.util.concurrent.ForkJoinPool)
+	 */
+	public static ClusterTable loadTable(File file) throws FileNotFoundException,IOException
+	{
+		return (ClusterTable)load(file,new ClusterTable(),ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Static method to load a cluster file in parallel into the specified Cluster (or ClusterTable).
+	 * @param file The file to load.
+	 * @param c The cluster to load into. If this is a ClusterTable, the stars are parsed into columns,
+	 *        otherwise a list of ClusterObject's is created.
+	 * @param pool The fork-join pool to parse the chunks in.
+	 * @return The cluster c.
+	 * @exception FileNotFoundException Thrown if the file does not exist.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see #loadHeader
+	 * @see #createChunkTasks
+	 * @see #isCompressed
+	 * @see #loadCompressed
+	 */
+	public static Cluster load(File file,Cluster c,ForkJoinPool pool) throws FileNotFoundException,IOException
+	{
+		RandomAccessFile raf = null;
+		FileChannel fc = null;
+		final List<ChunkTask> taskList;
+		ClusterTable table = null;
+		long starStart;
+		int starCount;
+
+		raf = new RandomAccessFile(file,"r");
+		try
+		{
+			fc = raf.getChannel();
+			if(isCompressed(fc))
+			{
+				// compressed data can't be split into chunks, stream it instead
+				raf.close();
+				return loadCompressed(file,c);
+			}
+			starStart = loadHeader(fc,c);
+			taskList = createChunkTasks(fc,starStart,c,pool.getParallelism());
+			pool.invoke(new RecursiveAction()
+			{
+				protected void compute()
+				{
+					invokeAll(taskList);
+				}
+			});
+		}
+		finally
+		{
+			raf.close();
+		}
+		// concatenate the chunk results, in order
+		starCount = 0;
+		for(ChunkTask task : taskList)
+			starCount += task.getStarCount();
+		// the stars are replaced, so any indexes of the previous stars are stale
+		c.clearIndexes();
+		if(c instanceof ClusterTable)
+		{
+			table = (ClusterTable)c;
+			table.initialiseColumns(starCount);
+			for(ChunkTask task : taskList)
+				table.appendTable(task.table);
+		}
+		else
+		{
+			c.starList = new Vector(starCount);
+			for(ChunkTask task : taskList)
+				c.starList.addAll(task.starList);
+		}
+		return c;
+	}
+
+	/**
+	 * Method to determine whether the file is compressed, from its magic bytes.
+	 * @param fc The file channel.
+	 * @return true if the file is gzip or zstd compressed.
+	 * @exception IOException Thrown if the file could not be read.
+	 * @see ClusterDecompressor#getFormat
+	 */
+	protected static boolean isCompressed(FileChannel fc) throws IOException
+	{
+		ByteBuffer magicBuffer = null;
+		int count;
+
+		magicBuffer = ByteBuffer.allocate(ClusterDecompressor.MAGIC_LENGTH);
+		while(magicBuffer.hasRemaining())
+		{
+			count = fc.read(magicBuffer,magicBuffer.position());
+			if(count < 0)
+				break;
+		}
+		return ClusterDecompressor.getFormat(magicBuffer.array(),magicBuffer.position()) !=
+			ClusterDecompressor.FORMAT_NONE;
+	}
+
+	/**
+	 * Method to load a compressed file into the specified Cluster, decompressing it in a pipeline
+	 * with a single parsing thread.
+	 * @param file The file to load.
+	 * @param c The cluster to load into.
+	 * @return The cluster c.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see ClusterDecompressor#open
+	 */
+	protected static Cluster loadCompressed(File file,Cluster c) throws IOException
+	{
+		InputStream is = null;
+
+		is = ClusterDecompressor.open(new FileInputStream(file));
+		try
+		{
+			c.load(new BufferedReader(new InputStreamReader(is,Cluster.FILE_CHARSET)));
+		}
+		finally
+		{
+			is.close();
+		}
+		return c;
+	}
+
+	/**
+	 * Method to parse the three header lines at the start of the file into the specified Cluster.
+	 * @param fc The file channel.
+	 * @param c The cluster to parse the header into.
+	 * @return The position in the file of the start of the first star line.
+	 * @exception IOException Thrown if the header is missing or could not be read.
+	 * @see Cluster#parseColourCountLine
+	 * @see Cluster#parseColourNameListLine
+	 * @see Cluster#commentString
+	 */
+	protected static long loadHeader(FileChannel fc,Cluster c) throws IOException
+	{
+		String lineArray[] = new String[3];
+		String errorArray[] = {"colour count","colour list","comment"};
+		ByteBuffer lineBuffer = null;
+		long size,lineStart,nextLineStart;
+		int index,lineLength;
+
+		size = fc.size();
+		lineStart = 0;
+		for(index = 0; index < lineArray.length; index++)
+		{
+			if(lineStart >= size)
+			{
+				throw new IOException("load failed:reading "+errorArray[index]+
+						      " returned null.");
+			}
+			nextLineStart = nextLineStart(fc,lineStart,size);
+			lineBuffer = ByteBuffer.allocate((int)(nextLineStart-lineStart));
+			readFully(fc,lineBuffer,lineStart);
+			// strip the line terminator
+			lineLength = lineBuffer.capacity();
+			if((lineLength > 0)&&(lineBuffer.get(lineLength-1) == '\n'))
+				lineLength--;
+			if((lineLength > 0)&&(lineBuffer.get(lineLength-1) == '\r'))
+				lineLength--;
+			lineArray[index] = new ByteBufferCharSequence(lineBuffer,0,lineLength).toString();
+			lineStart = nextLineStart;
+		}
+		c.parseColourCountLine(lineArray[0]);
+		c.parseColourNameListLine(lineArray[1]);
+		c.commentString = lineArray[2];
+		return lineStart;
+	}
+
+	/**
+	 * Method to split the star lines into chunks, each of which starts at the beginning of a line,
+	 * and create a task to parse each chunk.
+	 * @param fc The file channel.
+	 * @param starStart The position in the file of the first star line.
+	 * @param c The cluster containing the parsed header.
+	 * @param parallelism The number of worker threads the chunks will be parsed on.
+	 * @return A list of tasks, in file order.
+	 * @exception IOException Thrown if the file could not be read.
+	 * @see #MIN_CHUNK_SIZE
+	 * @see #MAX_CHUNK_SIZE
+	 * @see #CHUNKS_PER_THREAD
+	 * @see #lineStartAtOrAfter
+	 */
+	protected static List<ChunkTask> createChunkTasks(FileChannel fc,long starStart,Cluster c,int parallelism)
+		throws IOException
+	{
+		List<ChunkTask> taskList = null;
+		long size,chunkSize,chunkStart,chunkEnd;
+
+		taskList = new ArrayList<ChunkTask>();
+		size = fc.size();
+		chunkSize = (size-starStart)/(Math.max(parallelism,1)*CHUNKS_PER_THREAD);
+		chunkSize = Math.min(Math.max(chunkSize,MIN_CHUNK_SIZE),MAX_CHUNK_SIZE);
+		chunkStart = starStart;
+		while(chunkStart < size)
+		{
+			chunkEnd = lineStartAtOrAfter(fc,Math.min(chunkStart+chunkSize,size),size);
+			taskList.add(new ChunkTask(fc.map(FileChannel.MapMode.READ_ONLY,chunkStart,
+							  chunkEnd-chunkStart),c));
+			chunkStart = chunkEnd;
+		}
+		return taskList;
+	}
+
+	/**
+	 * Return the position of the first line start at or after position.
+	 * A position is a line start if it is preceded by a '\n', or by a '\r' that is not followed by a '\n'.
+	 * @param fc The file channel.
+	 * @param position The position to start at.
+	 * @param size The size of the file.
+	 * @return The position of the line start, or size if there are no more lines.
+	 * @exception IOException Thrown if the file could not be read.
+	 */
+	protected static long lineStartAtOrAfter(FileChannel fc,long position,long size) throws IOException
+	{
+		ByteBuffer b = null;
+		byte previousByte;
+
+		if((position == 0)||(position >= size))
+			return position;
+		b = ByteBuffer.allocate(2);
+		b.limit((int)Math.min(2,size-(position-1)));
+		readFully(fc,b,position-1);
+		previousByte = b.get(0);
+		if(previousByte == '\n')
+			return position;
+		if((previousByte == '\r')&&(b.get(1) != '\n'))
+			return position;
+		return nextLineStart(fc,position,size);
+	}
+
+	/**
+	 * Return the position of the start of the next line, after the line terminator following position.
+	 * @param fc The file channel.
+	 * @param position The position to start scanning at.
+	 * @param size The size of the file.
+	 * @return The position after the next line terminator, or size if there is no line terminator.
+	 * @exception IOException Thrown if the file could not be read.
+	 * @see #SCAN_BUFFER_SIZE
+	 */
+	protected static long nextLineStart(FileChannel fc,long position,long size) throws IOException
+	{
+		ByteBuffer b = null;
+		int index;
+		byte ch;
+
+		b = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+		while(position < size)
+		{
+			b.clear();
+			b.limit((int)Math.min(SCAN_BUFFER_SIZE,size-position));
+			readFully(fc,b,position);
+			for(index = 0; index < b.limit(); index++)
+			{
+				ch = b.get(index);
+				if(ch == '\n')
+					return position+index+1;
+				if(ch == '\r')
+				{
+					if(index+1 < b.limit())
+						return (b.get(index+1) == '\n') ? position+index+2 : position+index+1;
+					// '\r' is last byte in buffer, look at the next byte in the file
+					return lineStartAtOrAfter(fc,position+index+1,size);
+				}
+			}
+			position += b.limit();
+		}
+		return size;
+	}
+
+	/**
+	 * Read bytes from the channel at the specified position, until the buffer is full.
+	 * @param fc The file channel.
+	 * @param b The buffer to fill (from its position to its limit).
+	 * @param position The file position to read from.
+	 * @exception IOException Thrown if the read fails, or the end of file is reached.
+	 */
+	protected static void readFully(FileChannel fc,ByteBuffer b,long position) throws IOException
+	{
+		int count;
+
+		while(b.hasRemaining())
+		{
+			count = fc.read(b,position);
+			if(count < 0)
+				throw new EOFException("ClusterMappedLoader:readFully:Unexpected end of file.");
+			position += count;
+		}
+	}
+
+	/**
+	 * Fork-join task that parses the star lines in one mapped chunk of the file.
+	 * The results are either a list of ClusterObject's, or a ClusterTable, depending on the type of
+	 * Cluster being loaded.
+	 */
+	protected static class ChunkTask extends RecursiveAction
+	{
+		/**
+		 * Serialization version id, as RecursiveAction is Serializable.
+		 */
+		private final static long serialVersionUID = 1L;
+		/**
+		 * The mapped chunk of the file.
+		 */
+		protected MappedByteBuffer buffer = null;
+		/**
+		 * The cluster containing the parsed header.
+		 */
+		protected Cluster header = null;
+		/**
+		 * The parsed stars, if the header is not a ClusterTable.
+		 */
+		protected List starList = null;
+		/**
+		 * The parsed stars, if the header is a ClusterTable.
+		 */
+		protected ClusterTable table = null;
+
+		/**
+		 * Constructor.
+		 * @param b The mapped chunk of the file.
+		 * @param c The cluster containing the parsed header.
+		 */
+		public ChunkTask(MappedByteBuffer b,Cluster c)
+		{
+			super();
+			buffer = b;
+			header = c;
+		}
+
+		/**
+		 * Parse each line in the chunk.
+		 * @see ClusterObject#parseStarLine(java.lang.CharSequence,int,int,org.estar.cluster.ClusterColourMap)
+		 * @see ClusterTable#parseStarLine(java.lang.CharSequence,int,int)
+		 */
+		protected void compute()
+		{
+			ByteBufferCharSequence cs = null;
+			ClusterColourMap colourMap = null;
+			ClusterObject co = null;
+			int lineStart,lineEnd,length;
+			char ch;
+
+			cs = new ByteBufferCharSequence(buffer);
+			colourMap = header.getColourMap();
+			length = cs.length();
+			if(header instanceof ClusterTable)
+			{
+				table = new ClusterTable();
+				table.copyHeader(header);
+				table.initialiseStarList();
+			}
+			else
+				starList = new ArrayList();
+			lineStart = 0;
+			while(lineStart < length)
+			{
+				lineEnd = lineStart;
+				ch = 0;
+				while(lineEnd < length)
+				{
+					ch = cs.charAt(lineEnd);
+					if((ch == '\n')||(ch == '\r'))
+						break;
+					lineEnd++;
+				}
+				if(table != null)
+					table.parseStarLine(cs,lineStart,lineEnd);
+				else
+				{
+					co = new ClusterObject();
+					co.parseStarLine(cs,lineStart,lineEnd,colourMap);
+					starList.add(co);
+				}
+				// skip line terminator
+				lineStart = lineEnd+1;
+				if((ch == '\r')&&(lineStart < length)&&(cs.charAt(lineStart) == '\n'))
+					lineStart++;
+			}
+			buffer = null;
+		}
+
+		/**
+		 * Return the number of stars parsed in this chunk.
+		 * @return The number of stars.
+		 */
+		public int getStarCount()
+		{
+			if(table != null)
+				return table.getStarListCount();
+			return starList.size();
+		}
+	}
+}
@@ -0,0 +1,300 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterMetrics.java
+package org.estar.cluster;
+
+import java.lang.*;
+
+/**
+ * This class holds the measurements made during one cluster load or save, when instrumentation is enabled.
+ * For loads, the time spent reading lines is measured for every line. The split of the parse time between
+ * tokenising, RA/Dec parsing and other number parsing is estimated by timing the tokenising and the RA/Dec
+ * parse separately on a sample of the lines, and the remainder is attributed to number parsing.
+ * For saves, the time spent in the underlying Writer is measured, and the remainder is attributed to formatting.
+ * @version $Revision$
+ * @see ClusterInstrumentation
+ * @see ClusterMetricsListener
+ */
+public class ClusterMetrics
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * Operation type for a load.
+	 */
+	public final static int OPERATION_LOAD = 0;
+	/**
+	 * Operation type for a save.
+	 */
+	public final static int OPERATION_SAVE = 1;
+	/**
+	 * The operation type.
+	 */
+	protected int operation;
+	/**
+	 * The class name of the cluster loaded or saved.
+	 */
+	protected String className = null;
+	/**
+	 * The time the operation started, in milliseconds since the epoch.
+	 */
+	protected long startTime;
+	/**
+	 * The total time taken, in nanoseconds.
+	 */
+	protected long totalNanos;
+	/**
+	 * The time spent reading or writing characters, in nanoseconds.
+	 */
+	protected long ioNanos;
+	/**
+	 * The estimated time spent tokenising star lines, in nanoseconds.
+	 */
+	protected long tokeniseNanos;
+	/**
+	 * The estimated time spent parsing numbers, in nanoseconds.
+	 */
+	protected long numberParseNanos;
+	/**
+	 * The estimated time spent parsing the RA and Dec tokens and converting them to radians, in nanoseconds.
+	 */
+	protected long coordinateNanos;
+	/**
+	 * The time spent formatting star lines, in nanoseconds.
+	 */
+	protected long formatNanos;
+	/**
+	 * The number of characters read or written, including line terminators.
+	 */
+	protected long characterCount;
+	/**
+	 * The number of star rows loaded or saved.
+	 */
+	protected long rowCount;
+	/**
+	 * The number of star lines that failed to parse.
+	 */
+	protected int parseFailureCount;
+	/**
+	 * The exception that stopped the operation, or null if it succeeded.
+	 */
+	protected Exception exception = null;
+	/**
+	 * The number of listeners that threw an exception when passed these measurements.
+	 */
+	protected int listenerFailureCount = 0;
+	/**
+	 * The first exception thrown by a listener when passed these measurements, or null if none failed.
+	 */
+	protected RuntimeException listenerException = null;
+
+	/**
+	 * Constructor.
+	 * @param op The operation type.
+	 * @param c The cluster being loaded or saved.
+	 */
+	public ClusterMetrics(int op,Cluster c)
+	{
+		super();
+		operation = op;
+		className = c.getClass().getName();
+		startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Return the operation type.
+	 * @return OPERATION_LOAD or OPERATION_SAVE.
+	 */
+	public int getOperation()
+	{
+		return operation;
+	}
+
+	/**
+	 * Return the class name of the cluster loaded or saved.
+	 * @return The class name.
+	 */
+	public String getClassName()
+	{
+		return className;
+	}
+
+	/**
+	 * Return the time the operation started.
+	 * @return The time, in milliseconds since the epoch.
+	 */
+	public long getStartTime()
+	{
+		return startTime;
+	}
+
+	/**
+	 * Return the total time taken.
+	 * @return The time, in nanoseconds.
+	 */
+	public long getTotalNanos()
+	{
+		return totalNanos;
+	}
+
+	/**
+	 * Return the time spent reading or writing characters.
+	 * @return The time, in nanoseconds.
+	 */
+	public long getIONanos()
+	{
+		return ioNanos;
+	}
+
+	/**
+	 * Return the estimated time spent tokenising star lines (loads only).
+	 * @return The time, in nanoseconds.
+	 */
+	public long getTokeniseNanos()
+	{
+		return tokeniseNanos;
+	}
+
+	/**
+	 * Return the estimated time spent parsing numbers (loads only).
+	 * @return The time, in nanoseconds.
+	 */
+	public long getNumberParseNanos()
+	{
+		return numberParseNanos;
+	}
+
+	/**
+	 * Return the estimated time spent parsing the RA and Dec tokens and converting them to radians (loads only).
+	 * @return The time, in nanoseconds.
+	 */
+	public long getCoordinateNanos()
+	{
+		return coordinateNanos;
+	}
+
+	/**
+	 * Return the time spent formatting star lines (saves only).
+	 * @return The time, in nanoseconds.
+	 */
+	public long getFormatNanos()
+	{
+		return formatNanos;
+	}
+
+	/**
+	 * Return the number of characters read or written, including line terminators.
+	 * @return The number of characters.
+	 */
+	public long getCharacterCount()
+	{
+		return characterCount;
+	}
+
+	/**
+	 * Return the number of star rows loaded or saved.
+	 * @return The number of rows.
+	 */
+	public long getRowCount()
+	{
+		return rowCount;
+	}
+
+	/**
+	 * Return the number of star lines that failed to parse (loads only).
+	 * @return The number of failures.
+	 */
+	public int getParseFailureCount()
+	{
+		return parseFailureCount;
+	}
+
+	/**
+	 * Return the exception that stopped the operation.
+	 * @return The exception, or null if the operation succeeded.
+	 */
+	public Exception getException()
+	{
+		return exception;
+	}
+
+	/**
+	 * Return the number of listeners that threw an exception when passed these measurements.
+	 * Listeners called after a failed listener see the count so far.
+	 * @return The number of failed listeners.
+	 * @see ClusterInstrumentation#publish
+	 */
+	public int getListenerFailureCount()
+	{
+		return listenerFailureCount;
+	}
+
+	/**
+	 * Return the first exception thrown by a listener when passed these measurements.
+	 * @return The exception, or null if no listener failed.
+	 * @see ClusterInstrumentation#publish
+	 */
+	public RuntimeException getListenerException()
+	{
+		return listenerException;
+	}
+
+	/**
+	 * Return the number of rows loaded or saved per second.
+	 * @return The rate, or 0 if no time was measured.
+	 */
+	public double getRowsPerSecond()
+	{
+		if(totalNanos <= 0)
+			return 0.0;
+		return rowCount/(totalNanos/1.0e9);
+	}
+
+	/**
+	 * Return a string describing the measurements.
+	 * @return The string.
+	 */
+	public String toString()
+	{
+		StringBuffer sb = null;
+
+		sb = new StringBuffer();
+		sb.append((operation == OPERATION_LOAD) ? "load " : "save ").append(className);
+		sb.append(": rows ").append(rowCount).append(", characters ").append(characterCount);
+		sb.append(", total ").append(totalNanos/1000000).append(" ms, io ").append(ioNanos/1000000).append(" ms");
+		if(operation == OPERATION_LOAD)
+		{
+			sb.append(", tokenise ").append(tokeniseNanos/1000000).append(" ms");
+			sb.append(", numbers ").append(numberParseNanos/1000000).append(" ms");
+			sb.append(", RA/Dec ").append(coordinateNanos/1000000).append(" ms");
+			sb.append(", parse failures ").append(parseFailureCount);
+		}
+		else
+			sb.append(", format ").append(formatNanos/1000000).append(" ms");
+		sb.append(", ").append(Math.round(getRowsPerSecond())).append(" rows/s");
+		if(exception != null)
+			sb.append(", failed:").append(exception);
+		if(listenerException != null)
+			sb.append(", listener failures ").append(listenerFailureCount).append(":").append(listenerException);
+		return sb.toString();
+	}
+}
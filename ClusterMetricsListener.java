@@ -0,0 +1,46 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterMetricsListener.java
+package org.estar.cluster;
+
+import java.lang.*;
+
+/**
+ * Interface implemented by classes that want to be passed the measurements made during each cluster load
+ * and save, while instrumentation is enabled.
+ * @version $Revision$
+ * @see ClusterInstrumentation#addListener
+ */
+public interface ClusterMetricsListener
+{
+	/**
+	 * Method called after each load, whether it succeeded or failed.
+	 * @param metrics The measurements.
+	 * @see ClusterMetrics#getException
+	 */
+	public void loadCompleted(ClusterMetrics metrics);
+
+	/**
+	 * Method called after each save, whether it succeeded or failed.
+	 * @param metrics The measurements.
+	 * @see ClusterMetrics#getException
+	 */
+	public void saveCompleted(ClusterMetrics metrics);
+}
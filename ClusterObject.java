@@ -29,7 +29,10 @@ import org.estar.astrometry.*;
 
 /**
  * This class extends org.estar.astrometry.CelestialObject, for containing the extra data contained
- * in a Cluster star object.
+ * in a Cluster star object. The RA and Dec are stored as primitive fields rather than RA/Dec objects:
+ * the sexagesimal fields they were parsed (or set) from, so they are saved exactly as they were read,
+ * and the equivalent radians, for positional calculations. RA/Dec objects are only created when
+ * getRA/getDec are called.
  * @author Chris Mottram
  * @version $Revision$
  * @see org.estar.astrometry.CelestialObject
@@ -41,23 +44,23 @@ public class ClusterObject extends CelestialObject
 	 */
 	public final static String RCSID = "$Id$";
 	/**
-	 * Token index.
-	 */
-	private final static int TOKEN_INDEX_FIELD_NUMBER = 0;
-	private final static int TOKEN_INDEX_STAR_NUMBER = 1;
-	private final static int TOKEN_INDEX_RAH = 2;
-	private final static int TOKEN_INDEX_RAM = 3;
-	private final static int TOKEN_INDEX_RAS = 4;
-	private final static int TOKEN_INDEX_DECD = 5;
-	private final static int TOKEN_INDEX_DECM = 6;
-	private final static int TOKEN_INDEX_DECS = 7;
-	private final static int TOKEN_INDEX_X_POS = 8;
-	private final static int TOKEN_INDEX_Y_POS = 9;
-	private final static int TOKEN_INDEX_MAGNITUDE_DATA_START = 10;
-	private final static int TOKEN_INDEX_OFFSET_MAGNITUDE = 0;
-	private final static int TOKEN_INDEX_OFFSET_ERROR = 1;
-	private final static int TOKEN_INDEX_OFFSET_FLAG = 2;
-	private final static int TOKEN_MAGNITUDE_DATA_COUNT = 3;
+	 * Token index. These are package visible so ClusterTable can parse lines in the same way.
+	 */
+	final static int TOKEN_INDEX_FIELD_NUMBER = 0;
+	final static int TOKEN_INDEX_STAR_NUMBER = 1;
+	final static int TOKEN_INDEX_RAH = 2;
+	final static int TOKEN_INDEX_RAM = 3;
+	final static int TOKEN_INDEX_RAS = 4;
+	final static int TOKEN_INDEX_DECD = 5;
+	final static int TOKEN_INDEX_DECM = 6;
+	final static int TOKEN_INDEX_DECS = 7;
+	final static int TOKEN_INDEX_X_POS = 8;
+	final static int TOKEN_INDEX_Y_POS = 9;
+	final static int TOKEN_INDEX_MAGNITUDE_DATA_START = 10;
+	final static int TOKEN_INDEX_OFFSET_MAGNITUDE = 0;
+	final static int TOKEN_INDEX_OFFSET_ERROR = 1;
+	final static int TOKEN_INDEX_OFFSET_FLAG = 2;
+	final static int TOKEN_MAGNITUDE_DATA_COUNT = 3;
 	/**
 	 * Field number.
 	 */
@@ -74,10 +77,54 @@ public class ClusterObject extends CelestialObject
 	 * Y pixel position.
 	 */
 	protected double yPixel;
+	/**
+	 * RA hours, as parsed. Only valid if the star has an RA.
+	 */
+	protected int raHours;
+	/**
+	 * RA minutes, as parsed. Only valid if the star has an RA.
+	 */
+	protected int raMinutes;
+	/**
+	 * RA seconds, as parsed. Only valid if the star has an RA.
+	 */
+	protected double raSeconds;
+	/**
+	 * Dec sign character, '+' or '-'. Only valid if the star has a Dec.
+	 */
+	protected char decSign = '+';
+	/**
+	 * Dec degrees, as parsed. Only valid if the star has a Dec.
+	 */
+	protected int decDegrees;
+	/**
+	 * Dec minutes, as parsed. Only valid if the star has a Dec.
+	 */
+	protected int decMinutes;
+	/**
+	 * Dec seconds, as parsed. Only valid if the star has a Dec.
+	 */
+	protected double decSeconds;
+	/**
+	 * RA in radians, or NaN if the star has no RA. The RA object is only created when getRA is called.
+	 */
+	protected double raRadians = Double.NaN;
+	/**
+	 * Dec in radians, or NaN if the star has no Dec. The Dec object is only created when getDec is called.
+	 */
+	protected double decRadians = Double.NaN;
+	/**
+	 * The unit vector (x,y,z) of the star's position, computed when first needed, or null.
+	 */
+	protected double unitVector[] = null;
 	protected int magnitudeCount;
 	protected double magnitudeArray[];
 	protected double magnitudeErrorArray[];
 	protected int flagsArray[];
+	/**
+	 * The mapping between colour slots and bands used when this star was parsed, or null.
+	 */
+	protected ClusterColourMap colourMap = null;
 
 	/**
 	 * Default constructor.
@@ -107,6 +154,210 @@ public class ClusterObject extends CelestialObject
 		return yPixel;
 	}
 
+	/**
+	 * Get the RA of this star. The RA is stored as primitive fields, so a new RA object is created each time
+	 * this is called. It has the fields the RA was parsed or set from, so it prints exactly as it was read.
+	 * @return A new RA object, or null if the star has no RA.
+	 * @see #raHours
+	 * @see #raMinutes
+	 * @see #raSeconds
+	 */
+	public RA getRA()
+	{
+		if(Double.isNaN(raRadians))
+			return null;
+		return new RA(raHours,raMinutes,raSeconds);
+	}
+
+	/**
+	 * Set the RA of this star. The fields of the RA are copied, the object itself is not kept.
+	 * @param ra The RA, or null to clear it.
+	 * @see #setRA(int,int,double)
+	 */
+	public void setRA(RA ra)
+	{
+		if(ra == null)
+			setRARadians(Double.NaN);
+		else
+			setRA(ra.getHours(),ra.getMinutes(),ra.getSeconds());
+	}
+
+	/**
+	 * Set the RA of this star from sexagesimal fields, as they are parsed from a star line.
+	 * The fields are kept as they are, and converted to radians.
+	 * @param hours The RA hours.
+	 * @param minutes The RA minutes.
+	 * @param seconds The RA seconds.
+	 * @see #raHours
+	 * @see #raMinutes
+	 * @see #raSeconds
+	 * @see #raRadians
+	 * @see ClusterCoordinates#raToRadians(int,int,double)
+	 */
+	public void setRA(int hours,int minutes,double seconds)
+	{
+		raHours = hours;
+		raMinutes = minutes;
+		raSeconds = seconds;
+		raRadians = ClusterCoordinates.raToRadians(hours,minutes,seconds);
+		unitVector = null;
+	}
+
+	/**
+	 * Get the Dec of this star. The Dec is stored as primitive fields, so a new Dec object is created each
+	 * time this is called. It has the fields the Dec was parsed or set from, so it prints exactly as it was read.
+	 * @return A new Dec object, or null if the star has no Dec.
+	 * @see #decSign
+	 * @see #decDegrees
+	 * @see #decMinutes
+	 * @see #decSeconds
+	 */
+	public Dec getDec()
+	{
+		if(Double.isNaN(decRadians))
+			return null;
+		return new Dec(decSign,decDegrees,decMinutes,decSeconds);
+	}
+
+	/**
+	 * Set the Dec of this star. The fields of the Dec are copied, the object itself is not kept.
+	 * @param dec The Dec, or null to clear it.
+	 * @see #setDec(char,int,int,double)
+	 */
+	public void setDec(Dec dec)
+	{
+		if(dec == null)
+			setDecRadians(Double.NaN);
+		else
+			setDec(dec.getSign(),dec.getDegrees(),dec.getMinutes(),dec.getSeconds());
+	}
+
+	/**
+	 * Set the Dec of this star from sexagesimal fields, as they are parsed from a star line.
+	 * The fields are kept as they are, and converted to radians.
+	 * @param sign The sign character, '+' or '-'.
+	 * @param degrees The Dec degrees.
+	 * @param minutes The Dec minutes.
+	 * @param seconds The Dec seconds.
+	 * @see #decSign
+	 * @see #decDegrees
+	 * @see #decMinutes
+	 * @see #decSeconds
+	 * @see #decRadians
+	 * @see ClusterCoordinates#decToRadians(char,int,int,double)
+	 */
+	public void setDec(char sign,int degrees,int minutes,double seconds)
+	{
+		decSign = sign;
+		decDegrees = degrees;
+		decMinutes = minutes;
+		decSeconds = seconds;
+		decRadians = ClusterCoordinates.decToRadians(sign,degrees,minutes,seconds);
+		unitVector = null;
+	}
+
+	/**
+	 * Get the RA of this star, in radians.
+	 * @return The RA in radians, or NaN if the star has no RA.
+	 * @see #raRadians
+	 */
+	public double getRARadians()
+	{
+		return raRadians;
+	}
+
+	/**
+	 * Set the RA of this star, in radians. The sexagesimal fields are computed from the radians,
+	 * with the seconds rounded to the nearest micro-second.
+	 * @param ra The RA in radians, or NaN to clear it.
+	 * @see #raRadians
+	 * @see ClusterCoordinates#toRA
+	 */
+	public void setRARadians(double ra)
+	{
+		RA sexagesimal = null;
+
+		if(Double.isNaN(ra) == false)
+		{
+			sexagesimal = ClusterCoordinates.toRA(ra);
+			raHours = sexagesimal.getHours();
+			raMinutes = sexagesimal.getMinutes();
+			raSeconds = sexagesimal.getSeconds();
+		}
+		raRadians = ra;
+		unitVector = null;
+	}
+
+	/**
+	 * Get the Dec of this star, in radians.
+	 * @return The Dec in radians, or NaN if the star has no Dec.
+	 * @see #decRadians
+	 */
+	public double getDecRadians()
+	{
+		return decRadians;
+	}
+
+	/**
+	 * Set the Dec of this star, in radians. The sexagesimal fields are computed from the radians,
+	 * with the seconds rounded to the nearest micro-second.
+	 * @param dec The Dec in radians, or NaN to clear it.
+	 * @see #decRadians
+	 * @see ClusterCoordinates#toDec
+	 */
+	public void setDecRadians(double dec)
+	{
+		Dec sexagesimal = null;
+
+		if(Double.isNaN(dec) == false)
+		{
+			sexagesimal = ClusterCoordinates.toDec(dec);
+			decSign = sexagesimal.getSign();
+			decDegrees = sexagesimal.getDegrees();
+			decMinutes = sexagesimal.getMinutes();
+			decSeconds = sexagesimal.getSeconds();
+		}
+		decRadians = dec;
+		unitVector = null;
+	}
+
+	/**
+	 * Get the unit vector of this star's position on the sky. The vector is computed on first use,
+	 * and kept until the RA or Dec is changed. The returned array should not be modified.
+	 * @return An array of length 3 containing x,y,z. The components are NaN if the star has no RA or Dec.
+	 * @see #unitVector
+	 * @see #computeUnitVector
+	 */
+	public double[] getUnitVector()
+	{
+		double v[] = null;
+
+		v = unitVector;
+		if(v == null)
+		{
+			v = computeUnitVector(getRARadians(),getDecRadians());
+			unitVector = v;
+		}
+		return v;
+	}
+
+	/**
+	 * Compute the unit vector of a position on the sky.
+	 * @param ra The RA in radians.
+	 * @param dec The Dec in radians.
+	 * @return A new array of length 3 containing x,y,z.
+	 */
+	protected static double[] computeUnitVector(double ra,double dec)
+	{
+		double v[] = null;
+
+		v = new double[3];
+		v[0] = Math.cos(dec)*Math.cos(ra);
+		v[1] = Math.cos(dec)*Math.sin(ra);
+		v[2] = Math.sin(dec);
+		return v;
+	}
+
 	public int getMagnitudeCount()
 	{
 		return magnitudeCount;
@@ -127,6 +378,54 @@ public class ClusterObject extends CelestialObject
 		return flagsArray[index];
 	}
 
+	/**
+	 * Get the magnitude of this star in the specified band.
+	 * @param band The band number.
+	 * @return The magnitude, or NaN if this star has no colour mapped to that band.
+	 * @see #colourMap
+	 * @see ClusterColourMap#getSlot(int)
+	 */
+	public double getBandMagnitude(int band)
+	{
+		int slot;
+
+		if(colourMap == null)
+			return Double.NaN;
+		slot = colourMap.getSlot(band);
+		if(slot < 0)
+			return Double.NaN;
+		return getMagnitude(slot);
+	}
+
+	/**
+	 * Get the magnitude of this star in the band with the specified name.
+	 * @param bandName The band name, compared ignoring case.
+	 * @return The magnitude, or NaN if this star has no colour with that name.
+	 * @see #colourMap
+	 * @see ClusterColourMap#getSlot(java.lang.String)
+	 */
+	public double getBandMagnitude(String bandName)
+	{
+		int slot;
+
+		if(colourMap == null)
+			return Double.NaN;
+		slot = colourMap.getSlot(bandName);
+		if(slot < 0)
+			return Double.NaN;
+		return getMagnitude(slot);
+	}
+
+	/**
+	 * Get the mapping between colour slots and bands used when this star was parsed.
+	 * @return The colour map, or null if the star was not parsed.
+	 * @see #colourMap
+	 */
+	public ClusterColourMap getColourMap()
+	{
+		return colourMap;
+	}
+
 	/**
 	 * Method to parse a star line in the catalogue, of the form:
 	 * <pre>
@@ -162,6 +461,8 @@ public class ClusterObject extends CelestialObject
 	 * @exception IllegalArgumentException Thrown if an argument was out of bounds.
 	 * @see #fieldNumber
 	 * @see #starNumber
+	 * @see #raRadians
+	 * @see #decRadians
 	 * @see #xPixel
 	 * @see #yPixel
 	 * @see #magnitudeArray
@@ -182,74 +483,107 @@ public class ClusterObject extends CelestialObject
 	 * @see #TOKEN_INDEX_OFFSET_ERROR
 	 * @see #TOKEN_INDEX_OFFSET_FLAG
 	 * @see #TOKEN_MAGNITUDE_DATA_COUNT
+	 * @see #parseStarLine(java.lang.CharSequence,int,int,int,java.lang.String[])
 	 */
 	public void parseStarLine(String s,int colourCount,String colourNameStringList[]) 
 		throws IllegalArgumentException
 	{
-		RA ra = null;
-		Dec dec = null;
-		StringTokenizer st = null;
-		String tokenString = null;
-		int index,rah=0,ram=0,decd=0,decm=0,magArrayIndex,indexOffset;
-		double ras,decs;
-		char signChar = ' ';
+		parseStarLine(s,0,s.length(),colourCount,colourNameStringList);
+	}
+
+	/**
+	 * Method to parse a star line in the catalogue, using a colour map compiled from the cluster header.
+	 * See parseStarLine(String,int,String[]) for a description of the line format.
+	 * @param s The string to parse.
+	 * @param map The colour map of the cluster.
+	 * @exception IllegalArgumentException Thrown if an argument was out of bounds.
+	 * @see #parseStarLine(java.lang.CharSequence,int,int,org.estar.cluster.ClusterColourMap)
+	 */
+	public void parseStarLine(String s,ClusterColourMap map) throws IllegalArgumentException
+	{
+		parseStarLine(s,0,s.length(),map);
+	}
+
+	/**
+	 * Method to parse a star line in the catalogue, held in the specified range of a character sequence.
+	 * The tokens are located and decoded in place, using ClusterLineParser, so no temporary Strings
+	 * are created for each token. The results are identical to tokenizing the line and using
+	 * Integer.parseInt / Double.parseDouble on each token.
+	 * A colour map is compiled from the colour names for each call, so when parsing many lines, compile
+	 * the map once (or use Cluster.getColourMap) and call the ClusterColourMap version instead.
+	 * See parseStarLine(String,int,String[]) for a description of the line format.
+	 * @param s The characters to parse.
+	 * @param start The index in s of the start of the line.
+	 * @param end The index in s after the end of the line (not including any line terminator).
+	 * @param colourCount The number of magnitudes in the list.
+	 * @param colourNameStringList The names of the magnitudes. Magnitudes without a name are not
+	 *        mapped to a band, extra names are ignored.
+	 * @exception IllegalArgumentException Thrown if an argument was out of bounds.
+	 * @exception NumberFormatException Thrown if a token is not a valid number.
+	 * @see #parseStarLine(java.lang.CharSequence,int,int,org.estar.cluster.ClusterColourMap)
+	 * @see ClusterColourMap#ClusterColourMap(java.lang.String[],int)
+	 * @see Cluster#getColourMap
+	 */
+	public void parseStarLine(CharSequence s,int start,int end,int colourCount,String colourNameStringList[]) 
+		throws IllegalArgumentException
+	{
+		parseStarLine(s,start,end,new ClusterColourMap(colourNameStringList,colourCount));
+	}
+
+	/**
+	 * Method to parse a star line in the catalogue, held in the specified range of a character sequence.
+	 * The tokens are located and decoded in place, using ClusterLineParser, so no temporary Strings
+	 * are created for each token. The results are identical to tokenizing the line and using
+	 * Integer.parseInt / Double.parseDouble on each token.
+	 * Magnitudes are assigned to bands using the precompiled colour map, so no colour names are compared.
+	 * See parseStarLine(String,int,String[]) for a description of the line format.
+	 * @param s The characters to parse.
+	 * @param start The index in s of the start of the line.
+	 * @param end The index in s after the end of the line (not including any line terminator).
+	 * @param map The colour map of the cluster, which also gives the number of magnitudes.
+	 * @exception IllegalArgumentException Thrown if an argument was out of bounds.
+	 * @exception NumberFormatException Thrown if a token is not a valid number.
+	 * @see #parseStarLine(java.lang.String,int,java.lang.String[])
+	 * @see #setMagnitude
+	 * @see ClusterLineParser#skipSeparators
+	 * @see ClusterLineParser#tokenEnd
+	 * @see ClusterLineParser#parseInt
+	 * @see ClusterLineParser#parseDouble
+	 * @see ClusterLineParser#parsePosition
+	 */
+	public void parseStarLine(CharSequence s,int start,int end,ClusterColourMap map) 
+		throws IllegalArgumentException
+	{
+		int index,tokenStart,tokenEnd,magArrayIndex,indexOffset;
 
 		// setup arrays
-		magnitudeCount = colourCount;
-		magnitudeArray = new double[magnitudeCount];
-		magnitudeErrorArray = new double[magnitudeCount];
-		flagsArray = new int[magnitudeCount];
+		colourMap = map;
+		initialiseMagnitudes(map.getColourCount());
 		// parse string
 		index = 0;
-		st = new StringTokenizer(s," ");
-		while(st.hasMoreTokens())
+		tokenStart = ClusterLineParser.skipSeparators(s,start,end);
+		while(tokenStart < end)
 		{
-			// get this token
-			tokenString = st.nextToken();
+			// find the end of this token
+			tokenEnd = ClusterLineParser.tokenEnd(s,tokenStart,end);
 			switch(index)
 			{
 			case TOKEN_INDEX_FIELD_NUMBER:
-				fieldNumber = Integer.parseInt(tokenString);
+				fieldNumber = ClusterLineParser.parseInt(s,tokenStart,tokenEnd);
 				break;
 			case TOKEN_INDEX_STAR_NUMBER:
-				starNumber = Integer.parseInt(tokenString);
+				starNumber = ClusterLineParser.parseInt(s,tokenStart,tokenEnd);
 				break;
 			case TOKEN_INDEX_RAH:
-				rah = Integer.parseInt(tokenString);
-				break;
-			case TOKEN_INDEX_RAM:
-				ram = Integer.parseInt(tokenString);
-				break;
-			case TOKEN_INDEX_RAS:
-				ras = Double.parseDouble(tokenString);
-				ra = new RA(rah,ram,ras);
-				setRA(ra);
-				break;
-			case TOKEN_INDEX_DECD:
-				signChar = tokenString.charAt(0);
-				// if sign char was a plus or minus, dec degrees is rest of tokenString
-				// if sign char was not +|-, assume '+' and parse whole tokenString
-				if((signChar == '+')|| (signChar == '-'))
-				{
-					tokenString = tokenString.substring(1,tokenString.length());
-				}
-				else
-					signChar = '+';
-				decd = Integer.parseInt(tokenString);
-				break;
-			case TOKEN_INDEX_DECM:
-				decm = Integer.parseInt(tokenString);
-				break;
-			case TOKEN_INDEX_DECS:
-				decs = Double.parseDouble(tokenString);
-				dec = new Dec(signChar,decd,decm,decs);
-				setDec(dec);
+				// the RA and Dec tokens are parsed together, up to and including the Dec seconds
+				tokenEnd = ClusterLineParser.parsePosition(s,tokenStart,end,this);
+				index = TOKEN_INDEX_DECS;
 				break;
 			case TOKEN_INDEX_X_POS:
-				xPixel = Double.parseDouble(tokenString);
+				xPixel = ClusterLineParser.parseDouble(s,tokenStart,tokenEnd);
 				break;
 			case TOKEN_INDEX_Y_POS:
-				yPixel = Double.parseDouble(tokenString);
+				yPixel = ClusterLineParser.parseDouble(s,tokenStart,tokenEnd);
 				break;
 			default:
 				magArrayIndex = (index-TOKEN_INDEX_MAGNITUDE_DATA_START)/TOKEN_MAGNITUDE_DATA_COUNT;
@@ -258,38 +592,91 @@ public class ClusterObject extends CelestialObject
 				{
 					throw new IllegalArgumentException(this.getClass().getName()+
 					    "parseStarLine:Magnitude Array Index out of bounds:"+index+":"+
-					    magnitudeCount+":"+tokenString);
+					    magnitudeCount+":"+s.subSequence(tokenStart,tokenEnd));
 				}
 				if(indexOffset == TOKEN_INDEX_OFFSET_MAGNITUDE)
 				{
-					magnitudeArray[magArrayIndex] = Double.parseDouble(tokenString);
-					if(colourNameStringList[magArrayIndex].equalsIgnoreCase("B"))
-						setBMagnitude(magnitudeArray[magArrayIndex]);
-					if(colourNameStringList[magArrayIndex].equalsIgnoreCase("V"))
-						setVMagnitude(magnitudeArray[magArrayIndex]);
-					if(colourNameStringList[magArrayIndex].equalsIgnoreCase("R"))
-						setRMagnitude(magnitudeArray[magArrayIndex]);
+					setMagnitude(magArrayIndex,map.getSlotBand(magArrayIndex),
+						     ClusterLineParser.parseDouble(s,tokenStart,tokenEnd));
 				}
 				else if(indexOffset == TOKEN_INDEX_OFFSET_ERROR)
-					magnitudeErrorArray[magArrayIndex] = Double.parseDouble(tokenString);
+				{
+					magnitudeErrorArray[magArrayIndex] = ClusterLineParser.parseDouble(s,tokenStart,
+													   tokenEnd);
+				}
 				else if(indexOffset == TOKEN_INDEX_OFFSET_FLAG)
-					flagsArray[magArrayIndex] = Integer.parseInt(tokenString);
+					flagsArray[magArrayIndex] = ClusterLineParser.parseInt(s,tokenStart,tokenEnd);
 				else
 				{
 					throw new IllegalArgumentException(this.getClass().getName()+
-					   "parseStarLine:Index Offset out of bounds:"+indexOffset+":"+tokenString);
+					   "parseStarLine:Index Offset out of bounds:"+indexOffset+":"+
+					   s.subSequence(tokenStart,tokenEnd));
 				}
 				break;
 			}
-			// increment index
+			// increment index, move onto next token
 			index++;
+			tokenStart = ClusterLineParser.skipSeparators(s,tokenEnd,end);
 		}
 	}
 
+	/**
+	 * Method to allocate empty magnitude, magnitude error and flag arrays for the specified number of colours.
+	 * @param colourCount The number of colours.
+	 * @see #magnitudeCount
+	 * @see #magnitudeArray
+	 * @see #magnitudeErrorArray
+	 * @see #flagsArray
+	 */
+	protected void initialiseMagnitudes(int colourCount)
+	{
+		magnitudeCount = colourCount;
+		magnitudeArray = new double[magnitudeCount];
+		magnitudeErrorArray = new double[magnitudeCount];
+		flagsArray = new int[magnitudeCount];
+	}
+
+	/**
+	 * Method to set the magnitude of the specified colour. If the colour is mapped to the B, V or R band,
+	 * the corresponding CelestialObject magnitude is also set.
+	 * @param index The index of the colour.
+	 * @param band The band the colour is mapped to, from the colour map.
+	 * @param magnitude The magnitude.
+	 * @see #magnitudeArray
+	 * @see ClusterColourMap#getSlotBand
+	 */
+	protected void setMagnitude(int index,int band,double magnitude)
+	{
+		magnitudeArray[index] = magnitude;
+		switch(band)
+		{
+		case ClusterColourMap.BAND_B:
+			setBMagnitude(magnitude);
+			break;
+		case ClusterColourMap.BAND_V:
+			setVMagnitude(magnitude);
+			break;
+		case ClusterColourMap.BAND_R:
+			setRMagnitude(magnitude);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Method to write this cluster object as a star line, followed by a newline, to the specified writer.
+	 * @param w The writer.
+	 * @exception IOException Thrown if the write fails.
+	 * @see ClusterWriter#writeStar
+	 */
 	public void write(Writer w) throws IOException
 	{
-		w.write(this.toString());
-		w.write("\n");
+		ClusterWriter cw = null;
+
+		cw = new ClusterWriter(w);
+		cw.writeStar(this,"");
+		cw.flush();
 	}
 
 	/**
@@ -304,27 +691,18 @@ public class ClusterObject extends CelestialObject
 
 	/**
 	 * Method to print out a string representation of this cluster object.
+	 * The data is retrieved using the getter methods, so subclasses that are views onto other storage
+	 * (e.g. ClusterTableObject) print correctly.
 	 * @param prefix A prefix to prepend to the string.
 	 * @return The string.
-	 * @see #toString(java.lang.String)
+	 * @see ClusterWriter#formatStar
 	 */
 	public String toString(String prefix)
 	{
-		DecimalFormat df = null;
-		DecimalFormat dfd = null;
-		StringBuffer sb = null;
-		int index;
-
-		df = new DecimalFormat("00");
-		dfd = new DecimalFormat("0.000");
-		sb = new StringBuffer();
-		sb.append(prefix+fieldNumber+" "+starNumber+" "+ra.toString(' ')+" "+dec.toString(' ')+" "+
-			  dfd.format(xPixel)+" "+dfd.format(yPixel));
-		for(index = 0;index < magnitudeCount; index ++)
-		{
-			sb.append(" "+magnitudeArray[index]+" "+magnitudeErrorArray[index]+" "+
-				  df.format(flagsArray[index]));
-		}
+		StringBuilder sb = null;
+
+		sb = new StringBuilder(128);
+		new ClusterWriter(sb).formatStar(sb,this,prefix);
 		return sb.toString();
 	}
 }
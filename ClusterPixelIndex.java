@@ -0,0 +1,423 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterPixelIndex.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.util.*;
+
+/**
+ * This class is a uniform grid index on the (xPixel,yPixel) detector positions of the stars in a Cluster,
+ * supporting radius, rectangle and nearest star queries without scanning every star.
+ * The bounding box of the star positions is divided into square cells, sized so each cell holds a few stars
+ * on average. The stars are stored in cell order, so each cell is a contiguous range of the index arrays.
+ * Query results are indices into the Cluster's star list.
+ * Stars with a NaN pixel position are not indexed. The index is not updated if the cluster changes.
+ * @version $Revision$
+ * @see Cluster#getXPixel(int)
+ * @see Cluster#getYPixel(int)
+ */
+public class ClusterPixelIndex
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The default average number of stars per grid cell.
+	 */
+	public final static double DEFAULT_STARS_PER_CELL = 2.0;
+	/**
+	 * The maximum number of cells along each axis of the grid.
+	 */
+	protected final static int MAX_CELLS_PER_AXIS = 4096;
+	/**
+	 * The cluster that is indexed.
+	 */
+	protected Cluster cluster = null;
+	/**
+	 * The minimum X pixel position of the grid.
+	 */
+	protected double xMinimum;
+	/**
+	 * The minimum Y pixel position of the grid.
+	 */
+	protected double yMinimum;
+	/**
+	 * The width and height of each cell, in pixels.
+	 */
+	protected double cellSize;
+	/**
+	 * The number of cells along the X axis.
+	 */
+	protected int xCellCount;
+	/**
+	 * The number of cells along the Y axis.
+	 */
+	protected int yCellCount;
+	/**
+	 * The index in the sorted arrays of the first star in each cell, cells stored row by row.
+	 * Of length (xCellCount*yCellCount)+1.
+	 */
+	protected int cellStartArray[] = null;
+	/**
+	 * The star list index of each indexed star, in cell order.
+	 */
+	protected int starIndexArray[] = null;
+	/**
+	 * The X pixel position of each indexed star, in cell order.
+	 */
+	protected double xArray[] = null;
+	/**
+	 * The Y pixel position of each indexed star, in cell order.
+	 */
+	protected double yArray[] = null;
+
+	/**
+	 * Constructor. Builds the index with the default average number of stars per cell.
+	 * @param c The cluster to index.
+	 * @see #DEFAULT_STARS_PER_CELL
+	 */
+	public ClusterPixelIndex(Cluster c)
+	{
+		this(c,DEFAULT_STARS_PER_CELL);
+	}
+
+	/**
+	 * Constructor. Builds the index.
+	 * @param c The cluster to index.
+	 * @param starsPerCell The average number of stars per grid cell to size the cells for.
+	 * @exception IllegalArgumentException Thrown if starsPerCell is not positive.
+	 */
+	public ClusterPixelIndex(Cluster c,double starsPerCell) throws IllegalArgumentException
+	{
+		super();
+		double unsortedXArray[],unsortedYArray[];
+		int cellArray[],cellCountArray[],sortedStarIndexArray[];
+		double x,y,xMaximum,yMaximum,width,height;
+		int starListCount,index,count,cell,sortedIndex;
+
+		if((starsPerCell > 0.0) == false)
+		{
+			throw new IllegalArgumentException(this.getClass().getName()+
+							   ":Illegal stars per cell:"+starsPerCell);
+		}
+		cluster = c;
+		starListCount = c.getStarListCount();
+		unsortedXArray = new double[starListCount];
+		unsortedYArray = new double[starListCount];
+		starIndexArray = new int[starListCount];
+		xMinimum = Double.MAX_VALUE;
+		yMinimum = Double.MAX_VALUE;
+		xMaximum = -Double.MAX_VALUE;
+		yMaximum = -Double.MAX_VALUE;
+		count = 0;
+		for(index = 0; index < starListCount; index++)
+		{
+			x = c.getXPixel(index);
+			y = c.getYPixel(index);
+			if(Double.isNaN(x)||Double.isNaN(y)||Double.isInfinite(x)||Double.isInfinite(y))
+				continue;
+			unsortedXArray[index] = x;
+			unsortedYArray[index] = y;
+			xMinimum = Math.min(xMinimum,x);
+			yMinimum = Math.min(yMinimum,y);
+			xMaximum = Math.max(xMaximum,x);
+			yMaximum = Math.max(yMaximum,y);
+			starIndexArray[count++] = index;
+		}
+		if(count == 0)
+		{
+			xMinimum = 0.0;
+			yMinimum = 0.0;
+			xMaximum = 0.0;
+			yMaximum = 0.0;
+		}
+		// size the cells
+		width = Math.max(xMaximum-xMinimum,1.0e-9);
+		height = Math.max(yMaximum-yMinimum,1.0e-9);
+		cellSize = Math.sqrt((width*height*starsPerCell)/Math.max(count,1));
+		cellSize = Math.max(cellSize,Math.max(width,height)/MAX_CELLS_PER_AXIS);
+		xCellCount = Math.max(1,Math.min(MAX_CELLS_PER_AXIS,(int)(width/cellSize)+1));
+		yCellCount = Math.max(1,Math.min(MAX_CELLS_PER_AXIS,(int)(height/cellSize)+1));
+		// counting sort of the stars into cells
+		cellArray = new int[count];
+		cellCountArray = new int[(xCellCount*yCellCount)+1];
+		for(sortedIndex = 0; sortedIndex < count; sortedIndex++)
+		{
+			index = starIndexArray[sortedIndex];
+			cell = (getYCell(unsortedYArray[index])*xCellCount)+getXCell(unsortedXArray[index]);
+			cellArray[sortedIndex] = cell;
+			cellCountArray[cell+1]++;
+		}
+		cellStartArray = new int[cellCountArray.length];
+		for(cell = 1; cell < cellStartArray.length; cell++)
+			cellStartArray[cell] = cellStartArray[cell-1]+cellCountArray[cell];
+		// cellCountArray is reused as the next free slot in each cell
+		System.arraycopy(cellStartArray,0,cellCountArray,0,cellStartArray.length);
+		xArray = new double[count];
+		yArray = new double[count];
+		sortedStarIndexArray = new int[count];
+		for(sortedIndex = 0; sortedIndex < count; sortedIndex++)
+		{
+			index = starIndexArray[sortedIndex];
+			cell = cellArray[sortedIndex];
+			sortedStarIndexArray[cellCountArray[cell]] = index;
+			xArray[cellCountArray[cell]] = unsortedXArray[index];
+			yArray[cellCountArray[cell]] = unsortedYArray[index];
+			cellCountArray[cell]++;
+		}
+		starIndexArray = sortedStarIndexArray;
+	}
+
+	/**
+	 * Return the cluster this index is built on.
+	 * @return The cluster.
+	 */
+	public Cluster getCluster()
+	{
+		return cluster;
+	}
+
+	/**
+	 * Return the number of stars in the index.
+	 * @return The number of stars with a valid pixel position.
+	 */
+	public int getIndexedStarCount()
+	{
+		return starIndexArray.length;
+	}
+
+	/**
+	 * Find all the stars within radius pixels of a position.
+	 * @param x The X pixel position of the centre of the circle.
+	 * @param y The Y pixel position of the centre of the circle.
+	 * @param radius The radius of the circle, in pixels.
+	 * @return The star list indices of the stars in the circle, not sorted by distance.
+	 * @exception IllegalArgumentException Thrown if the radius is negative.
+	 */
+	public int[] radiusSearch(double x,double y,double radius) throws IllegalArgumentException
+	{
+		ClusterSkyIndex.IntList results = null;
+		double dx,dy,radiusSquared;
+		int xCell,yCell,xCellMin,xCellMax,yCellMin,yCellMax,sortedIndex,end;
+
+		if((radius >= 0.0) == false)
+		{
+			throw new IllegalArgumentException(this.getClass().getName()+
+							   ":radiusSearch:Illegal radius:"+radius);
+		}
+		results = new ClusterSkyIndex.IntList();
+		radiusSquared = radius*radius;
+		xCellMin = getXCell(x-radius);
+		xCellMax = getXCell(x+radius);
+		yCellMin = getYCell(y-radius);
+		yCellMax = getYCell(y+radius);
+		for(yCell = yCellMin; yCell <= yCellMax; yCell++)
+		{
+			for(xCell = xCellMin; xCell <= xCellMax; xCell++)
+			{
+				end = cellStartArray[(yCell*xCellCount)+xCell+1];
+				for(sortedIndex = cellStartArray[(yCell*xCellCount)+xCell]; sortedIndex < end;
+				    sortedIndex++)
+				{
+					dx = xArray[sortedIndex]-x;
+					dy = yArray[sortedIndex]-y;
+					if(((dx*dx)+(dy*dy)) <= radiusSquared)
+						results.add(starIndexArray[sortedIndex]);
+				}
+			}
+		}
+		return results.toArray();
+	}
+
+	/**
+	 * Find all the stars inside a rectangle (edges included).
+	 * @param xMin The minimum X pixel position.
+	 * @param yMin The minimum Y pixel position.
+	 * @param xMax The maximum X pixel position.
+	 * @param yMax The maximum Y pixel position.
+	 * @return The star list indices of the stars in the rectangle.
+	 */
+	public int[] rectangleSearch(double xMin,double yMin,double xMax,double yMax)
+	{
+		ClusterSkyIndex.IntList results = null;
+		int xCell,yCell,xCellMin,xCellMax,yCellMin,yCellMax,sortedIndex,end;
+
+		results = new ClusterSkyIndex.IntList();
+		if((xMin > xMax)||(yMin > yMax))
+			return results.toArray();
+		xCellMin = getXCell(xMin);
+		xCellMax = getXCell(xMax);
+		yCellMin = getYCell(yMin);
+		yCellMax = getYCell(yMax);
+		for(yCell = yCellMin; yCell <= yCellMax; yCell++)
+		{
+			for(xCell = xCellMin; xCell <= xCellMax; xCell++)
+			{
+				end = cellStartArray[(yCell*xCellCount)+xCell+1];
+				for(sortedIndex = cellStartArray[(yCell*xCellCount)+xCell]; sortedIndex < end;
+				    sortedIndex++)
+				{
+					if((xArray[sortedIndex] >= xMin)&&(xArray[sortedIndex] <= xMax)&&
+					   (yArray[sortedIndex] >= yMin)&&(yArray[sortedIndex] <= yMax))
+						results.add(starIndexArray[sortedIndex]);
+				}
+			}
+		}
+		return results.toArray();
+	}
+
+	/**
+	 * Find the star nearest to a position.
+	 * @param x The X pixel position.
+	 * @param y The Y pixel position.
+	 * @return The star list index of the nearest star, or -1 if the index is empty.
+	 * @see #nearest(double,double,int)
+	 */
+	public int nearest(double x,double y)
+	{
+		int resultArray[];
+
+		resultArray = nearest(x,y,1);
+		if(resultArray.length == 0)
+			return -1;
+		return resultArray[0];
+	}
+
+	/**
+	 * Find the k stars nearest to a position. Rings of cells around the cell containing the position are
+	 * searched in turn, until the k'th nearest star found is nearer than any star outside the rings
+	 * searched could be.
+	 * @param x The X pixel position.
+	 * @param y The Y pixel position.
+	 * @param k The number of stars to find.
+	 * @return The star list indices of the nearest stars, sorted by increasing distance.
+	 *         Fewer than k are returned if the index contains fewer than k stars.
+	 */
+	public int[] nearest(double x,double y,int k)
+	{
+		int bestIndexArray[];
+		double bestDistanceArray[];
+		double dx,dy,distanceSquared,bound;
+		int xCentre,yCentre,ring,xCell,yCell,sortedIndex,end,count,i;
+		boolean coversGrid;
+
+		k = Math.min(k,getIndexedStarCount());
+		if(k <= 0)
+			return new int[0];
+		bestIndexArray = new int[k];
+		bestDistanceArray = new double[k];
+		count = 0;
+		xCentre = getXCell(x);
+		yCentre = getYCell(y);
+		for(ring = 0; ; ring++)
+		{
+			for(yCell = yCentre-ring; yCell <= yCentre+ring; yCell++)
+			{
+				if((yCell < 0)||(yCell >= yCellCount))
+					continue;
+				for(xCell = xCentre-ring; xCell <= xCentre+ring; xCell++)
+				{
+					if((xCell < 0)||(xCell >= xCellCount))
+						continue;
+					// only the cells on the edge of the ring are new
+					if((Math.abs(yCell-yCentre) != ring)&&(Math.abs(xCell-xCentre) != ring))
+						continue;
+					end = cellStartArray[(yCell*xCellCount)+xCell+1];
+					for(sortedIndex = cellStartArray[(yCell*xCellCount)+xCell];
+					    sortedIndex < end; sortedIndex++)
+					{
+						dx = xArray[sortedIndex]-x;
+						dy = yArray[sortedIndex]-y;
+						distanceSquared = (dx*dx)+(dy*dy);
+						if((count == k)&&(distanceSquared >= bestDistanceArray[k-1]))
+							continue;
+						// insert into the sorted best list
+						if(count < k)
+							count++;
+						for(i = count-1; (i > 0)&&(bestDistanceArray[i-1] > distanceSquared); i--)
+						{
+							bestDistanceArray[i] = bestDistanceArray[i-1];
+							bestIndexArray[i] = bestIndexArray[i-1];
+						}
+						bestDistanceArray[i] = distanceSquared;
+						bestIndexArray[i] = starIndexArray[sortedIndex];
+					}
+				}
+			}
+			coversGrid = (xCentre-ring <= 0)&&(yCentre-ring <= 0)&&
+				(xCentre+ring >= xCellCount-1)&&(yCentre+ring >= yCellCount-1);
+			if(coversGrid)
+				break;
+			if(count == k)
+			{
+				// distance from the position to the nearest point outside the rings searched,
+				// ignoring ring edges that are already at the edge of the grid
+				bound = Double.MAX_VALUE;
+				if(xCentre-ring > 0)
+					bound = Math.min(bound,x-(xMinimum+((xCentre-ring)*cellSize)));
+				if(xCentre+ring < xCellCount-1)
+					bound = Math.min(bound,(xMinimum+((xCentre+ring+1)*cellSize))-x);
+				if(yCentre-ring > 0)
+					bound = Math.min(bound,y-(yMinimum+((yCentre-ring)*cellSize)));
+				if(yCentre+ring < yCellCount-1)
+					bound = Math.min(bound,(yMinimum+((yCentre+ring+1)*cellSize))-y);
+				if((bound > 0.0)&&(bestDistanceArray[k-1] <= (bound*bound)))
+					break;
+			}
+		}
+		return Arrays.copyOf(bestIndexArray,count);
+	}
+
+	/**
+	 * Return the grid column containing an X pixel position, clamped to the grid.
+	 * @param x The X pixel position.
+	 * @return The column, 0..xCellCount-1.
+	 */
+	protected int getXCell(double x)
+	{
+		double cell;
+
+		cell = Math.floor((x-xMinimum)/cellSize);
+		if(cell < 0.0)
+			return 0;
+		if(cell >= xCellCount)
+			return xCellCount-1;
+		return (int)cell;
+	}
+
+	/**
+	 * Return the grid row containing a Y pixel position, clamped to the grid.
+	 * @param y The Y pixel position.
+	 * @return The row, 0..yCellCount-1.
+	 */
+	protected int getYCell(double y)
+	{
+		double cell;
+
+		cell = Math.floor((y-yMinimum)/cellSize);
+		if(cell < 0.0)
+			return 0;
+		if(cell >= yCellCount)
+			return yCellCount-1;
+		return (int)cell;
+	}
+}
@@ -0,0 +1,302 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterReader.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * This class reads a cluster file one star at a time, without building a list of all the stars.
+ * The header is read when the reader is constructed, and is available as a Cluster with no stars
+ * from getHeader. The stars can then be read one at a time with readStar, passed to a ClusterVisitor with
+ * accept, or retrieved through an Iterator or Stream. Only one of these methods should be used on each
+ * reader, as they all consume the same underlying input.
+ * Memory use is independent of the number of stars in the file.
+ * @version $Revision$
+ * @see Cluster
+ * @see ClusterVisitor
+ */
+public class ClusterReader implements Closeable
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The reader the cluster file is read from.
+	 */
+	protected BufferedReader reader = null;
+	/**
+	 * A cluster containing the header information, but no stars.
+	 */
+	protected Cluster header = null;
+	/**
+	 * The number of star lines read so far.
+	 */
+	protected int starIndex = 0;
+
+	/**
+	 * Constructor. Reads the cluster file header.
+	 * @param r The reader to read the cluster file from.
+	 * @exception IOException Thrown if the header could not be read.
+	 * @see #header
+	 * @see Cluster#loadHeader
+	 * @see Cluster#initialiseStarList
+	 */
+	public ClusterReader(BufferedReader r) throws IOException
+	{
+		super();
+		reader = r;
+		header = new Cluster();
+		header.loadHeader(reader);
+		// the header is a Cluster with an empty star list, as the getHeader documentation says
+		header.initialiseStarList();
+	}
+
+	/**
+	 * Static method to open a ClusterReader on the specified file.
+	 * gzip (or zstd) compressed files are decompressed while they are read.
+	 * @param file The file to read.
+	 * @return A ClusterReader, positioned after the header.
+	 * @exception FileNotFoundException Thrown if the file does not exist.
+	 * @exception IOException Thrown if the header could not be read.
+	 * @exception NumberFormatException Thrown if the colour count line is not valid.
+	 * @see ClusterDecompressor#open
+	 */
+	public static ClusterReader open(File file) throws FileNotFoundException,IOException
+	{
+		ClusterReader cr = null;
+		InputStream is = null;
+
+		is = ClusterDecompressor.open(new FileInputStream(file));
+		try
+		{
+			cr = new ClusterReader(new BufferedReader(new InputStreamReader(is,Cluster.FILE_CHARSET)));
+		}
+		finally
+		{
+			// close the stream (and stop any decompressor thread) if the header failed for any reason
+			if(cr == null)
+				is.close();
+		}
+		return cr;
+	}
+
+	/**
+	 * Static method to open a ClusterReader on the specified URL.
+	 * gzip (or zstd) compressed data is decompressed while it is read.
+	 * @param url The URL to read from.
+	 * @return A ClusterReader, positioned after the header.
+	 * @exception IOException Thrown if the URL could not be opened, or the header could not be read.
+	 * @exception NumberFormatException Thrown if the colour count line is not valid.
+	 * @see ClusterDecompressor#open
+	 */
+	public static ClusterReader open(URL url) throws IOException
+	{
+		ClusterReader cr = null;
+		InputStream is = null;
+
+		is = ClusterDecompressor.open(url.openStream());
+		try
+		{
+			cr = new ClusterReader(new BufferedReader(new InputStreamReader(is,Cluster.FILE_CHARSET)));
+		}
+		finally
+		{
+			// close the stream (and stop any decompressor thread) if the header failed for any reason
+			if(cr == null)
+				is.close();
+		}
+		return cr;
+	}
+
+	/**
+	 * Method to return a Cluster containing the header information (colour count, colour names and
+	 * comments) of the file being read. The cluster has an empty star list.
+	 * @return The header.
+	 * @see #header
+	 */
+	public Cluster getHeader()
+	{
+		return header;
+	}
+
+	public int getColourCount()
+	{
+		return header.getColourCount();
+	}
+
+	public String getColourName(int index)
+	{
+		return header.getColourName(index);
+	}
+
+	public String getColourCommentString()
+	{
+		return header.getColourCommentString();
+	}
+
+	public String getCommentString()
+	{
+		return header.getCommentString();
+	}
+
+	/**
+	 * Method to read and parse the next star line.
+	 * @return A new ClusterObject containing the star, or null if there are no more stars.
+	 * @exception IOException Thrown if the read fails.
+	 * @exception IllegalArgumentException Thrown if the star line could not be parsed.
+	 * @see ClusterObject#parseStarLine(java.lang.String,org.estar.cluster.ClusterColourMap)
+	 */
+	public ClusterObject readStar() throws IOException, IllegalArgumentException
+	{
+		ClusterObject co = null;
+		String s = null;
+
+		s = reader.readLine();
+		if(s == null)
+			return null;
+		co = new ClusterObject();
+		co.parseStarLine(s,header.getColourMap());
+		starIndex++;
+		return co;
+	}
+
+	/**
+	 * Method to pass the header, and then every remaining star in the file, to the specified visitor.
+	 * @param visitor The visitor.
+	 * @exception IOException Thrown if the read fails, or the visitor throws an exception.
+	 * @see ClusterVisitor#visitHeader
+	 * @see ClusterVisitor#visitStar
+	 */
+	public void accept(ClusterVisitor visitor) throws IOException
+	{
+		ClusterObject co = null;
+
+		visitor.visitHeader(header);
+		while((co = readStar()) != null)
+			visitor.visitStar(starIndex-1,co);
+	}
+
+	/**
+	 * Method to return an Iterator over the remaining stars in the file.
+	 * IOExceptions that occur while reading are re-thrown as UncheckedIOException.
+	 * @return An iterator.
+	 * @see #readStar
+	 */
+	public Iterator<ClusterObject> iterator()
+	{
+		return new Iterator<ClusterObject>()
+		{
+			private ClusterObject nextStar = null;
+			private boolean done = false;
+
+			public boolean hasNext()
+			{
+				if((nextStar == null)&&(done == false))
+				{
+					try
+					{
+						nextStar = readStar();
+					}
+					catch(IOException e)
+					{
+						throw new UncheckedIOException(e);
+					}
+					done = (nextStar == null);
+				}
+				return (nextStar != null);
+			}
+
+			public ClusterObject next()
+			{
+				ClusterObject co = null;
+
+				if(hasNext() == false)
+					throw new NoSuchElementException("ClusterReader:iterator:No more stars.");
+				co = nextStar;
+				nextStar = null;
+				return co;
+			}
+		};
+	}
+
+	/**
+	 * Method to return a sequential, ordered Stream of the remaining stars in the file.
+	 * Closing the stream closes this reader.
+	 * @return A stream of ClusterObject's.
+	 * @see #iterator
+	 */
+	public Stream<ClusterObject> stream()
+	{
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+						Spliterator.ORDERED|Spliterator.NONNULL),false).onClose(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					close();
+				}
+				catch(IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Close the underlying reader.
+	 * @exception IOException Thrown if the close fails.
+	 */
+	public void close() throws IOException
+	{
+		reader.close();
+	}
+
+	/**
+	 * Static method to pass every star in the specified file to a visitor, without loading
+	 * the whole file into memory.
+	 * @param file The file to read.
+	 * @param visitor The visitor.
+	 * @exception IOException Thrown if the read fails, or the visitor throws an exception.
+	 * @see #open(java.io.File)
+	 * @see #accept
+	 */
+	public static void visit(File file,ClusterVisitor visitor) throws IOException
+	{
+		ClusterReader cr = null;
+
+		cr = open(file);
+		try
+		{
+			cr.accept(visitor);
+		}
+		finally
+		{
+			cr.close();
+		}
+	}
+}
@@ -0,0 +1,724 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterSkyIndex.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.util.*;
+import org.estar.astrometry.*;
+
+/**
+ * This class is a spatial index on the sky positions of the stars in a Cluster, supporting cone searches,
+ * RA/Dec box searches and k-nearest-neighbour queries in sub-linear time.
+ * The sky is divided into zones of constant Dec height. Within each zone, the stars are sorted by RA,
+ * so the candidates for a query are found by a binary search in each zone the query overlaps.
+ * Candidates are then checked exactly, using the chord distance between unit vectors.
+ * Queries that overlap RA 0/360 are split into two RA ranges, and queries that contain a pole search the
+ * whole of the zones near the pole.
+ * All angles are in radians. Query results are indices into the Cluster's star list.
+ * Stars without an RA or Dec are not indexed. The index is not updated if the cluster changes.
+ * @version $Revision$
+ * @see Cluster#getRARadians
+ * @see Cluster#getDecRadians
+ */
+public class ClusterSkyIndex
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The default height of a Dec zone, in radians (6 arc-minutes).
+	 */
+	public final static double DEFAULT_ZONE_HEIGHT = Math.toRadians(0.1);
+	/**
+	 * Two pi.
+	 */
+	protected final static double TWO_PI = 2.0*Math.PI;
+	/**
+	 * The cluster that is indexed.
+	 */
+	protected Cluster cluster = null;
+	/**
+	 * The height of each Dec zone, in radians.
+	 */
+	protected double zoneHeight;
+	/**
+	 * The number of Dec zones.
+	 */
+	protected int zoneCount;
+	/**
+	 * The index in the sorted arrays of the first star in each zone. Of length zoneCount+1.
+	 */
+	protected int zoneStartArray[] = null;
+	/**
+	 * The star list index of each indexed star, sorted by zone and then RA.
+	 */
+	protected int starIndexArray[] = null;
+	/**
+	 * The RA (normalised to 0..2pi) of each indexed star, in sorted order.
+	 */
+	protected double raArray[] = null;
+	/**
+	 * The Dec of each indexed star, in sorted order.
+	 */
+	protected double decArray[] = null;
+	/**
+	 * The unit vector X component of each indexed star, in sorted order.
+	 */
+	protected double xArray[] = null;
+	/**
+	 * The unit vector Y component of each indexed star, in sorted order.
+	 */
+	protected double yArray[] = null;
+	/**
+	 * The unit vector Z component of each indexed star, in sorted order.
+	 */
+	protected double zArray[] = null;
+	/**
+	 * The estimated area of sky covered by the indexed stars, in steradians.
+	 * @see #computeFootprintArea
+	 */
+	protected double footprintArea;
+
+	/**
+	 * Constructor. Builds the index using the default zone height.
+	 * @param c The cluster to index.
+	 * @see #DEFAULT_ZONE_HEIGHT
+	 */
+	public ClusterSkyIndex(Cluster c)
+	{
+		this(c,DEFAULT_ZONE_HEIGHT);
+	}
+
+	/**
+	 * Constructor. Builds the index.
+	 * @param c The cluster to index.
+	 * @param height The height of each Dec zone, in radians. Smaller zones suit small search radii.
+	 * @exception IllegalArgumentException Thrown if the zone height is not positive.
+	 */
+	public ClusterSkyIndex(Cluster c,double height) throws IllegalArgumentException
+	{
+		super();
+		int zoneArray[];
+		double unsortedRAArray[],unsortedDecArray[];
+		int starListCount,index,count,zone,sortedIndex;
+		double ra,dec;
+
+		if((height > 0.0) == false)
+		{
+			throw new IllegalArgumentException(this.getClass().getName()+
+							   ":Illegal zone height:"+height);
+		}
+		cluster = c;
+		zoneHeight = height;
+		zoneCount = Math.max(1,(int)Math.ceil(Math.PI/zoneHeight));
+		// collect positions of stars with a valid RA/Dec
+		starListCount = c.getStarListCount();
+		unsortedRAArray = new double[starListCount];
+		unsortedDecArray = new double[starListCount];
+		zoneArray = new int[starListCount];
+		starIndexArray = new int[starListCount];
+		count = 0;
+		for(index = 0; index < starListCount; index++)
+		{
+			ra = c.getRARadians(index);
+			dec = c.getDecRadians(index);
+			if(Double.isNaN(ra)||Double.isNaN(dec))
+				continue;
+			unsortedRAArray[index] = normaliseRA(ra);
+			unsortedDecArray[index] = dec;
+			zoneArray[index] = getZone(dec);
+			starIndexArray[count++] = index;
+		}
+		starIndexArray = Arrays.copyOf(starIndexArray,count);
+		sortIndices(starIndexArray,zoneArray,unsortedRAArray);
+		// create sorted arrays
+		raArray = new double[count];
+		decArray = new double[count];
+		xArray = new double[count];
+		yArray = new double[count];
+		zArray = new double[count];
+		zoneStartArray = new int[zoneCount+1];
+		zone = 0;
+		for(sortedIndex = 0; sortedIndex < count; sortedIndex++)
+		{
+			index = starIndexArray[sortedIndex];
+			ra = unsortedRAArray[index];
+			dec = unsortedDecArray[index];
+			raArray[sortedIndex] = ra;
+			decArray[sortedIndex] = dec;
+			xArray[sortedIndex] = Math.cos(dec)*Math.cos(ra);
+			yArray[sortedIndex] = Math.cos(dec)*Math.sin(ra);
+			zArray[sortedIndex] = Math.sin(dec);
+			while(zone < zoneArray[index])
+				zoneStartArray[++zone] = sortedIndex;
+		}
+		while(zone < zoneCount)
+			zoneStartArray[++zone] = count;
+		footprintArea = computeFootprintArea();
+	}
+
+	/**
+	 * Return the cluster this index is built on.
+	 * @return The cluster.
+	 */
+	public Cluster getCluster()
+	{
+		return cluster;
+	}
+
+	/**
+	 * Return the number of stars in the index.
+	 * @return The number of stars with a valid RA and Dec.
+	 */
+	public int getIndexedStarCount()
+	{
+		return starIndexArray.length;
+	}
+
+	/**
+	 * Find all the stars within radius of a position.
+	 * @param ra The RA of the centre of the cone, in radians.
+	 * @param dec The Dec of the centre of the cone, in radians.
+	 * @param radius The radius of the cone, in radians.
+	 * @return The star list indices of the stars in the cone, in index order (not sorted by distance).
+	 * @exception IllegalArgumentException Thrown if the radius is negative.
+	 * @see #coneSearch(double,double,double,org.estar.cluster.ClusterSkyIndex.StarHandler)
+	 */
+	public int[] coneSearch(double ra,double dec,double radius) throws IllegalArgumentException
+	{
+		final IntList results = new IntList();
+
+		coneSearch(ra,dec,radius,new StarHandler()
+		{
+			public void handleStar(int starIndex,double separation)
+			{
+				results.add(starIndex);
+			}
+		});
+		return results.toArray();
+	}
+
+	/**
+	 * Find all the stars within radius of a position.
+	 * @param ra The RA of the centre of the cone.
+	 * @param dec The Dec of the centre of the cone.
+	 * @param radiusArcseconds The radius of the cone, in arc-seconds.
+	 * @return The star list indices of the stars in the cone.
+	 * @exception IllegalArgumentException Thrown if the radius is negative.
+	 * @see #coneSearch(double,double,double)
+	 */
+	public int[] coneSearch(RA ra,Dec dec,double radiusArcseconds) throws IllegalArgumentException
+	{
+		return coneSearch(ClusterCoordinates.toRadians(ra),ClusterCoordinates.toRadians(dec),
+				  radiusArcseconds*ClusterCoordinates.RADIANS_PER_ARCSECOND);
+	}
+
+	/**
+	 * Pass every star within radius of a position to a handler, with its separation.
+	 * @param ra The RA of the centre of the cone, in radians.
+	 * @param dec The Dec of the centre of the cone, in radians.
+	 * @param radius The radius of the cone, in radians.
+	 * @param handler The handler to pass each star to.
+	 * @exception IllegalArgumentException Thrown if the radius is negative.
+	 * @see #getRAHalfWidth
+	 * @see #searchZoneRange
+	 */
+	public void coneSearch(double ra,double dec,double radius,StarHandler handler)
+		throws IllegalArgumentException
+	{
+		double x,y,z,chord,maxChordSquared,alpha;
+		int zone,minZone,maxZone;
+
+		if((radius >= 0.0) == false)
+		{
+			throw new IllegalArgumentException(this.getClass().getName()+
+							   ":coneSearch:Illegal radius:"+radius);
+		}
+		radius = Math.min(radius,Math.PI);
+		ra = normaliseRA(ra);
+		x = Math.cos(dec)*Math.cos(ra);
+		y = Math.cos(dec)*Math.sin(ra);
+		z = Math.sin(dec);
+		chord = 2.0*Math.sin(radius/2.0);
+		maxChordSquared = chord*chord;
+		alpha = getRAHalfWidth(dec,radius);
+		minZone = getZone(dec-radius);
+		maxZone = getZone(dec+radius);
+		for(zone = minZone; zone <= maxZone; zone++)
+		{
+			if(alpha >= Math.PI)
+			{
+				searchZoneCone(zone,0.0,TWO_PI,x,y,z,maxChordSquared,handler);
+			}
+			else if(ra-alpha < 0.0)
+			{
+				searchZoneCone(zone,ra-alpha+TWO_PI,TWO_PI,x,y,z,maxChordSquared,handler);
+				searchZoneCone(zone,0.0,ra+alpha,x,y,z,maxChordSquared,handler);
+			}
+			else if(ra+alpha >= TWO_PI)
+			{
+				searchZoneCone(zone,ra-alpha,TWO_PI,x,y,z,maxChordSquared,handler);
+				searchZoneCone(zone,0.0,ra+alpha-TWO_PI,x,y,z,maxChordSquared,handler);
+			}
+			else
+				searchZoneCone(zone,ra-alpha,ra+alpha,x,y,z,maxChordSquared,handler);
+		}
+	}
+
+	/**
+	 * Find all the stars inside an RA/Dec box.
+	 * @param raMin The minimum RA, in radians.
+	 * @param raMax The maximum RA, in radians. If this is less than raMin (after normalising both to 0..2pi),
+	 *        the box wraps through RA 0.
+	 * @param decMin The minimum Dec, in radians.
+	 * @param decMax The maximum Dec, in radians.
+	 * @return The star list indices of the stars in the box.
+	 */
+	public int[] boxSearch(double raMin,double raMax,double decMin,double decMax)
+	{
+		IntList results = null;
+		int zone,minZone,maxZone;
+
+		results = new IntList();
+		if(decMin > decMax)
+			return results.toArray();
+		if((raMax-raMin) >= TWO_PI)
+		{
+			raMin = 0.0;
+			raMax = TWO_PI;
+		}
+		else
+		{
+			raMin = normaliseRA(raMin);
+			raMax = normaliseRA(raMax);
+		}
+		minZone = getZone(decMin);
+		maxZone = getZone(decMax);
+		for(zone = minZone; zone <= maxZone; zone++)
+		{
+			if(raMin <= raMax)
+				searchZoneBox(zone,raMin,raMax,decMin,decMax,results);
+			else
+			{
+				searchZoneBox(zone,raMin,TWO_PI,decMin,decMax,results);
+				searchZoneBox(zone,0.0,raMax,decMin,decMax,results);
+			}
+		}
+		return results.toArray();
+	}
+
+	/**
+	 * Find the k stars nearest to a position. The cone radius is estimated from the star density over the
+	 * footprint of the index, and doubled until at least k stars are found; all stars nearer than the k'th
+	 * must then be in the cone.
+	 * @param ra The RA of the position, in radians.
+	 * @param dec The Dec of the position, in radians.
+	 * @param k The number of stars to find.
+	 * @return The star list indices of the nearest stars, sorted by increasing separation.
+	 *         Fewer than k are returned if the index contains fewer than k stars.
+	 * @see #coneSearch(double,double,double,org.estar.cluster.ClusterSkyIndex.StarHandler)
+	 * @see #footprintArea
+	 */
+	public int[] nearest(double ra,double dec,int k)
+	{
+		final IntList indexList = new IntList();
+		final DoubleList separationList = new DoubleList();
+		int orderArray[],resultArray[];
+		double area,radius;
+		int index;
+
+		k = Math.min(k,getIndexedStarCount());
+		if(k <= 0)
+			return new int[0];
+		// radius of a cap expected to contain k stars, if they were uniformly spread over the footprint
+		area = (footprintArea*k)/getIndexedStarCount();
+		radius = Math.acos(Math.max(-1.0,1.0-(area/TWO_PI)));
+		radius = Math.max(radius,ClusterCoordinates.RADIANS_PER_ARCSECOND);
+		while(true)
+		{
+			indexList.clear();
+			separationList.clear();
+			coneSearch(ra,dec,Math.min(radius,Math.PI),new StarHandler()
+			{
+				public void handleStar(int starIndex,double separation)
+				{
+					indexList.add(starIndex);
+					separationList.add(separation);
+				}
+			});
+			if((indexList.size() >= k)||(radius >= Math.PI))
+				break;
+			radius *= 2.0;
+		}
+		orderArray = new int[indexList.size()];
+		for(index = 0; index < orderArray.length; index++)
+			orderArray[index] = index;
+		sortByValue(orderArray,separationList.array);
+		resultArray = new int[Math.min(k,orderArray.length)];
+		for(index = 0; index < resultArray.length; index++)
+			resultArray[index] = indexList.array[orderArray[index]];
+		return resultArray;
+	}
+
+	/**
+	 * Estimate the area of sky covered by the indexed stars. For each zone containing stars, the RA extent
+	 * of its stars is found (the full circle less the largest RA gap between neighbouring stars), padded by
+	 * the RA width of one zone height so sparse zones still count, and multiplied by the zone's Dec band.
+	 * A catalogue of one field therefore has a footprint close to the area of the field, rather than the
+	 * whole sky.
+	 * @return The area, in steradians.
+	 */
+	protected double computeFootprintArea()
+	{
+		double area,decMin,decMax,gap,largestGap,extent,padding;
+		int zone,start,end,sortedIndex;
+
+		area = 0.0;
+		for(zone = 0; zone < zoneCount; zone++)
+		{
+			start = zoneStartArray[zone];
+			end = zoneStartArray[zone+1];
+			if(start == end)
+				continue;
+			decMin = (zone*zoneHeight)-(Math.PI/2.0);
+			decMax = Math.min(Math.PI/2.0,decMin+zoneHeight);
+			// the gap wrapping round from the last star to the first
+			largestGap = (raArray[start]+TWO_PI)-raArray[end-1];
+			for(sortedIndex = start+1; sortedIndex < end; sortedIndex++)
+			{
+				gap = raArray[sortedIndex]-raArray[sortedIndex-1];
+				if(gap > largestGap)
+					largestGap = gap;
+			}
+			padding = zoneHeight/Math.max(Math.cos((decMin+decMax)/2.0),zoneHeight);
+			extent = Math.min(TWO_PI,TWO_PI-largestGap+padding);
+			area += extent*(Math.sin(decMax)-Math.sin(decMin));
+		}
+		return area;
+	}
+
+	/**
+	 * Return the angular separation between two positions.
+	 * @param ra1 The RA of the first position, in radians.
+	 * @param dec1 The Dec of the first position, in radians.
+	 * @param ra2 The RA of the second position, in radians.
+	 * @param dec2 The Dec of the second position, in radians.
+	 * @return The separation in radians.
+	 */
+	public static double getSeparation(double ra1,double dec1,double ra2,double dec2)
+	{
+		double dx,dy,dz,chord;
+
+		dx = (Math.cos(dec1)*Math.cos(ra1))-(Math.cos(dec2)*Math.cos(ra2));
+		dy = (Math.cos(dec1)*Math.sin(ra1))-(Math.cos(dec2)*Math.sin(ra2));
+		dz = Math.sin(dec1)-Math.sin(dec2);
+		chord = Math.sqrt((dx*dx)+(dy*dy)+(dz*dz));
+		return 2.0*Math.asin(Math.min(1.0,chord/2.0));
+	}
+
+	/**
+	 * Return the half width in RA of the region covered by a cone. This is the largest RA offset of any point
+	 * on the cone from its centre.
+	 * @param dec The Dec of the centre of the cone, in radians.
+	 * @param radius The radius of the cone, in radians.
+	 * @return The RA half width in radians, or pi if the cone contains a pole.
+	 */
+	protected static double getRAHalfWidth(double dec,double radius)
+	{
+		double denominator;
+
+		if((Math.abs(dec)+radius) >= (Math.PI/2.0))
+			return Math.PI;
+		denominator = Math.sqrt(Math.abs(Math.cos(dec-radius)*Math.cos(dec+radius)));
+		if(denominator <= 0.0)
+			return Math.PI;
+		// pad slightly to allow for rounding errors, candidates are checked exactly anyway
+		return Math.min(Math.PI,Math.atan(Math.sin(radius)/denominator)*(1.0+1.0e-9)+1.0e-12);
+	}
+
+	/**
+	 * Return the zone containing the specified Dec. Decs outside -pi/2..pi/2 are clamped to the polar zones.
+	 * @param dec The Dec in radians.
+	 * @return The zone number, 0..zoneCount-1.
+	 */
+	protected int getZone(double dec)
+	{
+		int zone;
+
+		zone = (int)Math.floor((dec+(Math.PI/2.0))/zoneHeight);
+		return Math.max(0,Math.min(zoneCount-1,zone));
+	}
+
+	/**
+	 * Return the first sorted index in the zone whose RA is greater than or equal to ra.
+	 * @param zone The zone.
+	 * @param ra The RA in radians.
+	 * @return The sorted index.
+	 */
+	protected int findRA(int zone,double ra)
+	{
+		int low,high,middle;
+
+		low = zoneStartArray[zone];
+		high = zoneStartArray[zone+1];
+		while(low < high)
+		{
+			middle = (low+high) >>> 1;
+			if(raArray[middle] < ra)
+				low = middle+1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Check the stars in part of a zone against a cone.
+	 * @param zone The zone.
+	 * @param raMin The minimum RA of the stars to check.
+	 * @param raMax The maximum RA of the stars to check.
+	 * @param x The X component of the cone centre unit vector.
+	 * @param y The Y component of the cone centre unit vector.
+	 * @param z The Z component of the cone centre unit vector.
+	 * @param maxChordSquared The square of the chord length equivalent to the cone radius.
+	 * @param handler The handler to pass each star in the cone to.
+	 */
+	protected void searchZoneCone(int zone,double raMin,double raMax,double x,double y,double z,
+				      double maxChordSquared,StarHandler handler)
+	{
+		double dx,dy,dz,chordSquared;
+		int sortedIndex,end;
+
+		end = zoneStartArray[zone+1];
+		for(sortedIndex = findRA(zone,raMin); sortedIndex < end; sortedIndex++)
+		{
+			if(raArray[sortedIndex] > raMax)
+				break;
+			dx = xArray[sortedIndex]-x;
+			dy = yArray[sortedIndex]-y;
+			dz = zArray[sortedIndex]-z;
+			chordSquared = (dx*dx)+(dy*dy)+(dz*dz);
+			if(chordSquared <= maxChordSquared)
+			{
+				handler.handleStar(starIndexArray[sortedIndex],
+						   2.0*Math.asin(Math.min(1.0,Math.sqrt(chordSquared)/2.0)));
+			}
+		}
+	}
+
+	/**
+	 * Check the stars in part of a zone against a Dec range.
+	 * @param zone The zone.
+	 * @param raMin The minimum RA of the stars to check.
+	 * @param raMax The maximum RA of the stars to check.
+	 * @param decMin The minimum Dec.
+	 * @param decMax The maximum Dec.
+	 * @param results The list to add the star list indices of matching stars to.
+	 */
+	protected void searchZoneBox(int zone,double raMin,double raMax,double decMin,double decMax,IntList results)
+	{
+		int sortedIndex,end;
+
+		end = zoneStartArray[zone+1];
+		for(sortedIndex = findRA(zone,raMin); sortedIndex < end; sortedIndex++)
+		{
+			if(raArray[sortedIndex] > raMax)
+				break;
+			if((decArray[sortedIndex] >= decMin)&&(decArray[sortedIndex] <= decMax))
+				results.add(starIndexArray[sortedIndex]);
+		}
+	}
+
+	/**
+	 * Normalise an RA into the range 0 <= ra < 2pi.
+	 * @param ra The RA in radians.
+	 * @return The normalised RA.
+	 */
+	protected static double normaliseRA(double ra)
+	{
+		ra = ra % TWO_PI;
+		if(ra < 0.0)
+			ra += TWO_PI;
+		if(ra >= TWO_PI)
+			ra = 0.0;
+		return ra;
+	}
+
+	/**
+	 * Sort star indices by zone, and then by RA, using a stable merge sort.
+	 * @param indexArray The star indices to sort.
+	 * @param zoneArray The zone of each star, indexed by star index.
+	 * @param raArray The RA of each star, indexed by star index.
+	 */
+	protected static void sortIndices(int indexArray[],final int zoneArray[],final double raArray[])
+	{
+		mergeSort(indexArray,new int[indexArray.length],0,indexArray.length,new IndexComparator()
+		{
+			public boolean lessThan(int index1,int index2)
+			{
+				if(zoneArray[index1] != zoneArray[index2])
+					return zoneArray[index1] < zoneArray[index2];
+				return raArray[index1] < raArray[index2];
+			}
+		});
+	}
+
+	/**
+	 * Sort indices by an associated value, using a stable merge sort.
+	 * @param indexArray The indices to sort.
+	 * @param valueArray The value of each index.
+	 */
+	protected static void sortByValue(int indexArray[],final double valueArray[])
+	{
+		mergeSort(indexArray,new int[indexArray.length],0,indexArray.length,new IndexComparator()
+		{
+			public boolean lessThan(int index1,int index2)
+			{
+				return valueArray[index1] < valueArray[index2];
+			}
+		});
+	}
+
+	/**
+	 * Stable merge sort of part of an int array, without boxing.
+	 * @param a The array to sort.
+	 * @param work A work array, at least as long as a.
+	 * @param from The first index to sort.
+	 * @param to The index after the last index to sort.
+	 * @param comparator The comparator.
+	 */
+	protected static void mergeSort(int a[],int work[],int from,int to,IndexComparator comparator)
+	{
+		int middle,i,j,k,tmp;
+
+		if(to-from < 16)
+		{
+			// insertion sort
+			for(i = from+1; i < to; i++)
+			{
+				tmp = a[i];
+				for(j = i; (j > from)&&comparator.lessThan(tmp,a[j-1]); j--)
+					a[j] = a[j-1];
+				a[j] = tmp;
+			}
+			return;
+		}
+		middle = (from+to) >>> 1;
+		mergeSort(a,work,from,middle,comparator);
+		mergeSort(a,work,middle,to,comparator);
+		if(comparator.lessThan(a[middle],a[middle-1]) == false)
+			return;
+		System.arraycopy(a,from,work,from,to-from);
+		i = from;
+		j = middle;
+		for(k = from; k < to; k++)
+		{
+			if((j >= to)||((i < middle)&&(comparator.lessThan(work[j],work[i]) == false)))
+				a[k] = work[i++];
+			else
+				a[k] = work[j++];
+		}
+	}
+
+	/**
+	 * Interface for comparing two indices, used by mergeSort.
+	 */
+	protected interface IndexComparator
+	{
+		public boolean lessThan(int index1,int index2);
+	}
+
+	/**
+	 * Interface implemented by classes that want each star found by a search passed to them.
+	 */
+	public interface StarHandler
+	{
+		/**
+		 * Method called for each star found.
+		 * @param starIndex The index of the star in the cluster's star list.
+		 * @param separation The separation of the star from the search position, in radians.
+		 */
+		public void handleStar(int starIndex,double separation);
+	}
+
+	/**
+	 * Simple growable list of ints.
+	 */
+	protected static class IntList
+	{
+		protected int array[] = new int[16];
+		protected int size = 0;
+
+		public void add(int value)
+		{
+			if(size == array.length)
+				array = Arrays.copyOf(array,size*2);
+			array[size++] = value;
+		}
+
+		public int size()
+		{
+			return size;
+		}
+
+		public void clear()
+		{
+			size = 0;
+		}
+
+		public int[] toArray()
+		{
+			return Arrays.copyOf(array,size);
+		}
+	}
+
+	/**
+	 * Simple growable list of doubles.
+	 */
+	protected static class DoubleList
+	{
+		protected double array[] = new double[16];
+		protected int size = 0;
+
+		public void add(double value)
+		{
+			if(size == array.length)
+				array = Arrays.copyOf(array,size*2);
+			array[size++] = value;
+		}
+
+		public int size()
+		{
+			return size;
+		}
+
+		public void clear()
+		{
+			size = 0;
+		}
+
+		public double[] toArray()
+		{
+			return Arrays.copyOf(array,size);
+		}
+	}
+}
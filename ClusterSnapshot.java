@@ -0,0 +1,355 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterSnapshot.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * This class is an immutable snapshot of a cluster catalogue, that can be read by many threads at once
+ * without locking. The stars are held in a private ClusterTable, which is never modified after the snapshot
+ * is created, so reads go straight to the columns rather than through a synchronized Vector.
+ * Stars are returned as read-only ClusterTableObject views, and the star list cannot be modified.
+ * Use a ClusterSnapshotHolder to swap in a new snapshot atomically when the catalogue is reloaded.
+ * @version $Revision$
+ * @see ClusterTable
+ * @see ClusterSnapshotHolder
+ */
+public final class ClusterSnapshot
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The table holding the snapshot data. This is never modified once the snapshot is created.
+	 */
+	private final ClusterTable table;
+	/**
+	 * The magnitude index of each colour, built on first use. The array elements have volatile semantics,
+	 * so an index is only seen once it is completely built, and reads need no lock.
+	 * @see #getMagnitudeIndex(int)
+	 */
+	private final AtomicReferenceArray<ClusterMagnitudeIndex> magnitudeIndexArray;
+
+	/**
+	 * Constructor. The snapshot takes ownership of the table, which must not be modified afterwards.
+	 * This is package visible, use one of the static methods to create a snapshot.
+	 * @param t The table.
+	 * @see #table
+	 * @see #of
+	 */
+	ClusterSnapshot(ClusterTable t)
+	{
+		super();
+		table = t;
+		magnitudeIndexArray = new AtomicReferenceArray<ClusterMagnitudeIndex>(Math.max(0,t.getColourCount()));
+	}
+
+	/**
+	 * Create a snapshot of the current contents of a cluster. The data is copied, so later changes to
+	 * the cluster do not affect the snapshot. A ClusterLazyTable is already read-only and safe to read
+	 * from several threads, so it is used directly rather than copied.
+	 * @param c The cluster.
+	 * @return A new snapshot.
+	 * @see ClusterTable#appendTable
+	 * @see ClusterTable#ClusterTable(org.estar.cluster.Cluster)
+	 */
+	public static ClusterSnapshot of(Cluster c)
+	{
+		ClusterTable t = null;
+
+		if(c instanceof ClusterLazyTable)
+			return new ClusterSnapshot((ClusterTable)c);
+		if(c instanceof ClusterTable)
+		{
+			t = new ClusterTable();
+			t.copyHeader(c);
+			t.initialiseColumns(c.getStarListCount());
+			t.appendTable((ClusterTable)c);
+		}
+		else
+			t = new ClusterTable(c);
+		if(t.colourNameList != null)
+			t.colourNameList = t.colourNameList.clone();
+		t.trimToSize();
+		return new ClusterSnapshot(t);
+	}
+
+	/**
+	 * Load a snapshot from the specified file. The file is loaded straight into the snapshot's table,
+	 * no copy is made. gzip (or zstd) compressed files are decompressed while they are loaded.
+	 * @param file The file to load.
+	 * @return A new snapshot.
+	 * @exception FileNotFoundException Thrown if the file does not exist.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see ClusterTable#load(java.io.File)
+	 */
+	public static ClusterSnapshot load(File file) throws FileNotFoundException,IOException
+	{
+		return new ClusterSnapshot(ClusterTable.load(file));
+	}
+
+	/**
+	 * Load a snapshot from the specified URL. The data is loaded straight into the snapshot's table,
+	 * no copy is made.
+	 * @param url The URL to load from.
+	 * @return A new snapshot.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see ClusterTable#load(java.net.URL)
+	 */
+	public static ClusterSnapshot load(URL url) throws IOException
+	{
+		return new ClusterSnapshot(ClusterTable.load(url));
+	}
+
+	/**
+	 * Load a snapshot from the contents of a cluster file held in a character sequence.
+	 * @param s The contents of a cluster file.
+	 * @return A new snapshot.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see ClusterTable#load(java.lang.CharSequence)
+	 */
+	public static ClusterSnapshot load(CharSequence s) throws IOException
+	{
+		return new ClusterSnapshot(ClusterTable.load(s));
+	}
+
+	/**
+	 * Create a new, modifiable, copy of the snapshot data.
+	 * @return A new ClusterTable containing a copy of the data.
+	 * @see ClusterTable#appendTable
+	 */
+	public ClusterTable toClusterTable()
+	{
+		ClusterTable t = null;
+
+		t = new ClusterTable();
+		t.copyHeader(table);
+		if(t.colourNameList != null)
+			t.colourNameList = t.colourNameList.clone();
+		t.initialiseColumns(table.getStarListCount());
+		t.appendTable(table);
+		return t;
+	}
+
+	public int getColourCount()
+	{
+		return table.getColourCount();
+	}
+
+	public String getColourName(int index)
+	{
+		return table.getColourName(index);
+	}
+
+	public ClusterColourMap getColourMap()
+	{
+		return table.getColourMap();
+	}
+
+	public String getColourCommentString()
+	{
+		return table.getColourCommentString();
+	}
+
+	public String getCommentString()
+	{
+		return table.getCommentString();
+	}
+
+	/**
+	 * Get a read-only list of views of the stars in the snapshot.
+	 * @return The list of stars.
+	 * @see ClusterTable#getStarList
+	 */
+	public List<?> getStarList()
+	{
+		return table.getStarList();
+	}
+
+	public int getStarListCount()
+	{
+		return table.getStarListCount();
+	}
+
+	/**
+	 * Get a read-only view of the star at index in the snapshot.
+	 * @param index The index.
+	 * @return A read-only view of the star. Calling its setter methods throws an UnsupportedOperationException.
+	 * @exception IndexOutOfBoundsException Thrown if the index is out of range.
+	 * @see ClusterTable#getStar(int)
+	 */
+	public ClusterObject getStar(int index) throws IndexOutOfBoundsException
+	{
+		return table.getStar(index);
+	}
+
+	/**
+	 * Get the star with the specified identifier.
+	 * @param fieldNumber The field number.
+	 * @param starNumber The star number.
+	 * @return A read-only view of the star, or null if there is no star with that identifier.
+	 * @see Cluster#getStar(int,int)
+	 */
+	public ClusterObject getStar(int fieldNumber,int starNumber)
+	{
+		return table.getStar(fieldNumber,starNumber);
+	}
+
+	public int getStarIndex(int fieldNumber,int starNumber)
+	{
+		return table.getStarIndex(fieldNumber,starNumber);
+	}
+
+	public int[] getDuplicateStarIndexes()
+	{
+		return table.getDuplicateStarIndexes();
+	}
+
+	public int getFieldNumber(int index)
+	{
+		return table.getFieldNumber(index);
+	}
+
+	public int getStarNumber(int index)
+	{
+		return table.getStarNumber(index);
+	}
+
+	public double getRARadians(int index)
+	{
+		return table.getRARadians(index);
+	}
+
+	public double getDecRadians(int index)
+	{
+		return table.getDecRadians(index);
+	}
+
+	/**
+	 * Get the unit vector of the position of the star at index in the snapshot.
+	 * @param index The index.
+	 * @return A new array of length 3 containing x,y,z.
+	 * @see Cluster#getUnitVector(int)
+	 */
+	public double[] getUnitVector(int index)
+	{
+		return table.getUnitVector(index);
+	}
+
+	public double getXPixel(int index)
+	{
+		return table.getXPixel(index);
+	}
+
+	public double getYPixel(int index)
+	{
+		return table.getYPixel(index);
+	}
+
+	public double getMagnitude(int index,int colourIndex)
+	{
+		return table.getMagnitude(index,colourIndex);
+	}
+
+	public double getMagnitudeError(int index,int colourIndex)
+	{
+		return table.getMagnitudeError(index,colourIndex);
+	}
+
+	public int getFlags(int index,int colourIndex)
+	{
+		return table.getFlags(index,colourIndex);
+	}
+
+	/**
+	 * Get an index of the stars sorted by magnitude in the specified colour. The index is built on first use,
+	 * without taking a lock, so readers of a snapshot never wait for each other. If several threads ask for
+	 * a new index at once they may each build it, and the first one published is kept.
+	 * @param colourIndex The colour.
+	 * @return The magnitude index.
+	 * @exception IndexOutOfBoundsException Thrown if the colour index is out of range.
+	 * @see #magnitudeIndexArray
+	 * @see Cluster#getMagnitudeIndex(int)
+	 */
+	public ClusterMagnitudeIndex getMagnitudeIndex(int colourIndex) throws IndexOutOfBoundsException
+	{
+		ClusterMagnitudeIndex index = null;
+
+		if((colourIndex < 0)||(colourIndex >= magnitudeIndexArray.length()))
+		{
+			throw new IndexOutOfBoundsException(this.getClass().getName()+":getMagnitudeIndex:Colour index "+
+							    colourIndex+" out of range 0.."+magnitudeIndexArray.length());
+		}
+		index = magnitudeIndexArray.get(colourIndex);
+		if(index == null)
+		{
+			index = new ClusterMagnitudeIndex(table,colourIndex);
+			if(magnitudeIndexArray.compareAndSet(colourIndex,null,index) == false)
+				index = magnitudeIndexArray.get(colourIndex);
+		}
+		return index;
+	}
+
+	/**
+	 * Get an index of the stars sorted by magnitude in the colour with the specified name.
+	 * @param colourName The colour name, compared ignoring case. If more than one colour has the name,
+	 *        the first is used.
+	 * @return The magnitude index.
+	 * @exception IllegalArgumentException Thrown if no colour has the name.
+	 * @see #getMagnitudeIndex(int)
+	 */
+	public ClusterMagnitudeIndex getMagnitudeIndex(String colourName) throws IllegalArgumentException
+	{
+		return getMagnitudeIndex(table.findColourIndex(colourName,"getMagnitudeIndex"));
+	}
+
+	public ClusterMagnitudeStatistics getMagnitudeStatistics(String colourName,double maxError,int rejectFlags)
+		throws IllegalArgumentException
+	{
+		return table.getMagnitudeStatistics(colourName,maxError,rejectFlags);
+	}
+
+	/**
+	 * Save the snapshot as a cluster file to the specified Writer.
+	 * @param w The writer.
+	 * @exception IOException Thrown if an IO error occurs.
+	 * @see Cluster#save(java.io.Writer)
+	 */
+	public void save(Writer w) throws IOException
+	{
+		table.save(w);
+	}
+
+	/**
+	 * Method to print out a string representation of the snapshot, in cluster file format.
+	 * @return The string.
+	 * @see Cluster#toString()
+	 */
+	public String toString()
+	{
+		return table.toString();
+	}
+}
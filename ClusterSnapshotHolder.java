@@ -0,0 +1,147 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterSnapshotHolder.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * This class holds the current snapshot of a cluster catalogue, which can be replaced atomically.
+ * Readers call get once per request and use the returned snapshot throughout, so they see a consistent
+ * catalogue even if it is reloaded meanwhile. A reload builds the new snapshot before swapping it in,
+ * so readers never wait for a load, and never see a partially loaded catalogue.
+ * @version $Revision$
+ * @see ClusterSnapshot
+ */
+public class ClusterSnapshotHolder
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * Reference to the current snapshot, or null if no snapshot has been set.
+	 */
+	protected AtomicReference snapshotReference = null;
+
+	/**
+	 * Default constructor. The holder is empty until a snapshot is set or loaded.
+	 */
+	public ClusterSnapshotHolder()
+	{
+		this(null);
+	}
+
+	/**
+	 * Constructor.
+	 * @param s The initial snapshot, or null.
+	 * @see #snapshotReference
+	 */
+	public ClusterSnapshotHolder(ClusterSnapshot s)
+	{
+		super();
+		snapshotReference = new AtomicReference(s);
+	}
+
+	/**
+	 * Get the current snapshot.
+	 * @return The snapshot, or null if none has been set.
+	 */
+	public ClusterSnapshot get()
+	{
+		return (ClusterSnapshot)(snapshotReference.get());
+	}
+
+	/**
+	 * Replace the current snapshot.
+	 * @param s The new snapshot.
+	 * @return The previous snapshot, or null.
+	 */
+	public ClusterSnapshot set(ClusterSnapshot s)
+	{
+		return (ClusterSnapshot)(snapshotReference.getAndSet(s));
+	}
+
+	/**
+	 * Replace the current snapshot, only if it is still the expected one. This lets a reload that
+	 * started from an old snapshot avoid overwriting a newer one.
+	 * @param expected The snapshot expected to be current.
+	 * @param s The new snapshot.
+	 * @return true if the snapshot was replaced, false if the current snapshot was not the expected one.
+	 */
+	public boolean compareAndSet(ClusterSnapshot expected,ClusterSnapshot s)
+	{
+		return snapshotReference.compareAndSet(expected,s);
+	}
+
+	/**
+	 * Replace the current snapshot with a snapshot of the contents of a cluster. The cluster is copied
+	 * before the swap, so it can go on being modified afterwards.
+	 * @param c The cluster.
+	 * @return The new snapshot.
+	 * @see ClusterSnapshot#of
+	 */
+	public ClusterSnapshot update(Cluster c)
+	{
+		ClusterSnapshot s = null;
+
+		s = ClusterSnapshot.of(c);
+		set(s);
+		return s;
+	}
+
+	/**
+	 * Load a new snapshot from the specified file, and swap it in when the load is complete.
+	 * If the load fails, the current snapshot is left in place.
+	 * @param file The file to load.
+	 * @return The new snapshot.
+	 * @exception FileNotFoundException Thrown if the file does not exist.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see ClusterSnapshot#load(java.io.File)
+	 */
+	public ClusterSnapshot reload(File file) throws FileNotFoundException,IOException
+	{
+		ClusterSnapshot s = null;
+
+		s = ClusterSnapshot.load(file);
+		set(s);
+		return s;
+	}
+
+	/**
+	 * Load a new snapshot from the specified URL, and swap it in when the load is complete.
+	 * If the load fails, the current snapshot is left in place.
+	 * @param url The URL to load from.
+	 * @return The new snapshot.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see ClusterSnapshot#load(java.net.URL)
+	 */
+	public ClusterSnapshot reload(URL url) throws IOException
+	{
+		ClusterSnapshot s = null;
+
+		s = ClusterSnapshot.load(url);
+		set(s);
+		return s;
+	}
+}
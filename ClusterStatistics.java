@@ -0,0 +1,270 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterStatistics.java
+package org.estar.cluster;
+
+import java.lang.*;
+
+/**
+ * This class aggregates the measurements of cluster loads and saves, and is published through JMX as
+ * a standard MBean. Counts and totals accumulate until reset, the "Last" attributes describe the most
+ * recent load or save.
+ * @version $Revision$
+ * @see ClusterStatisticsMBean
+ * @see ClusterInstrumentation#registerMBean
+ */
+public class ClusterStatistics implements ClusterStatisticsMBean
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * Nanoseconds per millisecond.
+	 */
+	protected final static double NANOS_PER_MILLI = 1.0e6;
+	/**
+	 * The number of loads.
+	 */
+	protected long loadCount;
+	/**
+	 * The number of saves.
+	 */
+	protected long saveCount;
+	/**
+	 * The number of loads and saves that failed.
+	 */
+	protected long failureCount;
+	/**
+	 * The number of star rows loaded.
+	 */
+	protected long rowsLoaded;
+	/**
+	 * The number of star rows saved.
+	 */
+	protected long rowsSaved;
+	/**
+	 * The number of characters read.
+	 */
+	protected long charactersRead;
+	/**
+	 * The number of characters written.
+	 */
+	protected long charactersWritten;
+	/**
+	 * The number of star lines that failed to parse.
+	 */
+	protected long parseFailureCount;
+	/**
+	 * The total load time, in nanoseconds.
+	 */
+	protected long totalLoadNanos;
+	/**
+	 * The total save time, in nanoseconds.
+	 */
+	protected long totalSaveNanos;
+	/**
+	 * The measurements of the most recent load, or null.
+	 */
+	protected ClusterMetrics lastLoad = null;
+	/**
+	 * The measurements of the most recent save, or null.
+	 */
+	protected ClusterMetrics lastSave = null;
+
+	/**
+	 * Default constructor.
+	 */
+	public ClusterStatistics()
+	{
+		super();
+	}
+
+	/**
+	 * Add the measurements of a load or save.
+	 * @param m The measurements.
+	 */
+	public synchronized void add(ClusterMetrics m)
+	{
+		if(m.getException() != null)
+			failureCount++;
+		parseFailureCount += m.getParseFailureCount();
+		if(m.getOperation() == ClusterMetrics.OPERATION_LOAD)
+		{
+			loadCount++;
+			rowsLoaded += m.getRowCount();
+			charactersRead += m.getCharacterCount();
+			totalLoadNanos += m.getTotalNanos();
+			lastLoad = m;
+		}
+		else
+		{
+			saveCount++;
+			rowsSaved += m.getRowCount();
+			charactersWritten += m.getCharacterCount();
+			totalSaveNanos += m.getTotalNanos();
+			lastSave = m;
+		}
+	}
+
+	public synchronized void reset()
+	{
+		loadCount = 0;
+		saveCount = 0;
+		failureCount = 0;
+		rowsLoaded = 0;
+		rowsSaved = 0;
+		charactersRead = 0;
+		charactersWritten = 0;
+		parseFailureCount = 0;
+		totalLoadNanos = 0;
+		totalSaveNanos = 0;
+		lastLoad = null;
+		lastSave = null;
+	}
+
+	/**
+	 * Return the measurements of the most recent load.
+	 * @return The measurements, or null if there has been no load since the last reset.
+	 */
+	public synchronized ClusterMetrics getLastLoad()
+	{
+		return lastLoad;
+	}
+
+	/**
+	 * Return the measurements of the most recent save.
+	 * @return The measurements, or null if there has been no save since the last reset.
+	 */
+	public synchronized ClusterMetrics getLastSave()
+	{
+		return lastSave;
+	}
+
+	public boolean isEnabled()
+	{
+		return ClusterInstrumentation.isEnabled();
+	}
+
+	public void setEnabled(boolean on)
+	{
+		ClusterInstrumentation.setEnabled(on);
+	}
+
+	public synchronized long getLoadCount()
+	{
+		return loadCount;
+	}
+
+	public synchronized long getSaveCount()
+	{
+		return saveCount;
+	}
+
+	public synchronized long getFailureCount()
+	{
+		return failureCount;
+	}
+
+	public synchronized long getRowsLoaded()
+	{
+		return rowsLoaded;
+	}
+
+	public synchronized long getRowsSaved()
+	{
+		return rowsSaved;
+	}
+
+	public synchronized long getCharactersRead()
+	{
+		return charactersRead;
+	}
+
+	public synchronized long getCharactersWritten()
+	{
+		return charactersWritten;
+	}
+
+	public synchronized long getParseFailureCount()
+	{
+		return parseFailureCount;
+	}
+
+	public synchronized double getTotalLoadMillis()
+	{
+		return totalLoadNanos/NANOS_PER_MILLI;
+	}
+
+	public synchronized double getTotalSaveMillis()
+	{
+		return totalSaveNanos/NANOS_PER_MILLI;
+	}
+
+	public synchronized double getLastLoadMillis()
+	{
+		return (lastLoad == null) ? 0.0 : lastLoad.getTotalNanos()/NANOS_PER_MILLI;
+	}
+
+	public synchronized double getLastLoadIOMillis()
+	{
+		return (lastLoad == null) ? 0.0 : lastLoad.getIONanos()/NANOS_PER_MILLI;
+	}
+
+	public synchronized double getLastLoadTokeniseMillis()
+	{
+		return (lastLoad == null) ? 0.0 : lastLoad.getTokeniseNanos()/NANOS_PER_MILLI;
+	}
+
+	public synchronized double getLastLoadNumberParseMillis()
+	{
+		return (lastLoad == null) ? 0.0 : lastLoad.getNumberParseNanos()/NANOS_PER_MILLI;
+	}
+
+	public synchronized double getLastLoadCoordinateMillis()
+	{
+		return (lastLoad == null) ? 0.0 : lastLoad.getCoordinateNanos()/NANOS_PER_MILLI;
+	}
+
+	public synchronized double getLastLoadRowsPerSecond()
+	{
+		return (lastLoad == null) ? 0.0 : lastLoad.getRowsPerSecond();
+	}
+
+	public synchronized double getLastSaveMillis()
+	{
+		return (lastSave == null) ? 0.0 : lastSave.getTotalNanos()/NANOS_PER_MILLI;
+	}
+
+	public synchronized double getLastSaveIOMillis()
+	{
+		return (lastSave == null) ? 0.0 : lastSave.getIONanos()/NANOS_PER_MILLI;
+	}
+
+	public synchronized double getLastSaveFormatMillis()
+	{
+		return (lastSave == null) ? 0.0 : lastSave.getFormatNanos()/NANOS_PER_MILLI;
+	}
+
+	public synchronized double getLastSaveRowsPerSecond()
+	{
+		return (lastSave == null) ? 0.0 : lastSave.getRowsPerSecond();
+	}
+}
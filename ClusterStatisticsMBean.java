@@ -0,0 +1,60 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterStatisticsMBean.java
+package org.estar.cluster;
+
+import java.lang.*;
+
+/**
+ * Management interface of the cluster load and save statistics, published through JMX.
+ * Times are in milliseconds.
+ * @version $Revision$
+ * @see ClusterStatistics
+ * @see ClusterInstrumentation#registerMBean
+ */
+public interface ClusterStatisticsMBean
+{
+	public boolean isEnabled();
+	public void setEnabled(boolean on);
+	public long getLoadCount();
+	public long getSaveCount();
+	public long getFailureCount();
+	public long getRowsLoaded();
+	public long getRowsSaved();
+	public long getCharactersRead();
+	public long getCharactersWritten();
+	public long getParseFailureCount();
+	public double getTotalLoadMillis();
+	public double getTotalSaveMillis();
+	public double getLastLoadMillis();
+	public double getLastLoadIOMillis();
+	public double getLastLoadTokeniseMillis();
+	public double getLastLoadNumberParseMillis();
+	public double getLastLoadCoordinateMillis();
+	public double getLastLoadRowsPerSecond();
+	public double getLastSaveMillis();
+	public double getLastSaveIOMillis();
+	public double getLastSaveFormatMillis();
+	public double getLastSaveRowsPerSecond();
+	/**
+	 * Reset all the statistics to zero.
+	 */
+	public void reset();
+}
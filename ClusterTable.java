@@ -0,0 +1,850 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterTable.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+import org.estar.astrometry.*;
+
+/**
+ * This class is a column oriented version of Cluster. Rather than holding a list of ClusterObject's,
+ * each star field is stored in a primitive array (column), indexed by star. The magnitude, magnitude error
+ * and flag columns are flattened, and are of size (star count x colour count), with the data for
+ * star i, colour c at index ((i*colourCount)+c).
+ * RA and Dec are stored in radians, and as the sexagesimal fields they were parsed from, so they are saved
+ * exactly as they were read. A star without a position has NaN radians, as ClusterObject does.
+ * getStar and getStarList return lightweight read-only ClusterTableObject views onto the columns.
+ * @version $Revision$
+ * @see Cluster
+ * @see ClusterTableObject
+ * @see ClusterCoordinates
+ */
+public class ClusterTable extends Cluster
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The initial number of stars the columns can hold.
+	 */
+	protected final static int DEFAULT_CAPACITY = 1024;
+	/**
+	 * Column group of the field and star numbers.
+	 */
+	protected final static int COLUMNS_IDENTIFIER = 1<<0;
+	/**
+	 * Column group of the RA and Dec.
+	 */
+	protected final static int COLUMNS_POSITION = 1<<1;
+	/**
+	 * Column group of the X and Y pixel positions.
+	 */
+	protected final static int COLUMNS_PIXEL = 1<<2;
+	/**
+	 * Column group of the magnitudes, magnitude errors and flags of every colour.
+	 */
+	protected final static int COLUMNS_PHOTOMETRY = 1<<3;
+	/**
+	 * All the column groups.
+	 */
+	protected final static int COLUMNS_ALL = COLUMNS_IDENTIFIER|COLUMNS_POSITION|COLUMNS_PIXEL|COLUMNS_PHOTOMETRY;
+	/**
+	 * The number of stars in the table.
+	 */
+	protected int starCount = 0;
+	/**
+	 * The field number column.
+	 */
+	protected int fieldNumberArray[] = null;
+	/**
+	 * The star number column.
+	 */
+	protected int starNumberArray[] = null;
+	/**
+	 * The RA column, in radians, or NaN if the star has no RA.
+	 */
+	protected double raArray[] = null;
+	/**
+	 * The Dec column, in radians, or NaN if the star has no Dec.
+	 */
+	protected double decArray[] = null;
+	/**
+	 * The RA hours column.
+	 */
+	protected int raHoursArray[] = null;
+	/**
+	 * The RA minutes column.
+	 */
+	protected int raMinutesArray[] = null;
+	/**
+	 * The RA seconds column.
+	 */
+	protected double raSecondsArray[] = null;
+	/**
+	 * The Dec sign column, '+' or '-'.
+	 */
+	protected char decSignArray[] = null;
+	/**
+	 * The Dec degrees column.
+	 */
+	protected int decDegreesArray[] = null;
+	/**
+	 * The Dec minutes column.
+	 */
+	protected int decMinutesArray[] = null;
+	/**
+	 * The Dec seconds column.
+	 */
+	protected double decSecondsArray[] = null;
+	/**
+	 * The X pixel position column.
+	 */
+	protected double xPixelArray[] = null;
+	/**
+	 * The Y pixel position column.
+	 */
+	protected double yPixelArray[] = null;
+	/**
+	 * The magnitude column, of size starCount x colourCount.
+	 */
+	protected double magnitudeArray[] = null;
+	/**
+	 * The magnitude error column, of size starCount x colourCount.
+	 */
+	protected double magnitudeErrorArray[] = null;
+	/**
+	 * The flags column, of size starCount x colourCount.
+	 */
+	protected int flagsArray[] = null;
+
+	/**
+	 * Default constructor.
+	 */
+	public ClusterTable()
+	{
+		super();
+	}
+
+	/**
+	 * Constructor to create a table from the contents of a Cluster.
+	 * @param c The cluster to copy.
+	 * @see #copyHeader
+	 * @see #addStar
+	 */
+	public ClusterTable(Cluster c)
+	{
+		super();
+		int index,starListCount;
+
+		copyHeader(c);
+		starListCount = c.getStarListCount();
+		initialiseColumns(starListCount);
+		for(index = 0; index < starListCount; index++)
+			addStar(c.getStar(index));
+	}
+
+	/**
+	 * Method to reset the table to empty, before stars are loaded into it.
+	 * @see #initialiseColumns
+	 * @see #DEFAULT_CAPACITY
+	 */
+	protected void initialiseStarList()
+	{
+		initialiseColumns(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Method to allocate empty columns for the specified number of stars.
+	 * @param capacity The number of stars to allocate space for.
+	 */
+	protected void initialiseColumns(int capacity)
+	{
+		capacity = Math.max(capacity,1);
+		starCount = 0;
+		fieldNumberArray = new int[capacity];
+		starNumberArray = new int[capacity];
+		raArray = new double[capacity];
+		decArray = new double[capacity];
+		raHoursArray = new int[capacity];
+		raMinutesArray = new int[capacity];
+		raSecondsArray = new double[capacity];
+		decSignArray = new char[capacity];
+		decDegreesArray = new int[capacity];
+		decMinutesArray = new int[capacity];
+		decSecondsArray = new double[capacity];
+		xPixelArray = new double[capacity];
+		yPixelArray = new double[capacity];
+		magnitudeArray = new double[capacity*colourCount];
+		magnitudeErrorArray = new double[capacity*colourCount];
+		flagsArray = new int[capacity*colourCount];
+	}
+
+	/**
+	 * Method to make sure the columns have space for at least the specified number of stars.
+	 * The columns are doubled in size if they are too small.
+	 * @param capacity The number of stars needed.
+	 */
+	protected void ensureCapacity(int capacity)
+	{
+		int newCapacity;
+
+		if(capacity <= fieldNumberArray.length)
+			return;
+		newCapacity = Math.max(capacity,fieldNumberArray.length*2);
+		fieldNumberArray = Arrays.copyOf(fieldNumberArray,newCapacity);
+		starNumberArray = Arrays.copyOf(starNumberArray,newCapacity);
+		raArray = Arrays.copyOf(raArray,newCapacity);
+		decArray = Arrays.copyOf(decArray,newCapacity);
+		raHoursArray = Arrays.copyOf(raHoursArray,newCapacity);
+		raMinutesArray = Arrays.copyOf(raMinutesArray,newCapacity);
+		raSecondsArray = Arrays.copyOf(raSecondsArray,newCapacity);
+		decSignArray = Arrays.copyOf(decSignArray,newCapacity);
+		decDegreesArray = Arrays.copyOf(decDegreesArray,newCapacity);
+		decMinutesArray = Arrays.copyOf(decMinutesArray,newCapacity);
+		decSecondsArray = Arrays.copyOf(decSecondsArray,newCapacity);
+		xPixelArray = Arrays.copyOf(xPixelArray,newCapacity);
+		yPixelArray = Arrays.copyOf(yPixelArray,newCapacity);
+		magnitudeArray = Arrays.copyOf(magnitudeArray,newCapacity*colourCount);
+		magnitudeErrorArray = Arrays.copyOf(magnitudeErrorArray,newCapacity*colourCount);
+		flagsArray = Arrays.copyOf(flagsArray,newCapacity*colourCount);
+	}
+
+	/**
+	 * Method to shrink the columns so they are exactly the size of the star count.
+	 * @see #starCount
+	 */
+	public void trimToSize()
+	{
+		if(fieldNumberArray.length == starCount)
+			return;
+		fieldNumberArray = Arrays.copyOf(fieldNumberArray,starCount);
+		starNumberArray = Arrays.copyOf(starNumberArray,starCount);
+		raArray = Arrays.copyOf(raArray,starCount);
+		decArray = Arrays.copyOf(decArray,starCount);
+		raHoursArray = Arrays.copyOf(raHoursArray,starCount);
+		raMinutesArray = Arrays.copyOf(raMinutesArray,starCount);
+		raSecondsArray = Arrays.copyOf(raSecondsArray,starCount);
+		decSignArray = Arrays.copyOf(decSignArray,starCount);
+		decDegreesArray = Arrays.copyOf(decDegreesArray,starCount);
+		decMinutesArray = Arrays.copyOf(decMinutesArray,starCount);
+		decSecondsArray = Arrays.copyOf(decSecondsArray,starCount);
+		xPixelArray = Arrays.copyOf(xPixelArray,starCount);
+		yPixelArray = Arrays.copyOf(yPixelArray,starCount);
+		magnitudeArray = Arrays.copyOf(magnitudeArray,starCount*colourCount);
+		magnitudeErrorArray = Arrays.copyOf(magnitudeErrorArray,starCount*colourCount);
+		flagsArray = Arrays.copyOf(flagsArray,starCount*colourCount);
+	}
+
+	/**
+	 * Method to load a cluster file from a buffered reader into the table.
+	 * The columns are trimmed to size after the load.
+	 * @param r The reader to use.
+	 * @exception IOException Thrown if something couldn't be read.
+	 * @see Cluster#load(java.io.BufferedReader)
+	 * @see #trimToSize
+	 */
+	public void load(BufferedReader r) throws IOException
+	{
+		super.load(r);
+		trimToSize();
+	}
+
+	/**
+	 * Method to load a cluster file held in a range of a character sequence into the table.
+	 * The columns are trimmed to size after the load.
+	 * @param s The characters of the cluster file.
+	 * @param start The index in s of the start of the cluster file.
+	 * @param end The index in s after the end of the cluster file.
+	 * @exception IOException Thrown if a header line is missing.
+	 * @see Cluster#load(java.lang.CharSequence,int,int)
+	 * @see #trimToSize
+	 */
+	public void load(CharSequence s,int start,int end) throws IOException
+	{
+		super.load(s,start,end);
+		trimToSize();
+	}
+
+	/**
+	 * Method to parse a star line in the catalogue, and add the results to the end of the columns.
+	 * @param s The string to parse.
+	 * @see #parseStarLine(java.lang.CharSequence,int,int)
+	 */
+	protected void parseStarLine(String s)
+	{
+		parseStarLine(s,0,s.length());
+	}
+
+	/**
+	 * Method to parse a star line in the catalogue, held in the specified range of a character sequence,
+	 * directly into the end of the columns. The line format and exceptions are the same as
+	 * ClusterObject.parseStarLine, but no ClusterObject, RA or Dec objects are created.
+	 * @param s The characters to parse.
+	 * @param start The index in s of the start of the line.
+	 * @param end The index in s after the end of the line.
+	 * @exception IllegalArgumentException Thrown if there is too much magnitude data on the line.
+	 * @exception NumberFormatException Thrown if a token is not a valid number.
+	 * @see ClusterObject#parseStarLine(java.lang.CharSequence,int,int,int,java.lang.String[])
+	 * @see ClusterLineParser
+	 */
+	protected void parseStarLine(CharSequence s,int start,int end) throws IllegalArgumentException
+	{
+		int row,columnOffset;
+
+		ensureCapacity(starCount+1);
+		row = starCount;
+		columnOffset = row*colourCount;
+		// clear this row, the columns may contain data from a previous failed parse
+		fieldNumberArray[row] = 0;
+		starNumberArray[row] = 0;
+		raArray[row] = Double.NaN;
+		decArray[row] = Double.NaN;
+		raHoursArray[row] = 0;
+		raMinutesArray[row] = 0;
+		raSecondsArray[row] = 0.0;
+		decSignArray[row] = '+';
+		decDegreesArray[row] = 0;
+		decMinutesArray[row] = 0;
+		decSecondsArray[row] = 0.0;
+		xPixelArray[row] = 0.0;
+		yPixelArray[row] = 0.0;
+		Arrays.fill(magnitudeArray,columnOffset,columnOffset+colourCount,0.0);
+		Arrays.fill(magnitudeErrorArray,columnOffset,columnOffset+colourCount,0.0);
+		Arrays.fill(flagsArray,columnOffset,columnOffset+colourCount,0);
+		parseColumns(s,start,end,row,COLUMNS_ALL);
+		starCount++;
+	}
+
+	/**
+	 * Method to parse some of the columns of a star line into the specified row. Tokens belonging to other
+	 * columns are skipped without being parsed, and tokenising stops after the last requested column.
+	 * The row is not cleared first, so columns missing from the line keep their previous values, except
+	 * the RA and Dec radians, which are set to NaN before the position is parsed, so a star line without a
+	 * position is stored as having no RA or Dec, as ClusterObject does.
+	 * @param s The characters to parse.
+	 * @param start The index in s of the start of the line.
+	 * @param end The index in s after the end of the line.
+	 * @param row The row to parse into.
+	 * @param columns A bitwise or of the COLUMNS_ constants to parse.
+	 * @exception IllegalArgumentException Thrown if there is too much magnitude data on the line.
+	 * @exception NumberFormatException Thrown if a token is not a valid number.
+	 * @see #COLUMNS_IDENTIFIER
+	 * @see #COLUMNS_POSITION
+	 * @see #COLUMNS_PIXEL
+	 * @see #COLUMNS_PHOTOMETRY
+	 * @see ClusterLineParser#getDecSign
+	 * @see ClusterLineParser#parseDecDegrees
+	 */
+	protected void parseColumns(CharSequence s,int start,int end,int row,int columns) throws IllegalArgumentException
+	{
+		int index,lastIndex,tokenStart,tokenEnd,magArrayIndex,indexOffset,columnOffset;
+
+		columnOffset = row*colourCount;
+		if((columns & COLUMNS_POSITION) != 0)
+		{
+			raArray[row] = Double.NaN;
+			decArray[row] = Double.NaN;
+		}
+		if((columns & COLUMNS_PHOTOMETRY) != 0)
+			lastIndex = Integer.MAX_VALUE;
+		else if((columns & COLUMNS_PIXEL) != 0)
+			lastIndex = ClusterObject.TOKEN_INDEX_Y_POS;
+		else if((columns & COLUMNS_POSITION) != 0)
+			lastIndex = ClusterObject.TOKEN_INDEX_DECS;
+		else
+			lastIndex = ClusterObject.TOKEN_INDEX_STAR_NUMBER;
+		index = 0;
+		tokenStart = ClusterLineParser.skipSeparators(s,start,end);
+		while((tokenStart < end)&&(index <= lastIndex))
+		{
+			tokenEnd = ClusterLineParser.tokenEnd(s,tokenStart,end);
+			if((columns & getTokenColumns(index)) == 0)
+			{
+				index++;
+				tokenStart = ClusterLineParser.skipSeparators(s,tokenEnd,end);
+				continue;
+			}
+			switch(index)
+			{
+			case ClusterObject.TOKEN_INDEX_FIELD_NUMBER:
+				fieldNumberArray[row] = ClusterLineParser.parseInt(s,tokenStart,tokenEnd);
+				break;
+			case ClusterObject.TOKEN_INDEX_STAR_NUMBER:
+				starNumberArray[row] = ClusterLineParser.parseInt(s,tokenStart,tokenEnd);
+				break;
+			case ClusterObject.TOKEN_INDEX_RAH:
+				raHoursArray[row] = ClusterLineParser.parseInt(s,tokenStart,tokenEnd);
+				break;
+			case ClusterObject.TOKEN_INDEX_RAM:
+				raMinutesArray[row] = ClusterLineParser.parseInt(s,tokenStart,tokenEnd);
+				break;
+			case ClusterObject.TOKEN_INDEX_RAS:
+				raSecondsArray[row] = ClusterLineParser.parseDouble(s,tokenStart,tokenEnd);
+				raArray[row] = ClusterCoordinates.raToRadians(raHoursArray[row],raMinutesArray[row],
+									      raSecondsArray[row]);
+				break;
+			case ClusterObject.TOKEN_INDEX_DECD:
+				decSignArray[row] = ClusterLineParser.getDecSign(s,tokenStart,tokenEnd);
+				decDegreesArray[row] = ClusterLineParser.parseDecDegrees(s,tokenStart,tokenEnd);
+				break;
+			case ClusterObject.TOKEN_INDEX_DECM:
+				decMinutesArray[row] = ClusterLineParser.parseInt(s,tokenStart,tokenEnd);
+				break;
+			case ClusterObject.TOKEN_INDEX_DECS:
+				decSecondsArray[row] = ClusterLineParser.parseDouble(s,tokenStart,tokenEnd);
+				decArray[row] = ClusterCoordinates.decToRadians(decSignArray[row],decDegreesArray[row],
+										decMinutesArray[row],decSecondsArray[row]);
+				break;
+			case ClusterObject.TOKEN_INDEX_X_POS:
+				xPixelArray[row] = ClusterLineParser.parseDouble(s,tokenStart,tokenEnd);
+				break;
+			case ClusterObject.TOKEN_INDEX_Y_POS:
+				yPixelArray[row] = ClusterLineParser.parseDouble(s,tokenStart,tokenEnd);
+				break;
+			default:
+				magArrayIndex = (index-ClusterObject.TOKEN_INDEX_MAGNITUDE_DATA_START)/
+					ClusterObject.TOKEN_MAGNITUDE_DATA_COUNT;
+				indexOffset = (index-ClusterObject.TOKEN_INDEX_MAGNITUDE_DATA_START) %
+					ClusterObject.TOKEN_MAGNITUDE_DATA_COUNT;
+				if(magArrayIndex >= colourCount)
+				{
+					throw new IllegalArgumentException(this.getClass().getName()+
+					    ":parseStarLine:Magnitude Array Index out of bounds:"+index+":"+
+					    colourCount+":"+s.subSequence(tokenStart,tokenEnd));
+				}
+				if(indexOffset == ClusterObject.TOKEN_INDEX_OFFSET_MAGNITUDE)
+				{
+					magnitudeArray[columnOffset+magArrayIndex] = ClusterLineParser.
+						parseDouble(s,tokenStart,tokenEnd);
+				}
+				else if(indexOffset == ClusterObject.TOKEN_INDEX_OFFSET_ERROR)
+				{
+					magnitudeErrorArray[columnOffset+magArrayIndex] = ClusterLineParser.
+						parseDouble(s,tokenStart,tokenEnd);
+				}
+				else
+				{
+					flagsArray[columnOffset+magArrayIndex] = ClusterLineParser.
+						parseInt(s,tokenStart,tokenEnd);
+				}
+				break;
+			}
+			index++;
+			tokenStart = ClusterLineParser.skipSeparators(s,tokenEnd,end);
+		}
+	}
+
+	/**
+	 * Method to return which columns a token of a star line belongs to.
+	 * @param index The index of the token on the line.
+	 * @return One of the COLUMNS_ constants.
+	 */
+	protected static int getTokenColumns(int index)
+	{
+		if(index <= ClusterObject.TOKEN_INDEX_STAR_NUMBER)
+			return COLUMNS_IDENTIFIER;
+		if(index <= ClusterObject.TOKEN_INDEX_DECS)
+			return COLUMNS_POSITION;
+		if(index <= ClusterObject.TOKEN_INDEX_Y_POS)
+			return COLUMNS_PIXEL;
+		return COLUMNS_PHOTOMETRY;
+	}
+
+	/**
+	 * Method to add a star to the end of the table, copying the data out of the specified ClusterObject.
+	 * @param co The star to add.
+	 * @see ClusterObject#getRA
+	 * @see ClusterObject#getDec
+	 */
+	public void addStar(ClusterObject co)
+	{
+		RA ra = null;
+		Dec dec = null;
+		int row,columnOffset,index;
+
+		ensureCapacity(starCount+1);
+		row = starCount;
+		columnOffset = row*colourCount;
+		fieldNumberArray[row] = co.getFieldNumber();
+		starNumberArray[row] = co.getStarNumber();
+		ra = co.getRA();
+		if(ra != null)
+		{
+			raArray[row] = co.getRARadians();
+			raHoursArray[row] = ra.getHours();
+			raMinutesArray[row] = ra.getMinutes();
+			raSecondsArray[row] = ra.getSeconds();
+		}
+		else
+		{
+			raArray[row] = Double.NaN;
+			raHoursArray[row] = 0;
+			raMinutesArray[row] = 0;
+			raSecondsArray[row] = 0.0;
+		}
+		dec = co.getDec();
+		if(dec != null)
+		{
+			decArray[row] = co.getDecRadians();
+			decSignArray[row] = dec.getSign();
+			decDegreesArray[row] = dec.getDegrees();
+			decMinutesArray[row] = dec.getMinutes();
+			decSecondsArray[row] = dec.getSeconds();
+		}
+		else
+		{
+			decArray[row] = Double.NaN;
+			decSignArray[row] = '+';
+			decDegreesArray[row] = 0;
+			decMinutesArray[row] = 0;
+			decSecondsArray[row] = 0.0;
+		}
+		xPixelArray[row] = co.getXPixel();
+		yPixelArray[row] = co.getYPixel();
+		for(index = 0; index < colourCount; index++)
+		{
+			if(index < co.getMagnitudeCount())
+			{
+				magnitudeArray[columnOffset+index] = co.getMagnitude(index);
+				magnitudeErrorArray[columnOffset+index] = co.getMagnitudeError(index);
+				flagsArray[columnOffset+index] = co.getFlags(index);
+			}
+			else
+			{
+				magnitudeArray[columnOffset+index] = 0.0;
+				magnitudeErrorArray[columnOffset+index] = 0.0;
+				flagsArray[columnOffset+index] = 0;
+			}
+		}
+		starCount++;
+	}
+
+	/**
+	 * Method to add all the stars in another table to the end of this table.
+	 * The other table must have the same colour count.
+	 * @param t The table to append.
+	 * @exception IllegalArgumentException Thrown if the colour counts differ.
+	 */
+	public void appendTable(ClusterTable t) throws IllegalArgumentException
+	{
+		if(t.colourCount != colourCount)
+		{
+			throw new IllegalArgumentException(this.getClass().getName()+
+					   ":appendTable:Colour count mismatch:"+t.colourCount+":"+colourCount);
+		}
+		t.decodeColumns();
+		ensureCapacity(starCount+t.starCount);
+		System.arraycopy(t.fieldNumberArray,0,fieldNumberArray,starCount,t.starCount);
+		System.arraycopy(t.starNumberArray,0,starNumberArray,starCount,t.starCount);
+		System.arraycopy(t.raArray,0,raArray,starCount,t.starCount);
+		System.arraycopy(t.decArray,0,decArray,starCount,t.starCount);
+		System.arraycopy(t.raHoursArray,0,raHoursArray,starCount,t.starCount);
+		System.arraycopy(t.raMinutesArray,0,raMinutesArray,starCount,t.starCount);
+		System.arraycopy(t.raSecondsArray,0,raSecondsArray,starCount,t.starCount);
+		System.arraycopy(t.decSignArray,0,decSignArray,starCount,t.starCount);
+		System.arraycopy(t.decDegreesArray,0,decDegreesArray,starCount,t.starCount);
+		System.arraycopy(t.decMinutesArray,0,decMinutesArray,starCount,t.starCount);
+		System.arraycopy(t.decSecondsArray,0,decSecondsArray,starCount,t.starCount);
+		System.arraycopy(t.xPixelArray,0,xPixelArray,starCount,t.starCount);
+		System.arraycopy(t.yPixelArray,0,yPixelArray,starCount,t.starCount);
+		System.arraycopy(t.magnitudeArray,0,magnitudeArray,starCount*colourCount,t.starCount*colourCount);
+		System.arraycopy(t.magnitudeErrorArray,0,magnitudeErrorArray,starCount*colourCount,
+				 t.starCount*colourCount);
+		System.arraycopy(t.flagsArray,0,flagsArray,starCount*colourCount,t.starCount*colourCount);
+		starCount += t.starCount;
+	}
+
+	/**
+	 * Method to make sure every row of the columns holds decoded data, before the columns are accessed directly.
+	 * The columns of a ClusterTable are always decoded, tables that decode rows lazily override this.
+	 * @see ClusterLazyTable#decodeColumns
+	 */
+	protected void decodeColumns()
+	{
+	}
+
+	/**
+	 * Method returns a read-only list of ClusterTableObject views onto the table.
+	 * @return The list of stars.
+	 * @see #getStar
+	 */
+	public List getStarList()
+	{
+		return new AbstractList()
+		{
+			public Object get(int index)
+			{
+				return getStar(index);
+			}
+
+			public int size()
+			{
+				return starCount;
+			}
+		};
+	}
+
+	/**
+	 * Method returns the number of stars in the table.
+	 * @return The number of stars.
+	 * @see #starCount
+	 */
+	public int getStarListCount()
+	{
+		return starCount;
+	}
+
+	/**
+	 * Get a lightweight read-only view of the star at index in the table.
+	 * @param index The index in the table.
+	 * @return A view of the specified star.
+	 * @exception IndexOutOfBoundsException Thrown if the index is out of range.
+	 * @see ClusterTableObject
+	 */
+	public ClusterObject getStar(int index) throws IndexOutOfBoundsException
+	{
+		checkIndex(index);
+		return new ClusterTableObject(this,index);
+	}
+
+	/**
+	 * Check the specified star index is within the table.
+	 * @param index The index to check.
+	 * @exception IndexOutOfBoundsException Thrown if the index is out of range.
+	 * @see #starCount
+	 */
+	protected void checkIndex(int index) throws IndexOutOfBoundsException
+	{
+		if((index < 0)||(index >= starCount))
+		{
+			throw new IndexOutOfBoundsException(this.getClass().getName()+":Index "+index+
+							    " out of range:"+starCount);
+		}
+	}
+
+	public int getFieldNumber(int index)
+	{
+		return fieldNumberArray[index];
+	}
+
+	public int getStarNumber(int index)
+	{
+		return starNumberArray[index];
+	}
+
+	/**
+	 * Get the RA of the specified star, in radians.
+	 * @param index The index of the star.
+	 * @return The RA in radians.
+	 */
+	public double getRARadians(int index)
+	{
+		return raArray[index];
+	}
+
+	/**
+	 * Get the Dec of the specified star, in radians.
+	 * @param index The index of the star.
+	 * @return The Dec in radians.
+	 */
+	public double getDecRadians(int index)
+	{
+		return decArray[index];
+	}
+
+	/**
+	 * Get the RA of the specified star, created from the sexagesimal columns.
+	 * @param index The index of the star.
+	 * @return A new RA object, or null if the star has no RA.
+	 * @see #raArray
+	 * @see #raHoursArray
+	 * @see #raMinutesArray
+	 * @see #raSecondsArray
+	 */
+	public RA getRA(int index)
+	{
+		if(Double.isNaN(raArray[index]))
+			return null;
+		return new RA(raHoursArray[index],raMinutesArray[index],raSecondsArray[index]);
+	}
+
+	/**
+	 * Get the Dec of the specified star, created from the sexagesimal columns.
+	 * @param index The index of the star.
+	 * @return A new Dec object, or null if the star has no Dec.
+	 * @see #decArray
+	 * @see #decSignArray
+	 * @see #decDegreesArray
+	 * @see #decMinutesArray
+	 * @see #decSecondsArray
+	 */
+	public Dec getDec(int index)
+	{
+		if(Double.isNaN(decArray[index]))
+			return null;
+		return new Dec(decSignArray[index],decDegreesArray[index],decMinutesArray[index],decSecondsArray[index]);
+	}
+
+	public double getXPixel(int index)
+	{
+		return xPixelArray[index];
+	}
+
+	public double getYPixel(int index)
+	{
+		return yPixelArray[index];
+	}
+
+	public double getMagnitude(int index,int colourIndex)
+	{
+		return magnitudeArray[(index*colourCount)+colourIndex];
+	}
+
+	public double getMagnitudeError(int index,int colourIndex)
+	{
+		return magnitudeErrorArray[(index*colourCount)+colourIndex];
+	}
+
+	public int getFlags(int index,int colourIndex)
+	{
+		return flagsArray[(index*colourCount)+colourIndex];
+	}
+
+	/**
+	 * Static method to load and instansiate a ClusterTable object from the specified file.
+	 * gzip (or zstd) compressed files are decompressed while they are loaded.
+	 * @param file The file to load.
+	 * @return A ClusterTable object instance.
+	 * @exception FileNotFoundException Thrown if the file doesnot exist.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see #load(java.io.BufferedReader)
+	 * @see ClusterDecompressor#open
+	 */
+	public static ClusterTable load(File file) throws FileNotFoundException,IOException
+	{
+		ClusterTable t = null;
+		InputStream is = null;
+
+		t = new ClusterTable();
+		is = ClusterDecompressor.open(new FileInputStream(file));
+		try
+		{
+			t.load(new BufferedReader(new InputStreamReader(is,FILE_CHARSET)));
+		}
+		finally
+		{
+			is.close();
+		}
+		return t;
+	}
+
+	/**
+	 * Static method to load and instansiate a ClusterTable object from the specified URL.
+	 * gzip (or zstd) compressed data is decompressed while it is loaded.
+	 * @param url The URL to load from.
+	 * @return A ClusterTable object instance.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see #load(java.io.BufferedReader)
+	 * @see ClusterDecompressor#open
+	 */
+	public static ClusterTable load(URL url) throws IOException
+	{
+		ClusterTable t = null;
+		InputStream is = null;
+
+		t = new ClusterTable();
+		is = ClusterDecompressor.open(url.openStream());
+		try
+		{
+			t.load(new BufferedReader(new InputStreamReader(is,FILE_CHARSET)));
+		}
+		finally
+		{
+			is.close();
+		}
+		return t;
+	}
+
+	/**
+	 * Static method to load and instansiate a ClusterTable object from the specified URL, with connect and read
+	 * timeouts. gzip (or zstd) compressed data is decompressed while it is loaded.
+	 * To load a ClusterTable asynchronously, use ClusterUrlLoader.loadAsync(new ClusterTable(),url,...).
+	 * @param url The URL to load from.
+	 * @param connectTimeout The connect timeout, in milliseconds, or 0 to wait forever.
+	 * @param readTimeout The read timeout, in milliseconds, or 0 to wait forever.
+	 * @return A ClusterTable object instance.
+	 * @exception SocketTimeoutException Thrown if a timeout expires.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see ClusterUrlLoader#load(org.estar.cluster.Cluster,java.net.URL,int,int)
+	 */
+	public static ClusterTable load(URL url,int connectTimeout,int readTimeout) throws IOException
+	{
+		return ClusterUrlLoader.load(new ClusterTable(),url,connectTimeout,readTimeout);
+	}
+
+	/**
+	 * Static method to load and instansiate a ClusterTable object from the specified string.
+	 * @param s A string containing the contents of a cluster file.
+	 * @return A ClusterTable object instance.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see #load(java.lang.CharSequence)
+	 */
+	public static ClusterTable load(String s) throws IOException
+	{
+		return load((CharSequence)s);
+	}
+
+	/**
+	 * Static method to load and instansiate a ClusterTable object from the specified character sequence,
+	 * parsing it in place.
+	 * @param s The contents of a cluster file.
+	 * @return A ClusterTable object instance.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see #load(java.lang.CharSequence,int,int)
+	 */
+	public static ClusterTable load(CharSequence s) throws IOException
+	{
+		ClusterTable t = null;
+
+		t = new ClusterTable();
+		t.load(s,0,s.length());
+		return t;
+	}
+
+	/**
+	 * Static method to load and instansiate a ClusterTable object from a range of a character array,
+	 * parsing it in place. The array is not copied.
+	 * @param buffer The array containing the contents of a cluster file.
+	 * @param offset The index in the array of the start of the cluster file.
+	 * @param length The number of characters in the cluster file.
+	 * @return A ClusterTable object instance.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see #load(java.lang.CharSequence,int,int)
+	 */
+	public static ClusterTable load(char buffer[],int offset,int length) throws IOException
+	{
+		return load(CharBuffer.wrap(buffer,offset,length));
+	}
+}
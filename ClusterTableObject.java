@@ -0,0 +1,346 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterTableObject.java
+package org.estar.cluster;
+
+import java.lang.*;
+import org.estar.astrometry.*;
+
+/**
+ * This class is a lightweight read-only view of one star in a ClusterTable.
+ * The getter methods read the data directly out of the table's columns, no data is copied into the
+ * view. The RA and Dec objects are created from the sexagesimal columns each time getRA/getDec is called.
+ * The view is read-only, calling the setter or parse methods on it throws an UnsupportedOperationException,
+ * rather than silently changing fields the getters do not read.
+ * @version $Revision$
+ * @see ClusterTable
+ * @see ClusterObject
+ */
+public class ClusterTableObject extends ClusterObject
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The table this star is in.
+	 */
+	protected ClusterTable table = null;
+	/**
+	 * The index of the star in the table.
+	 */
+	protected int index;
+
+	/**
+	 * Constructor.
+	 * @param t The table the star is in.
+	 * @param i The index of the star in the table.
+	 * @see #table
+	 * @see #index
+	 */
+	public ClusterTableObject(ClusterTable t,int i)
+	{
+		super();
+		table = t;
+		index = i;
+		colourMap = t.getColourMap();
+	}
+
+	/**
+	 * Get the index of the star in the table.
+	 * @return The index.
+	 * @see #index
+	 */
+	public int getIndex()
+	{
+		return index;
+	}
+
+	public int getFieldNumber()
+	{
+		return table.getFieldNumber(index);
+	}
+
+	public int getStarNumber()
+	{
+		return table.getStarNumber(index);
+	}
+
+	public double getXPixel()
+	{
+		return table.getXPixel(index);
+	}
+
+	public double getYPixel()
+	{
+		return table.getYPixel(index);
+	}
+
+	public int getMagnitudeCount()
+	{
+		return table.getColourCount();
+	}
+
+	public double getMagnitude(int colourIndex)
+	{
+		return table.getMagnitude(index,colourIndex);
+	}
+
+	public double getMagnitudeError(int colourIndex)
+	{
+		return table.getMagnitudeError(index,colourIndex);
+	}
+
+	public int getFlags(int colourIndex)
+	{
+		return table.getFlags(index,colourIndex);
+	}
+
+	/**
+	 * Get the RA of this star.
+	 * @return A new RA object, created from the table's sexagesimal RA columns.
+	 * @see ClusterTable#getRA(int)
+	 */
+	public RA getRA()
+	{
+		return table.getRA(index);
+	}
+
+	/**
+	 * Get the Dec of this star.
+	 * @return A new Dec object, created from the table's sexagesimal Dec columns.
+	 * @see ClusterTable#getDec(int)
+	 */
+	public Dec getDec()
+	{
+		return table.getDec(index);
+	}
+
+	public double getRARadians()
+	{
+		return table.getRARadians(index);
+	}
+
+	public double getDecRadians()
+	{
+		return table.getDecRadians(index);
+	}
+
+	/**
+	 * A view is read-only, so this method throws an exception.
+	 * @param s The name.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	public void setName(String s) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+":setName:Star is read-only.");
+	}
+
+	/**
+	 * A view is read-only, so this method throws an exception.
+	 * @param ra The RA.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	public void setRA(RA ra) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+":setRA:Star is read-only.");
+	}
+
+	/**
+	 * A view is read-only, so this method throws an exception.
+	 * @param hours The RA hours.
+	 * @param minutes The RA minutes.
+	 * @param seconds The RA seconds.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	public void setRA(int hours,int minutes,double seconds) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+":setRA:Star is read-only.");
+	}
+
+	/**
+	 * A view is read-only, so this method throws an exception.
+	 * @param dec The Dec.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	public void setDec(Dec dec) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+":setDec:Star is read-only.");
+	}
+
+	/**
+	 * A view is read-only, so this method throws an exception.
+	 * @param sign The Dec sign, '+' or '-'.
+	 * @param degrees The Dec degrees.
+	 * @param minutes The Dec minutes.
+	 * @param seconds The Dec seconds.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	public void setDec(char sign,int degrees,int minutes,double seconds) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+":setDec:Star is read-only.");
+	}
+
+	/**
+	 * A view is read-only, so this method throws an exception.
+	 * @param ra The RA in radians.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	public void setRARadians(double ra) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+":setRARadians:Star is read-only.");
+	}
+
+	/**
+	 * A view is read-only, so this method throws an exception.
+	 * @param dec The Dec in radians.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	public void setDecRadians(double dec) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+":setDecRadians:Star is read-only.");
+	}
+
+	/**
+	 * A view is read-only, so this method throws an exception. The other parseStarLine methods also call
+	 * this method.
+	 * @param s The characters to parse.
+	 * @param start The index in s of the start of the line.
+	 * @param end The index in s after the end of the line.
+	 * @param map The colour map.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	public void parseStarLine(CharSequence s,int start,int end,ClusterColourMap map)
+		throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+":parseStarLine:Star is read-only.");
+	}
+
+	/**
+	 * A view is read-only, so this method throws an exception.
+	 * @param colourCount The number of colours.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	protected void initialiseMagnitudes(int colourCount) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+
+							":initialiseMagnitudes:Star is read-only.");
+	}
+
+	/**
+	 * A view is read-only, so this method throws an exception.
+	 * @param index The colour index.
+	 * @param band The band the colour is mapped to.
+	 * @param magnitude The magnitude.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	protected void setMagnitude(int index,int band,double magnitude) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+":setMagnitude:Star is read-only.");
+	}
+
+	/**
+	 * Get the unit vector of this star's position on the sky.
+	 * @return A new array of length 3 containing x,y,z, computed from the table's radian columns.
+	 * @see ClusterObject#computeUnitVector
+	 */
+	public double[] getUnitVector()
+	{
+		return computeUnitVector(table.getRARadians(index),table.getDecRadians(index));
+	}
+
+	/**
+	 * Get the B magnitude of this star, from the colour mapped to the B band, if there is one.
+	 * @return The magnitude.
+	 * @see #getMappedMagnitude
+	 */
+	public double getBMagnitude()
+	{
+		return getMappedMagnitude(ClusterColourMap.BAND_B,super.getBMagnitude());
+	}
+
+	/**
+	 * Get the V magnitude of this star, from the colour mapped to the V band, if there is one.
+	 * @return The magnitude.
+	 * @see #getMappedMagnitude
+	 */
+	public double getVMagnitude()
+	{
+		return getMappedMagnitude(ClusterColourMap.BAND_V,super.getVMagnitude());
+	}
+
+	/**
+	 * Get the R magnitude of this star, from the colour mapped to the R band, if there is one.
+	 * @return The magnitude.
+	 * @see #getMappedMagnitude
+	 */
+	public double getRMagnitude()
+	{
+		return getMappedMagnitude(ClusterColourMap.BAND_R,super.getRMagnitude());
+	}
+
+	/**
+	 * A view is read-only, so this method throws an exception.
+	 * @param d The magnitude.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	public void setBMagnitude(double d) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+":setBMagnitude:Star is read-only.");
+	}
+
+	/**
+	 * A view is read-only, so this method throws an exception.
+	 * @param d The magnitude.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	public void setVMagnitude(double d) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+":setVMagnitude:Star is read-only.");
+	}
+
+	/**
+	 * A view is read-only, so this method throws an exception.
+	 * @param d The magnitude.
+	 * @exception UnsupportedOperationException Always thrown.
+	 */
+	public void setRMagnitude(double d) throws UnsupportedOperationException
+	{
+		throw new UnsupportedOperationException(this.getClass().getName()+":setRMagnitude:Star is read-only.");
+	}
+
+	/**
+	 * Get the magnitude of the colour mapped to the specified band, as ClusterObject.parseStarLine
+	 * would have set it.
+	 * @param band The band number.
+	 * @param defaultValue The value to return if there is no colour mapped to that band.
+	 * @return The magnitude.
+	 * @see ClusterColourMap#getSlot(int)
+	 */
+	protected double getMappedMagnitude(int band,double defaultValue)
+	{
+		int colourIndex;
+
+		colourIndex = colourMap.getSlot(band);
+		if(colourIndex < 0)
+			return defaultValue;
+		return table.getMagnitude(index,colourIndex);
+	}
+}
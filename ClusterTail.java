@@ -0,0 +1,460 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterTail.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * This class follows a cluster file that is being appended to, adding each newly completed star line
+ * to a Cluster (or ClusterTable) without re-parsing the lines already read.
+ * The byte offset after the last complete line is remembered between polls. Each poll checks that the
+ * header, and the bytes just before the remembered offset, are unchanged; if the file has been truncated
+ * or rewritten, the cluster is reloaded from the start of the file. A line is only read once its line
+ * terminator has been written. Blank lines are skipped.
+ * Listeners are told about appended stars and reloads. The file can be polled explicitly, or periodically
+ * by a daemon timer thread. A poll changes the cluster while holding the lock on this ClusterTail, so
+ * another thread (for instance while follow is polling on the timer thread) must either use the cluster
+ * inside a synchronized(tail) block, or read the immutable ClusterSnapshot returned by getSnapshot.
+ * Listeners are called by the polling thread with the lock held, so they can use the cluster directly.
+ * @version $Revision$
+ * @see ClusterTailListener
+ * @see #getSnapshot
+ * @see ClusterMappedLoader#loadHeader
+ */
+public class ClusterTail
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The number of bytes before the remembered offset that are checked for a rewrite.
+	 */
+	protected final static int TAIL_CHECK_LENGTH = 64;
+	/**
+	 * The size of the buffer appended data is read with.
+	 */
+	protected final static int BUFFER_SIZE = 1024*1024;
+	/**
+	 * The file being followed.
+	 */
+	protected File file = null;
+	/**
+	 * The cluster the stars are added to.
+	 */
+	protected Cluster cluster = null;
+	/**
+	 * The byte offset in the file after the last complete line read, or -1 if the file has not been read.
+	 */
+	protected long offset = -1;
+	/**
+	 * The bytes of the header, as last read.
+	 */
+	protected byte headerBytes[] = null;
+	/**
+	 * The bytes just before offset, as last read.
+	 */
+	protected byte tailBytes[] = null;
+	/**
+	 * The list of listeners.
+	 */
+	protected List listenerList = null;
+	/**
+	 * The timer used to follow the file, or null.
+	 */
+	protected Timer timer = null;
+	/**
+	 * A snapshot of the cluster as of the last poll that changed it, created when first asked for, or null.
+	 */
+	protected ClusterSnapshot snapshot = null;
+
+	/**
+	 * Constructor. The file is not read until the first poll.
+	 * @param f The file to follow.
+	 * @param c The cluster to add the stars to, e.g. a new Cluster or ClusterTable. Any stars it already
+	 *        contains are replaced by the first poll.
+	 */
+	public ClusterTail(File f,Cluster c)
+	{
+		super();
+		file = f;
+		cluster = c;
+		listenerList = new Vector();
+	}
+
+	/**
+	 * Constructor. The stars are added to a new Cluster.
+	 * @param f The file to follow.
+	 */
+	public ClusterTail(File f)
+	{
+		this(f,new Cluster());
+	}
+
+	/**
+	 * Return the cluster the stars are added to. The cluster is changed by each poll, so while the file is
+	 * being followed it must only be used inside a synchronized(tail) block.
+	 * @return The cluster.
+	 * @see #getSnapshot
+	 */
+	public Cluster getCluster()
+	{
+		return cluster;
+	}
+
+	/**
+	 * Return an immutable snapshot of the cluster as of the last poll, which any thread can read without
+	 * locking while later polls carry on changing the cluster. A new snapshot is only copied from the
+	 * cluster when this is called after a poll that changed it.
+	 * @return The snapshot.
+	 * @see #snapshot
+	 * @see ClusterSnapshot#of
+	 */
+	public synchronized ClusterSnapshot getSnapshot()
+	{
+		if(snapshot == null)
+			snapshot = ClusterSnapshot.of(cluster);
+		return snapshot;
+	}
+
+	/**
+	 * Return the byte offset in the file after the last complete line read.
+	 * @return The offset, or -1 if the file has not been read.
+	 */
+	public synchronized long getOffset()
+	{
+		return offset;
+	}
+
+	/**
+	 * Add a listener.
+	 * @param l The listener.
+	 */
+	public void addListener(ClusterTailListener l)
+	{
+		listenerList.add(l);
+	}
+
+	/**
+	 * Remove a listener.
+	 * @param l The listener.
+	 */
+	public void removeListener(ClusterTailListener l)
+	{
+		listenerList.remove(l);
+	}
+
+	/**
+	 * Read any star lines completed since the last poll. The first poll, and any poll that finds the
+	 * file has been truncated or rewritten, loads the whole file.
+	 * @return The number of stars added to the cluster, or the total number of stars if it was reloaded.
+	 * @exception IOException Thrown if the file cannot be read, or a star line cannot be parsed. Stars parsed
+	 *            before the failure are kept, and the next poll carries on after the line that failed.
+	 * @see #isUnchanged
+	 * @see #reload
+	 * @see #readLines
+	 */
+	public synchronized int poll() throws IOException
+	{
+		FileInputStream fis = null;
+		FileChannel fc = null;
+		int firstIndex;
+
+		fis = new FileInputStream(file);
+		try
+		{
+			fc = fis.getChannel();
+			if((offset < 0)||(isUnchanged(fc) == false))
+			{
+				reload(fc);
+				return cluster.getStarListCount();
+			}
+			firstIndex = cluster.getStarListCount();
+			try
+			{
+				readLines(fc);
+			}
+			finally
+			{
+				if(cluster.getStarListCount() > firstIndex)
+				{
+					snapshot = null;
+					notifyStarsAppended(firstIndex,cluster.getStarListCount()-firstIndex);
+				}
+			}
+			return cluster.getStarListCount()-firstIndex;
+		}
+		finally
+		{
+			fis.close();
+		}
+	}
+
+	/**
+	 * Start polling the file periodically, on a daemon timer thread. Poll failures are passed to the
+	 * listeners' pollFailed method. Other threads must then use the cluster inside a synchronized(tail)
+	 * block, or use getSnapshot.
+	 * @param period The time between polls, in milliseconds.
+	 * @see #poll
+	 * @see #stop
+	 * @see #getSnapshot
+	 */
+	public synchronized void follow(long period)
+	{
+		stop();
+		timer = new Timer("ClusterTail:"+file,true);
+		timer.schedule(new TimerTask()
+		{
+			public void run()
+			{
+				try
+				{
+					poll();
+				}
+				catch(Exception e)
+				{
+					notifyPollFailed(e);
+				}
+			}
+		},0,period);
+	}
+
+	/**
+	 * Stop polling the file periodically.
+	 * @see #follow
+	 */
+	public synchronized void stop()
+	{
+		if(timer != null)
+		{
+			timer.cancel();
+			timer = null;
+		}
+	}
+
+	/**
+	 * Check whether the file still starts with the header, and still contains the bytes before the
+	 * remembered offset, last read.
+	 * @param fc The file channel.
+	 * @return true if the file has only been appended to.
+	 * @exception IOException Thrown if the read fails.
+	 */
+	protected boolean isUnchanged(FileChannel fc) throws IOException
+	{
+		if(fc.size() < offset)
+			return false;
+		if(Arrays.equals(headerBytes,readBytes(fc,0,headerBytes.length)) == false)
+			return false;
+		return Arrays.equals(tailBytes,readBytes(fc,offset-tailBytes.length,tailBytes.length));
+	}
+
+	/**
+	 * Load the whole file, replacing the header and stars of the cluster.
+	 * @param fc The file channel.
+	 * @exception IOException Thrown if the file cannot be read or parsed.
+	 * @see ClusterMappedLoader#loadHeader
+	 * @see #readLines
+	 */
+	protected void reload(FileChannel fc) throws IOException
+	{
+		long headerEnd;
+
+		offset = -1;
+		snapshot = null;
+		cluster.clearIndexes();
+		headerEnd = ClusterMappedLoader.loadHeader(fc,cluster);
+		cluster.initialiseStarList();
+		headerBytes = readBytes(fc,0,(int)headerEnd);
+		offset = headerEnd;
+		tailBytes = new byte[0];
+		try
+		{
+			readLines(fc);
+		}
+		finally
+		{
+			notifyClusterReloaded();
+		}
+	}
+
+	/**
+	 * Parse the complete lines after the remembered offset, and move the offset past them.
+	 * @param fc The file channel.
+	 * @exception IOException Thrown if the file cannot be read, or a line cannot be parsed.
+	 */
+	protected void readLines(FileChannel fc) throws IOException
+	{
+		ByteBuffer buffer = null;
+		ByteBufferCharSequence cs = null;
+		long size;
+		int capacity,length,lineStart,lineEnd,nextLineStart;
+		byte ch;
+
+		size = fc.size();
+		capacity = BUFFER_SIZE;
+		try
+		{
+			while(offset < size)
+			{
+				length = (int)Math.min(size-offset,(long)capacity);
+				if((buffer == null)||(buffer.capacity() < length))
+					buffer = ByteBuffer.allocate(length);
+				buffer.clear();
+				buffer.limit(length);
+				ClusterMappedLoader.readFully(fc,buffer,offset);
+				cs = new ByteBufferCharSequence(buffer,0,length);
+				lineStart = 0;
+				while(lineStart < length)
+				{
+					// find the end of the line
+					lineEnd = lineStart;
+					ch = 0;
+					while(lineEnd < length)
+					{
+						ch = buffer.get(lineEnd);
+						if((ch == '\n')||(ch == '\r'))
+							break;
+						lineEnd++;
+					}
+					if(lineEnd >= length)
+						break;
+					nextLineStart = lineEnd+1;
+					if(ch == '\r')
+					{
+						// a CR at the end of the data may be followed by a LF not yet read or written
+						if(nextLineStart >= length)
+							break;
+						if(buffer.get(nextLineStart) == '\n')
+							nextLineStart++;
+					}
+					// move past the line before parsing it, so a bad line is not parsed again
+					offset += nextLineStart-lineStart;
+					if(lineEnd > lineStart)
+						parseLine(cs,lineStart,lineEnd);
+					lineStart = nextLineStart;
+				}
+				if(lineStart == 0)
+				{
+					// no complete line in the data read, read more if there is more
+					if(length < size-offset)
+						capacity *= 2;
+					else
+						break;
+				}
+			}
+		}
+		finally
+		{
+			tailBytes = readBytes(fc,offset-Math.min(TAIL_CHECK_LENGTH,offset-headerBytes.length),
+					      (int)Math.min(TAIL_CHECK_LENGTH,offset-headerBytes.length));
+		}
+	}
+
+	/**
+	 * Parse one star line into the cluster.
+	 * @param cs The characters read.
+	 * @param start The start of the line.
+	 * @param end The end of the line, not including the line terminator.
+	 * @exception IOException Thrown if the line cannot be parsed.
+	 * @see Cluster#parseStarLine(java.lang.CharSequence,int,int)
+	 */
+	protected void parseLine(CharSequence cs,int start,int end) throws IOException
+	{
+		try
+		{
+			cluster.parseStarLine(cs,start,end);
+		}
+		catch(RuntimeException e)
+		{
+			throw new IOException(this.getClass().getName()+":parseLine:"+file+
+					      ":Failed to parse star line:"+cs.subSequence(start,end)+":"+e,e);
+		}
+	}
+
+	/**
+	 * Read some bytes from the file.
+	 * @param fc The file channel.
+	 * @param position The position in the file.
+	 * @param length The number of bytes.
+	 * @return The bytes, or a shorter array if the file ends first.
+	 * @exception IOException Thrown if the read fails.
+	 */
+	protected static byte[] readBytes(FileChannel fc,long position,int length) throws IOException
+	{
+		ByteBuffer buffer = null;
+		int count;
+
+		buffer = ByteBuffer.allocate(length);
+		while(buffer.hasRemaining())
+		{
+			count = fc.read(buffer,position+buffer.position());
+			if(count < 0)
+				break;
+		}
+		return Arrays.copyOf(buffer.array(),buffer.position());
+	}
+
+	/**
+	 * Tell each listener stars have been appended.
+	 * @param firstIndex The index of the first new star.
+	 * @param count The number of new stars.
+	 */
+	protected void notifyStarsAppended(int firstIndex,int count)
+	{
+		Object listenerArray[];
+		int index;
+
+		listenerArray = listenerList.toArray();
+		for(index = 0; index < listenerArray.length; index++)
+			((ClusterTailListener)(listenerArray[index])).starsAppended(cluster,firstIndex,count);
+	}
+
+	/**
+	 * Tell each listener the cluster has been reloaded.
+	 */
+	protected void notifyClusterReloaded()
+	{
+		Object listenerArray[];
+		int index;
+
+		listenerArray = listenerList.toArray();
+		for(index = 0; index < listenerArray.length; index++)
+			((ClusterTailListener)(listenerArray[index])).clusterReloaded(cluster);
+	}
+
+	/**
+	 * Tell each listener a poll run by the timer failed.
+	 * @param e The exception.
+	 */
+	protected void notifyPollFailed(Exception e)
+	{
+		Object listenerArray[];
+		int index;
+
+		listenerArray = listenerList.toArray();
+		for(index = 0; index < listenerArray.length; index++)
+			((ClusterTailListener)(listenerArray[index])).pollFailed(cluster,e);
+	}
+}
@@ -0,0 +1,54 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterTailListener.java
+package org.estar.cluster;
+
+import java.lang.*;
+
+/**
+ * Interface implemented by classes that want to be told when a ClusterTail has read new stars from the
+ * cluster file it is following.
+ * @version $Revision$
+ * @see ClusterTail#addListener
+ */
+public interface ClusterTailListener
+{
+	/**
+	 * Method called after star lines appended to the file have been added to the cluster.
+	 * @param c The cluster.
+	 * @param firstIndex The index in the star list of the first new star.
+	 * @param count The number of new stars.
+	 */
+	public void starsAppended(Cluster c,int firstIndex,int count);
+
+	/**
+	 * Method called after the cluster has been reloaded from the start of the file, because the file
+	 * was truncated or rewritten. The header and all the stars may have changed.
+	 * @param c The cluster.
+	 */
+	public void clusterReloaded(Cluster c);
+
+	/**
+	 * Method called when a poll run by the follow timer fails.
+	 * @param c The cluster.
+	 * @param e The exception.
+	 */
+	public void pollFailed(Cluster c,Exception e);
+}
@@ -0,0 +1,318 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterUrlLoader.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * This class loads a cluster from a URL with connect and read timeouts, either blocking the calling thread
+ * or asynchronously, returning a CompletableFuture. The response body is passed straight to the parser
+ * as it arrives (decompressing it if it is gzip or zstd compressed), so the whole body is never buffered.
+ * Cancelling the future of an asynchronous load disconnects the connection, so a thread stuck waiting on
+ * a slow or stalled server is released straight away.
+ * The timeouts are in milliseconds, as used by URLConnection. A timeout of zero means wait forever.
+ * The read timeout applies to each read, so a server that keeps sending data slowly is not timed out;
+ * cancel the future (e.g. from a scheduled task) to put a limit on the whole load.
+ * @version $Revision$
+ * @see Cluster#load(java.net.URL,int,int)
+ * @see Cluster#loadAsync(java.net.URL,int,int)
+ * @see java.net.URLConnection#setConnectTimeout
+ * @see java.net.URLConnection#setReadTimeout
+ */
+public class ClusterUrlLoader
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The default connect timeout, in milliseconds.
+	 */
+	public final static int DEFAULT_CONNECT_TIMEOUT = 30000;
+	/**
+	 * The default read timeout, in milliseconds.
+	 */
+	public final static int DEFAULT_READ_TIMEOUT = 60000;
+	/**
+	 * Executor used for asynchronous loads when none is specified, created when first needed.
+	 * It uses daemon threads, created as needed, as loads spend most of their time blocked on I/O.
+	 */
+	protected static ExecutorService defaultExecutor = null;
+	/**
+	 * The cluster to load into.
+	 */
+	protected Cluster cluster = null;
+	/**
+	 * The URL to load from.
+	 */
+	protected URL url = null;
+	/**
+	 * The connect timeout, in milliseconds.
+	 */
+	protected int connectTimeout;
+	/**
+	 * The read timeout, in milliseconds.
+	 */
+	protected int readTimeout;
+	/**
+	 * The connection, once it has been opened.
+	 */
+	protected volatile URLConnection connection = null;
+	/**
+	 * The stream the body is being read from, once it has been opened.
+	 */
+	protected volatile InputStream inputStream = null;
+	/**
+	 * Whether the load has been aborted.
+	 */
+	protected volatile boolean aborted = false;
+
+	/**
+	 * Constructor.
+	 * @param c The cluster to load into.
+	 * @param u The URL to load from.
+	 * @param ct The connect timeout, in milliseconds.
+	 * @param rt The read timeout, in milliseconds.
+	 * @exception IllegalArgumentException Thrown if a timeout is negative.
+	 */
+	public ClusterUrlLoader(Cluster c,URL u,int ct,int rt) throws IllegalArgumentException
+	{
+		super();
+		if((ct < 0)||(rt < 0))
+		{
+			throw new IllegalArgumentException(this.getClass().getName()+":Illegal timeout:connect "+ct+
+							   ":read "+rt);
+		}
+		cluster = c;
+		url = u;
+		connectTimeout = ct;
+		readTimeout = rt;
+	}
+
+	/**
+	 * Load a cluster from a URL, blocking until it is loaded.
+	 * @param c The cluster to load into, e.g. a new Cluster or ClusterTable.
+	 * @param url The URL to load from.
+	 * @param connectTimeout The connect timeout, in milliseconds.
+	 * @param readTimeout The read timeout, in milliseconds.
+	 * @return The cluster c.
+	 * @exception SocketTimeoutException Thrown if a timeout expires.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see #load()
+	 */
+	public static <T extends Cluster> T load(T c,URL url,int connectTimeout,int readTimeout) throws IOException
+	{
+		new ClusterUrlLoader(c,url,connectTimeout,readTimeout).load();
+		return c;
+	}
+
+	/**
+	 * Load a cluster from a URL asynchronously, on the default executor.
+	 * @param c The cluster to load into, e.g. a new Cluster or ClusterTable.
+	 * @param url The URL to load from.
+	 * @param connectTimeout The connect timeout, in milliseconds.
+	 * @param readTimeout The read timeout, in milliseconds.
+	 * @return A future that completes with c when the load has finished, or exceptionally if it failed.
+	 * @see #loadAsync(org.estar.cluster.Cluster,java.net.URL,int,int,java.util.concurrent.Executor)
+	 * @see #getDefaultExecutor
+	 */
+	public static <T extends Cluster> CompletableFuture<T> loadAsync(T c,URL url,int connectTimeout,
+									  int readTimeout)
+	{
+		return loadAsync(c,url,connectTimeout,readTimeout,getDefaultExecutor());
+	}
+
+	/**
+	 * Load a cluster from a URL asynchronously. The load runs on a thread of the executor, and blocks it
+	 * while waiting for the server. Cancelling the returned future aborts the load, disconnecting the
+	 * connection so the thread is released. The abort runs on a thread of the default executor, as
+	 * disconnecting waits for a read in progress to return; cancel therefore returns at once, but the
+	 * executor's thread is only released when the blocked read returns or the read timeout expires. The
+	 * cluster must not be used until the future has completed normally.
+	 * @param c The cluster to load into, e.g. a new Cluster or ClusterTable.
+	 * @param url The URL to load from.
+	 * @param connectTimeout The connect timeout, in milliseconds.
+	 * @param readTimeout The read timeout, in milliseconds.
+	 * @param executor The executor to run the load on.
+	 * @return A future that completes with c when the load has finished, or exceptionally if it failed.
+	 *         A timeout completes it with a SocketTimeoutException.
+	 * @see #load()
+	 * @see #abort
+	 */
+	public static <T extends Cluster> CompletableFuture<T> loadAsync(final T c,URL url,int connectTimeout,
+									  int readTimeout,Executor executor)
+	{
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		final ClusterUrlLoader loader = new ClusterUrlLoader(c,url,connectTimeout,readTimeout);
+
+		future.whenComplete(new BiConsumer<T,Throwable>()
+		{
+			public void accept(T result,Throwable e)
+			{
+				if(future.isCancelled())
+				{
+					getDefaultExecutor().execute(new Runnable()
+					{
+						public void run()
+						{
+							loader.abort();
+						}
+					});
+				}
+			}
+		});
+		try
+		{
+			executor.execute(new Runnable()
+			{
+				public void run()
+				{
+					if(future.isDone())
+						return;
+					try
+					{
+						loader.load();
+						future.complete(c);
+					}
+					catch(Throwable e)
+					{
+						future.completeExceptionally(e);
+					}
+				}
+			});
+		}
+		catch(RejectedExecutionException e)
+		{
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * Return the executor used for asynchronous loads when none is specified, creating it if necessary.
+	 * @return The executor.
+	 * @see #defaultExecutor
+	 */
+	protected static synchronized ExecutorService getDefaultExecutor()
+	{
+		if(defaultExecutor == null)
+		{
+			defaultExecutor = Executors.newCachedThreadPool(new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = null;
+
+					thread = new Thread(r,"ClusterUrlLoader");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return defaultExecutor;
+	}
+
+	/**
+	 * Open the connection with the timeouts set, and parse the body into the cluster as it is read.
+	 * @exception SocketTimeoutException Thrown if a timeout expires.
+	 * @exception InterruptedIOException Thrown if the load was aborted.
+	 * @exception IOException Thrown if there is a problem with the load.
+	 * @see #connectTimeout
+	 * @see #readTimeout
+	 * @see ClusterDecompressor#open
+	 * @see Cluster#load(java.io.BufferedReader)
+	 */
+	public void load() throws IOException
+	{
+		URLConnection c = null;
+		InputStream is = null;
+
+		c = url.openConnection();
+		c.setConnectTimeout(connectTimeout);
+		c.setReadTimeout(readTimeout);
+		connection = c;
+		try
+		{
+			checkAborted();
+			is = ClusterDecompressor.open(c.getInputStream());
+			inputStream = is;
+			checkAborted();
+			cluster.load(new BufferedReader(new InputStreamReader(is,Cluster.FILE_CHARSET)));
+		}
+		catch(IOException e)
+		{
+			checkAborted();
+			throw e;
+		}
+		finally
+		{
+			if(is != null)
+				is.close();
+			else if(c instanceof HttpURLConnection)
+				((HttpURLConnection)c).disconnect();
+		}
+	}
+
+	/**
+	 * Abort the load. The connection is disconnected (if it is a HTTP connection) and the input stream
+	 * closed, which makes a read blocked in another thread fail. Errors while closing are ignored.
+	 * For HTTP connections this can block until a read in progress in another thread returns.
+	 * @see #aborted
+	 */
+	public void abort()
+	{
+		URLConnection c = null;
+		InputStream is = null;
+
+		aborted = true;
+		c = connection;
+		if(c instanceof HttpURLConnection)
+			((HttpURLConnection)c).disconnect();
+		is = inputStream;
+		if(is != null)
+		{
+			try
+			{
+				is.close();
+			}
+			catch(IOException e)
+			{
+			}
+		}
+	}
+
+	/**
+	 * Throw an exception if the load has been aborted.
+	 * @exception InterruptedIOException Thrown if the load has been aborted.
+	 * @see #aborted
+	 */
+	protected void checkAborted() throws InterruptedIOException
+	{
+		if(aborted)
+		{
+			throw new InterruptedIOException(this.getClass().getName()+":load:Load of "+url+" aborted.");
+		}
+	}
+}
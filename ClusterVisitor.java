@@ -0,0 +1,49 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterVisitor.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+
+/**
+ * Interface implemented by classes that want to be passed each star of a cluster file in turn,
+ * as it is parsed by a ClusterReader.
+ * @version $Revision$
+ * @see ClusterReader#accept
+ */
+public interface ClusterVisitor
+{
+	/**
+	 * Method called once, after the header of the cluster file has been read, before any stars are visited.
+	 * @param header A Cluster containing the header information (colour count, colour names, comments),
+	 *        and no stars.
+	 * @exception IOException Thrown if the visitor fails, this stops the read.
+	 */
+	public void visitHeader(Cluster header) throws IOException;
+
+	/**
+	 * Method called for each star in the cluster file, in file order.
+	 * @param index The index of the star in the file (0 is the first star line).
+	 * @param star The parsed star.
+	 * @exception IOException Thrown if the visitor fails, this stops the read.
+	 */
+	public void visitStar(int index,ClusterObject star) throws IOException;
+}
@@ -0,0 +1,400 @@
+/*
+    Copyright 2006, Astrophysics Research Institute, Liverpool John Moores University.
+
+    This file is part of org.estar.cluster.
+
+    org.estar.cluster is free software; you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation; either version 2 of the License, or
+    (at your option) any later version.
+
+    org.estar.cluster is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with org.estar.cluster; if not, write to the Free Software
+    Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+*/
+// ClusterWriter.java
+package org.estar.cluster;
+
+import java.lang.*;
+import java.io.*;
+import java.text.*;
+import java.util.*;
+import org.estar.astrometry.*;
+
+/**
+ * This class writes cluster files to an Appendable (usually a Writer). Lines are formatted into a reusable
+ * line buffer, using hand written number formatting rather than a new pair of DecimalFormat's per star,
+ * and the buffer is passed to the underlying Writer in large blocks.
+ * The output is identical to ClusterObject.toString / Cluster.save in previous versions:
+ * pixel positions are formatted as DecimalFormat("0.000") would, flags as DecimalFormat("00") would,
+ * and magnitudes as Double.toString. Values that are close to a rounding tie, very large or very small,
+ * or a default locale that does not use '.', '-' and '0' for numbers, fall back to DecimalFormat.
+ * @version $Revision$
+ * @see Cluster#save
+ * @see ClusterObject#toString(java.lang.String)
+ */
+public class ClusterWriter implements Flushable
+{
+	/**
+	 * Revision control system version id.
+	 */
+	public final static String RCSID = "$Id$";
+	/**
+	 * The number of characters the line buffer can hold before it is passed to the underlying Writer.
+	 */
+	protected final static int BUFFER_SIZE = 16*1024;
+	/**
+	 * The largest absolute value formatted without falling back to DecimalFormat.
+	 */
+	protected final static double MAX_FAST_FIXED_VALUE = 1.0e12;
+	/**
+	 * Absolute values smaller than this always format as "0.000" (with a '-' if negative).
+	 */
+	protected final static double MIN_FAST_FIXED_VALUE = 0.0004;
+	/**
+	 * The minimum distance from a rounding tie, in units of 2^-shift of the scaled value, that the
+	 * exact remainder must be before we trust our rounding to agree with DecimalFormat's.
+	 */
+	protected final static long MIN_TIE_DISTANCE = 4096;
+	/**
+	 * The Appendable the cluster file is written to.
+	 */
+	protected Appendable appendable = null;
+	/**
+	 * The appendable, if it is a Writer, so we can write blocks of characters without creating Strings.
+	 */
+	protected Writer writer = null;
+	/**
+	 * Reusable buffer that lines are formatted into.
+	 */
+	protected StringBuilder lineBuffer = null;
+	/**
+	 * Reusable buffer used to pass the line buffer contents to the writer.
+	 */
+	protected char charBuffer[] = null;
+	/**
+	 * Whether the default locale formats numbers using '.', '-' and '0', so our fast formatting is valid.
+	 */
+	protected boolean fastFormat;
+	/**
+	 * The last default format locale isFastFormatLocale found compatible with our fast formatting, or null.
+	 * @see #isFastFormatLocale
+	 */
+	protected static volatile Locale fastFormatLocale = null;
+	/**
+	 * The last default format locale isFastFormatLocale found not compatible with our fast formatting,
+	 * or null.
+	 * @see #isFastFormatLocale
+	 */
+	protected static volatile Locale slowFormatLocale = null;
+	/**
+	 * Fallback formatter for flags, created when needed.
+	 */
+	protected DecimalFormat flagsFormat = null;
+	/**
+	 * Fallback formatter for pixel positions, created when needed.
+	 */
+	protected DecimalFormat pixelFormat = null;
+
+	/**
+	 * Constructor.
+	 * @param a The Appendable (Writer, StringBuilder etc) to write to.
+	 * @see #isFastFormatLocale
+	 */
+	public ClusterWriter(Appendable a)
+	{
+		super();
+		appendable = a;
+		if(a instanceof Writer)
+			writer = (Writer)a;
+		lineBuffer = new StringBuilder(256);
+		fastFormat = isFastFormatLocale();
+	}
+
+	/**
+	 * Determine whether the default format locale uses '.' for the decimal separator, '-' for the minus sign
+	 * and '0' for the zero digit, as DecimalFormat uses the default locale.
+	 * A writer is created for every ClusterObject.toString, so the result is remembered, and the symbols
+	 * are only looked up again if the default locale changes.
+	 * @return true if the locale is compatible with our fast formatting.
+	 * @see #fastFormatLocale
+	 * @see #slowFormatLocale
+	 */
+	protected static boolean isFastFormatLocale()
+	{
+		DecimalFormatSymbols dfs = null;
+		Locale locale = null;
+
+		locale = Locale.getDefault(Locale.Category.FORMAT);
+		if(locale.equals(fastFormatLocale))
+			return true;
+		if(locale.equals(slowFormatLocale))
+			return false;
+		dfs = DecimalFormatSymbols.getInstance(locale);
+		if((dfs.getDecimalSeparator() == '.')&&(dfs.getMinusSign() == '-')&&(dfs.getZeroDigit() == '0'))
+		{
+			fastFormatLocale = locale;
+			return true;
+		}
+		slowFormatLocale = locale;
+		return false;
+	}
+
+	/**
+	 * Write the three header lines of a cluster.
+	 * @param c The cluster.
+	 * @param prefix A prefix to prepend to every line.
+	 * @exception IOException Thrown if the write fails.
+	 */
+	public void writeHeader(Cluster c,String prefix) throws IOException
+	{
+		int index;
+
+		// colour count line
+		lineBuffer.append(prefix).append(c.colourCount).append(' ').append(c.colourCommentString).append('\n');
+		// colour name list line
+		lineBuffer.append(prefix);
+		for(index = 0;index < c.colourCount;index++)
+		{
+			lineBuffer.append(c.colourNameList[index]);
+			if(index < (c.colourCount-1))
+				lineBuffer.append(' ');
+		}
+		lineBuffer.append('\n');
+		// comment
+		lineBuffer.append(prefix);
+		if(c.commentString != null)
+			lineBuffer.append(c.commentString);
+		lineBuffer.append('\n');
+		drainIfFull();
+	}
+
+	/**
+	 * Write a star line, followed by a newline.
+	 * @param co The star.
+	 * @param prefix A prefix to prepend to the line.
+	 * @exception IOException Thrown if the write fails.
+	 * @see #formatStar
+	 */
+	public void writeStar(ClusterObject co,String prefix) throws IOException
+	{
+		formatStar(lineBuffer,co,prefix);
+		lineBuffer.append('\n');
+		drainIfFull();
+	}
+
+	/**
+	 * Write a whole cluster, header and stars. Call flush afterwards to pass any buffered output on.
+	 * @param c The cluster.
+	 * @param prefix A prefix to prepend to every line.
+	 * @exception IOException Thrown if the write fails.
+	 * @see #writeHeader
+	 * @see #writeStar
+	 */
+	public void writeCluster(Cluster c,String prefix) throws IOException
+	{
+		Iterator iterator = null;
+
+		writeHeader(c,prefix);
+		iterator = c.getStarList().iterator();
+		while(iterator.hasNext())
+			writeStar((ClusterObject)(iterator.next()),prefix);
+	}
+
+	/**
+	 * Format a star line (without a newline) onto the end of a StringBuilder.
+	 * A star line has no way of marking a missing value, so if the star has no RA the line ends after the
+	 * star number, and if it has no Dec the line ends after the RA, which is how such lines are parsed.
+	 * @param sb The StringBuilder.
+	 * @param co The star.
+	 * @param prefix A prefix to prepend to the line.
+	 * @see #appendFixed3
+	 * @see #appendFlags
+	 * @see ClusterObject#getRA
+	 * @see ClusterObject#getDec
+	 */
+	public void formatStar(StringBuilder sb,ClusterObject co,String prefix)
+	{
+		RA ra = null;
+		Dec dec = null;
+		int index,count;
+
+		sb.append(prefix).append(co.getFieldNumber()).append(' ').append(co.getStarNumber());
+		ra = co.getRA();
+		if(ra == null)
+			return;
+		sb.append(' ').append(ra.toString(' '));
+		dec = co.getDec();
+		if(dec == null)
+			return;
+		sb.append(' ').append(dec.toString(' ')).append(' ');
+		appendFixed3(sb,co.getXPixel());
+		sb.append(' ');
+		appendFixed3(sb,co.getYPixel());
+		count = co.getMagnitudeCount();
+		for(index = 0;index < count; index ++)
+		{
+			sb.append(' ').append(co.getMagnitude(index)).append(' ').append(co.getMagnitudeError(index));
+			sb.append(' ');
+			appendFlags(sb,co.getFlags(index));
+		}
+	}
+
+	/**
+	 * Append an int formatted as DecimalFormat("00") would.
+	 * @param sb The StringBuilder.
+	 * @param value The value.
+	 * @see #flagsFormat
+	 */
+	protected void appendFlags(StringBuilder sb,int value)
+	{
+		if((fastFormat == false)||(value == Integer.MIN_VALUE))
+		{
+			if(flagsFormat == null)
+				flagsFormat = new DecimalFormat("00");
+			sb.append(flagsFormat.format(value));
+			return;
+		}
+		if(value < 0)
+		{
+			sb.append('-');
+			value = -value;
+		}
+		if(value < 10)
+			sb.append('0');
+		sb.append(value);
+	}
+
+	/**
+	 * Append a double formatted as DecimalFormat("0.000") would.
+	 * The value is decomposed into an exact binary mantissa and exponent, and scaled by 1000 exactly
+	 * in long arithmetic, so the rounding decision is made on the exact value. If the exact value is close
+	 * to a rounding tie, DecimalFormat (which rounds the shortest decimal representation) may decide
+	 * differently, so we fall back to it.
+	 * @param sb The StringBuilder.
+	 * @param value The value.
+	 * @see #MAX_FAST_FIXED_VALUE
+	 * @see #MIN_FAST_FIXED_VALUE
+	 * @see #MIN_TIE_DISTANCE
+	 * @see #pixelFormat
+	 */
+	protected void appendFixed3(StringBuilder sb,double value)
+	{
+		long bits,mantissa,scaled,quotient,remainder,half,unit;
+		int exponent,shift,fraction;
+		boolean negative;
+
+		if((fastFormat == false)||Double.isNaN(value)||(Math.abs(value) >= MAX_FAST_FIXED_VALUE))
+		{
+			appendFixed3Fallback(sb,value);
+			return;
+		}
+		bits = Double.doubleToRawLongBits(value);
+		negative = (bits < 0);
+		if(Math.abs(value) < MIN_FAST_FIXED_VALUE)
+		{
+			if(negative)
+				sb.append('-');
+			sb.append("0.000");
+			return;
+		}
+		exponent = (int)((bits >> 52) & 0x7ff);
+		mantissa = bits & 0xfffffffffffffL;
+		if(exponent == 0)
+			exponent = 1;
+		else
+			mantissa |= (1L << 52);
+		// value = mantissa * 2^(exponent-1075)
+		shift = 1075-exponent;
+		if((shift <= 0)||(shift > 62))
+		{
+			appendFixed3Fallback(sb,value);
+			return;
+		}
+		scaled = mantissa*1000;
+		quotient = scaled >>> shift;
+		unit = 1L << shift;
+		remainder = scaled & (unit-1);
+		half = unit >>> 1;
+		if(Math.abs(remainder-half) < Math.max(unit >>> 20,MIN_TIE_DISTANCE))
+		{
+			appendFixed3Fallback(sb,value);
+			return;
+		}
+		if(remainder > half)
+			quotient++;
+		if(negative)
+			sb.append('-');
+		sb.append(quotient/1000);
+		sb.append('.');
+		fraction = (int)(quotient%1000);
+		if(fraction < 100)
+			sb.append('0');
+		if(fraction < 10)
+			sb.append('0');
+		sb.append(fraction);
+	}
+
+	/**
+	 * Append a double formatted using DecimalFormat("0.000").
+	 * @param sb The StringBuilder.
+	 * @param value The value.
+	 * @see #pixelFormat
+	 */
+	protected void appendFixed3Fallback(StringBuilder sb,double value)
+	{
+		if(pixelFormat == null)
+			pixelFormat = new DecimalFormat("0.000");
+		sb.append(pixelFormat.format(value));
+	}
+
+	/**
+	 * Pass the line buffer contents to the underlying Appendable, if it is getting full.
+	 * @exception IOException Thrown if the write fails.
+	 * @see #BUFFER_SIZE
+	 */
+	protected void drainIfFull() throws IOException
+	{
+		if(lineBuffer.length() >= BUFFER_SIZE)
+			drain();
+	}
+
+	/**
+	 * Pass the line buffer contents to the underlying Appendable, and empty the line buffer.
+	 * If the Appendable is a Writer, the characters are written from a reusable char array.
+	 * @exception IOException Thrown if the write fails.
+	 */
+	protected void drain() throws IOException
+	{
+		int length;
+
+		length = lineBuffer.length();
+		if(length == 0)
+			return;
+		if(writer != null)
+		{
+			if((charBuffer == null)||(charBuffer.length < length))
+				charBuffer = new char[Math.max(length,BUFFER_SIZE+256)];
+			lineBuffer.getChars(0,length,charBuffer,0);
+			writer.write(charBuffer,0,length);
+		}
+		else
+			appendable.append(lineBuffer);
+		lineBuffer.setLength(0);
+	}
+
+	/**
+	 * Pass any buffered output to the underlying Appendable. The Appendable itself is not flushed.
+	 * @exception IOException Thrown if the write fails.
+	 * @see #drain
+	 */
+	public void flush() throws IOException
+	{
+		drain();
+	}
+}